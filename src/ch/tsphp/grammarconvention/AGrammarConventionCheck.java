@@ -6,7 +6,12 @@
 
 package ch.tsphp.grammarconvention;
 
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisRequest;
 import com.puppycrawl.tools.checkstyle.api.Check;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.Grammar;
 import org.antlr.tool.GrammarAST;
 
 /**
@@ -14,6 +19,96 @@ import org.antlr.tool.GrammarAST;
  */
 public abstract class AGrammarConventionCheck extends Check
 {
+    /**
+     * Name of the profile a check belongs to if no profile was specified.
+     */
+    public static final String DEFAULT_PROFILE = "default";
+
+    /**
+     * Cost of a check if no cost was specified.
+     */
+    public static final int DEFAULT_COST = 1;
+
+    /**
+     * Cost of a check which asks for the analysis of the ANTLR tool.
+     */
+    public static final int ANALYSIS_COST = 10;
+
+    private String profile = DEFAULT_PROFILE;
+    private int cost = DEFAULT_COST;
+    private GrammarAnalysisRequest grammarAnalysisRequest;
+    private BaselineFilter baselineFilter;
+
+    /**
+     * Defines to which profile this check belongs - violations of checks of the same profile are reported to the
+     * same output.
+     */
+    public void setProfile(String profileName) {
+        profile = profileName;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Defines the relative cost of this check - if a violation limit was specified, the walker walks the checks with
+     * the lowest cost first and stops before walking the more expensive ones once the limit is reached.
+     */
+    public void setCost(int theCost) {
+        cost = theCost;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Is called by the walker before each walk, gives access to the analysis of the walked grammar.
+     */
+    public void setGrammarAnalysisRequest(GrammarAnalysisRequest request) {
+        grammarAnalysisRequest = request;
+    }
+
+    /**
+     * Returns the analysis of the grammar which is currently walked (lookahead DFAs and the messages the ANTLR tool
+     * reported). The analysis is expensive and hence only run if a check asks for it; the result is memoized.
+     */
+    protected GrammarAnalysis getGrammarAnalysis() {
+        return grammarAnalysisRequest.get();
+    }
+
+    /**
+     * Is called by the walker before each walk, the filter is null if no baseline was specified.
+     */
+    void setBaselineFilter(BaselineFilter filter) {
+        baselineFilter = filter;
+    }
+
+    /**
+     * Returns true if the violation of this check at the given line is recorded in the baseline of the walker (see
+     * {@link GrammarWalker#setBaselineFile(String)}) - a check calls it before it logs a violation so that the message
+     * of a known violation is not even created, as {@link CheckContext#log(int, String, Object...)} does for reentrant
+     * checks. A returned true counts the violation as filtered, hence the check must not log it afterwards.
+     * <p/>
+     * The known violations of checks which do not call it are filtered once the file was walked.
+     */
+    protected boolean isKnownViolation(int line) {
+        return baselineFilter != null && baselineFilter.isKnown(getClass().getName(), line);
+    }
+
+    /**
+     * Returns true if the given RULE is the artificial rule Tokens which the ANTLRParser appends to the rules of a
+     * lexer grammar via {@link Grammar#addArtificialMatchTokensRule} - a rule of the grammar itself can be named
+     * Tokens as well but the artificial one is always the last child of the grammar.
+     */
+    protected static boolean isArtificialTokensRule(GrammarAST rule) {
+        final Tree grammar = rule.getParent();
+        return grammar != null && grammar.getType() == ANTLRParser.LEXER_GRAMMAR
+                && rule.getChildIndex() == grammar.getChildCount() - 1
+                && Grammar.ARTIFICIAL_TOKENS_RULENAME.equals(rule.getChild(0).getText());
+    }
+
     public void beginTree(GrammarAST rootAst) {
     }
 
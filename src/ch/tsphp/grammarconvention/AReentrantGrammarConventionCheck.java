@@ -0,0 +1,61 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Base class for checks which keep their per-file state in a separate object instead of their fields.
+ * <p/>
+ * The check creates the state in {@link #beginTree(GrammarAST, CheckContext)} and receives it in the other
+ * callbacks; violations are reported via {@link CheckContext#log(int, String, Object...)}. The GrammarWalker calls
+ * only these callbacks and does not set the file contents or message collector of the check, hence one instance can
+ * process several files at the same time (see {@link IThreadSafeCheck}).
+ *
+ * @param <TState> the type of the per-file state
+ */
+public abstract class AReentrantGrammarConventionCheck<TState> extends AGrammarConventionCheck
+{
+    /**
+     * Is called before a tree is walked and returns the state which is passed to the other callbacks for this tree.
+     */
+    public abstract TState beginTree(GrammarAST rootAst, CheckContext context);
+
+    public void visitToken(GrammarAST ast, TState state) {
+    }
+
+    public void leaveToken(GrammarAST ast, TState state) {
+    }
+
+    public void finishTree(GrammarAST rootAst, TState state) {
+    }
+
+    final void dispatchBeginTree(GrammarAST rootAst, CheckContext context) {
+        context.setState(beginTree(rootAst, context));
+    }
+
+    @SuppressWarnings("unchecked")
+    final void dispatchVisitToken(GrammarAST ast, CheckContext context) {
+        visitToken(ast, (TState) context.getState());
+    }
+
+    @SuppressWarnings("unchecked")
+    final void dispatchLeaveToken(GrammarAST ast, CheckContext context) {
+        leaveToken(ast, (TState) context.getState());
+    }
+
+    @SuppressWarnings("unchecked")
+    final void dispatchFinishTree(GrammarAST rootAst, CheckContext context) {
+        finishTree(rootAst, (TState) context.getState());
+    }
+
+    LocalizedMessage createMessage(int line, String key, Object[] args) {
+        return new LocalizedMessage(line, getMessageBundle(), key, args, getSeverityLevel(), getId(), getClass(),
+                getCustomMessages().get(key));
+    }
+}
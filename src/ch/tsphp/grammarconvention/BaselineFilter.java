@@ -0,0 +1,164 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessages;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Decides for the violations of one file whether they are known according to a {@link ViolationBaseline}.
+ * <p/>
+ * A violation is known as long as the baseline contains its fingerprint more often than violations with the same
+ * fingerprint were already filtered in this file, hence a copy of a known violation is reported.
+ */
+final class BaselineFilter
+{
+    private final ViolationBaseline baseline;
+    private final String fileName;
+    private final String[] lines;
+    private final int[] ruleLines;
+    private final String[] ruleNames;
+    private final Map<Long, Integer> filteredCounts = new HashMap<>();
+
+    /**
+     * @param theBaseline     the known violations or null if nothing is filtered (violations are only recorded)
+     * @param theFileName     the path of the file
+     * @param ast             the tree of the file, null if it could not be parsed
+     * @param theFileContents the contents of the file
+     */
+    BaselineFilter(ViolationBaseline theBaseline, String theFileName, GrammarAST ast,
+            FileContents theFileContents) {
+        baseline = theBaseline;
+        fileName = new File(theFileName).getName();
+        lines = theFileContents.getLines();
+        final List<GrammarAST> rules = new ArrayList<>();
+        if (ast != null) {
+            final int childCount = ast.getChildCount();
+            for (int i = 0; i < childCount; ++i) {
+                final GrammarAST child = (GrammarAST) ast.getChild(i);
+                if (child.getType() == ANTLRParser.RULE && child.getChildCount() > 0) {
+                    rules.add(child);
+                }
+            }
+        }
+        ruleLines = new int[rules.size()];
+        ruleNames = new String[rules.size()];
+        for (int i = 0; i < ruleLines.length; ++i) {
+            ruleLines[i] = rules.get(i).getLine();
+            ruleNames[i] = rules.get(i).getChild(0).getText();
+        }
+    }
+
+    /**
+     * Returns true if the violation of the given check at the given line is known, in which case it counts as
+     * filtered.
+     */
+    synchronized boolean isKnown(String checkName, int line) {
+        if (baseline == null) {
+            return false;
+        }
+        final long fingerprint = fingerprint(checkName, line);
+        final int knownCount = baseline.count(fingerprint);
+        if (knownCount == 0) {
+            return false;
+        }
+        Integer filteredCount = filteredCounts.get(fingerprint);
+        if (filteredCount == null) {
+            filteredCount = 0;
+        }
+        if (filteredCount >= knownCount) {
+            return false;
+        }
+        filteredCounts.put(fingerprint, filteredCount + 1);
+        return true;
+    }
+
+    /**
+     * Returns how many of the given messages are not known, without counting the known ones as filtered.
+     */
+    synchronized int countUnknown(List<LocalizedMessage> messages) {
+        if (baseline == null) {
+            return messages.size();
+        }
+        final Map<Long, Integer> counted = new HashMap<>();
+        int count = 0;
+        for (LocalizedMessage message : messages) {
+            final long fingerprint = fingerprint(message.getSourceName(), message.getLineNo());
+            Integer filteredCount = counted.get(fingerprint);
+            if (filteredCount == null) {
+                filteredCount = filteredCounts.get(fingerprint);
+                if (filteredCount == null) {
+                    filteredCount = 0;
+                }
+            }
+            if (filteredCount < baseline.count(fingerprint)) {
+                counted.put(fingerprint, filteredCount + 1);
+            } else {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the known violations from the given messages.
+     */
+    void filter(LocalizedMessages messages) {
+        if (baseline == null || messages.size() == 0) {
+            return;
+        }
+        final TreeSet<LocalizedMessage> allMessages = messages.getMessages();
+        messages.reset();
+        for (LocalizedMessage message : allMessages) {
+            if (!isKnown(message.getSourceName(), message.getLineNo())) {
+                messages.add(message);
+            }
+        }
+    }
+
+    /**
+     * Adds the fingerprints of the given messages to the given baseline.
+     */
+    void record(LocalizedMessages messages, ViolationBaseline recordedBaseline) {
+        for (LocalizedMessage message : messages.getMessages()) {
+            recordedBaseline.add(fingerprint(message.getSourceName(), message.getLineNo()));
+        }
+    }
+
+    private long fingerprint(String checkName, int line) {
+        String ruleName = "";
+        String snippet = "";
+        if (line > 0) {
+            //binarySearch returns the index of the rule starting at the line or -(index of the next rule) - 1
+            int index = Arrays.binarySearch(ruleLines, line);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            while (index > 0 && ruleLines[index - 1] == line) {
+                --index;
+            }
+            if (index >= 0) {
+                ruleName = ruleNames[index];
+            }
+            if (line <= lines.length) {
+                snippet = lines[line - 1];
+            }
+        }
+        return ViolationBaseline.fingerprint(checkName, fileName, ruleName, snippet);
+    }
+}
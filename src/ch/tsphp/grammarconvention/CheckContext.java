@@ -0,0 +1,103 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisRequest;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessages;
+
+/**
+ * Everything an {@link AReentrantGrammarConventionCheck} needs to know about the file it is walking: the file
+ * contents, the analysis of the grammar and where violations are reported to.
+ * <p/>
+ * The GrammarWalker creates one context per check and walk, hence a check does not need to store file related
+ * information in its fields.
+ */
+public final class CheckContext
+{
+    private final AReentrantGrammarConventionCheck<?> check;
+    private final String fileName;
+    private final FileContents fileContents;
+    private final GrammarAnalysisRequest grammarAnalysisRequest;
+    private LocalizedMessages messages;
+    private BaselineFilter baselineFilter;
+    private Object state;
+
+    public CheckContext(AReentrantGrammarConventionCheck<?> theCheck, String theFileName,
+            FileContents theFileContents, GrammarAnalysisRequest theGrammarAnalysisRequest,
+            LocalizedMessages theMessages) {
+        check = theCheck;
+        fileName = theFileName;
+        fileContents = theFileContents;
+        grammarAnalysisRequest = theGrammarAnalysisRequest;
+        messages = theMessages;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public FileContents getFileContents() {
+        return fileContents;
+    }
+
+    public String[] getLines() {
+        return fileContents.getLines();
+    }
+
+    /**
+     * Returns the analysis of the walked grammar, see {@link AGrammarConventionCheck#getGrammarAnalysis()}.
+     */
+    public GrammarAnalysis getGrammarAnalysis() {
+        return grammarAnalysisRequest.get();
+    }
+
+    /**
+     * Reports a violation of the check at the given line, key and arguments are used as in
+     * {@link com.puppycrawl.tools.checkstyle.api.Check#log(int, String, Object...)}.
+     */
+    public void log(int line, String key, Object... args) {
+        if (baselineFilter == null || !baselineFilter.isKnown(check.getClass().getName(), line)) {
+            messages.add(check.createMessage(line, key, args));
+        }
+    }
+
+    /**
+     * Returns a context for the same file which reports to the given messages, used by the GrammarWalker to walk
+     * rules concurrently.
+     */
+    CheckContext withMessages(LocalizedMessages theMessages) {
+        final CheckContext context = new CheckContext(check, fileName, fileContents, grammarAnalysisRequest,
+                theMessages);
+        context.baselineFilter = baselineFilter;
+        return context;
+    }
+
+    /**
+     * Defines the filter which drops known violations before their message is created, used by the GrammarWalker if
+     * a baseline was specified.
+     */
+    void setBaselineFilter(BaselineFilter filter) {
+        baselineFilter = filter;
+    }
+
+    /**
+     * Redirects the violations, used by the GrammarWalker to collect the violations of single rules.
+     */
+    void setMessages(LocalizedMessages theMessages) {
+        messages = theMessages;
+    }
+
+    Object getState() {
+        return state;
+    }
+
+    void setState(Object theState) {
+        state = theState;
+    }
+}
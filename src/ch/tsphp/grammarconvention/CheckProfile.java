@@ -0,0 +1,80 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a named group of checks which collects its violations separately and reports them to its own listeners.
+ * <p/>
+ * The checks of all profiles are dispatched during the same walk, only the output is separated.
+ */
+class CheckProfile
+{
+    private final String name;
+    private final LocalizedMessages messages = new LocalizedMessages();
+    private final List<AuditListener> listeners = new ArrayList<>();
+
+    CheckProfile(String profileName) {
+        name = profileName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalizedMessages getMessages() {
+        return messages;
+    }
+
+    public void addListener(AuditListener listener) {
+        listeners.add(listener);
+    }
+
+    public void fireAuditStarted(Object source) {
+        final AuditEvent event = new AuditEvent(source);
+        for (AuditListener listener : listeners) {
+            listener.auditStarted(event);
+        }
+    }
+
+    /**
+     * Reports the collected violations of the given file to the listeners and resets the collector afterwards.
+     *
+     * @param source   the object which is reporting
+     * @param fileName the name of the file which was checked
+     */
+    public void fireErrors(Object source, String fileName) {
+        final AuditEvent fileEvent = new AuditEvent(source, fileName);
+        for (AuditListener listener : listeners) {
+            listener.fileStarted(fileEvent);
+        }
+        for (LocalizedMessage message : messages.getMessages()) {
+            final AuditEvent event = new AuditEvent(source, fileName, message);
+            for (AuditListener listener : listeners) {
+                listener.addError(event);
+            }
+        }
+        for (AuditListener listener : listeners) {
+            listener.fileFinished(fileEvent);
+        }
+        messages.reset();
+    }
+
+    public void fireAuditFinished(Object source) {
+        final AuditEvent event = new AuditEvent(source);
+        for (AuditListener listener : listeners) {
+            listener.auditFinished(event);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Computes content hashes of grammar files which are used as keys for caches.
+ * <p/>
+ * The hash corresponds to the object id git calculates for a blob with the same content so that blob ids of a git
+ * repository can be used instead of reading files. Only {@link #ofFile(File, List)} hashes the raw bytes of a file
+ * (regardless of line terminators and a missing trailing newline) and hence matches the blob id of the file.
+ */
+public final class ContentHash
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Pattern LINE_TERMINATOR = Pattern.compile("\r\n|\r|\n");
+
+    private ContentHash() {
+    }
+
+    /**
+     * Returns the hash of the raw content of the given file if it (decoded with the default charset as the file is
+     * parsed) still consists of the given lines, otherwise - e.g. the file cannot be read, changed in the meantime or
+     * the lines are the unsaved content of an editor - the hash of the lines.
+     */
+    public static String ofFile(File file, List<String> lines) {
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(file.toPath());
+        } catch (IOException ex) {
+            return ofLines(lines);
+        }
+        if (consistsOf(new String(content, Charset.defaultCharset()), lines)) {
+            return ofBytes(content);
+        }
+        return ofLines(lines);
+    }
+
+    /**
+     * Returns the hash of the given lines each terminated by \n and encoded in UTF-8.
+     */
+    public static String ofLines(List<String> lines) {
+        final StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return ofText(builder.toString());
+    }
+
+    public static String ofText(String text) {
+        return ofBytes(text.getBytes(UTF8));
+    }
+
+    public static String ofBytes(byte[] content) {
+        final MessageDigest digest = createDigest();
+        digest.update(("blob " + content.length + "\0").getBytes(UTF8));
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    private static boolean consistsOf(String text, List<String> lines) {
+        final String[] textLines = LINE_TERMINATOR.split(text, -1);
+        int numberOfLines = textLines.length;
+        //a line terminator ends the last line rather than starting an empty one
+        if (textLines[numberOfLines - 1].isEmpty()) {
+            --numberOfLines;
+        }
+        if (numberOfLines != lines.size()) {
+            return false;
+        }
+        for (int i = 0; i < numberOfLines; ++i) {
+            if (!textLines[i].equals(lines.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static String toHex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", ex);
+        }
+    }
+}
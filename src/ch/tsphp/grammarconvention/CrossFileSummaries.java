@@ -0,0 +1,209 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.Utils;
+import org.antlr.tool.GrammarAST;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Collects the summaries of {@link ICrossFileCheck}s during the walks (map) and passes them to the checks once all
+ * files were processed (reduce).
+ */
+class CrossFileSummaries
+{
+    private final Map<ICrossFileCheck<?>, SortedMap<String, Serializable>> summaries = new LinkedHashMap<>();
+    private SummaryCache cache;
+    private String contentHash;
+
+    public void setCache(SummaryCache summaryCache) {
+        cache = summaryCache;
+    }
+
+    public void register(AGrammarConventionCheck check) {
+        if (check instanceof ICrossFileCheck) {
+            summaries.put((ICrossFileCheck<?>) check, new TreeMap<String, Serializable>());
+        }
+    }
+
+    public boolean isEmpty() {
+        return summaries.isEmpty();
+    }
+
+    /**
+     * Loads the summaries of the given file from the cache and returns the checks for which a summary was found.
+     * <p/>
+     * Those checks do not need to be walked for this file.
+     *
+     * @param fileName         the name of the file
+     * @param lines            the lines of the file
+     * @param knownContentHash the content hash of the file if already known (e.g. the blob id of git), otherwise null
+     */
+    public Set<AGrammarConventionCheck> loadCachedSummaries(String fileName, List<String> lines,
+            String knownContentHash) {
+        final Set<AGrammarConventionCheck> cachedChecks = new HashSet<>();
+        contentHash = null;
+        if (cache != null && !summaries.isEmpty()) {
+            contentHash = knownContentHash;
+            if (contentHash == null) {
+                contentHash = ContentHash.ofFile(new File(fileName), lines);
+            }
+            for (Map.Entry<ICrossFileCheck<?>, SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+                final Serializable summary = cache.get(entry.getKey(), contentHash);
+                if (summary != null) {
+                    entry.getValue().put(fileName, summary);
+                    cachedChecks.add((AGrammarConventionCheck) entry.getKey());
+                }
+            }
+        }
+        return cachedChecks;
+    }
+
+    /**
+     * Fetches the summaries of the file which has just been walked from all checks which were not skipped.
+     */
+    public void collectSummaries(String fileName, GrammarAST rootAst, Set<AGrammarConventionCheck> skippedChecks) {
+        for (Map.Entry<ICrossFileCheck<?>, SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+            final ICrossFileCheck<?> check = entry.getKey();
+            if (!skippedChecks.contains(check)) {
+                final Serializable summary = check.getSummary(rootAst);
+                entry.getValue().put(fileName, summary);
+                if (contentHash != null && summary != null) {
+                    try {
+                        cache.put(check, contentHash, summary);
+                    } catch (IOException ex) {
+                        Utils.getExceptionLogger().debug("Could not cache the summary of " + fileName, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the collected summaries keyed by check and file name and removes them.
+     * <p/>
+     * The key of a check consists of its position among the cross-file checks and its class name, hence it is the same
+     * for walkers with the same configuration.
+     */
+    public SortedMap<String, SortedMap<String, Serializable>> takeSummaries() {
+        final SortedMap<String, SortedMap<String, Serializable>> takenSummaries = new TreeMap<>();
+        int index = 0;
+        for (Map.Entry<ICrossFileCheck<?>, SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+            takenSummaries.put(getKey(index, entry.getKey()), entry.getValue());
+            entry.setValue(new TreeMap<String, Serializable>());
+            ++index;
+        }
+        return takenSummaries;
+    }
+
+    /**
+     * Adds summaries which were taken from a walker with the same configuration (see {@link #takeSummaries()}).
+     *
+     * @throws IllegalArgumentException in case summaries belong to a check which is not configured
+     */
+    public void addSummaries(Map<String, ? extends SortedMap<String, Serializable>> otherSummaries) {
+        final Map<String, SortedMap<String, Serializable>> summariesByKey = new HashMap<>();
+        int index = 0;
+        for (Map.Entry<ICrossFileCheck<?>, SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+            summariesByKey.put(getKey(index, entry.getKey()), entry.getValue());
+            ++index;
+        }
+        for (Map.Entry<String, ? extends SortedMap<String, Serializable>> entry : otherSummaries.entrySet()) {
+            final SortedMap<String, Serializable> checkSummaries = summariesByKey.get(entry.getKey());
+            if (checkSummaries == null) {
+                throw new IllegalArgumentException("The summaries of " + entry.getKey()
+                        + " do not belong to a configured cross-file check.");
+            }
+            checkSummaries.putAll(entry.getValue());
+        }
+    }
+
+    private static String getKey(int index, ICrossFileCheck<?> check) {
+        return index + ":" + check.getClass().getName();
+    }
+
+    /**
+     * Removes the summaries of the given file, e.g. once it was closed in a long-running session.
+     */
+    public void removeSummaries(String fileName) {
+        for (SortedMap<String, Serializable> fileSummaries : summaries.values()) {
+            fileSummaries.remove(fileName);
+        }
+    }
+
+    /**
+     * Passes the collected summaries to the checks and returns the reported violations per check.
+     *
+     * @param keepsSummaries whether the summaries are kept (e.g. for a long-running session which processes the same
+     *                       files again) or removed
+     */
+    public Map<AGrammarConventionCheck, SortedMap<String, TreeSet<LocalizedMessage>>> reduce(
+            boolean keepsSummaries) {
+        final Map<AGrammarConventionCheck, SortedMap<String, TreeSet<LocalizedMessage>>> violations =
+                new LinkedHashMap<>();
+        for (Map.Entry<ICrossFileCheck<?>, SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+            final AGrammarConventionCheck check = (AGrammarConventionCheck) entry.getKey();
+            final Log log = new Log(check);
+            reduce(entry.getKey(), entry.getValue(), log);
+            violations.put(check, log.messages);
+            if (!keepsSummaries) {
+                entry.setValue(new TreeMap<String, Serializable>());
+            }
+        }
+        return violations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <TSummary extends Serializable> void reduce(
+            ICrossFileCheck<TSummary> check, SortedMap<String, Serializable> fileSummaries, Log log) {
+        check.reduce((SortedMap<String, TSummary>) fileSummaries, log);
+    }
+
+    /**
+     * Creates LocalizedMessages on behalf of a check the same way as Check.log does.
+     */
+    private static final class Log implements ICrossFileLog
+    {
+        private final AGrammarConventionCheck check;
+        private final String bundle;
+        private final SortedMap<String, TreeSet<LocalizedMessage>> messages = new TreeMap<>();
+
+        private Log(AGrammarConventionCheck theCheck) {
+            check = theCheck;
+            final Package checkPackage = check.getClass().getPackage();
+            if (checkPackage != null) {
+                bundle = checkPackage.getName() + ".messages";
+            } else {
+                bundle = "messages";
+            }
+        }
+
+        @Override
+        public void log(String fileName, int line, String key, Object... args) {
+            TreeSet<LocalizedMessage> fileMessages = messages.get(fileName);
+            if (fileMessages == null) {
+                fileMessages = new TreeSet<>();
+                messages.put(fileName, fileMessages);
+            }
+            fileMessages.add(new LocalizedMessage(line, 0, bundle, key, args, check.getSeverityLevel(),
+                    check.getId(), check.getClass(), null));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Determines via the git command line which grammars of a local git repository are affected by the changes since a
+ * base ref - the grammars which changed (committed, staged, unstaged or untracked) and the grammars which import them
+ * (transitively, resolved in the same directory as the ANTLR tool does).
+ * <p/>
+ * The blob ids of the index are used as content hashes (see {@link ContentHash}) of the unaffected files whose working
+ * tree matches the index, so that they do not need to be hashed.
+ */
+public class GitChangedFiles
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String GRAMMAR_EXTENSION = GrammarImports.GRAMMAR_EXTENSION;
+
+    private final File directory;
+    private final String baseRef;
+    private final Set<File> affectedFiles = new HashSet<>();
+    private final Map<File, String> blobIds = new HashMap<>();
+
+    public GitChangedFiles(File repositoryDirectory, String theBaseRef) {
+        directory = repositoryDirectory;
+        baseRef = theBaseRef;
+    }
+
+    /**
+     * Reads the changes since the base ref, the index and the imports of the grammars of the repository.
+     *
+     * @throws IOException in case git could not be run or reported an error (e.g. unknown base ref)
+     */
+    public void load() throws IOException {
+        affectedFiles.clear();
+        blobIds.clear();
+        final File root = new File(run(directory, "rev-parse", "--show-toplevel").trim());
+
+        final Set<File> changedFiles = new HashSet<>();
+        addGrammarFiles(changedFiles, root, run(root, "diff", "--name-only", "--no-renames", "-z", baseRef, "--"));
+        addGrammarFiles(changedFiles, root, run(root, "ls-files", "--others", "--exclude-standard", "-z"));
+        //e.g. a staged change reverted in the working tree, the blob id of the index is not the one of the content
+        final Set<File> filesDifferingFromIndex = new HashSet<>();
+        addGrammarFiles(filesDifferingFromIndex, root, run(root, "diff", "--name-only", "--no-renames", "-z", "--"));
+
+        for (String entry : split(run(root, "ls-files", "--stage", "-z"))) {
+            //format: <mode> <blob id> <stage>\t<path>
+            final int tabIndex = entry.indexOf('\t');
+            final String path = entry.substring(tabIndex + 1);
+            if (path.endsWith(GRAMMAR_EXTENSION)) {
+                final File file = canonical(new File(root, path));
+                if (!changedFiles.contains(file) && !filesDifferingFromIndex.contains(file)) {
+                    blobIds.put(file, entry.substring(0, tabIndex).split(" ")[1]);
+                }
+            }
+        }
+
+        affectedFiles.addAll(changedFiles);
+        addImportingFiles(root, changedFiles);
+    }
+
+    /**
+     * Indicates whether the given file changed since the base ref or imports a grammar which changed.
+     */
+    public boolean isAffected(File file) {
+        return affectedFiles.contains(canonical(file));
+    }
+
+    /**
+     * Returns the blob id of the given file in the index or null if the file changed since the base ref, differs from
+     * the index or is not tracked.
+     */
+    public String getBlobId(File file) {
+        return blobIds.get(canonical(file));
+    }
+
+    private void addImportingFiles(File root, Set<File> changedFiles) throws IOException {
+        final Map<File, List<File>> importingFiles = new HashMap<>();
+        final String candidates = run(root, "grep", "--untracked", "-l", "-z", "-w", "import", "--", "*.g");
+        for (String path : split(candidates)) {
+            final File file = canonical(new File(root, path));
+            for (File importedGrammarFile : GrammarImports.getImportedFiles(file)) {
+                final File importedFile = canonical(importedGrammarFile);
+                List<File> files = importingFiles.get(importedFile);
+                if (files == null) {
+                    files = new ArrayList<>();
+                    importingFiles.put(importedFile, files);
+                }
+                files.add(file);
+            }
+        }
+        final List<File> filesToVisit = new ArrayList<>(changedFiles);
+        while (!filesToVisit.isEmpty()) {
+            final List<File> files = importingFiles.get(filesToVisit.remove(filesToVisit.size() - 1));
+            if (files != null) {
+                for (File file : files) {
+                    if (affectedFiles.add(file)) {
+                        filesToVisit.add(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addGrammarFiles(Set<File> files, File root, String paths) {
+        for (String path : split(paths)) {
+            if (path.endsWith(GRAMMAR_EXTENSION)) {
+                files.add(canonical(new File(root, path)));
+            }
+        }
+    }
+
+    private static List<String> split(String output) {
+        final List<String> entries = new ArrayList<>();
+        for (String entry : output.split("\0")) {
+            if (!entry.isEmpty()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException ex) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    private static String run(File workingDirectory, String... arguments) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(arguments));
+        final Process process = new ProcessBuilder(command).directory(workingDirectory).start();
+        process.getOutputStream().close();
+        //drained concurrently, git blocks if one pipe is full while the other one is read to its end
+        final ErrorStreamReader errorReader = new ErrorStreamReader(process.getErrorStream());
+        errorReader.start();
+        final String output = read(process.getInputStream());
+        final String error;
+        final int exitCode;
+        try {
+            error = errorReader.getError();
+            exitCode = process.waitFor();
+        } catch (InterruptedException ex) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + command);
+        }
+        //git grep exits with 1 if nothing was found
+        if (exitCode != 0 && !(exitCode == 1 && "grep".equals(arguments[0]) && error.isEmpty())) {
+            throw new IOException(command + " failed with exit code " + exitCode + ": " + error.trim());
+        }
+        return output;
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        try (InputStream stream = inputStream) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int length = stream.read(buffer);
+            while (length != -1) {
+                outputStream.write(buffer, 0, length);
+                length = stream.read(buffer);
+            }
+            return new String(outputStream.toByteArray(), UTF8);
+        }
+    }
+
+    /**
+     * Reads the error stream of a process to its end.
+     */
+    private static class ErrorStreamReader extends Thread
+    {
+        private final InputStream errorStream;
+        private String error;
+        private IOException exception;
+
+        ErrorStreamReader(InputStream theErrorStream) {
+            super("git-stderr");
+            setDaemon(true);
+            errorStream = theErrorStream;
+        }
+
+        @Override
+        public void run() {
+            try {
+                error = read(errorStream);
+            } catch (IOException ex) {
+                exception = ex;
+            }
+        }
+
+        String getError() throws InterruptedException, IOException {
+            join();
+            if (exception != null) {
+                throw exception;
+            }
+            return error;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import org.antlr.Tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the grammars imported by a grammar file without parsing it, resolved in the same directory as the ANTLR tool
+ * does.
+ */
+public final class GrammarImports
+{
+    public static final String GRAMMAR_EXTENSION = ".g";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("(?m)^\\s*import\\s+([^;]+);");
+
+    private GrammarImports() {
+    }
+
+    /**
+     * Returns an ANTLR tool which resolves the imports of the given grammar file in its directory, otherwise the
+     * ANTLRParser looks for the imported grammars in the directory "null".
+     */
+    public static Tool createTool(File file) {
+        final Tool tool = new Tool();
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            tool.setInputDirectory(directory.getPath());
+            tool.setLibDirectory(directory.getPath());
+        }
+        return tool;
+    }
+
+    /**
+     * Returns the files of the grammars imported by the given grammar file.
+     */
+    public static List<File> getImportedFiles(File file) throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (String grammarName : getImportedGrammars(new String(Files.readAllBytes(file.toPath()), UTF8))) {
+            files.add(new File(file.getAbsoluteFile().getParentFile(), grammarName + GRAMMAR_EXTENSION));
+        }
+        return files;
+    }
+
+    /**
+     * Returns the names of the grammars imported in the given content of a grammar file.
+     */
+    public static List<String> getImportedGrammars(String content) {
+        final List<String> grammarNames = new ArrayList<>();
+        final Matcher matcher = IMPORT_PATTERN.matcher(content);
+        while (matcher.find()) {
+            for (String delegate : matcher.group(1).split(",")) {
+                //delegates can be labeled: import label=Grammar;
+                final String grammarName = delegate.substring(delegate.indexOf('=') + 1).trim();
+                if (!grammarName.isEmpty()) {
+                    grammarNames.add(grammarName);
+                }
+            }
+        }
+        return grammarNames;
+    }
+}
@@ -31,20 +31,26 @@
 
 package ch.tsphp.grammarconvention;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisRequest;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisService;
+import ch.tsphp.grammarconvention.compact.CompactGrammarTree;
+import ch.tsphp.grammarconvention.compact.WalkLogWriter;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
 import com.puppycrawl.tools.checkstyle.DefaultContext;
 import com.puppycrawl.tools.checkstyle.Defn;
 import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.XMLLogger;
 import com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
 import com.puppycrawl.tools.checkstyle.api.Context;
 import com.puppycrawl.tools.checkstyle.api.FileContents;
 import com.puppycrawl.tools.checkstyle.api.FileText;
 import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessages;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
 import com.puppycrawl.tools.checkstyle.api.Utils;
-import org.antlr.Tool;
 import org.antlr.grammar.v3.ANTLRLexer;
 import org.antlr.grammar.v3.ANTLRParser;
 import org.antlr.runtime.ANTLRReaderStream;
@@ -55,13 +61,29 @@ import org.antlr.tool.Grammar;
 import org.antlr.tool.GrammarAST;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Grammar walker which allows to define checks for grammar conventions.
@@ -71,14 +93,96 @@ import java.util.Set;
  * com.puppycrawl.tools.checkstyle.api.DetailAST (which is based on ANTLRv2). Therefore, one has to extend
  * AGrammarConventionCheck and not com.puppycrawl.tools.checkstyle.api.Check when writing an own grammar
  * convention check.
+ * <p/>
+ * Checks can be grouped into named profiles (see {@link AGrammarConventionCheck#setProfile(String)}). The checks of
+ * all profiles are evaluated during the same parse and walk but only the violations of the main profile are
+ * reported to CheckStyle. Violations of the other profiles are reported to the listeners registered via
+ * {@link #addProfileListener(String, AuditListener)} and to an XML report per profile if a profile report directory
+ * was specified.
+ * <p/>
+ * Checks implementing {@link ICrossFileCheck} contribute a summary per file and report their violations once all
+ * files were processed. Their summaries are cached by content if a summary cache directory was specified and can be
+ * taken from one walker and added to another one, e.g. to report the cross-file violations of several processes once.
+ * Since the CheckStyle Checker starts and finishes each file itself, the cross-file violations are dispatched in
+ * {@link #finishProcessing()}, before the audit finishes, in exactly one additional fileStarted/errors/fileFinished
+ * sequence per file which has cross-file violations - listeners which key their output by file (e.g. the XMLLogger)
+ * see such a file twice and have to merge the two sequences if they need one entry per file.
+ * <p/>
+ * Checks implementing {@link IRuleLocalCheck} are walked rule by rule and only for rules which changed since the
+ * file was processed the last time, the violations of unchanged rules are re-used.
+ * <p/>
+ * Checks can ask for the analysis of the ANTLR tool (see {@link AGrammarConventionCheck#getGrammarAnalysis()}), it is
+ * only run for a file if at least one check asks for it and is memoized by content.
+ * <p/>
+ * Checks extending {@link AReentrantGrammarConventionCheck} keep their per-file state in a separate object and
+ * report via a {@link CheckContext}, the walker does not modify them during a walk.
+ * <p/>
+ * If a violation limit per file or in total was specified (fail-fast mode), the walker stops dispatching as soon as
+ * the limit is reached and skips the remaining nodes respectively files. The checks are then walked in passes of
+ * ascending cost (see {@link AGrammarConventionCheck#setCost(int)}) so that expensive checks are not walked at all if
+ * the cheap ones already reached the limit - except for the checks implementing {@link ICrossFileCheck}, they are
+ * always walked completely.
+ * <p/>
+ * If a base ref of a git repository was specified, only the grammars which changed since then and the grammars which
+ * import them are checked (see {@link GitChangedFiles}). The other files are only walked by the checks implementing
+ * {@link ICrossFileCheck} and only if their summaries are not cached under the blob id of the file.
+ * <p/>
+ * The walker emits events for parsing, walking, beginTree/finishTree of each check and single visitToken calls to an
+ * {@link IWalkRecorder}, by default JDK Flight Recorder events if available (see {@link WalkRecorders#create()}).
+ * <p/>
+ * If a baseline file was specified, the violations recorded in it (see {@link ViolationBaseline}) are not reported,
+ * only new ones are. Violations of reentrant checks and of checks which call
+ * {@link AGrammarConventionCheck#isKnownViolation(int)} before they log (all shipped checks) are dropped before their
+ * message is created, the known violations of other checks are filtered once the file was walked.
+ * <p/>
+ * If a walk log file was specified, the path, lines and tree of each walked file are logged (see
+ * {@link ch.tsphp.grammarconvention.compact.WalkLog}) so that the walks can be replayed without ANTLR, e.g. by
+ * {@link ch.tsphp.grammarconvention.cli.WalkLogReplayer}.
  */
 public class GrammarWalker extends AbstractFileSetCheck
 {
-    private final Multimap<String, AGrammarConventionCheck> tokenToChecks = HashMultimap.create();
+    private static final AGrammarConventionCheck[] NO_CHECKS = new AGrammarConventionCheck[0];
+
+    /**
+     * The checks registered per token type (index), an array rather than a map so that the dispatch of a node does
+     * not allocate anything.
+     */
+    private AGrammarConventionCheck[][] checksPerTokenType = new AGrammarConventionCheck[0][];
     private final Set<AGrammarConventionCheck> checks = new HashSet<>();
+    private final Map<String, CheckProfile> profiles = new HashMap<>();
+    private final CrossFileSummaries crossFileSummaries = new CrossFileSummaries();
+    private boolean areCrossFileSummariesTaken;
+    private final RuleResultCache ruleResultCache = new RuleResultCache();
+    private TreeCache treeCache;
+    private boolean areCompactTreesSupported = true;
+    private ForkJoinPool rulePool;
+    private final GrammarAnalysisService grammarAnalysisService = new GrammarAnalysisService();
+    private final Set<AGrammarConventionCheck> inactiveChecks = new HashSet<>();
+    private final Map<AGrammarConventionCheck, CheckContext> checkContexts = new HashMap<>();
     private ClassLoader classLoader;
     private ModuleFactory moduleFactory;
     private Context childContext;
+    private String mainProfile = AGrammarConventionCheck.DEFAULT_PROFILE;
+    private String profileReportDirectory;
+    private int maxViolationsPerFile;
+    private int maxViolations;
+    private int numberOfViolations;
+    private int pendingViolations;
+    private boolean isTruncated;
+    private String repositoryDirectory = ".";
+    private String changedSince;
+    private GitChangedFiles changedFiles;
+    private IWalkRecorder walkRecorder = WalkRecorders.create();
+    private boolean isRecording;
+    private boolean isRecordingVisits;
+    private String recordedFileName;
+    private String baselineFile;
+    private boolean writeBaseline;
+    private ViolationBaseline baseline;
+    private ViolationBaseline recordedBaseline;
+    private BaselineFilter baselineFilter;
+    private String walkLogFile;
+    private WalkLogWriter walkLogWriter;
 
     public GrammarWalker() {
         setFileExtensions(new String[]{"g"});
@@ -94,6 +198,161 @@ public class GrammarWalker extends AbstractFileSetCheck
         moduleFactory = aModuleFactory;
     }
 
+    /**
+     * Defines which profile's violations are reported to CheckStyle, default is
+     * {@link AGrammarConventionCheck#DEFAULT_PROFILE}.
+     */
+    public void setMainProfile(String profileName) {
+        mainProfile = profileName;
+    }
+
+    /**
+     * Defines the directory in which an XML report (profileName.xml) is written for each profile other than the main
+     * profile.
+     */
+    public void setProfileReportDirectory(String directory) {
+        profileReportDirectory = directory;
+    }
+
+    /**
+     * Defines the directory in which the summaries of {@link ICrossFileCheck}s are cached.
+     */
+    public void setSummaryCacheDirectory(String directory) {
+        crossFileSummaries.setCache(new SummaryCache(new File(directory)));
+    }
+
+    /**
+     * Defines the directory in which the parsed trees of the files are cached (independent of the configuration of
+     * the checks), so that unchanged files do not need to be parsed again.
+     * <p/>
+     * The cache is only used if all checks implement {@link ICompactTreeCheck} since they then walk
+     * {@link CompactGrammarTree}s and hence see only types, texts, lines and positions in line of the nodes, otherwise
+     * the files are parsed as if no cache was specified.
+     */
+    public void setTreeCacheDirectory(String directory) {
+        treeCache = new TreeCache(new File(directory));
+    }
+
+    /**
+     * Defines how many threads walk the rules of a grammar concurrently for the checks which are rule-local
+     * ({@link IRuleLocalCheck}) and thread-safe ({@link IThreadSafeCheck}); 1 (the default) walks them sequentially.
+     * <p/>
+     * The other checks as well as finishTree are only called by the thread processing the file, the violations are
+     * reported in the same order as if walked sequentially.
+     */
+    public void setRuleParallelism(int parallelism) {
+        if (rulePool != null) {
+            rulePool.shutdown();
+            rulePool = null;
+        }
+        if (parallelism > 1) {
+            rulePool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * Defines the recorder to which the walker emits its events, default is {@link WalkRecorders#create()}.
+     */
+    public void setWalkRecorder(IWalkRecorder recorder) {
+        walkRecorder = recorder;
+    }
+
+    /**
+     * Defines the file into which the walks are logged, it is written from the beginning to the end of processing.
+     */
+    public void setWalkLogFile(String file) {
+        walkLogFile = file;
+    }
+
+    /**
+     * Defines the directory of the git repository used to determine the changed files, default is the working
+     * directory.
+     */
+    public void setRepositoryDirectory(String directory) {
+        repositoryDirectory = directory;
+    }
+
+    /**
+     * Defines the git ref (e.g. origin/master) against which the changed files are determined - only the grammars
+     * which changed since then (committed, staged, unstaged or untracked) and the grammars which import them are
+     * checked. The changes are read when processing begins.
+     */
+    public void setChangedSince(String baseRef) {
+        changedSince = baseRef;
+    }
+
+    /**
+     * Defines the file of the violation baseline, the violations it contains are not reported. The file is read when
+     * processing begins respectively written when processing finishes if {@link #setWriteBaseline(boolean)} is set.
+     * <p/>
+     * Violations of checks implementing {@link ICrossFileCheck} are not filtered. Violations of checks which do not
+     * extend {@link AReentrantGrammarConventionCheck} are filtered after the walk respectively before a violation limit
+     * is applied, known violations never count towards a limit.
+     */
+    public void setBaselineFile(String file) {
+        baselineFile = file;
+    }
+
+    /**
+     * Defines whether the violations of the main profile and of all other profiles are recorded into the baseline
+     * file instead of being filtered by it, default is false. The violations are reported nonetheless.
+     */
+    public void setWriteBaseline(boolean shallWrite) {
+        writeBaseline = shallWrite;
+    }
+
+    /**
+     * Defines after how many violations of the main profile the walk of a file is stopped, 0 (the default) means no
+     * limit. Only the first violations (ordered by line) are reported followed by a note that the file was truncated.
+     * <p/>
+     * Checks implementing {@link ICrossFileCheck} are walked completely nonetheless since their summaries would be
+     * incomplete otherwise.
+     */
+    public void setMaxViolationsPerFile(int max) {
+        maxViolationsPerFile = max;
+    }
+
+    /**
+     * Defines after how many violations of the main profile in total the processing is stopped, 0 (the default) means
+     * no limit. The remaining files are not checked and the checks implementing {@link ICrossFileCheck} do not report
+     * their violations since their summaries are incomplete.
+     */
+    public void setMaxViolations(int max) {
+        maxViolations = max;
+    }
+
+    /**
+     * Indicates whether the violations of at least one file were truncated due to a violation limit since processing
+     * began.
+     */
+    public boolean isTruncated() {
+        return isTruncated;
+    }
+
+    /**
+     * Defines how many milliseconds the analysis of the ANTLR tool may spend per decision, see
+     * {@link GrammarAnalysisService#setDecisionTimeLimit(int)}.
+     */
+    public void setAnalysisTimeLimit(int milliseconds) {
+        grammarAnalysisService.setDecisionTimeLimit(milliseconds);
+    }
+
+    /**
+     * Defines the directory in which the results of the analysis of the ANTLR tool are cached.
+     */
+    public void setAnalysisCacheDirectory(String directory) {
+        grammarAnalysisService.setCacheDirectory(new File(directory));
+    }
+
+    /**
+     * Registers a listener which is informed about the violations of the checks of the given profile.
+     * <p/>
+     * Listeners of the main profile are never called, its violations are reported to CheckStyle.
+     */
+    public void addProfileListener(String profileName, AuditListener listener) {
+        getOrCreateProfile(profileName).addListener(listener);
+    }
+
     @Override
     public void finishLocalSetup() {
         final DefaultContext checkContext = new DefaultContext();
@@ -110,14 +369,46 @@ public class GrammarWalker extends AbstractFileSetCheck
         if (!(module instanceof AGrammarConventionCheck)) {
             throw new CheckstyleException(getClass().getName() + " is not allowed as a parent of " + name);
         }
+        if (module instanceof IThreadSafeCheck && !(module instanceof AReentrantGrammarConventionCheck)) {
+            throw new CheckstyleException(name + " is marked as thread-safe but does not keep its per-file state "
+                    + "separately, it needs to extend " + AReentrantGrammarConventionCheck.class.getName());
+        }
+        if (!(module instanceof ICompactTreeCheck)) {
+            areCompactTreesSupported = false;
+        }
         final AGrammarConventionCheck check = (AGrammarConventionCheck) module;
         check.contextualize(childContext);
         check.configure(childConf);
+        if (!check.getProfile().equals(mainProfile)) {
+            check.setMessages(getOrCreateProfile(check.getProfile()).getMessages());
+        }
         check.init();
 
         registerCheck(check);
     }
 
+    private CheckProfile getOrCreateProfile(String profileName) {
+        CheckProfile profile = profiles.get(profileName);
+        if (profile == null) {
+            profile = new CheckProfile(profileName);
+            if (profileReportDirectory != null && !profileName.equals(mainProfile)) {
+                profile.addListener(createProfileReport(profileName));
+            }
+            profiles.put(profileName, profile);
+        }
+        return profile;
+    }
+
+    private AuditListener createProfileReport(String profileName) {
+        final File reportFile = new File(profileReportDirectory, profileName + ".xml");
+        try {
+            return new XMLLogger(new FileOutputStream(reportFile), true);
+        } catch (FileNotFoundException ex) {
+            throw new IllegalStateException("Could not create the report for profile " + profileName + " at "
+                    + reportFile.getPath(), ex);
+        }
+    }
+
     private void registerCheck(AGrammarConventionCheck check) throws CheckstyleException {
         final int[] tokens;
         final Set<String> checkTokens = check.getTokenNames();
@@ -131,7 +422,7 @@ public class GrammarWalker extends AbstractFileSetCheck
                 try {
                     final int tokenId = TokenTypes.getTokenId(token);
                     if (Arrays.binarySearch(acceptableTokens, tokenId) >= 0) {
-                        registerCheck(token, check);
+                        registerCheck(tokenId, check);
                     }
                 } catch (final IllegalArgumentException ex) {
                     throw new CheckstyleException("illegal token \"" + token + "\" in check " + check, ex);
@@ -144,18 +435,82 @@ public class GrammarWalker extends AbstractFileSetCheck
             registerCheck(element, check);
         }
         checks.add(check);
+        crossFileSummaries.register(check);
+        ruleResultCache.register(check);
     }
 
     private void registerCheck(int tokenId, AGrammarConventionCheck check) {
-        registerCheck(TokenTypes.getTokenName(tokenId), check);
+        if (tokenId >= checksPerTokenType.length) {
+            final int oldLength = checksPerTokenType.length;
+            checksPerTokenType = Arrays.copyOf(checksPerTokenType, tokenId + 1);
+            Arrays.fill(checksPerTokenType, oldLength, checksPerTokenType.length, NO_CHECKS);
+        }
+        final AGrammarConventionCheck[] tokenChecks = checksPerTokenType[tokenId];
+        for (AGrammarConventionCheck tokenCheck : tokenChecks) {
+            if (tokenCheck == check) {
+                return;
+            }
+        }
+        final AGrammarConventionCheck[] newTokenChecks = Arrays.copyOf(tokenChecks, tokenChecks.length + 1);
+        newTokenChecks[tokenChecks.length] = check;
+        checksPerTokenType[tokenId] = newTokenChecks;
     }
 
-    private void registerCheck(String token, AGrammarConventionCheck check) {
-        tokenToChecks.put(token, check);
+    private AGrammarConventionCheck[] getChecks(int tokenType) {
+        if (tokenType < 0 || tokenType >= checksPerTokenType.length) {
+            return NO_CHECKS;
+        }
+        return checksPerTokenType[tokenType];
     }
 
     @Override
-    protected void processFiltered(File file, List<String> lines) {
+    public void beginProcessing(String charset) {
+        super.beginProcessing(charset);
+        numberOfViolations = 0;
+        isTruncated = false;
+        areCrossFileSummariesTaken = false;
+        loadBaseline();
+        if (walkLogFile != null) {
+            try {
+                walkLogWriter = new WalkLogWriter(new File(walkLogFile));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not create the walk log " + walkLogFile, ex);
+            }
+        }
+        changedFiles = null;
+        if (changedSince != null) {
+            //created only now, CheckStyle sets the properties in no particular order
+            changedFiles = new GitChangedFiles(new File(repositoryDirectory), changedSince);
+            try {
+                changedFiles.load();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not determine the changed files", ex);
+            }
+        }
+        for (CheckProfile profile : profiles.values()) {
+            profile.fireAuditStarted(this);
+        }
+    }
+
+    private void loadBaseline() {
+        baseline = null;
+        recordedBaseline = null;
+        if (baselineFile != null) {
+            if (writeBaseline) {
+                recordedBaseline = new ViolationBaseline();
+            } else {
+                try {
+                    baseline = ViolationBaseline.read(new File(baselineFile));
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Could not read the baseline " + baselineFile
+                            + ", it can be created with writeBaseline=true", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void processFiltered(final File file, final List<String> lines) {
 
         /* TODO rstoll CheckStyle uses a cache to avoid checking files multiple times.
           I am actually not sure if it is necessary, files should be processed only once anyway IMO.
@@ -165,11 +520,145 @@ public class GrammarWalker extends AbstractFileSetCheck
           necessary to have a cache.
           */
 
+        Set<AGrammarConventionCheck> skippedChecks = Collections.emptySet();
+        String knownContentHash = null;
+        if (changedFiles != null) {
+            if (!changedFiles.isAffected(file)) {
+                if (crossFileSummaries.isEmpty()) {
+                    return;
+                }
+                skippedChecks = new HashSet<>();
+                for (AGrammarConventionCheck check : checks) {
+                    if (!(check instanceof ICrossFileCheck)) {
+                        skippedChecks.add(check);
+                    }
+                }
+            }
+            knownContentHash = changedFiles.getBlobId(file);
+        }
+        final String blobId = knownContentHash;
+        processGrammar(file, lines, knownContentHash, skippedChecks, new IGrammarSource()
+        {
+            @Override
+            public GrammarAST getGrammarAST() throws IOException, RecognitionException {
+                if (treeCache != null && areCompactTreesSupported) {
+                    return getCachedGrammarAST(file, lines, blobId);
+                }
+                return GrammarWalker.this.getGrammarAST(file);
+            }
+        });
+    }
+
+    private GrammarAST getCachedGrammarAST(File file, List<String> lines, String knownContentHash)
+            throws IOException, RecognitionException {
+        String contentHash = knownContentHash;
+        if (contentHash == null) {
+            contentHash = ContentHash.ofFile(file, lines);
+        }
+        CompactGrammarTree tree = treeCache.get(contentHash);
+        if (tree == null) {
+            tree = CompactGrammarTree.of(getGrammarAST(file));
+            try {
+                treeCache.put(contentHash, tree);
+            } catch (IOException ex) {
+                Utils.getExceptionLogger().debug("Could not cache the tree of " + file.getPath(), ex);
+            }
+        }
+        return tree.getRoot();
+    }
+
+    /**
+     * Checks the given content (e.g. an unsaved editor buffer) as if it was the content of the given file, without
+     * reading the file.
+     *
+     * @param file    the file the content belongs to
+     * @param content the content which shall be checked
+     * @return the violations of the checks of the main profile
+     * @throws CancellationException in case the current thread was interrupted during the walk
+     */
+    public TreeSet<LocalizedMessage> processBuffer(File file, String content) {
+        return processBuffer(file, content, null);
+    }
+
+    /**
+     * Checks the given content like {@link #processBuffer(File, String)} but uses the given parser which re-parses
+     * only the rule affected by the changes since its last call (falls back to a full parse if not possible).
+     *
+     * @param file    the file the content belongs to
+     * @param content the content which shall be checked
+     * @param parser  the parser which parsed the previous content of the same file or null for a full parse
+     * @return the violations of the checks of the main profile
+     * @throws CancellationException in case the current thread was interrupted during the walk
+     */
+    public TreeSet<LocalizedMessage> processBuffer(final File file, final String content,
+            final IncrementalGrammarParser parser) {
+        getMessageCollector().reset();
+        processGrammar(file, Arrays.asList(content.split("\\r?\\n")), new IGrammarSource()
+        {
+            @Override
+            public GrammarAST getGrammarAST() throws IOException, RecognitionException {
+                if (parser != null) {
+                    return parser.update(content);
+                }
+                return GrammarWalker.this.getGrammarAST(file, new StringReader(content));
+            }
+        });
+        return getMessageCollector().getMessages();
+    }
+
+    /**
+     * Checks the given compact tree (e.g. kept in memory from a previous parse) without parsing the file again.
+     * <p/>
+     * The checks walk the tree via {@link CompactGrammarTree#getRoot()}, hence they see only types, texts, lines and
+     * positions in line of the nodes - only the checks implementing {@link ICompactTreeCheck} report the same
+     * violations as for the parsed file.
+     *
+     * @param file  the file the tree belongs to
+     * @param lines the lines of the file
+     * @param tree  the tree of the file
+     * @return the violations of the checks of the main profile
+     * @throws CancellationException in case the current thread was interrupted during the walk
+     */
+    public TreeSet<LocalizedMessage> processTree(File file, List<String> lines, final CompactGrammarTree tree) {
+        getMessageCollector().reset();
+        processGrammar(file, lines, new IGrammarSource()
+        {
+            @Override
+            public GrammarAST getGrammarAST() {
+                return tree.getRoot();
+            }
+        });
+        return getMessageCollector().getMessages();
+    }
+
+    private void processGrammar(File file, List<String> lines, IGrammarSource source) {
+        processGrammar(file, lines, null, Collections.<AGrammarConventionCheck>emptySet(), source);
+    }
+
+    private void processGrammar(File file, List<String> lines, String knownContentHash,
+            Set<AGrammarConventionCheck> skippedChecks, IGrammarSource source) {
+        if (isTotalViolationLimitReached()) {
+            return;
+        }
+        isRecording = walkRecorder.isEnabled();
+        isRecordingVisits = isRecording && walkRecorder.isVisitEnabled();
+        recordedFileName = file.getPath();
         try {
-            final FileText text = FileText.fromLines(file, lines);
-            final FileContents contents = new FileContents(text);
-            GrammarAST ast = getGrammarAST(file);
-            walk(ast, contents);
+            inactiveChecks.clear();
+            inactiveChecks.addAll(skippedChecks);
+            inactiveChecks.addAll(crossFileSummaries.loadCachedSummaries(file.getPath(), lines, knownContentHash));
+            if (inactiveChecks.isEmpty() || inactiveChecks.size() < checks.size()) {
+                final FileText text = FileText.fromLines(file, lines);
+                final FileContents contents = new FileContents(text);
+                final GrammarAST ast = parse(file.getPath(), lines.size(), source);
+                if (walkLogWriter != null && ast != null) {
+                    walkLogWriter.write(file.getPath(), lines, CompactGrammarTree.of(ast));
+                }
+                walk(file.getPath(), ast, contents);
+                crossFileSummaries.collectSummaries(file.getPath(), ast, inactiveChecks);
+            }
+        } catch (final CancellationException ex) {
+            throw ex;
         } catch (final Throwable err) {
             Utils.getExceptionLogger().debug("Throwable occurred.", err);
             getMessageCollector().add(
@@ -181,105 +670,775 @@ public class GrammarWalker extends AbstractFileSetCheck
                             getId(),
                             this.getClass(), null));
         }
+        fireProfileErrors(file.getPath());
+    }
+
+    private void fireProfileErrors(String fileName) {
+        for (CheckProfile profile : profiles.values()) {
+            if (!profile.getName().equals(mainProfile)) {
+                profile.fireErrors(this, fileName);
+            }
+        }
+    }
+
+    private GrammarAST parse(String fileName, int numberOfLines, IGrammarSource source)
+            throws IOException, RecognitionException {
+        if (!isRecording) {
+            return source.getGrammarAST();
+        }
+        final IWalkEvent event = walkRecorder.beginParse(fileName, numberOfLines);
+        try {
+            return source.getGrammarAST();
+        } finally {
+            event.commit();
+        }
     }
 
     protected GrammarAST getGrammarAST(File file) throws IOException, RecognitionException {
+        try (Reader reader = new FileReader(file)) {
+            return getGrammarAST(file, reader);
+        }
+    }
+
+    /**
+     * Parses the content read from the given reader as content of the given file, imports are resolved in the
+     * directory of the file.
+     */
+    protected GrammarAST getGrammarAST(File file, Reader reader) throws IOException, RecognitionException {
         String fileName = file.getName();
-        ANTLRLexer lexer = new ANTLRLexer(new ANTLRReaderStream(new FileReader(file)));
+        ANTLRLexer lexer = new ANTLRLexer(new ANTLRReaderStream(reader));
         lexer.setFileName(fileName);
         TokenStream tokenStream = new CommonTokenStream(lexer);
         ANTLRParser parser = ANTLRParser.createParser(tokenStream);
         parser.setFileName(fileName);
-        Grammar grammar = new Grammar(new Tool());
+        Grammar grammar = new Grammar(GrammarImports.createTool(file));
         grammar.setFileName(fileName);
         return parser.grammar_(grammar).getTree();
     }
 
-    private void walk(GrammarAST ast, FileContents contents) {
+    private void walk(String fileName, GrammarAST ast, FileContents contents) {
         getMessageCollector().reset();
+        for (CheckProfile profile : profiles.values()) {
+            profile.getMessages().reset();
+        }
+
+        final Set<AGrammarConventionCheck> activeChecks = new HashSet<>(checks);
+        activeChecks.removeAll(inactiveChecks);
+        final Set<AGrammarConventionCheck> ruleLocalChecks = new HashSet<>(ruleResultCache.getChecks());
+        ruleLocalChecks.removeAll(inactiveChecks);
+
+        final GrammarAnalysisRequest analysisRequest = new GrammarAnalysisRequest(grammarAnalysisService,
+                new File(fileName), contents, ast);
+        baselineFilter = null;
+        if (baseline != null || recordedBaseline != null) {
+            baselineFilter = new BaselineFilter(baseline, fileName, ast, contents);
+        }
+        checkContexts.clear();
+        for (AGrammarConventionCheck check : checks) {
+            if (check instanceof AReentrantGrammarConventionCheck) {
+                final CheckContext context = new CheckContext((AReentrantGrammarConventionCheck<?>) check, fileName,
+                        contents, analysisRequest, getMessages(check));
+                context.setBaselineFilter(baselineFilter);
+                checkContexts.put(check, context);
+            } else {
+                check.setGrammarAnalysisRequest(analysisRequest);
+                check.setBaselineFilter(baselineFilter);
+            }
+        }
+        final boolean walksRules = !ruleLocalChecks.isEmpty() && ast != null;
+        if (walksRules) {
+            ruleResultCache.beginFile(fileName);
+        }
+        IWalkEvent walkEvent = null;
+        if (isRecording) {
+            walkEvent = walkRecorder.beginWalk(fileName, countNodes(ast), activeChecks.size());
+        }
+        final Set<AGrammarConventionCheck> walkedChecks = new HashSet<>();
+        try {
+            for (Set<AGrammarConventionCheck> passChecks : getPasses(activeChecks)) {
+                walkPass(ast, contents, passChecks, ruleLocalChecks);
+                walkedChecks.addAll(passChecks);
+            }
+            if (walksRules) {
+                ruleResultCache.finishFile(fileName);
+            }
+            applyBaseline();
+            numberOfViolations += getMessageCollector().size();
+        } catch (ViolationLimitReachedException ex) {
+            applyBaseline();
+            truncateViolations();
+            completeCrossFileChecks(ast, contents, activeChecks, walkedChecks);
+        } finally {
+            if (walkEvent != null) {
+                walkEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Filters the known violations of the checks which neither reported via a {@link CheckContext} nor asked
+     * {@link AGrammarConventionCheck#isKnownViolation(int)} respectively records the violations if the baseline is
+     * written.
+     */
+    private void applyBaseline() {
+        if (baselineFilter == null) {
+            return;
+        }
+        baselineFilter.filter(getMessageCollector());
+        for (CheckProfile profile : profiles.values()) {
+            baselineFilter.filter(profile.getMessages());
+        }
+        if (recordedBaseline != null) {
+            baselineFilter.record(getMessageCollector(), recordedBaseline);
+            for (CheckProfile profile : profiles.values()) {
+                baselineFilter.record(profile.getMessages(), recordedBaseline);
+            }
+        }
+    }
+
+    /**
+     * Walks the checks implementing {@link ICrossFileCheck} which were not walked completely because a violation limit
+     * was reached, their summaries need to be complete nonetheless. The violations they report meanwhile are dropped,
+     * the violations of the file are already truncated.
+     */
+    private void completeCrossFileChecks(GrammarAST ast, FileContents contents,
+            Set<AGrammarConventionCheck> activeChecks, Set<AGrammarConventionCheck> walkedChecks) {
+        final Set<AGrammarConventionCheck> incompleteChecks = new HashSet<>();
+        for (AGrammarConventionCheck check : activeChecks) {
+            if (check instanceof ICrossFileCheck && !walkedChecks.contains(check)) {
+                incompleteChecks.add(check);
+            }
+        }
+        if (incompleteChecks.isEmpty()) {
+            return;
+        }
+        final LocalizedMessages droppedMessages = new LocalizedMessages();
+        for (AGrammarConventionCheck check : incompleteChecks) {
+            setMessages(check, droppedMessages);
+        }
+        try {
+            notifyBegin(ast, contents, incompleteChecks);
+            processRec(ast, incompleteChecks, checkContexts, false);
+            notifyEnd(ast, incompleteChecks);
+        } finally {
+            for (AGrammarConventionCheck check : incompleteChecks) {
+                setMessages(check, getMessages(check));
+            }
+        }
+    }
+
+    private static int countNodes(GrammarAST ast) {
+        if (ast == null) {
+            return 0;
+        }
+        int count = 1;
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            count += countNodes((GrammarAST) ast.getChild(i));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the given checks grouped by ascending cost if a violation limit was specified, otherwise all checks are
+     * walked in one pass.
+     */
+    private Collection<Set<AGrammarConventionCheck>> getPasses(Set<AGrammarConventionCheck> activeChecks) {
+        if (maxViolationsPerFile <= 0 && maxViolations <= 0) {
+            return Arrays.asList(activeChecks);
+        }
+        final SortedMap<Integer, Set<AGrammarConventionCheck>> passes = new TreeMap<>();
+        for (AGrammarConventionCheck check : activeChecks) {
+            Set<AGrammarConventionCheck> passChecks = passes.get(check.getCost());
+            if (passChecks == null) {
+                passChecks = new HashSet<>();
+                passes.put(check.getCost(), passChecks);
+            }
+            passChecks.add(check);
+        }
+        return passes.values();
+    }
+
+    private void walkPass(GrammarAST ast, FileContents contents, Set<AGrammarConventionCheck> passChecks,
+            Set<AGrammarConventionCheck> ruleLocalChecks) {
+        final Set<AGrammarConventionCheck> walkedChecks = new HashSet<>(passChecks);
+        walkedChecks.removeAll(ruleLocalChecks);
+        final Set<AGrammarConventionCheck> passRuleLocalChecks = new HashSet<>(passChecks);
+        passRuleLocalChecks.retainAll(ruleLocalChecks);
+
+        notifyBegin(ast, contents, passChecks);
+        processRec(ast, walkedChecks, checkContexts, true);
+        if (!passRuleLocalChecks.isEmpty() && ast != null) {
+            walkRules(ast, contents, passRuleLocalChecks);
+        }
+        checkViolationLimit();
+        notifyEnd(ast, passChecks);
+        checkViolationLimit();
+    }
+
+    private void checkViolationLimit() {
+        if (isViolationLimitReached()) {
+            throw new ViolationLimitReachedException();
+        }
+    }
+
+    /**
+     * Returns true if the violations of the main profile reported for the current file (including the ones of rules
+     * which are not yet merged) reach one of the violation limits. Known violations (see {@link #setBaselineFile})
+     * do not count, the ones reported without a {@link CheckContext} are filtered once the limit seems reached.
+     */
+    private boolean isViolationLimitReached() {
+        if (maxViolationsPerFile <= 0 && maxViolations <= 0) {
+            return false;
+        }
+        if (baselineFilter != null && isViolationLimitReached(getMessageCollector().size() + pendingViolations)) {
+            baselineFilter.filter(getMessageCollector());
+        }
+        return isViolationLimitReached(getMessageCollector().size() + pendingViolations);
+    }
+
+    private boolean isViolationLimitReached(int fileViolations) {
+        return maxViolationsPerFile > 0 && fileViolations >= maxViolationsPerFile
+                || maxViolations > 0 && numberOfViolations + fileViolations >= maxViolations;
+    }
+
+    private boolean isTotalViolationLimitReached() {
+        return maxViolations > 0 && numberOfViolations >= maxViolations;
+    }
+
+    /**
+     * Keeps only the first violations of the current file which fit into the limits and adds a note that the
+     * violations were truncated.
+     */
+    private void truncateViolations() {
+        int limit = Integer.MAX_VALUE;
+        if (maxViolationsPerFile > 0) {
+            limit = maxViolationsPerFile;
+        }
+        if (maxViolations > 0) {
+            limit = Math.min(limit, maxViolations - numberOfViolations);
+        }
+        final LocalizedMessages collector = getMessageCollector();
+        final TreeSet<LocalizedMessage> messages = collector.getMessages();
+        collector.reset();
+        int count = 0;
+        for (LocalizedMessage message : messages) {
+            if (count == limit) {
+                break;
+            }
+            collector.add(message);
+            ++count;
+        }
+        numberOfViolations += count;
+        isTruncated = true;
+
+        final String key;
+        final int max;
+        if (isTotalViolationLimitReached()) {
+            key = "Stopped after {0} violations in total (maxViolations), the remaining files are not checked.";
+            max = maxViolations;
+        } else {
+            key = "Stopped after {0} violations in this file (maxViolationsPerFile), further violations are not "
+                    + "reported.";
+            max = maxViolationsPerFile;
+        }
+        collector.add(new LocalizedMessage(0, Defn.CHECKSTYLE_BUNDLE, key, new Object[]{String.valueOf(max)}, getId(),
+                this.getClass(), null));
+    }
+
+    /**
+     * Walks the RULE subtrees with the given rule-local checks, re-using the violations of rules which did not change
+     * since the last time the file was processed.
+     * <p/>
+     * If a rule parallelism was specified, the rules are walked concurrently for the rule-local checks which are
+     * thread-safe. Each rule gets its own context and state (see {@link AReentrantGrammarConventionCheck}), the
+     * violations are merged in the order of the rules.
+     * <p/>
+     * Stops walking further rules once a violation limit is reached, the rules walked so far are walked completely.
+     * The parallel walk counts its violations towards the limits as well, the violations of the rules are merged in
+     * their order until the limit is reached - as if the rules were walked sequentially.
+     */
+    private void walkRules(GrammarAST rootAst, FileContents contents, Set<AGrammarConventionCheck> ruleLocalChecks) {
+        final Set<AGrammarConventionCheck> parallelChecks = new HashSet<>();
+        if (rulePool != null) {
+            for (AGrammarConventionCheck check : ruleLocalChecks) {
+                if (check instanceof IThreadSafeCheck) {
+                    parallelChecks.add(check);
+                }
+            }
+        }
+        final Set<AGrammarConventionCheck> sequentialChecks = new HashSet<>(ruleLocalChecks);
+        sequentialChecks.removeAll(parallelChecks);
+        final Map<AGrammarConventionCheck, LocalizedMessages> ruleMessages = new HashMap<>();
+        for (AGrammarConventionCheck check : sequentialChecks) {
+            final LocalizedMessages messages = new LocalizedMessages();
+            setMessages(check, messages);
+            ruleMessages.put(check, messages);
+        }
+        try {
+            final List<GrammarAST> rules = new ArrayList<>();
+            final List<Map<AGrammarConventionCheck, List<LocalizedMessage>>> violationsPerRule = new ArrayList<>();
+            final List<String> fingerprints = new ArrayList<>();
+            final List<GrammarAST> changedRules = new ArrayList<>();
+            final List<Map<AGrammarConventionCheck, List<LocalizedMessage>>> violationsOfChangedRules =
+                    new ArrayList<>();
+            final int childCount = rootAst.getChildCount();
+            for (int i = 0; i < childCount; ++i) {
+                final GrammarAST rule = (GrammarAST) rootAst.getChild(i);
+                if (rule.getType() == ANTLRParser.RULE) {
+                    if (isViolationLimitReached()) {
+                        break;
+                    }
+                    final String fingerprint = RuleResultCache.fingerprint(rule, contents);
+                    Map<AGrammarConventionCheck, List<LocalizedMessage>> violations =
+                            ruleResultCache.get(fingerprint, rule.getLine(), ruleLocalChecks);
+                    if (violations == null) {
+                        processRec(rule, sequentialChecks, checkContexts, true);
+                        violations = new HashMap<>();
+                        for (Map.Entry<AGrammarConventionCheck, LocalizedMessages> entry : ruleMessages.entrySet()) {
+                            violations.put(entry.getKey(), new ArrayList<>(entry.getValue().getMessages()));
+                            entry.getValue().reset();
+                        }
+                        changedRules.add(rule);
+                        violationsOfChangedRules.add(violations);
+                        fingerprints.add(fingerprint);
+                    } else {
+                        fingerprints.add(null);
+                    }
+                    rules.add(rule);
+                    violationsPerRule.add(violations);
+                    pendingViolations += countMainProfileViolations(violations);
+                }
+            }
+            //the parallel checks skip the remaining rules once the violations walked so far reach the limit; since
+            //they are walked out of order, a skipped rule is walked below if the rules before it do not reach it
+            RuleWalkTask ruleWalk = null;
+            if (!parallelChecks.isEmpty() && !changedRules.isEmpty()) {
+                ruleWalk = new RuleWalkTask(rootAst, parallelChecks, changedRules, violationsOfChangedRules,
+                        new AtomicInteger(getMessageCollector().size() + pendingViolations), 0, changedRules.size());
+                rulePool.invoke(ruleWalk);
+            }
+            pendingViolations = 0;
+            boolean isMerging = true;
+            for (int i = 0; i < rules.size(); ++i) {
+                final Map<AGrammarConventionCheck, List<LocalizedMessage>> violations = violationsPerRule.get(i);
+                isMerging = isMerging && !isViolationLimitReached();
+                if (!violations.keySet().containsAll(ruleLocalChecks)) {
+                    if (!isMerging) {
+                        continue;
+                    }
+                    ruleWalk.walkRule(rules.get(i), violations);
+                }
+                if (fingerprints.get(i) != null) {
+                    ruleResultCache.put(fingerprints.get(i), rules.get(i).getLine(), violations);
+                }
+                if (isMerging) {
+                    for (AGrammarConventionCheck check : ruleLocalChecks) {
+                        final LocalizedMessages messages = getMessages(check);
+                        for (LocalizedMessage message : violations.get(check)) {
+                            messages.add(message);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pendingViolations = 0;
+            for (AGrammarConventionCheck check : sequentialChecks) {
+                setMessages(check, getMessages(check));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of violations of the given rule which count towards the violation limits - the known ones of
+     * checks without {@link CheckContext} are not counted, the other checks do not report known violations.
+     */
+    private int countMainProfileViolations(Map<AGrammarConventionCheck, List<LocalizedMessage>> violations) {
+        int count = 0;
+        for (Map.Entry<AGrammarConventionCheck, List<LocalizedMessage>> entry : violations.entrySet()) {
+            final AGrammarConventionCheck check = entry.getKey();
+            if (check.getProfile().equals(mainProfile)) {
+                if (baselineFilter != null && !checkContexts.containsKey(check)) {
+                    count += baselineFilter.countUnknown(entry.getValue());
+                } else {
+                    count += entry.getValue().size();
+                }
+            }
+        }
+        return count;
+    }
+
+    private void setMessages(AGrammarConventionCheck check, LocalizedMessages messages) {
+        final CheckContext context = checkContexts.get(check);
+        if (context != null) {
+            context.setMessages(messages);
+        } else {
+            check.setMessages(messages);
+        }
+    }
 
-        notifyBegin(ast, contents);
-        processRec(ast);
-        notifyEnd(ast);
+    private LocalizedMessages getMessages(AGrammarConventionCheck check) {
+        if (check.getProfile().equals(mainProfile)) {
+            return getMessageCollector();
+        }
+        return profiles.get(check.getProfile()).getMessages();
     }
 
     /**
      * Notify interested checks that about to begin walking a tree.
      *
-     * @param rootAst  the root of the tree
-     * @param contents the contents of the file the AST was generated from
+     * @param rootAst      the root of the tree
+     * @param contents     the contents of the file the AST was generated from
+     * @param walkedChecks the checks which are walked
      */
-    private void notifyBegin(GrammarAST rootAst, FileContents contents) {
-        for (AGrammarConventionCheck check : checks) {
-            check.setFileContents(contents);
-            check.beginTree(rootAst);
+    private void notifyBegin(GrammarAST rootAst, FileContents contents, Set<AGrammarConventionCheck> walkedChecks) {
+        for (AGrammarConventionCheck check : walkedChecks) {
+            IWalkEvent event = null;
+            if (isRecording) {
+                event = walkRecorder.beginCheckPhase(recordedFileName, check, "beginTree");
+            }
+            final CheckContext context = checkContexts.get(check);
+            if (context != null) {
+                ((AReentrantGrammarConventionCheck<?>) check).dispatchBeginTree(rootAst, context);
+            } else {
+                check.setFileContents(contents);
+                check.beginTree(rootAst);
+            }
+            if (event != null) {
+                event.commit();
+            }
         }
     }
 
     /**
      * Notify checks that finished walking a tree.
      *
-     * @param rootAst the root of the tree
+     * @param rootAst      the root of the tree
+     * @param walkedChecks the checks which are walked
      */
-    private void notifyEnd(GrammarAST rootAst) {
-        for (AGrammarConventionCheck check : checks) {
-            check.finishTree(rootAst);
+    private void notifyEnd(GrammarAST rootAst, Set<AGrammarConventionCheck> walkedChecks) {
+        for (AGrammarConventionCheck check : walkedChecks) {
+            IWalkEvent event = null;
+            if (isRecording) {
+                event = walkRecorder.beginCheckPhase(recordedFileName, check, "finishTree");
+            }
+            final CheckContext context = checkContexts.get(check);
+            if (context != null) {
+                ((AReentrantGrammarConventionCheck<?>) check).dispatchFinishTree(rootAst, context);
+            } else {
+                check.finishTree(rootAst);
+            }
+            if (event != null) {
+                event.commit();
+            }
         }
     }
 
-    private void processRec(GrammarAST ast) {
+    private void processRec(GrammarAST ast, Set<AGrammarConventionCheck> walkedChecks,
+            Map<AGrammarConventionCheck, CheckContext> contexts, boolean stopsAtViolationLimit) {
         if (ast == null) {
             return;
         }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The walk was cancelled");
+        }
+        if (stopsAtViolationLimit) {
+            checkViolationLimit();
+        }
 
-        notifyVisit(ast);
+        notifyVisit(ast, walkedChecks, contexts);
 
-        if (ast.getChildCount() > 0) {
-            processRec((GrammarAST) ast.getChild(0));
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            processRec((GrammarAST) ast.getChild(i), walkedChecks, contexts, stopsAtViolationLimit);
         }
 
-        notifyLeave(ast);
+        notifyLeave(ast, walkedChecks, contexts);
+    }
 
-        final GrammarAST parent = (GrammarAST) ast.getParent();
-        if (parent != null) {
-            final GrammarAST sibling = (GrammarAST) parent.getChild(ast.getChildIndex() + 1);
-            if (sibling != null) {
-                processRec(sibling);
+    /**
+     * Notify interested checks that visiting a node.
+     *
+     * @param ast          the node to notify for
+     * @param walkedChecks the checks which are walked
+     * @param contexts     the contexts of the reentrant checks
+     */
+    private void notifyVisit(GrammarAST ast, Set<AGrammarConventionCheck> walkedChecks,
+            Map<AGrammarConventionCheck, CheckContext> contexts) {
+        for (AGrammarConventionCheck check : getChecks(ast.getType())) {
+            if (walkedChecks.contains(check)) {
+                IWalkEvent event = null;
+                if (isRecordingVisits) {
+                    event = walkRecorder.beginVisit(recordedFileName, check, ast);
+                }
+                final CheckContext context = contexts.get(check);
+                if (context != null) {
+                    ((AReentrantGrammarConventionCheck<?>) check).dispatchVisitToken(ast, context);
+                } else {
+                    check.visitToken(ast);
+                }
+                if (event != null) {
+                    event.commit();
+                }
             }
         }
     }
 
     /**
-     * Notify interested checks that visiting a node.
+     * Notify interested checks that leaving a node.
      *
-     * @param ast the node to notify for
+     * @param ast          the node to notify for
+     * @param walkedChecks the checks which are walked
+     * @param contexts     the contexts of the reentrant checks
      */
-    private void notifyVisit(GrammarAST ast) {
-        final Collection<AGrammarConventionCheck> visitors =
-                tokenToChecks.get(TokenTypes.getTokenName(ast.getType()));
-        for (AGrammarConventionCheck check : visitors) {
-            check.visitToken(ast);
+    private void notifyLeave(GrammarAST ast, Set<AGrammarConventionCheck> walkedChecks,
+            Map<AGrammarConventionCheck, CheckContext> contexts) {
+        for (AGrammarConventionCheck check : getChecks(ast.getType())) {
+            if (walkedChecks.contains(check)) {
+                final CheckContext context = contexts.get(check);
+                if (context != null) {
+                    ((AReentrantGrammarConventionCheck<?>) check).dispatchLeaveToken(ast, context);
+                } else {
+                    check.leaveToken(ast);
+                }
+            }
         }
     }
 
     /**
-     * Notify interested checks that leaving a node.
+     * Returns the summaries of the {@link ICrossFileCheck}s collected since processing began and removes them,
+     * finishProcessing does then not report cross-file violations.
+     * <p/>
+     * The summaries are keyed by check and file name and can be added to a walker with the same configuration (see
+     * {@link #addCrossFileSummaries(Map)}), e.g. to report the cross-file violations of files which were checked in
+     * several processes once. The returned map is empty if the total violation limit was reached since the summaries
+     * of the remaining files are missing.
+     */
+    public SortedMap<String, SortedMap<String, Serializable>> takeCrossFileSummaries() {
+        final SortedMap<String, SortedMap<String, Serializable>> summaries = crossFileSummaries.takeSummaries();
+        areCrossFileSummariesTaken = true;
+        if (isTotalViolationLimitReached()) {
+            return new TreeMap<>();
+        }
+        return summaries;
+    }
+
+    /**
+     * Adds summaries taken from a walker with the same configuration (see {@link #takeCrossFileSummaries()}), their
+     * cross-file violations are reported by finishProcessing together with the ones of the files processed by this
+     * walker.
      *
-     * @param ast the node to notify for
+     * @throws IllegalArgumentException in case summaries belong to a check which is not configured
+     */
+    public void addCrossFileSummaries(Map<String, ? extends SortedMap<String, Serializable>> summaries) {
+        crossFileSummaries.addSummaries(summaries);
+    }
+
+    /**
+     * Returns the cross-file violations of the main profile per file name based on the summaries collected so far
+     * without removing them - for a long-running session (e.g. the language server) which began processing once and
+     * processes the same files again whenever they change, the summaries of a file are then replaced.
      */
-    private void notifyLeave(GrammarAST ast) {
-        final Collection<AGrammarConventionCheck> visitors =
-                tokenToChecks.get(TokenTypes.getTokenName(ast.getType()));
-        for (AGrammarConventionCheck check : visitors) {
-            check.leaveToken(ast);
+    public SortedMap<String, TreeSet<LocalizedMessage>> reduceCrossFileViolations() {
+        final SortedMap<String, TreeSet<LocalizedMessage>> violations =
+                groupPerProfileAndFile(crossFileSummaries.reduce(true)).get(mainProfile);
+        if (violations == null) {
+            return new TreeMap<>();
         }
+        return violations;
+    }
+
+    /**
+     * Removes the cross-file summaries of the given file, e.g. once it was closed in a long-running session.
+     */
+    public void removeCrossFileSummaries(String fileName) {
+        crossFileSummaries.removeSummaries(fileName);
+    }
+
+    /**
+     * Resets the total number of violations (see {@link #setMaxViolations(int)}) within a long-running session, the
+     * limit then applies to each round of checks instead of to the whole session.
+     */
+    public void resetViolationCount() {
+        numberOfViolations = 0;
+        isTruncated = false;
+    }
+
+    @Override
+    public void finishProcessing() {
+        if (!crossFileSummaries.isEmpty() && !areCrossFileSummariesTaken && !isTotalViolationLimitReached()) {
+            reportCrossFileViolations(crossFileSummaries.reduce(false));
+        }
+        for (CheckProfile profile : profiles.values()) {
+            profile.fireAuditFinished(this);
+        }
+        if (recordedBaseline != null) {
+            try {
+                recordedBaseline.write(new File(baselineFile));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not write the baseline " + baselineFile, ex);
+            }
+        }
+        closeWalkLog();
+        super.finishProcessing();
+    }
+
+    private void closeWalkLog() {
+        if (walkLogWriter != null) {
+            try {
+                walkLogWriter.close();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not write the walk log " + walkLogFile, ex);
+            } finally {
+                walkLogWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Reports the cross-file violations of all checks once per file and profile - the CheckStyle Checker already
+     * finished the files at this point, hence each file with cross-file violations of the main profile is started, gets
+     * its errors and is finished exactly once more, files without cross-file violations are not started again.
+     */
+    private void reportCrossFileViolations(
+            Map<AGrammarConventionCheck, SortedMap<String, TreeSet<LocalizedMessage>>> violations) {
+        for (Map.Entry<String, SortedMap<String, TreeSet<LocalizedMessage>>> entry
+                : groupPerProfileAndFile(violations).entrySet()) {
+            final String profileName = entry.getKey();
+            for (Map.Entry<String, TreeSet<LocalizedMessage>> fileEntry : entry.getValue().entrySet()) {
+                final String fileName = fileEntry.getKey();
+                if (profileName.equals(mainProfile)) {
+                    final MessageDispatcher dispatcher = getMessageDispatcher();
+                    dispatcher.fireFileStarted(fileName);
+                    dispatcher.fireErrors(fileName, fileEntry.getValue());
+                    dispatcher.fireFileFinished(fileName);
+                } else {
+                    final CheckProfile profile = profiles.get(profileName);
+                    for (LocalizedMessage message : fileEntry.getValue()) {
+                        profile.getMessages().add(message);
+                    }
+                    profile.fireErrors(this, fileName);
+                }
+            }
+        }
+    }
+
+    private static SortedMap<String, SortedMap<String, TreeSet<LocalizedMessage>>> groupPerProfileAndFile(
+            Map<AGrammarConventionCheck, SortedMap<String, TreeSet<LocalizedMessage>>> violations) {
+        final SortedMap<String, SortedMap<String, TreeSet<LocalizedMessage>>> grouped = new TreeMap<>();
+        for (Map.Entry<AGrammarConventionCheck, SortedMap<String, TreeSet<LocalizedMessage>>> entry
+                : violations.entrySet()) {
+            final String profileName = entry.getKey().getProfile();
+            SortedMap<String, TreeSet<LocalizedMessage>> profileViolations = grouped.get(profileName);
+            if (profileViolations == null) {
+                profileViolations = new TreeMap<>();
+                grouped.put(profileName, profileViolations);
+            }
+            for (Map.Entry<String, TreeSet<LocalizedMessage>> fileEntry : entry.getValue().entrySet()) {
+                TreeSet<LocalizedMessage> fileViolations = profileViolations.get(fileEntry.getKey());
+                if (fileViolations == null) {
+                    fileViolations = new TreeSet<>();
+                    profileViolations.put(fileEntry.getKey(), fileViolations);
+                }
+                fileViolations.addAll(fileEntry.getValue());
+            }
+        }
+        return grouped;
     }
 
     @Override
     public void destroy() {
+        if (rulePool != null) {
+            rulePool.shutdown();
+        }
         for (AGrammarConventionCheck check : checks) {
             check.destroy();
         }
         super.destroy();
     }
+
+    /**
+     * Walks the given range of rules for the given thread-safe checks and adds the violations to the violations of the
+     * corresponding rule; splits the range until it consists of a single rule.
+     * <p/>
+     * The violations of the main profile are added to the given counter, a rule is skipped if the counter already
+     * reached a violation limit.
+     */
+    private class RuleWalkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GrammarAST rootAst;
+        private final Set<AGrammarConventionCheck> parallelChecks;
+        private final List<GrammarAST> rules;
+        private final List<Map<AGrammarConventionCheck, List<LocalizedMessage>>> violationsPerRule;
+        private final AtomicInteger walkedViolations;
+        private final int from;
+        private final int to;
+
+        RuleWalkTask(GrammarAST theRootAst, Set<AGrammarConventionCheck> theParallelChecks, List<GrammarAST> theRules,
+                List<Map<AGrammarConventionCheck, List<LocalizedMessage>>> theViolationsPerRule,
+                AtomicInteger theWalkedViolations, int fromIndex, int toIndex) {
+            rootAst = theRootAst;
+            parallelChecks = theParallelChecks;
+            rules = theRules;
+            violationsPerRule = theViolationsPerRule;
+            walkedViolations = theWalkedViolations;
+            from = fromIndex;
+            to = toIndex;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RuleWalkTask(rootAst, parallelChecks, rules, violationsPerRule, walkedViolations, from,
+                                middle),
+                        new RuleWalkTask(rootAst, parallelChecks, rules, violationsPerRule, walkedViolations, middle,
+                                to));
+            } else if (!isViolationLimitReached(walkedViolations.get())) {
+                walkRule(rules.get(from), violationsPerRule.get(from));
+            }
+        }
+
+        /**
+         * Walks the given rule with a context and state of its own per check - beginTree and finishTree are called
+         * with the root like for the file - and adds the violations to the given ones.
+         */
+        void walkRule(GrammarAST rule, Map<AGrammarConventionCheck, List<LocalizedMessage>> violations) {
+            final Map<AGrammarConventionCheck, CheckContext> contexts = new HashMap<>();
+            final Map<AGrammarConventionCheck, LocalizedMessages> messagesPerCheck = new HashMap<>();
+            for (AGrammarConventionCheck check : parallelChecks) {
+                final LocalizedMessages messages = new LocalizedMessages();
+                final CheckContext context = checkContexts.get(check).withMessages(messages);
+                ((AReentrantGrammarConventionCheck<?>) check).dispatchBeginTree(rootAst, context);
+                contexts.put(check, context);
+                messagesPerCheck.put(check, messages);
+            }
+            processRec(rule, parallelChecks, contexts, false);
+            final Map<AGrammarConventionCheck, List<LocalizedMessage>> ruleViolations = new HashMap<>();
+            for (Map.Entry<AGrammarConventionCheck, CheckContext> entry : contexts.entrySet()) {
+                ((AReentrantGrammarConventionCheck<?>) entry.getKey()).dispatchFinishTree(rootAst, entry.getValue());
+                ruleViolations.put(entry.getKey(), new ArrayList<>(messagesPerCheck.get(entry.getKey()).getMessages()));
+            }
+            walkedViolations.addAndGet(countMainProfileViolations(ruleViolations));
+            violations.putAll(ruleViolations);
+        }
+    }
+
+    /**
+     * Is thrown once a violation limit is reached in order to skip the remaining nodes of the walk.
+     */
+    private static class ViolationLimitReachedException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Provides the tree of the file which is processed; it is only requested if at least one check needs to walk it.
+     */
+    private interface IGrammarSource
+    {
+        GrammarAST getGrammarAST() throws IOException, RecognitionException;
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.DefaultContext;
+import com.puppycrawl.tools.checkstyle.PackageNamesLoader;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+/**
+ * Creates a {@link GrammarWalker} without CheckStyle's Checker, e.g. for the command line checkers and the language
+ * server.
+ */
+public final class GrammarWalkers
+{
+    private GrammarWalkers() {
+    }
+
+    /**
+     * Creates a GrammarWalker based on the GrammarWalker module found in the given CheckStyle configuration.
+     */
+    public static GrammarWalker create(String configurationFile) throws CheckstyleException {
+        final Configuration configuration = ConfigurationLoader.loadConfiguration(
+                configurationFile, new PropertiesExpander(System.getProperties()));
+        final Configuration walkerConfiguration = findWalkerConfiguration(configuration);
+        if (walkerConfiguration == null) {
+            throw new CheckstyleException("No GrammarWalker module found in " + configurationFile);
+        }
+        final ClassLoader classLoader = GrammarWalkers.class.getClassLoader();
+        final DefaultContext context = new DefaultContext();
+        context.add("classLoader", classLoader);
+        context.add("moduleFactory",
+                new ReflectionModuleFactory(PackageNamesLoader.getPackageNames(classLoader), classLoader));
+        final GrammarWalker walker = new GrammarWalker();
+        walker.contextualize(context);
+        walker.configure(walkerConfiguration);
+        return walker;
+    }
+
+    private static Configuration findWalkerConfiguration(Configuration configuration) {
+        final String name = configuration.getName();
+        if (name.equals(GrammarWalker.class.getSimpleName()) || name.equals(GrammarWalker.class.getName())) {
+            return configuration;
+        }
+        for (Configuration child : configuration.getChildren()) {
+            final Configuration walkerConfiguration = findWalkerConfiguration(child);
+            if (walkerConfiguration != null) {
+                return walkerConfiguration;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+/**
+ * Marks a check which reads only the token type, text, line and position in line of the nodes and the structure of
+ * the tree (parent, children and child index) - neither token indexes, block options nor the Grammar the nodes belong
+ * to - and hence yields the same violations for a {@link ch.tsphp.grammarconvention.compact.CompactGrammarTree}.
+ * <p/>
+ * The GrammarWalker only walks the trees of its tree cache if all its checks are such checks, otherwise it parses the
+ * files (see {@link GrammarWalker#setTreeCacheDirectory(String)}).
+ */
+public interface ICompactTreeCheck
+{
+}
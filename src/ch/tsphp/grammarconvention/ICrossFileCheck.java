@@ -0,0 +1,46 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import org.antlr.tool.GrammarAST;
+
+import java.io.Serializable;
+import java.util.SortedMap;
+
+/**
+ * Represents a check which verifies a convention across all grammar files (map-reduce like).
+ * <p/>
+ * The check collects a compact summary of each file during the walk (map) which is fetched by the GrammarWalker via
+ * {@link #getSummary(GrammarAST)} after {@link AGrammarConventionCheck#finishTree(GrammarAST)}. Once all files were
+ * processed, {@link #reduce(SortedMap, ICrossFileLog)} is called with the summaries of all files.
+ * <p/>
+ * A summary must only depend on the content of the file and not on the configuration of the check since summaries
+ * are cached by content (if a summary cache directory was specified). Hence, a check is not walked at all for a file
+ * whose summary was found in the cache. Consequently, violations should only be reported during the reduce step.
+ *
+ * @param <TSummary> the type of the summary
+ */
+public interface ICrossFileCheck<TSummary extends Serializable>
+{
+    /**
+     * Returns the summary of the file which has just been walked.
+     *
+     * @param rootAst the root of the tree which has been walked
+     */
+    TSummary getSummary(GrammarAST rootAst);
+
+    /**
+     * Merges the summaries of all files and reports the cross-file violations.
+     * <p/>
+     * The summaries must not be modified, a long-running session (see
+     * {@link GrammarWalker#reduceCrossFileViolations()}) reduces them again once a file changed.
+     *
+     * @param summaries the summaries of all processed files, keyed by the file name
+     * @param log       the log to which violations are reported
+     */
+    void reduce(SortedMap<String, TSummary> summaries, ICrossFileLog log);
+}
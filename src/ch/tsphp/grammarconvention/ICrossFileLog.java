@@ -0,0 +1,23 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+/**
+ * Log to which {@link ICrossFileCheck}s report violations during the reduce step.
+ */
+public interface ICrossFileLog
+{
+    /**
+     * Reports a violation in the given file.
+     *
+     * @param fileName the name of the file as passed to {@link ICrossFileCheck#reduce}
+     * @param line     the line of the violation
+     * @param key      the message key (or the message itself if the check does not have a message bundle)
+     * @param args     the arguments of the message
+     */
+    void log(String fileName, int line, String key, Object... args);
+}
@@ -0,0 +1,20 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+/**
+ * Marks a check whose violations within a RULE only depend on this RULE subtree (and the lines it spans).
+ * <p/>
+ * The GrammarWalker visits such a check only with the nodes of RULE subtrees and re-uses the violations of a rule
+ * whose fingerprint (structure, token types, texts, relative positions and source lines) did not change since the
+ * file was processed the last time, without walking the rule again. Hence, a rule-local check must not carry state
+ * from one rule to another and must not report violations in
+ * {@link AGrammarConventionCheck#finishTree(org.antlr.tool.GrammarAST)} which depend on the visited rules.
+ */
+public interface IRuleLocalCheck
+{
+}
@@ -0,0 +1,23 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+/**
+ * Marks a check which can be used by several walks at the same time without cloning or locking.
+ * <p/>
+ * Only an {@link AReentrantGrammarConventionCheck} can be thread-safe: it keeps everything which belongs to a file in
+ * its per-file state, reports violations via its {@link CheckContext} and does not modify its fields after
+ * {@link com.puppycrawl.tools.checkstyle.api.Check#init()}.
+ * <p/>
+ * If the check is also an {@link IRuleLocalCheck}, the GrammarWalker may walk the rules of a grammar concurrently
+ * (see {@link GrammarWalker#setRuleParallelism(int)}). It then creates a separate context and state per rule:
+ * beginTree and finishTree are called with the root of the file for each of them, the violations reported in between
+ * belong to the rule. The state of the file is begun and finished as well but does not see any rule.
+ */
+public interface IThreadSafeCheck
+{
+}
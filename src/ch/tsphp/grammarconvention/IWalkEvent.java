@@ -0,0 +1,19 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+/**
+ * An event of the walker which began when it was created by an {@link IWalkRecorder}.
+ */
+public interface IWalkEvent
+{
+    /**
+     * Ends the event and records it if the recorder is still interested in it (e.g. the duration exceeds the
+     * threshold of the event type).
+     */
+    void commit();
+}
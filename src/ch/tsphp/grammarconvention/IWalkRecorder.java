@@ -0,0 +1,41 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Records what the walker spends its time on - parsing, walking and the single checks - e.g. as JDK Flight Recorder
+ * events (see {@link WalkRecorders#create()}).
+ * <p/>
+ * The walker asks once per file whether the recorder is enabled and creates events only if it is, so that a disabled
+ * recorder does not cost anything during the walk.
+ */
+public interface IWalkRecorder
+{
+    /**
+     * Indicates whether events shall be recorded for the next file.
+     */
+    boolean isEnabled();
+
+    /**
+     * Indicates whether single visitToken calls shall be recorded for the next file; is only asked if
+     * {@link #isEnabled()} returned true.
+     */
+    boolean isVisitEnabled();
+
+    IWalkEvent beginParse(String fileName, int numberOfLines);
+
+    IWalkEvent beginWalk(String fileName, int numberOfNodes, int numberOfChecks);
+
+    /**
+     * Begins an event for the beginTree respectively finishTree call (given by phase) of the given check.
+     */
+    IWalkEvent beginCheckPhase(String fileName, AGrammarConventionCheck check, String phase);
+
+    IWalkEvent beginVisit(String fileName, AGrammarConventionCheck check, GrammarAST ast);
+}
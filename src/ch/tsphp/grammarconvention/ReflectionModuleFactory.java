@@ -0,0 +1,63 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Creates modules the same way as CheckStyle's (package private) PackageObjectFactory does: the module name is tried
+ * as fully qualified class name and prefixed with each of the given packages, each time with and without the suffix
+ * "Check".
+ */
+class ReflectionModuleFactory implements ModuleFactory
+{
+    private final List<String> packageNames;
+    private final ClassLoader classLoader;
+
+    ReflectionModuleFactory(Collection<String> thePackageNames, ClassLoader theClassLoader) {
+        packageNames = new ArrayList<>(thePackageNames);
+        classLoader = theClassLoader;
+    }
+
+    @Override
+    public Object createModule(String name) throws CheckstyleException {
+        final List<String> candidates = new ArrayList<>();
+        candidates.add(name);
+        for (String packageName : packageNames) {
+            candidates.add(packageName + name);
+        }
+        for (String candidate : candidates) {
+            Object module = createObject(candidate);
+            if (module == null) {
+                module = createObject(candidate + "Check");
+            }
+            if (module != null) {
+                return module;
+            }
+        }
+        throw new CheckstyleException("Unable to instantiate " + name);
+    }
+
+    private Object createObject(String className) throws CheckstyleException {
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName(className, true, classLoader);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return null;
+        }
+        try {
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new CheckstyleException("Unable to instantiate " + className, ex);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import org.antlr.tool.GrammarAST;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the violations {@link IRuleLocalCheck}s reported per rule, keyed by the fingerprint of the rule, so that
+ * unchanged rules do not need to be walked again when the same file is processed once more.
+ * <p/>
+ * Only the results of the last processing of a file are kept.
+ */
+class RuleResultCache
+{
+    private final Set<AGrammarConventionCheck> checks = new LinkedHashSet<>();
+    private final Map<String, Map<String, RuleResult>> resultsPerFile = new HashMap<>();
+    private Map<String, RuleResult> previousResults;
+    private Map<String, RuleResult> currentResults;
+
+    public void register(AGrammarConventionCheck check) {
+        if (check instanceof IRuleLocalCheck) {
+            checks.add(check);
+        }
+    }
+
+    public boolean isEmpty() {
+        return checks.isEmpty();
+    }
+
+    public Set<AGrammarConventionCheck> getChecks() {
+        return checks;
+    }
+
+    public void beginFile(String fileName) {
+        previousResults = resultsPerFile.get(fileName);
+        if (previousResults == null) {
+            previousResults = new HashMap<>();
+        }
+        currentResults = new HashMap<>();
+    }
+
+    public void finishFile(String fileName) {
+        resultsPerFile.put(fileName, currentResults);
+        previousResults = null;
+        currentResults = null;
+    }
+
+    /**
+     * Returns the violations of the given checks which were reported for a rule with the same fingerprint during the
+     * last processing of the file (relocated to the given line of the rule) or null if they are not known.
+     */
+    public Map<AGrammarConventionCheck, List<LocalizedMessage>> get(
+            String fingerprint, int ruleLine, Collection<AGrammarConventionCheck> walkedChecks) {
+        final RuleResult result = previousResults.get(fingerprint);
+        if (result == null || !result.messages.keySet().containsAll(walkedChecks)) {
+            return null;
+        }
+        record(fingerprint, result);
+        if (result.line == ruleLine) {
+            return result.messages;
+        }
+        final int lineDelta = ruleLine - result.line;
+        final Map<AGrammarConventionCheck, List<LocalizedMessage>> relocatedMessages = new HashMap<>();
+        for (Map.Entry<AGrammarConventionCheck, List<LocalizedMessage>> entry : result.messages.entrySet()) {
+            final List<LocalizedMessage> messages = new ArrayList<>(entry.getValue().size());
+            for (LocalizedMessage message : entry.getValue()) {
+                messages.add(relocate(entry.getKey(), message, lineDelta));
+            }
+            relocatedMessages.put(entry.getKey(), messages);
+        }
+        record(fingerprint, new RuleResult(ruleLine, relocatedMessages));
+        return relocatedMessages;
+    }
+
+    public void put(String fingerprint, int ruleLine, Map<AGrammarConventionCheck, List<LocalizedMessage>> messages) {
+        record(fingerprint, new RuleResult(ruleLine, messages));
+    }
+
+    /**
+     * Merges the given result with the one already recorded for the same rule in case the rules of a file are walked
+     * in several passes.
+     */
+    private void record(String fingerprint, RuleResult result) {
+        final RuleResult recordedResult = currentResults.get(fingerprint);
+        if (recordedResult == null || recordedResult.line != result.line) {
+            currentResults.put(fingerprint, result);
+        } else {
+            final Map<AGrammarConventionCheck, List<LocalizedMessage>> messages =
+                    new HashMap<>(recordedResult.messages);
+            messages.putAll(result.messages);
+            currentResults.put(fingerprint, new RuleResult(result.line, messages));
+        }
+    }
+
+    /**
+     * LocalizedMessage does not expose its arguments, the already formatted message is used as custom message
+     * instead.
+     */
+    private LocalizedMessage relocate(AGrammarConventionCheck check, LocalizedMessage message, int lineDelta) {
+        if (message.getLineNo() == 0) {
+            return message;
+        }
+        return new LocalizedMessage(message.getLineNo() + lineDelta, message.getColumnNo(), null, message.getKey(),
+                new Object[]{message.getMessage()}, message.getSeverityLevel(), message.getModuleId(),
+                check.getClass(), "{0}");
+    }
+
+    /**
+     * Returns the fingerprint of the given RULE subtree which comprises the structure, token types and texts of the
+     * subtree, the positions of its tokens relative to the line of the rule as well as the source lines it spans.
+     */
+    public static String fingerprint(GrammarAST rule, FileContents contents) {
+        final StringBuilder stringBuilder = new StringBuilder();
+        final int[] lineRange = new int[]{rule.getLine(), rule.getLine()};
+        appendNode(rule, rule.getLine(), stringBuilder, lineRange);
+        final String[] lines = contents.getLines();
+        for (int i = Math.max(lineRange[0], 1); i <= lineRange[1] && i <= lines.length; ++i) {
+            stringBuilder.append('\n').append(lines[i - 1]);
+        }
+        return ContentHash.ofText(stringBuilder.toString());
+    }
+
+    private static void appendNode(GrammarAST ast, int ruleLine, StringBuilder stringBuilder, int[] lineRange) {
+        final int line = ast.getLine();
+        stringBuilder.append('(').append(ast.getType()).append(' ').append(ast.getText());
+        if (line > 0) {
+            stringBuilder.append(' ').append(line - ruleLine).append(':').append(ast.getCharPositionInLine());
+            lineRange[0] = Math.min(lineRange[0], line);
+            lineRange[1] = Math.max(lineRange[1], line);
+        }
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            appendNode((GrammarAST) ast.getChild(i), ruleLine, stringBuilder, lineRange);
+        }
+        stringBuilder.append(')');
+    }
+
+    /**
+     * The violations of the rule-local checks for a rule starting at the given line.
+     */
+    private static final class RuleResult
+    {
+        private final int line;
+        private final Map<AGrammarConventionCheck, List<LocalizedMessage>> messages;
+
+        private RuleResult(int theLine, Map<AGrammarConventionCheck, List<LocalizedMessage>> theMessages) {
+            line = theLine;
+            messages = theMessages;
+        }
+    }
+}
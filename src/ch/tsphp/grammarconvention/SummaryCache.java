@@ -0,0 +1,71 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Persistent cache for the summaries of {@link ICrossFileCheck}s, keyed by check and content hash of the file.
+ * <p/>
+ * Entries which cannot be read (corrupted, written by an incompatible version of the check etc.) are treated as
+ * missing and removed.
+ */
+public class SummaryCache
+{
+    private final File directory;
+
+    public SummaryCache(File cacheDirectory) {
+        directory = cacheDirectory;
+    }
+
+    /**
+     * Returns the cached summary or null if there is none for the given check and content hash.
+     */
+    public Serializable get(ICrossFileCheck<?> check, String contentHash) {
+        final File file = getEntry(check, contentHash);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            //corrupted or stale entry, will be rebuilt
+            file.delete();
+            return null;
+        }
+    }
+
+    public void put(ICrossFileCheck<?> check, String contentHash, Serializable summary) throws IOException {
+        final File file = getEntry(check, contentHash);
+        final File checkDirectory = file.getParentFile();
+        if (!checkDirectory.isDirectory() && !checkDirectory.mkdirs()) {
+            throw new IOException("Could not create the cache directory " + checkDirectory.getPath());
+        }
+        final File tmpFile = new File(checkDirectory, file.getName() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeObject(summary);
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Could not write the cache entry " + file.getPath());
+            }
+        }
+    }
+
+    private File getEntry(ICrossFileCheck<?> check, String contentHash) {
+        return new File(new File(directory, check.getClass().getName()), contentHash + ".ser");
+    }
+}
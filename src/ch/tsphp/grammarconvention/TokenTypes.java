@@ -16,17 +16,18 @@ public final class TokenTypes
 {
 
     private static final Map<String, Integer> TOKEN_NAMES_TO_IDS = new HashMap<>();
-    private static final Map<Integer, String> TOKEN_IDS_TO_NAMES = new HashMap<>();
+    private static final String[] TOKEN_IDS_TO_NAMES;
 
     static {
         String[] tokenNames = ANTLRParser.tokenNames;
+        TOKEN_IDS_TO_NAMES = new String[tokenNames.length];
         for (String tokenName : tokenNames) {
             if (!tokenName.startsWith("<")) {
                 try {
                     Field field = ANTLRParser.class.getField(tokenName);
                     int tokenId = field.getInt(null);
                     TOKEN_NAMES_TO_IDS.put(tokenName, tokenId);
-                    TOKEN_IDS_TO_NAMES.put(tokenId, tokenName);
+                    TOKEN_IDS_TO_NAMES[tokenId] = tokenName;
                 } catch (NoSuchFieldException | IllegalAccessException e) {
                     //should never happen
                 }
@@ -42,6 +43,9 @@ public final class TokenTypes
     }
 
     public static String getTokenName(int tokenId) {
-        return TOKEN_IDS_TO_NAMES.get(tokenId);
+        if (tokenId < 0 || tokenId >= TOKEN_IDS_TO_NAMES.length) {
+            return null;
+        }
+        return TOKEN_IDS_TO_NAMES[tokenId];
     }
 }
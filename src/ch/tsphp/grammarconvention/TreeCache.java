@@ -0,0 +1,148 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import ch.tsphp.grammarconvention.compact.CompactGrammarTree;
+import org.antlr.Tool;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of parsed grammar trees in the binary format of {@link CompactGrammarTree}, keyed by content hash
+ * of the file and version of the ANTLR tool which parsed it.
+ * <p/>
+ * The trees do not depend on the configuration of the checks, hence the cache stays valid if the configuration
+ * changes. An entry consists of a magic number, the format version, the ANTLR version, the content hash, the length
+ * and CRC32 of the tree data and the tree data. Entries are memory-mapped on load; entries which do not match
+ * (corrupted, truncated, written by another format or ANTLR version) are treated as missing and removed.
+ */
+public class TreeCache
+{
+    private static final int MAGIC = 0x47435431;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CHUNK_SIZE = 8192;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final String antlrVersion;
+
+    public TreeCache(File cacheDirectory) {
+        directory = cacheDirectory;
+        antlrVersion = new Tool().VERSION;
+    }
+
+    /**
+     * Returns the cached tree or null if there is no valid entry for the given content hash.
+     */
+    public CompactGrammarTree get(String contentHash) {
+        final File file = getEntry(contentHash);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return read(file, contentHash);
+        } catch (IOException | RuntimeException ex) {
+            //corrupted or stale entry, will be rebuilt
+            file.delete();
+            return null;
+        }
+    }
+
+    private CompactGrammarTree read(File file, String contentHash) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !readString(buffer).equals(antlrVersion) || !readString(buffer).equals(contentHash)) {
+                throw new IOException("Stale tree cache entry " + file.getPath());
+            }
+            final int length = buffer.getInt();
+            final long checksum = buffer.getLong();
+            if (length != buffer.remaining()) {
+                throw new IOException("Truncated tree cache entry " + file.getPath());
+            }
+            final ByteBuffer data = buffer.slice();
+            if (checksum(data.duplicate()) != checksum) {
+                throw new IOException("Corrupted tree cache entry " + file.getPath());
+            }
+            return CompactGrammarTree.readFrom(data);
+        }
+    }
+
+    private long checksum(ByteBuffer data) {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        while (data.hasRemaining()) {
+            final int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    private String readString(ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    public void put(String contentHash, CompactGrammarTree tree) throws IOException {
+        final ByteArrayOutputStream treeBytes = new ByteArrayOutputStream();
+        try (DataOutputStream treeOut = new DataOutputStream(treeBytes)) {
+            tree.writeTo(treeOut);
+        }
+        final byte[] data = treeBytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the cache directory " + directory.getPath());
+        }
+        final File file = getEntry(contentHash);
+        final File tmpFile = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, antlrVersion);
+            writeString(out, contentHash);
+            out.writeInt(data.length);
+            out.writeLong(crc.getValue());
+            out.write(data);
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Could not write the cache entry " + file.getPath());
+            }
+        }
+    }
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private File getEntry(String contentHash) {
+        return new File(directory, contentHash + ".ast");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Index of known violations, each one represented by a 64 bit fingerprint of the check, the name of the file, the
+ * name of the enclosing rule and the normalised source line of the violation - but not its line number, hence the
+ * fingerprint stays the same if lines are inserted or removed above the violation.
+ * <p/>
+ * The fingerprints are kept in a sorted array (8 bytes per violation, looked up by binary search) and written as
+ * such; a fingerprint occurs as many times as the violation was reported.
+ */
+public final class ViolationBaseline
+{
+    private static final int MAGIC = 0x54534742;
+    private static final int VERSION = 1;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long[] fingerprints = new long[16];
+    private int size;
+    private boolean isSorted = true;
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void add(long fingerprint) {
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+        }
+        fingerprints[size++] = fingerprint;
+        isSorted = false;
+    }
+
+    /**
+     * Returns how many times the given fingerprint was added.
+     */
+    public synchronized int count(long fingerprint) {
+        sort();
+        int index = Arrays.binarySearch(fingerprints, 0, size, fingerprint);
+        if (index < 0) {
+            return 0;
+        }
+        while (index > 0 && fingerprints[index - 1] == fingerprint) {
+            --index;
+        }
+        int count = 0;
+        while (index + count < size && fingerprints[index + count] == fingerprint) {
+            ++count;
+        }
+        return count;
+    }
+
+    public synchronized void write(File file) throws IOException {
+        sort();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(size);
+            for (int i = 0; i < size; ++i) {
+                output.writeLong(fingerprints[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a baseline written by {@link #write(File)}.
+     *
+     * @throws IOException in case the file could not be read or is not a baseline
+     */
+    public static ViolationBaseline read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a violation baseline of version " + VERSION);
+            }
+            final ViolationBaseline baseline = new ViolationBaseline();
+            baseline.size = input.readInt();
+            baseline.fingerprints = new long[Math.max(baseline.size, 1)];
+            for (int i = 0; i < baseline.size; ++i) {
+                baseline.fingerprints[i] = input.readLong();
+            }
+            baseline.isSorted = false;
+            return baseline;
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a violation (64 bit FNV-1a of the given parts), whitespace in the snippet is
+     * normalised - leading and trailing whitespace is ignored and other whitespace sequences count as one space.
+     */
+    public static long fingerprint(String checkName, String fileName, String ruleName, String snippet) {
+        long hash = hash(FNV_OFFSET_BASIS, checkName);
+        hash = hash(hash, fileName);
+        hash = hash(hash, ruleName);
+        boolean isPendingSpace = false;
+        boolean hasContent = false;
+        final int length = snippet.length();
+        for (int i = 0; i < length; ++i) {
+            final char character = snippet.charAt(i);
+            if (Character.isWhitespace(character)) {
+                isPendingSpace = hasContent;
+            } else {
+                if (isPendingSpace) {
+                    hash = (hash ^ ' ') * FNV_PRIME;
+                    isPendingSpace = false;
+                }
+                hash = (hash ^ character) * FNV_PRIME;
+                hasContent = true;
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String text) {
+        long result = hash;
+        final int length = text.length();
+        for (int i = 0; i < length; ++i) {
+            result = (result ^ text.charAt(i)) * FNV_PRIME;
+        }
+        //separator, otherwise ("ab", "c") and ("a", "bc") would have the same fingerprint
+        return (result ^ 0xffff) * FNV_PRIME;
+    }
+
+    private void sort() {
+        if (!isSorted) {
+            Arrays.sort(fingerprints, 0, size);
+            isSorted = true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention;
+
+import com.puppycrawl.tools.checkstyle.api.Utils;
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Creates the {@link IWalkRecorder} of the walker.
+ */
+public final class WalkRecorders
+{
+    private static final String FLIGHT_RECORDER_CLASS = "jdk.jfr.FlightRecorder";
+    private static final String JFR_WALK_RECORDER_CLASS = "ch.tsphp.grammarconvention.jfr.JfrWalkRecorder";
+
+    private static final IWalkRecorder DISABLED_RECORDER = new DisabledWalkRecorder();
+
+    private WalkRecorders() {
+    }
+
+    /**
+     * Returns a recorder which emits JDK Flight Recorder events if the JVM supports it (Java 8u262 and newer) and
+     * the JFR events were compiled, otherwise a recorder which is never enabled.
+     * <p/>
+     * The JFR classes are loaded via reflection so that the walker still runs on JVMs without JFR.
+     */
+    public static IWalkRecorder create() {
+        try {
+            Class.forName(FLIGHT_RECORDER_CLASS);
+            return (IWalkRecorder) Class.forName(JFR_WALK_RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return DISABLED_RECORDER;
+        } catch (ReflectiveOperationException ex) {
+            Utils.getExceptionLogger().debug("Could not create the JFR walk recorder", ex);
+            return DISABLED_RECORDER;
+        }
+    }
+
+    /**
+     * Returns a recorder which is never enabled.
+     */
+    public static IWalkRecorder disabled() {
+        return DISABLED_RECORDER;
+    }
+
+    /**
+     * Recorder which is used if JFR is not available.
+     */
+    private static final class DisabledWalkRecorder implements IWalkRecorder
+    {
+        private static final IWalkEvent NO_EVENT = new IWalkEvent()
+        {
+            @Override
+            public void commit() {
+            }
+        };
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isVisitEnabled() {
+            return false;
+        }
+
+        @Override
+        public IWalkEvent beginParse(String fileName, int numberOfLines) {
+            return NO_EVENT;
+        }
+
+        @Override
+        public IWalkEvent beginWalk(String fileName, int numberOfNodes, int numberOfChecks) {
+            return NO_EVENT;
+        }
+
+        @Override
+        public IWalkEvent beginCheckPhase(String fileName, AGrammarConventionCheck check, String phase) {
+            return NO_EVENT;
+        }
+
+        @Override
+        public IWalkEvent beginVisit(String fileName, AGrammarConventionCheck check, GrammarAST ast) {
+            return NO_EVENT;
+        }
+    }
+}
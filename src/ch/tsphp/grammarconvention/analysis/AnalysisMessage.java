@@ -0,0 +1,134 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An error or warning the ANTLR tool reported during the analysis of a grammar.
+ */
+public final class AnalysisMessage implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kind of the message, corresponds to the message classes of the ANTLR tool.
+     */
+    public enum Kind
+    {
+        /**
+         * LeftRecursionCyclesMessage, the arguments are the names of the rules of the cycle.
+         */
+        LEFT_RECURSION,
+        /**
+         * NonRegularDecisionMessage.
+         */
+        NON_LL_STAR,
+        /**
+         * GrammarNonDeterminismMessage.
+         */
+        NONDETERMINISM,
+        /**
+         * GrammarUnreachableAltsMessage, the arguments are the unreachable alternatives, respectively the names of
+         * the tokens which can never be matched in case of the Tokens rule of a lexer.
+         */
+        UNREACHABLE_ALTS,
+        /**
+         * GrammarAnalysisAbortedMessage, e.g. if the time limit for the decision was exceeded.
+         */
+        ANALYSIS_ABORTED,
+        /**
+         * RecursionOverflowMessage.
+         */
+        RECURSION_OVERFLOW,
+        /**
+         * GrammarInsufficientPredicatesMessage.
+         */
+        INSUFFICIENT_PREDICATES,
+        /**
+         * GrammarDanglingStateMessage.
+         */
+        DANGLING_STATE,
+        /**
+         * Any other message.
+         */
+        OTHER
+    }
+
+    private final Kind kind;
+    private final boolean isError;
+    private final boolean isLexerMessage;
+    private final int decisionNumber;
+    private final String ruleName;
+    private final int line;
+    private final int column;
+    private final List<String> arguments;
+    private final String text;
+
+    public AnalysisMessage(Kind theKind, boolean error, boolean isLexer, int theDecisionNumber, String theRuleName,
+            int theLine, int theColumn, List<String> theArguments, String theText) {
+        kind = theKind;
+        isError = error;
+        isLexerMessage = isLexer;
+        decisionNumber = theDecisionNumber;
+        ruleName = theRuleName;
+        line = theLine;
+        column = theColumn;
+        arguments = Collections.unmodifiableList(theArguments);
+        text = theText;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isError() {
+        return isError;
+    }
+
+    /**
+     * Returns true if the message was reported for the (implicit) lexer of the grammar.
+     */
+    public boolean isLexerMessage() {
+        return isLexerMessage;
+    }
+
+    /**
+     * Returns the number of the decision the message refers to or 0 if it does not refer to a decision.
+     */
+    public int getDecisionNumber() {
+        return decisionNumber;
+    }
+
+    /**
+     * Returns the name of the rule the message refers to, null if unknown.
+     */
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the message as the ANTLR tool formats it.
+     */
+    public String getText() {
+        return text;
+    }
+}
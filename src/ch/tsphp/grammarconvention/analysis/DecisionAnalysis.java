@@ -0,0 +1,91 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import java.io.Serializable;
+
+/**
+ * The lookahead DFA ANTLR created for a decision.
+ */
+public final class DecisionAnalysis implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final boolean isLexerDecision;
+    private final int decisionNumber;
+    private final String ruleName;
+    private final int line;
+    private final int column;
+    private final int numberOfStates;
+    private final int maxLookahead;
+    private final boolean isCyclic;
+    private final boolean isNonLLStar;
+    private final boolean isTokensRuleDecision;
+
+    public DecisionAnalysis(boolean isLexer, int theDecisionNumber, String theRuleName, int theLine, int theColumn,
+            int theNumberOfStates, int theMaxLookahead, boolean cyclic, boolean nonLLStar, boolean tokensRule) {
+        isLexerDecision = isLexer;
+        decisionNumber = theDecisionNumber;
+        ruleName = theRuleName;
+        line = theLine;
+        column = theColumn;
+        numberOfStates = theNumberOfStates;
+        maxLookahead = theMaxLookahead;
+        isCyclic = cyclic;
+        isNonLLStar = nonLLStar;
+        isTokensRuleDecision = tokensRule;
+    }
+
+    /**
+     * Returns true if the decision belongs to the (implicit) lexer of the grammar.
+     */
+    public boolean isLexerDecision() {
+        return isLexerDecision;
+    }
+
+    public int getDecisionNumber() {
+        return decisionNumber;
+    }
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getNumberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * Returns the maximum lookahead depth of the decision, Integer.MAX_VALUE if the DFA is cyclic (LL(*)).
+     */
+    public int getMaxLookahead() {
+        return maxLookahead;
+    }
+
+    public boolean isCyclic() {
+        return isCyclic;
+    }
+
+    public boolean isNonLLStar() {
+        return isNonLLStar;
+    }
+
+    /**
+     * Returns true if this is the decision of the artificial Tokens rule of a lexer (prediction of the next token).
+     */
+    public boolean isTokensRuleDecision() {
+        return isTokensRuleDecision;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of the analysis of a grammar by the ANTLR tool: the lookahead DFAs of the decisions and the messages
+ * the tool reported.
+ */
+public final class GrammarAnalysis implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final List<DecisionAnalysis> decisions;
+    private final List<AnalysisMessage> messages;
+
+    public GrammarAnalysis(List<DecisionAnalysis> theDecisions, List<AnalysisMessage> theMessages) {
+        decisions = Collections.unmodifiableList(new ArrayList<>(theDecisions));
+        messages = Collections.unmodifiableList(new ArrayList<>(theMessages));
+    }
+
+    public List<DecisionAnalysis> getDecisions() {
+        return decisions;
+    }
+
+    public List<AnalysisMessage> getMessages() {
+        return messages;
+    }
+
+    public List<AnalysisMessage> getMessages(AnalysisMessage.Kind kind) {
+        final List<AnalysisMessage> messagesOfKind = new ArrayList<>();
+        for (AnalysisMessage message : messages) {
+            if (message.getKind() == kind) {
+                messagesOfKind.add(message);
+            }
+        }
+        return messagesOfKind;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import org.antlr.tool.GrammarAST;
+
+import java.io.File;
+
+/**
+ * Gives the checks of one walk access to the analysis of the walked grammar.
+ * <p/>
+ * The analysis is only run when a check asks for it the first time, subsequent requests return the same result. The
+ * content of the file is joined only then as well, walks without analysis do not copy it.
+ */
+public final class GrammarAnalysisRequest
+{
+    private final GrammarAnalysisService service;
+    private final File file;
+    private final FileContents contents;
+    private final GrammarAST rootAst;
+    private GrammarAnalysis analysis;
+
+    public GrammarAnalysisRequest(GrammarAnalysisService theService, File theFile, FileContents theContents,
+            GrammarAST theRootAst) {
+        service = theService;
+        file = theFile;
+        contents = theContents;
+        rootAst = theRootAst;
+    }
+
+    public synchronized GrammarAnalysis get() {
+        if (analysis == null) {
+            analysis = service.analyze(file, joinLines(contents.getLines()), rootAst);
+        }
+        return analysis;
+    }
+
+    private static String joinLines(String[] lines) {
+        final StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+}
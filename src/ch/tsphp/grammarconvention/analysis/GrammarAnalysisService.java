@@ -0,0 +1,246 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import ch.tsphp.grammarconvention.ContentHash;
+import ch.tsphp.grammarconvention.GrammarImports;
+import org.antlr.grammar.v3.ANTLRLexer;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.GrammarAST;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the grammar analysis of the ANTLR tool (lookahead DFA construction) on behalf of checks and memoizes the
+ * results.
+ * <p/>
+ * The analysis is expensive, hence results are cached in memory and - if a cache directory was specified - on disk.
+ * They are keyed by the content hash of the grammar, the content hashes of all grammars it imports (transitively)
+ * and the time limit per decision, so that a changed delegate grammar invalidates the result of its delegators.
+ * <p/>
+ * Thread-safe, the analyses themselves are serialised since the ANTLR tool uses static state.
+ */
+public class GrammarAnalysisService
+{
+    /**
+     * The time limit in milliseconds the ANTLR tool uses per decision by default.
+     */
+    public static final int DEFAULT_DECISION_TIME_LIMIT = 1000;
+
+    private static final int MEMORY_CACHE_SIZE = 64;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Object ANALYSIS_LOCK = new Object();
+
+    private final Map<String, GrammarAnalysis> memoryCache = new LinkedHashMap<String, GrammarAnalysis>(
+            MEMORY_CACHE_SIZE, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GrammarAnalysis> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    private int decisionTimeLimit = DEFAULT_DECISION_TIME_LIMIT;
+    private File cacheDirectory;
+    private int numberOfAnalyses;
+
+    /**
+     * Defines how many milliseconds the ANTLR tool may spend on the lookahead DFA of a single decision before it
+     * aborts its analysis (reported as {@link AnalysisMessage.Kind#ANALYSIS_ABORTED}).
+     */
+    public synchronized void setDecisionTimeLimit(int milliseconds) {
+        decisionTimeLimit = milliseconds;
+    }
+
+    /**
+     * Defines the directory in which analysis results are cached between runs.
+     */
+    public synchronized void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Returns how many analyses were actually run (i.e. neither found in memory nor on disk).
+     */
+    public synchronized int getNumberOfAnalyses() {
+        return numberOfAnalyses;
+    }
+
+    /**
+     * Returns the analysis of the given grammar.
+     *
+     * @param file    the grammar file, its folder is used to resolve imported grammars
+     * @param content the content of the grammar file
+     * @param rootAst the parsed content, used to find the imported grammars
+     */
+    public GrammarAnalysis analyze(File file, String content, GrammarAST rootAst) {
+        final int timeLimit;
+        final File directory;
+        synchronized (this) {
+            timeLimit = decisionTimeLimit;
+            directory = cacheDirectory;
+        }
+        final String key = getKey(file, content, rootAst, timeLimit);
+        GrammarAnalysis analysis = getFromMemory(key);
+        if (analysis != null) {
+            return analysis;
+        }
+        if (directory != null) {
+            analysis = readEntry(new File(directory, key + ".ser"));
+        }
+        if (analysis == null) {
+            synchronized (ANALYSIS_LOCK) {
+                analysis = new GrammarAnalyzer().analyze(file, content, timeLimit);
+            }
+            synchronized (this) {
+                ++numberOfAnalyses;
+            }
+            if (directory != null) {
+                writeEntry(directory, key, analysis);
+            }
+        }
+        synchronized (this) {
+            memoryCache.put(key, analysis);
+        }
+        return analysis;
+    }
+
+    private synchronized GrammarAnalysis getFromMemory(String key) {
+        return memoryCache.get(key);
+    }
+
+    private String getKey(File file, String content, GrammarAST rootAst, int timeLimit) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(timeLimit).append('|').append(ContentHash.ofText(content));
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final Set<String> visited = new HashSet<>();
+        visited.add(file.getName());
+        appendImports(builder, directory, getImportedGrammars(rootAst), visited);
+        return ContentHash.ofText(builder.toString());
+    }
+
+    private void appendImports(StringBuilder builder, File directory, List<String> importedGrammars,
+            Set<String> visited) {
+        for (String grammarName : importedGrammars) {
+            final String fileName = grammarName + ".g";
+            if (visited.add(fileName)) {
+                builder.append('|').append(grammarName).append(':');
+                final File importedFile = new File(directory, fileName);
+                String importedContent = null;
+                if (importedFile.isFile()) {
+                    try {
+                        importedContent = new String(Files.readAllBytes(importedFile.toPath()), UTF8);
+                    } catch (IOException ex) {
+                        //treated as missing, the ANTLR tool will report it during the analysis
+                    }
+                }
+                if (importedContent == null) {
+                    builder.append("missing");
+                } else {
+                    builder.append(ContentHash.ofText(importedContent));
+                    appendImports(builder, directory, getImportedGrammars(parse(importedFile, importedContent)), visited);
+                }
+            }
+        }
+    }
+
+    private GrammarAST parse(File file, String content) {
+        final String fileName = file.getName();
+        final ANTLRLexer lexer = new ANTLRLexer(new ANTLRStringStream(content));
+        lexer.setFileName(fileName);
+        final ANTLRParser parser = ANTLRParser.createParser(new CommonTokenStream(lexer));
+        parser.setFileName(fileName);
+        final Grammar grammar = new Grammar(GrammarImports.createTool(file));
+        grammar.setFileName(fileName);
+        try {
+            return parser.grammar_(grammar).getTree();
+        } catch (RecognitionException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private List<String> getImportedGrammars(GrammarAST rootAst) {
+        final List<String> importedGrammars = new ArrayList<>();
+        if (rootAst != null) {
+            final int childCount = rootAst.getChildCount();
+            for (int i = 0; i < childCount; ++i) {
+                final GrammarAST child = (GrammarAST) rootAst.getChild(i);
+                if (child.getType() == ANTLRParser.IMPORT) {
+                    addImportedGrammars(child, importedGrammars);
+                }
+            }
+        }
+        return importedGrammars;
+    }
+
+    private void addImportedGrammars(GrammarAST importAst, List<String> importedGrammars) {
+        final int childCount = importAst.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            final GrammarAST delegate = (GrammarAST) importAst.getChild(i);
+            if (delegate.getType() == ANTLRParser.ASSIGN) {
+                //label=Grammar
+                importedGrammars.add(delegate.getChild(1).getText());
+            } else {
+                importedGrammars.add(delegate.getText());
+            }
+        }
+    }
+
+    private GrammarAnalysis readEntry(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (GrammarAnalysis) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            //corrupted or stale entry, will be rebuilt
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeEntry(File directory, String key, GrammarAnalysis analysis) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        final File file = new File(directory, key + ".ser");
+        final File tmpFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeObject(analysis);
+        } catch (IOException ex) {
+            //the cache is an optimisation only, the analysis is simply run again next time
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+            }
+        }
+    }
+}
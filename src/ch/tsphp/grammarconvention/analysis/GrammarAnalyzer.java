@@ -0,0 +1,274 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.analysis;
+
+import ch.tsphp.grammarconvention.GrammarImports;
+import org.antlr.Tool;
+import org.antlr.analysis.DFA;
+import org.antlr.analysis.DecisionProbe;
+import org.antlr.misc.BitSet;
+import org.antlr.tool.ANTLRErrorListener;
+import org.antlr.tool.CompositeGrammar;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.GrammarAST;
+import org.antlr.tool.GrammarAnalysisAbortedMessage;
+import org.antlr.tool.GrammarDanglingStateMessage;
+import org.antlr.tool.GrammarInsufficientPredicatesMessage;
+import org.antlr.tool.GrammarNonDeterminismMessage;
+import org.antlr.tool.GrammarUnreachableAltsMessage;
+import org.antlr.tool.LeftRecursionCyclesMessage;
+import org.antlr.tool.Message;
+import org.antlr.tool.NonRegularDecisionMessage;
+import org.antlr.tool.RecursionOverflowMessage;
+import org.antlr.tool.Rule;
+import org.antlr.tool.ToolMessage;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the analysis of the ANTLR tool for one grammar (and its implicit lexer in case of a combined grammar) the same
+ * way org.antlr.Tool does before generating code and collects the lookahead DFAs as well as the reported messages.
+ * <p/>
+ * Not thread-safe, the ANTLR tool uses static state (e.g. the time limit per decision). The error state which the
+ * ErrorManager keeps per thread is reset before and restored after each analysis - ANTLR skips parts of the analysis
+ * if errors were reported before (e.g. a left recursion), also the ones reported for another grammar.
+ */
+class GrammarAnalyzer implements ANTLRErrorListener
+{
+    private final List<DecisionAnalysis> decisions = new ArrayList<>();
+    private final List<AnalysisMessage> messages = new ArrayList<>();
+    private final Set<String> reportedMessages = new HashSet<>();
+    private boolean isAnalysingLexer;
+
+    public GrammarAnalysis analyze(File file, String content, int decisionTimeLimit) {
+        final ANTLRErrorListener previousListener = ErrorManager.getErrorListener();
+        final ErrorManager.ErrorState errorState = ErrorManager.getErrorState();
+        final ErrorManager.ErrorState previousErrorState = copy(errorState);
+        final int previousTimeLimit = DFA.MAX_TIME_PER_DFA_CREATION;
+        //ErrorManager.resetErrorState would also remove the listeners of the other threads
+        restore(errorState, new ErrorManager.ErrorState());
+        ErrorManager.setErrorListener(this);
+        DFA.MAX_TIME_PER_DFA_CREATION = decisionTimeLimit;
+        try {
+            final Tool tool = GrammarImports.createTool(file);
+            final CompositeGrammar composite = new CompositeGrammar();
+            final Grammar grammar = new Grammar(tool, file.getPath(), composite);
+            composite.setDelegationRoot(grammar);
+            grammar.parseAndBuildAST(new StringReader(content));
+            isAnalysingLexer = grammar.type == Grammar.LEXER;
+            analyze(grammar);
+
+            final String lexerGrammarContent = grammar.getLexerGrammar();
+            if (grammar.type == Grammar.COMBINED && lexerGrammarContent != null) {
+                isAnalysingLexer = true;
+                final Grammar lexerGrammar = new Grammar(tool);
+                lexerGrammar.implicitLexer = true;
+                lexerGrammar.setFileName(file.getPath());
+                lexerGrammar.importTokenVocabulary(grammar);
+                lexerGrammar.parseAndBuildAST(new StringReader(lexerGrammarContent));
+                analyze(lexerGrammar);
+            }
+        } finally {
+            DFA.MAX_TIME_PER_DFA_CREATION = previousTimeLimit;
+            ErrorManager.setErrorListener(previousListener);
+            restore(errorState, previousErrorState);
+        }
+        return new GrammarAnalysis(decisions, messages);
+    }
+
+    private static ErrorManager.ErrorState copy(ErrorManager.ErrorState errorState) {
+        final ErrorManager.ErrorState copy = new ErrorManager.ErrorState();
+        restore(copy, errorState);
+        return copy;
+    }
+
+    private static void restore(ErrorManager.ErrorState errorState, ErrorManager.ErrorState previousErrorState) {
+        errorState.errors = previousErrorState.errors;
+        errorState.warnings = previousErrorState.warnings;
+        errorState.infos = previousErrorState.infos;
+        errorState.errorMsgIDs = (BitSet) previousErrorState.errorMsgIDs.clone();
+        errorState.warningMsgIDs = (BitSet) previousErrorState.warningMsgIDs.clone();
+    }
+
+    /**
+     * Analyzes the given grammar, an exception of the ANTLR tool is reported as error of the analysis.
+     */
+    private void analyze(Grammar grammar) {
+        try {
+            analyzeGrammar(grammar);
+        } catch (RuntimeException ex) {
+            messages.add(new AnalysisMessage(AnalysisMessage.Kind.OTHER, true, isAnalysingLexer, 0, null, 0, -1,
+                    Collections.<String>emptyList(), "The analysis of the ANTLR tool failed: " + ex));
+        }
+    }
+
+    private void analyzeGrammar(Grammar grammar) {
+        final CompositeGrammar composite = grammar.composite;
+        try {
+            composite.assignTokenTypes();
+        } catch (org.antlr.runtime.RecognitionException ex) {
+            ErrorManager.error(ErrorManager.MSG_INTERNAL_ERROR, ex);
+            return;
+        }
+        grammar.addRulesForSyntacticPredicates();
+        composite.defineGrammarSymbols();
+        composite.createNFAs();
+        grammar.createLookaheadDFAs(false);
+
+        final int numberOfDecisions = grammar.getNumberOfDecisions();
+        for (int i = 1; i <= numberOfDecisions; ++i) {
+            final DFA dfa = grammar.getLookaheadDFA(i);
+            if (dfa != null) {
+                final GrammarAST block = grammar.getDecisionBlockAST(i);
+                decisions.add(new DecisionAnalysis(isAnalysingLexer, i, getRuleName(dfa), block.getLine(),
+                        block.getCharPositionInLine(), dfa.getNumberOfStates(), dfa.getMaxLookaheadDepth(),
+                        dfa.isCyclic(), dfa.probe.isNonLLStarDecision(), dfa.isTokensRuleDecision()));
+            }
+        }
+    }
+
+    private String getRuleName(DFA dfa) {
+        final Rule rule = dfa.getNFADecisionStartState().enclosingRule;
+        if (rule == null) {
+            return null;
+        }
+        return rule.name;
+    }
+
+    @Override
+    public void info(String text) {
+        //not of interest
+    }
+
+    @Override
+    public void error(Message message) {
+        add(message, true);
+    }
+
+    @Override
+    public void warning(Message message) {
+        add(message, false);
+    }
+
+    @Override
+    public void error(ToolMessage message) {
+        add(message, true);
+    }
+
+    private void add(Message message, boolean isError) {
+        final String text = message.toString();
+        if (!reportedMessages.add(isAnalysingLexer + text)) {
+            //e.g. left recursion is reported once per analysis phase
+            return;
+        }
+        if (message instanceof LeftRecursionCyclesMessage) {
+            addLeftRecursionCycles((LeftRecursionCyclesMessage) message, isError, text);
+            return;
+        }
+        final DecisionProbe probe = getProbe(message);
+        if (probe == null) {
+            messages.add(new AnalysisMessage(AnalysisMessage.Kind.OTHER, isError, isAnalysingLexer, 0, null,
+                    message.line, message.column, Collections.<String>emptyList(), text));
+        } else {
+            final DFA dfa = probe.dfa;
+            final GrammarAST decisionAst = dfa.getDecisionASTNode();
+            messages.add(new AnalysisMessage(getKind(message), isError, isAnalysingLexer, dfa.getDecisionNumber(),
+                    getRuleName(dfa), decisionAst.getLine(), decisionAst.getCharPositionInLine(),
+                    getArguments(message), text));
+        }
+    }
+
+    private void addLeftRecursionCycles(LeftRecursionCyclesMessage message, boolean isError, String text) {
+        for (Collection<? extends Rule> cycle : message.cycles) {
+            final List<String> ruleNames = new ArrayList<>();
+            int line = 0;
+            int column = -1;
+            for (Rule rule : cycle) {
+                ruleNames.add(rule.name);
+                if (line == 0 && rule.tree != null) {
+                    line = rule.tree.getLine();
+                    column = rule.tree.getCharPositionInLine();
+                }
+            }
+            String ruleName = null;
+            if (!ruleNames.isEmpty()) {
+                ruleName = ruleNames.get(0);
+            }
+            messages.add(new AnalysisMessage(AnalysisMessage.Kind.LEFT_RECURSION, isError, isAnalysingLexer, 0,
+                    ruleName, line, column, ruleNames, text));
+        }
+    }
+
+    private List<String> getArguments(Message message) {
+        final List<String> arguments = new ArrayList<>();
+        if (message instanceof GrammarUnreachableAltsMessage) {
+            final GrammarUnreachableAltsMessage unreachableAltsMessage = (GrammarUnreachableAltsMessage) message;
+            final boolean isTokensRule = unreachableAltsMessage.probe.dfa.isTokensRuleDecision();
+            for (Integer alt : unreachableAltsMessage.alts) {
+                if (isTokensRule) {
+                    arguments.add(unreachableAltsMessage.probe.getTokenNameForTokensRuleAlt(alt));
+                } else {
+                    arguments.add(alt.toString());
+                }
+            }
+        }
+        return arguments;
+    }
+
+    private AnalysisMessage.Kind getKind(Message message) {
+        final AnalysisMessage.Kind kind;
+        if (message instanceof NonRegularDecisionMessage) {
+            kind = AnalysisMessage.Kind.NON_LL_STAR;
+        } else if (message instanceof GrammarNonDeterminismMessage) {
+            kind = AnalysisMessage.Kind.NONDETERMINISM;
+        } else if (message instanceof GrammarUnreachableAltsMessage) {
+            kind = AnalysisMessage.Kind.UNREACHABLE_ALTS;
+        } else if (message instanceof GrammarAnalysisAbortedMessage) {
+            kind = AnalysisMessage.Kind.ANALYSIS_ABORTED;
+        } else if (message instanceof RecursionOverflowMessage) {
+            kind = AnalysisMessage.Kind.RECURSION_OVERFLOW;
+        } else if (message instanceof GrammarInsufficientPredicatesMessage) {
+            kind = AnalysisMessage.Kind.INSUFFICIENT_PREDICATES;
+        } else if (message instanceof GrammarDanglingStateMessage) {
+            kind = AnalysisMessage.Kind.DANGLING_STATE;
+        } else {
+            kind = AnalysisMessage.Kind.OTHER;
+        }
+        return kind;
+    }
+
+    /**
+     * The decision related messages of the ANTLR tool have a public probe field but no common super type.
+     */
+    private DecisionProbe getProbe(Message message) {
+        DecisionProbe probe = null;
+        if (message instanceof NonRegularDecisionMessage) {
+            probe = ((NonRegularDecisionMessage) message).probe;
+        } else if (message instanceof GrammarNonDeterminismMessage) {
+            probe = ((GrammarNonDeterminismMessage) message).probe;
+        } else if (message instanceof GrammarUnreachableAltsMessage) {
+            probe = ((GrammarUnreachableAltsMessage) message).probe;
+        } else if (message instanceof GrammarAnalysisAbortedMessage) {
+            probe = ((GrammarAnalysisAbortedMessage) message).probe;
+        } else if (message instanceof RecursionOverflowMessage) {
+            probe = ((RecursionOverflowMessage) message).probe;
+        } else if (message instanceof GrammarInsufficientPredicatesMessage) {
+            probe = ((GrammarInsufficientPredicatesMessage) message).probe;
+        } else if (message instanceof GrammarDanglingStateMessage) {
+            probe = ((GrammarDanglingStateMessage) message).probe;
+        }
+        return probe;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Reports the constructs which make generated parsers backtrack: the option backtrack=true on grammar, rule and
+ * block level, backtracking without memoize=true (which can take exponential time) as well as rules and decisions
+ * with more syntactic predicates than the configured budget.
+ * <p/>
+ * By default only explicit syntactic predicates are counted. ANTLR adds an implicit one to every alternative but the
+ * last of a backtracking block; they are only evaluated where the LL(*) analysis fails and are hence only counted
+ * if countImplicitPredicates is set.
+ */
+public class BacktrackingCheck extends AGrammarConventionCheck implements ICompactTreeCheck
+{
+    private static final String BACKTRACK = "backtrack";
+    private static final String MEMOIZE = "memoize";
+
+    private boolean allowGrammarBacktrack;
+    private boolean allowRuleBacktrack = true;
+    private boolean requireMemoize = true;
+    private int maxSyntacticPredicatesPerRule = 5;
+    private int maxSyntacticPredicatesPerDecision = 2;
+    private boolean countImplicitPredicates;
+
+    private String grammarBacktrack;
+    private String grammarMemoize;
+
+    /**
+     * Defines whether backtrack=true is allowed in the options of the grammar (false by default).
+     */
+    public void setAllowGrammarBacktrack(boolean allow) {
+        allowGrammarBacktrack = allow;
+    }
+
+    /**
+     * Defines whether backtrack=true is allowed in the options of a rule or a block (true by default).
+     */
+    public void setAllowRuleBacktrack(boolean allow) {
+        allowRuleBacktrack = allow;
+    }
+
+    /**
+     * Defines whether backtracking needs to be combined with memoize=true (true by default).
+     */
+    public void setRequireMemoize(boolean require) {
+        requireMemoize = require;
+    }
+
+    public void setMaxSyntacticPredicatesPerRule(int max) {
+        maxSyntacticPredicatesPerRule = max;
+    }
+
+    public void setMaxSyntacticPredicatesPerDecision(int max) {
+        maxSyntacticPredicatesPerDecision = max;
+    }
+
+    /**
+     * Defines whether the syntactic predicates ANTLR adds to backtracking blocks count towards the budgets.
+     */
+    public void setCountImplicitPredicates(boolean count) {
+        countImplicitPredicates = count;
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[]{ANTLRParser.RULE};
+    }
+
+    @Override
+    public void beginTree(GrammarAST rootAst) {
+        grammarBacktrack = null;
+        grammarMemoize = null;
+        if (rootAst == null) {
+            return;
+        }
+        GrammarAST options = (GrammarAST) rootAst.getFirstChildWithType(ANTLRParser.OPTIONS);
+        if (options != null) {
+            grammarBacktrack = getOption(options, BACKTRACK);
+            grammarMemoize = getOption(options, MEMOIZE);
+            if ("true".equals(grammarBacktrack)) {
+                if (!allowGrammarBacktrack) {
+                    logIt(options.getLine(), "Grammar-level backtrack=true makes every decision which is not "
+                            + "LL(*) backtrack, enable backtracking only for the rules which need it.");
+                }
+                if (requireMemoize && !"true".equals(grammarMemoize)) {
+                    logIt(options.getLine(), "Grammar-level backtrack=true without memoize=true, parsing can take "
+                            + "exponential time.");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visitToken(GrammarAST ast) {
+        String ruleName = ast.getChild(0).getText();
+        GrammarAST options = (GrammarAST) ast.getFirstChildWithType(ANTLRParser.OPTIONS);
+        String memoize = grammarMemoize;
+        if (options != null) {
+            String ruleMemoize = getOption(options, MEMOIZE);
+            if (ruleMemoize != null) {
+                memoize = ruleMemoize;
+            }
+            if ("true".equals(getOption(options, BACKTRACK))) {
+                checkBacktrack(options.getLine(), "Rule '" + ruleName + "'", memoize);
+            }
+        }
+
+        GrammarAST block = (GrammarAST) ast.getFirstChildWithType(ANTLRParser.BLOCK);
+        if (block != null) {
+            int numberOfPredicates = checkBlock(block, ruleName, memoize);
+            if (numberOfPredicates > maxSyntacticPredicatesPerRule) {
+                logIt(ast.getLine(), "Rule '" + ruleName + "' has " + numberOfPredicates + " syntactic predicates "
+                        + "(max allowed is " + maxSyntacticPredicatesPerRule + ").");
+            }
+        }
+    }
+
+    /**
+     * Checks the given block and its nested blocks and returns the number of syntactic predicates they contain.
+     */
+    private int checkBlock(GrammarAST block, String ruleName, String ruleMemoize) {
+        String memoize = ruleMemoize;
+        int numberOfPredicates = 0;
+        int numberOfPredicatedAlternatives = 0;
+        int childCount = block.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            GrammarAST child = (GrammarAST) block.getChild(i);
+            int type = child.getType();
+            if (type == ANTLRParser.OPTIONS) {
+                String blockMemoize = getOption(child, MEMOIZE);
+                if (blockMemoize != null) {
+                    memoize = blockMemoize;
+                }
+                if ("true".equals(getOption(child, BACKTRACK))) {
+                    checkBacktrack(child.getLine(), "Block in rule '" + ruleName + "'", memoize);
+                }
+            } else if (type == ANTLRParser.ALT) {
+                if (child.getChildCount() > 0 && isSyntacticPredicate(child.getChild(0).getType())) {
+                    ++numberOfPredicatedAlternatives;
+                }
+                numberOfPredicates += countPredicates(child, ruleName, memoize);
+            }
+        }
+        if (numberOfPredicatedAlternatives > maxSyntacticPredicatesPerDecision) {
+            logIt(block.getLine(), "Decision in rule '" + ruleName + "' has " + numberOfPredicatedAlternatives
+                    + " alternatives guarded by syntactic predicates (max allowed is "
+                    + maxSyntacticPredicatesPerDecision + ").");
+        }
+        return numberOfPredicates;
+    }
+
+    private int countPredicates(GrammarAST ast, String ruleName, String memoize) {
+        int numberOfPredicates = 0;
+        int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            GrammarAST child = (GrammarAST) ast.getChild(i);
+            int type = child.getType();
+            if (isSyntacticPredicate(type)) {
+                ++numberOfPredicates;
+            } else if (type == ANTLRParser.BLOCK) {
+                numberOfPredicates += checkBlock(child, ruleName, memoize);
+            } else {
+                numberOfPredicates += countPredicates(child, ruleName, memoize);
+            }
+        }
+        return numberOfPredicates;
+    }
+
+    private void checkBacktrack(int line, String location, String memoize) {
+        if (!allowRuleBacktrack) {
+            logIt(line, location + " uses backtrack=true.");
+        }
+        if (requireMemoize && !"true".equals(memoize)) {
+            logIt(line, location + " uses backtrack=true without memoize=true, parsing can take exponential time.");
+        }
+    }
+
+    private boolean isSyntacticPredicate(int type) {
+        return type == ANTLRParser.SYN_SEMPRED || (countImplicitPredicates && type == ANTLRParser.BACKTRACK_SEMPRED);
+    }
+
+    /**
+     * Returns the value of the given option or null if it is not defined in the given OPTIONS node.
+     */
+    private String getOption(GrammarAST options, String name) {
+        int childCount = options.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            GrammarAST option = (GrammarAST) options.getChild(i);
+            if (option.getType() == ANTLRParser.ASSIGN && option.getChild(0).getText().equals(name)) {
+                return option.getChild(1).getText();
+            }
+        }
+        return null;
+    }
+
+    //CheckStyle made log final and thus cannot be used in verification of tests.
+    public void logIt(int line, String message) {
+        if (!isKnownViolation(line)) {
+            //passed as argument, the key is a MessageFormat pattern and would swallow the quotes around rule names
+            log(line, "{0}", message);
+        }
+    }
+}
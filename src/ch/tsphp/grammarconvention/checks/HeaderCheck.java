@@ -6,25 +6,62 @@
 
 package ch.tsphp.grammarconvention.checks;
 
-import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.IThreadSafeCheck;
 import org.antlr.grammar.v3.ANTLRParser;
 import org.antlr.tool.GrammarAST;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class HeaderCheck extends AGrammarConventionCheck
+/**
+ * Checks that the header actions of a grammar start with one of the licence notices defined in the header files.
+ * <p/>
+ * The header files can contain placeholders such as ${year} (four digits by default), further placeholders are
+ * defined via the property placeholders, e.g. placeholders = "owner=Robert Stoll|TSPHP". The loaded header files
+ * are shared between the instances of the check and reloaded once they are modified.
+ * <p/>
+ * The check has no per-file state besides the context it reports to and hence uses the context as state.
+ */
+public class HeaderCheck extends AReentrantGrammarConventionCheck<CheckContext>
+        implements IThreadSafeCheck, ICompactTreeCheck
 {
     private String headerFile;
-    private List<String> licenceNotice;
+    private List<String> headerFiles = new ArrayList<>();
+    private final Map<String, String> placeholders = new HashMap<>(HeaderMatcher.DEFAULT_PLACEHOLDERS);
+    private HeaderMatcher matcher;
 
     public void setHeaderFile(String headerFilePath) {
         headerFile = headerFilePath;
     }
 
+    /**
+     * Defines further header files, a header action needs to start with the licence notice of one of them.
+     */
+    public void setHeaderFiles(String[] headerFilePaths) {
+        headerFiles = Arrays.asList(headerFilePaths);
+    }
+
+    /**
+     * Defines the placeholders which can be used in the header files in the form name=regular expression.
+     */
+    public void setPlaceholders(String[] namesAndExpressions) {
+        for (String placeholder : namesAndExpressions) {
+            final int index = placeholder.indexOf('=');
+            if (index < 1) {
+                throw new IllegalArgumentException("A placeholder needs to be specified as name=regular expression, "
+                        + "was " + placeholder);
+            }
+            placeholders.put(placeholder.substring(0, index).trim(), placeholder.substring(index + 1));
+        }
+    }
+
     @Override
     public int[] getDefaultTokens() {
         return new int[]{ANTLRParser.AMPERSAND};
@@ -32,23 +69,33 @@ public class HeaderCheck extends AGrammarConventionCheck
 
     @Override
     public void init() {
-        if (headerFile == null || headerFile.isEmpty()) {
-            throw new IllegalStateException("The property 'headerFile' needs to be specified "
+        final List<String> templateFiles = new ArrayList<>();
+        if (headerFile != null && !headerFile.isEmpty()) {
+            templateFiles.add(headerFile);
+        }
+        for (String file : headerFiles) {
+            if (!file.trim().isEmpty()) {
+                templateFiles.add(file.trim());
+            }
+        }
+        if (templateFiles.isEmpty()) {
+            throw new IllegalStateException("The property 'headerFile' or 'headerFiles' needs to be specified "
                     + "in order that HeaderCheck works");
         }
         try {
-            licenceNotice = Files.readAllLines(Paths.get(headerFile), Charset.defaultCharset());
-            if (licenceNotice.size() <= 1 && licenceNotice.get(0).equals("")) {
-                throw new IllegalStateException("headerFile did not contain any content. "
-                        + "Did you forgot to save the content?.");
-            }
+            matcher = HeaderMatcher.load(templateFiles, placeholders);
         } catch (IOException e) {
-            throw new IllegalStateException("Could not load the headerFile: " + headerFile);
+            throw new IllegalStateException("Could not load the headerFile: " + templateFiles);
         }
     }
 
     @Override
-    public void visitToken(GrammarAST ast) {
+    public CheckContext beginTree(GrammarAST rootAst, CheckContext context) {
+        return context;
+    }
+
+    @Override
+    public void visitToken(GrammarAST ast, CheckContext context) {
         if (isNotGrammarAction(ast)) {
             return;
         }
@@ -65,29 +112,27 @@ public class HeaderCheck extends AGrammarConventionCheck
             action = ast.getChild(2).getText();
         }
         if (id.equals("header")) {
-            String[] lines = action.split("\\r?\\n");
-            //line 0 is empty means that one starts to write the notice on the next line after @header{
-            //which is most probably the normal case.
-            int start = lines[0].equals("") ? 1 : 0;
-            int numberOfLines = lines.length;
-            if (numberOfLines - start == 0) {
-                logIt(ast.getLine(), "License notice is missing.");
+            if (action.trim().isEmpty()) {
+                logIt(context, ast.getLine(), "License notice is missing.");
             } else {
-                for (int i = start; i < numberOfLines; ++i) {
-                    if (!lines[i].equals(licenceNotice.get(i - start))) {
-                        logIt(ast.getLine() + i, "License missing or wrong. Mismatch found!\n"
-                                + "excepted: " + licenceNotice.get(i) + "\n"
-                                + "found: " + lines[i]);
-                        break;
+                HeaderMatcher.Mismatch mismatch = matcher.match(action);
+                if (mismatch != null) {
+                    String found = mismatch.getFound();
+                    if (found == null) {
+                        found = "end of header";
                     }
+                    logIt(context, ast.getLine() + mismatch.getLineIndex(),
+                            "License missing or wrong. Mismatch found!\n"
+                            + "excepted: " + mismatch.getExpected() + "\n"
+                            + "found: " + found);
                 }
             }
         }
     }
 
     //CheckStyle made log final and thus cannot be used in verification of tests.
-    public void logIt(int line, String key) {
-        log(line, key);
+    public void logIt(CheckContext context, int line, String key) {
+        context.log(line, key);
     }
 
     private boolean isNotGrammarAction(GrammarAST ast) {
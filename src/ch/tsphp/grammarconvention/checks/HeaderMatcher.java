@@ -0,0 +1,281 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches header actions against several licence templates in one pass over the lines of the action.
+ * <p/>
+ * A template line can contain placeholders such as ${year} which match the regular expression defined for the
+ * placeholder. Templates without placeholders are additionally kept as text, hence a header action which starts with
+ * one of them is recognised by a hash lookup without splitting the action into lines.
+ * <p/>
+ * Matchers are immutable and shared between check instances (see {@link #load}), a matcher is compiled again once
+ * the last-modified time or the size of one of its template files changed.
+ */
+final class HeaderMatcher
+{
+    static final Map<String, String> DEFAULT_PLACEHOLDERS;
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$\\{(\\w+)\\}");
+    private static final ConcurrentMap<String, HeaderMatcher> CACHE = new ConcurrentHashMap<>();
+
+    static {
+        final Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("year", "\\d{4}");
+        DEFAULT_PLACEHOLDERS = Collections.unmodifiableMap(placeholders);
+    }
+
+    private final long[] fileStamps;
+    private final List<List<String>> templates;
+    private final List<Pattern[]> patterns;
+    private final Map<Integer, Set<String>> literalTemplatesByLength = new HashMap<>();
+
+    private HeaderMatcher(long[] theFileStamps, List<List<String>> theTemplates, List<Pattern[]> thePatterns) {
+        fileStamps = theFileStamps;
+        templates = theTemplates;
+        patterns = thePatterns;
+        final int numberOfTemplates = templates.size();
+        for (int i = 0; i < numberOfTemplates; ++i) {
+            if (isLiteral(patterns.get(i))) {
+                final String text = join(templates.get(i));
+                Set<String> texts = literalTemplatesByLength.get(text.length());
+                if (texts == null) {
+                    texts = new HashSet<>();
+                    literalTemplatesByLength.put(text.length(), texts);
+                }
+                texts.add(text);
+            }
+        }
+    }
+
+    /**
+     * Returns the matcher for the given template files and placeholders, re-uses the one of a previous call if the
+     * template files did not change in the meantime.
+     *
+     * @throws IOException in case a template file could not be read
+     * @throws IllegalStateException in case a template is empty or contains an unknown placeholder
+     */
+    static HeaderMatcher load(List<String> templateFiles, Map<String, String> placeholders) throws IOException {
+        final String key = templateFiles + "|" + new TreeMap<>(placeholders);
+        final long[] fileStamps = new long[templateFiles.size() * 2];
+        for (int i = 0; i < templateFiles.size(); ++i) {
+            final Path path = Paths.get(templateFiles.get(i));
+            fileStamps[i * 2] = Files.getLastModifiedTime(path).toMillis();
+            fileStamps[i * 2 + 1] = Files.size(path);
+        }
+        final HeaderMatcher cachedMatcher = CACHE.get(key);
+        if (cachedMatcher != null && Arrays.equals(cachedMatcher.fileStamps, fileStamps)) {
+            return cachedMatcher;
+        }
+
+        final List<List<String>> templates = new ArrayList<>();
+        final List<Pattern[]> patterns = new ArrayList<>();
+        for (String templateFile : templateFiles) {
+            final List<String> lines = Files.readAllLines(Paths.get(templateFile), Charset.defaultCharset());
+            if (lines.isEmpty() || lines.size() == 1 && lines.get(0).equals("")) {
+                throw new IllegalStateException("headerFile " + templateFile + " did not contain any content. "
+                        + "Did you forgot to save the content?.");
+            }
+            templates.add(lines);
+            patterns.add(compile(templateFile, lines, placeholders));
+        }
+        final HeaderMatcher matcher = new HeaderMatcher(fileStamps, templates, patterns);
+        CACHE.put(key, matcher);
+        return matcher;
+    }
+
+    /**
+     * Returns null if the given header action starts with one of the templates, otherwise the mismatch of the
+     * template which matched the most lines (the first one configured in case of a tie).
+     * <p/>
+     * The line index of the mismatch is relative to the first line of the action. A leading line break is ignored,
+     * since most notices start on the line after @header{.
+     */
+    Mismatch match(String action) {
+        final int start = getStartOfNotice(action);
+        if (startsWithLiteralTemplate(action, start)) {
+            return null;
+        }
+
+        final int numberOfTemplates = templates.size();
+        final boolean[] isAlive = new boolean[numberOfTemplates];
+        int numberOfAliveTemplates = numberOfTemplates;
+        Arrays.fill(isAlive, true);
+        int bestTemplate = 0;
+        int bestDepth = -1;
+        String bestFound = null;
+
+        int lineIndex = 0;
+        int lineStart = start;
+        while (numberOfAliveTemplates > 0) {
+            String line = null;
+            if (lineStart < action.length()) {
+                int lineEnd = action.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = action.length();
+                }
+                line = action.substring(lineStart, lineEnd);
+                if (line.endsWith("\r")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                lineStart = lineEnd + 1;
+            }
+            for (int i = 0; i < numberOfTemplates; ++i) {
+                if (isAlive[i]) {
+                    if (lineIndex == templates.get(i).size()) {
+                        return null;
+                    }
+                    if (line == null || !matches(patterns.get(i)[lineIndex], templates.get(i).get(lineIndex), line)) {
+                        isAlive[i] = false;
+                        --numberOfAliveTemplates;
+                        if (lineIndex > bestDepth) {
+                            bestTemplate = i;
+                            bestDepth = lineIndex;
+                            bestFound = line;
+                        }
+                    }
+                }
+            }
+            ++lineIndex;
+        }
+        final int startLine;
+        if (start > 0) {
+            startLine = 1;
+        } else {
+            startLine = 0;
+        }
+        return new Mismatch(startLine + bestDepth, templates.get(bestTemplate).get(bestDepth), bestFound);
+    }
+
+    private boolean startsWithLiteralTemplate(String action, int start) {
+        if (action.indexOf('\r') != -1) {
+            return false;
+        }
+        final int length = action.length() - start;
+        for (Map.Entry<Integer, Set<String>> entry : literalTemplatesByLength.entrySet()) {
+            final int templateLength = entry.getKey();
+            if (templateLength <= length
+                    && (templateLength == length || action.charAt(start + templateLength) == '\n')
+                    && entry.getValue().contains(action.substring(start, start + templateLength))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getStartOfNotice(String action) {
+        if (action.startsWith("\n")) {
+            return 1;
+        }
+        if (action.startsWith("\r\n")) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static boolean matches(Pattern pattern, String templateLine, String line) {
+        if (pattern == null) {
+            return templateLine.equals(line);
+        }
+        return pattern.matcher(line).matches();
+    }
+
+    private static Pattern[] compile(String templateFile, List<String> lines, Map<String, String> placeholders) {
+        final Pattern[] linePatterns = new Pattern[lines.size()];
+        for (int i = 0; i < linePatterns.length; ++i) {
+            final String line = lines.get(i);
+            final Matcher matcher = PLACEHOLDER_PATTERN.matcher(line);
+            if (matcher.find()) {
+                final StringBuilder regex = new StringBuilder();
+                int literalStart = 0;
+                do {
+                    final String expression = placeholders.get(matcher.group(1));
+                    if (expression == null) {
+                        throw new IllegalStateException("Unknown placeholder " + matcher.group()
+                                + " in headerFile " + templateFile + " on line " + (i + 1));
+                    }
+                    regex.append(Pattern.quote(line.substring(literalStart, matcher.start())))
+                            .append("(?:").append(expression).append(')');
+                    literalStart = matcher.end();
+                } while (matcher.find());
+                regex.append(Pattern.quote(line.substring(literalStart)));
+                linePatterns[i] = Pattern.compile(regex.toString());
+            }
+        }
+        return linePatterns;
+    }
+
+    private static boolean isLiteral(Pattern[] linePatterns) {
+        for (Pattern pattern : linePatterns) {
+            if (pattern != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String join(List<String> lines) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines.size(); ++i) {
+            if (i > 0) {
+                builder.append('\n');
+            }
+            builder.append(lines.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A line of a header action which does not match the expected template line.
+     */
+    static final class Mismatch
+    {
+        private final int lineIndex;
+        private final String expected;
+        private final String found;
+
+        private Mismatch(int theLineIndex, String theExpected, String theFound) {
+            lineIndex = theLineIndex;
+            expected = theExpected;
+            found = theFound;
+        }
+
+        int getLineIndex() {
+            return lineIndex;
+        }
+
+        String getExpected() {
+            return expected;
+        }
+
+        /**
+         * Returns the mismatching line or null if the header action ended before the template.
+         */
+        String getFound() {
+            return found;
+        }
+    }
+}
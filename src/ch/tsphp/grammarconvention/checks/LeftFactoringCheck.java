@@ -0,0 +1,251 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.IRuleLocalCheck;
+import ch.tsphp.grammarconvention.IThreadSafeCheck;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.GrammarAST;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports alternatives of a block which start with the same sequence of elements (rule references, token
+ * references, literals and subrules) and are hence candidates for left-factoring - the generated parser needs a
+ * deeper lookahead or even backtracking to decide between them.
+ * <p/>
+ * The leading elements of all alternatives are inserted into a trie so that the check stays linear in the number of
+ * elements, also for blocks with hundreds of alternatives. A node of the trie is reported if it lies deeper than
+ * maxCommonPrefixLength and at least two alternatives end their common prefix there. Actions and predicates are
+ * ignored, labels and tree operators do not matter either.
+ * <p/>
+ * The trie is built per block and the check does not keep any state between blocks, hence it is thread-safe and the
+ * GrammarWalker may check the rules of a grammar concurrently (see its ruleParallelism).
+ */
+public class LeftFactoringCheck extends AReentrantGrammarConventionCheck<CheckContext>
+        implements IRuleLocalCheck, IThreadSafeCheck, ICompactTreeCheck
+{
+    private int maxCommonPrefixLength = 1;
+
+    /**
+     * Defines how many leading elements alternatives of the same block may have in common (1 by default).
+     */
+    public void setMaxCommonPrefixLength(int max) {
+        maxCommonPrefixLength = max;
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[]{ANTLRParser.BLOCK};
+    }
+
+    @Override
+    public CheckContext beginTree(GrammarAST rootAst, CheckContext context) {
+        return context;
+    }
+
+    @Override
+    public void visitToken(GrammarAST ast, CheckContext context) {
+        Map<String, Integer> elementIds = new HashMap<>();
+        List<String> elementTexts = new ArrayList<>();
+        TrieNode root = new TrieNode(null, -1, 0);
+        int alternativeNumber = 0;
+        int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            GrammarAST child = (GrammarAST) ast.getChild(i);
+            if (child.getType() == ANTLRParser.ALT) {
+                ++alternativeNumber;
+                insert(root, child, alternativeNumber, elementIds, elementTexts);
+            }
+        }
+        if (alternativeNumber > 1) {
+            report(context, ast, root, elementTexts);
+        }
+    }
+
+    private void insert(TrieNode root, GrammarAST alternative, int alternativeNumber, Map<String, Integer> elementIds,
+            List<String> elementTexts) {
+        TrieNode node = root;
+        node.alternatives.add(alternativeNumber);
+        int childCount = alternative.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            GrammarAST element = getElement((GrammarAST) alternative.getChild(i));
+            if (element != null) {
+                String canonicalForm = getCanonicalForm(element);
+                Integer id = elementIds.get(canonicalForm);
+                if (id == null) {
+                    id = elementTexts.size();
+                    elementIds.put(canonicalForm, id);
+                    elementTexts.add(getDisplayText(element));
+                }
+                TrieNode next = node.children.get(id);
+                if (next == null) {
+                    next = new TrieNode(node, id, node.depth + 1);
+                    node.children.put(id, next);
+                }
+                node = next;
+                node.alternatives.add(alternativeNumber);
+            }
+        }
+    }
+
+    /**
+     * Returns the element without label and tree operator or null if the node does not count as element.
+     */
+    private GrammarAST getElement(GrammarAST ast) {
+        GrammarAST element = null;
+        switch (ast.getType()) {
+            case ANTLRParser.EOA:
+            case ANTLRParser.ACTION:
+            case ANTLRParser.FORCED_ACTION:
+            case ANTLRParser.SEMPRED:
+            case ANTLRParser.GATED_SEMPRED:
+            case ANTLRParser.SYN_SEMPRED:
+            case ANTLRParser.BACKTRACK_SEMPRED:
+                break;
+            case ANTLRParser.ASSIGN:
+            case ANTLRParser.PLUS_ASSIGN:
+                element = getElement((GrammarAST) ast.getChild(1));
+                break;
+            case ANTLRParser.ROOT:
+            case ANTLRParser.BANG:
+                element = getElement((GrammarAST) ast.getChild(0));
+                break;
+            default:
+                element = ast;
+                break;
+        }
+        return element;
+    }
+
+    /**
+     * Returns a representation of the given element which is equal for structurally equal elements independent of
+     * their position, labels, actions and the generated names of syntactic predicates.
+     */
+    private String getCanonicalForm(GrammarAST element) {
+        StringBuilder builder = new StringBuilder();
+        appendCanonicalForm(builder, element);
+        return builder.toString();
+    }
+
+    private void appendCanonicalForm(StringBuilder builder, Tree ast) {
+        int type = ast.getType();
+        builder.append(type);
+        if (type != ANTLRParser.SYN_SEMPRED && type != ANTLRParser.BACKTRACK_SEMPRED) {
+            builder.append(':').append(ast.getText());
+        }
+        int childCount = ast.getChildCount();
+        if (childCount > 0) {
+            builder.append('(');
+            for (int i = 0; i < childCount; ++i) {
+                appendCanonicalForm(builder, ast.getChild(i));
+                builder.append(' ');
+            }
+            builder.append(')');
+        }
+    }
+
+    private String getDisplayText(GrammarAST element) {
+        String text;
+        switch (element.getType()) {
+            case ANTLRParser.BLOCK:
+                text = "(...)";
+                break;
+            case ANTLRParser.OPTIONAL:
+                text = "(...)?";
+                break;
+            case ANTLRParser.CLOSURE:
+                text = "(...)*";
+                break;
+            case ANTLRParser.POSITIVE_CLOSURE:
+                text = "(...)+";
+                break;
+            case ANTLRParser.TREE_BEGIN:
+                text = "^(...)";
+                break;
+            default:
+                text = element.getText();
+                break;
+        }
+        return text;
+    }
+
+    private void report(CheckContext context, GrammarAST block, TrieNode root, List<String> elementTexts) {
+        List<TrieNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); ++i) {
+            TrieNode node = nodes.get(i);
+            int maxAlternativesOfChild = 0;
+            for (TrieNode child : node.children.values()) {
+                if (child.alternatives.size() > 1) {
+                    nodes.add(child);
+                    maxAlternativesOfChild = Math.max(maxAlternativesOfChild, child.alternatives.size());
+                }
+            }
+            if (node.depth > maxCommonPrefixLength && node.alternatives.size() > maxAlternativesOfChild) {
+                logIt(context, block.getLine(), "Alternatives " + node.alternatives + " of a block in rule '"
+                        + getRuleName(block) + "' start with the same " + node.depth + " elements ("
+                        + getPrefix(node, elementTexts) + "), consider left-factoring them.");
+            }
+        }
+    }
+
+    private String getPrefix(TrieNode node, List<String> elementTexts) {
+        StringBuilder builder = new StringBuilder();
+        TrieNode current = node;
+        while (current.parent != null) {
+            if (builder.length() > 0) {
+                builder.insert(0, ' ');
+            }
+            builder.insert(0, elementTexts.get(current.elementId));
+            current = current.parent;
+        }
+        return builder.toString();
+    }
+
+    private String getRuleName(GrammarAST ast) {
+        Tree current = ast;
+        while (current != null && current.getType() != ANTLRParser.RULE) {
+            current = current.getParent();
+        }
+        if (current == null) {
+            return "";
+        }
+        return current.getChild(0).getText();
+    }
+
+    //CheckStyle made log final and thus cannot be used in verification of tests.
+    public void logIt(CheckContext context, int line, String message) {
+        //passed as argument, the key is a MessageFormat pattern and would swallow the quotes around rule names
+        context.log(line, "{0}", message);
+    }
+
+    /**
+     * A node of the trie of leading elements, knows which alternatives start with the elements up to this node.
+     */
+    private static class TrieNode
+    {
+        private final TrieNode parent;
+        private final int elementId;
+        private final int depth;
+        private final Map<Integer, TrieNode> children = new HashMap<>();
+        private final List<Integer> alternatives = new ArrayList<>();
+
+        TrieNode(TrieNode theParent, int theElementId, int theDepth) {
+            parent = theParent;
+            elementId = theElementId;
+            depth = theDepth;
+        }
+    }
+}
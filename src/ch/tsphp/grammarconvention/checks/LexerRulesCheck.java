@@ -0,0 +1,241 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.analysis.AnalysisMessage;
+import ch.tsphp.grammarconvention.analysis.DecisionAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.GrammarAST;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the lexer rules of lexer and combined grammars for constructs which make the generated lexer slow or
+ * behave unexpectedly:
+ * <ul>
+ * <li>tokens which can never be matched since an earlier rule (typically an identifier rule) matches the same input,
+ * e.g. keywords defined after the identifier rule</li>
+ * <li>overlapping character ranges among the alternatives of a block</li>
+ * <li>fragment rules which are used by parser rules, and (in combined grammars) token rules which are only used by
+ * other lexer rules and hence should be fragments - unused fragments are reported by the {@link UnusedRulesCheck}</li>
+ * <li>a prediction of the next token (the DFA of the artificial Tokens rule) with more states than
+ * maxTokensDecisionStates</li>
+ * </ul>
+ * The unreachable tokens and the size of the token prediction are determined by the analysis of the ANTLR tool.
+ */
+public class LexerRulesCheck extends AGrammarConventionCheck implements ICompactTreeCheck
+{
+    private int maxTokensDecisionStates = 1000;
+
+    private boolean isActive;
+    private boolean isCombinedGrammar;
+    private final Map<String, GrammarAST> lexerRules = new LinkedHashMap<>();
+    private final Set<String> fragments = new HashSet<>();
+    private final Map<String, Set<String>> lexerReferences = new HashMap<>();
+    private final Set<String> parserReferences = new HashSet<>();
+
+    public LexerRulesCheck() {
+        setCost(ANALYSIS_COST);
+    }
+
+    public void setMaxTokensDecisionStates(int max) {
+        maxTokensDecisionStates = max;
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[]{ANTLRParser.RULE};
+    }
+
+    @Override
+    public void beginTree(GrammarAST rootAst) {
+        lexerRules.clear();
+        fragments.clear();
+        lexerReferences.clear();
+        parserReferences.clear();
+        isActive = rootAst != null && (rootAst.getType() == ANTLRParser.LEXER_GRAMMAR
+                || rootAst.getType() == ANTLRParser.COMBINED_GRAMMAR);
+        isCombinedGrammar = rootAst != null && rootAst.getType() == ANTLRParser.COMBINED_GRAMMAR;
+    }
+
+    @Override
+    public void visitToken(GrammarAST ast) {
+        if (!isActive) {
+            return;
+        }
+        if (isArtificialTokensRule(ast)) {
+            return;
+        }
+        String ruleName = ast.getChild(0).getText();
+        if (Character.isUpperCase(ruleName.charAt(0))) {
+            lexerRules.put(ruleName, ast);
+            if (ast.getFirstChildWithType(ANTLRParser.FRAGMENT) != null) {
+                fragments.add(ruleName);
+            }
+            Set<String> references = new HashSet<>();
+            collectReferences(ast, references);
+            lexerReferences.put(ruleName, references);
+            checkRanges(ast, ruleName);
+        } else {
+            collectReferences(ast, parserReferences);
+        }
+    }
+
+    private void collectReferences(Tree ast, Set<String> references) {
+        int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            Tree child = ast.getChild(i);
+            if (child.getType() == ANTLRParser.TOKEN_REF) {
+                references.add(child.getText());
+            }
+            collectReferences(child, references);
+        }
+    }
+
+    /**
+     * Reports alternatives consisting of a single character or range which overlap with another alternative of the
+     * same block.
+     */
+    private void checkRanges(Tree ast, String ruleName) {
+        int childCount = ast.getChildCount();
+        if (ast.getType() == ANTLRParser.BLOCK) {
+            List<int[]> ranges = new ArrayList<>();
+            List<GrammarAST> rangeAsts = new ArrayList<>();
+            for (int i = 0; i < childCount; ++i) {
+                Tree alternative = ast.getChild(i);
+                if (alternative.getType() == ANTLRParser.ALT && alternative.getChildCount() == 2) {
+                    int[] range = getRange(alternative.getChild(0));
+                    if (range != null) {
+                        ranges.add(new int[]{range[0], range[1], rangeAsts.size()});
+                        rangeAsts.add((GrammarAST) alternative.getChild(0));
+                    }
+                }
+            }
+            reportOverlaps(ranges, rangeAsts, ruleName);
+        }
+        for (int i = 0; i < childCount; ++i) {
+            checkRanges(ast.getChild(i), ruleName);
+        }
+    }
+
+    private int[] getRange(Tree ast) {
+        int[] range = null;
+        if (ast.getType() == ANTLRParser.CHAR_LITERAL) {
+            int value = Grammar.getCharValueFromGrammarCharLiteral(ast.getText());
+            if (value != -1) {
+                range = new int[]{value, value};
+            }
+        } else if (ast.getType() == ANTLRParser.CHAR_RANGE) {
+            int from = Grammar.getCharValueFromGrammarCharLiteral(ast.getChild(0).getText());
+            int to = Grammar.getCharValueFromGrammarCharLiteral(ast.getChild(1).getText());
+            if (from != -1 && to != -1) {
+                range = new int[]{from, to};
+            }
+        }
+        return range;
+    }
+
+    private void reportOverlaps(List<int[]> ranges, List<GrammarAST> rangeAsts, String ruleName) {
+        Collections.sort(ranges, new Comparator<int[]>()
+        {
+            @Override
+            public int compare(int[] range1, int[] range2) {
+                return Integer.compare(range1[0], range2[0]);
+            }
+        });
+        int[] widest = null;
+        for (int[] range : ranges) {
+            if (widest != null && range[0] <= widest[1]) {
+                GrammarAST overlapping = rangeAsts.get(range[2]);
+                logIt(overlapping.getLine(), "Rule '" + ruleName + "': " + getText(overlapping) + " overlaps with "
+                        + getText(rangeAsts.get(widest[2])) + ".");
+            }
+            if (widest == null || range[1] > widest[1]) {
+                widest = range;
+            }
+        }
+    }
+
+    private String getText(GrammarAST ast) {
+        if (ast.getType() == ANTLRParser.CHAR_RANGE) {
+            return ast.getChild(0).getText() + ".." + ast.getChild(1).getText();
+        }
+        return ast.getText();
+    }
+
+    @Override
+    public void finishTree(GrammarAST rootAst) {
+        if (!isActive) {
+            return;
+        }
+        checkFragments();
+        GrammarAnalysis analysis = getGrammarAnalysis();
+        for (AnalysisMessage message : analysis.getMessages(AnalysisMessage.Kind.UNREACHABLE_ALTS)) {
+            if (message.isLexerMessage() && Grammar.ARTIFICIAL_TOKENS_RULENAME.equals(message.getRuleName())) {
+                for (String tokenName : message.getArguments()) {
+                    GrammarAST rule = lexerRules.get(tokenName);
+                    if (rule != null) {
+                        logIt(rule.getLine(), "Token " + tokenName + " can never be matched, an earlier lexer rule "
+                                + "matches the same input.");
+                    }
+                }
+            }
+        }
+        for (DecisionAnalysis decision : analysis.getDecisions()) {
+            if (decision.isTokensRuleDecision() && decision.getNumberOfStates() > maxTokensDecisionStates) {
+                logIt(1, "The prediction of the next token has a DFA with " + decision.getNumberOfStates()
+                        + " states (max allowed is " + maxTokensDecisionStates + ").");
+            }
+        }
+    }
+
+    private void checkFragments() {
+        Set<String> usedByLexerRules = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : lexerReferences.entrySet()) {
+            for (String reference : entry.getValue()) {
+                if (!reference.equals(entry.getKey())) {
+                    usedByLexerRules.add(reference);
+                }
+            }
+        }
+        for (Map.Entry<String, GrammarAST> entry : lexerRules.entrySet()) {
+            String ruleName = entry.getKey();
+            int line = entry.getValue().getLine();
+            if (fragments.contains(ruleName)) {
+                //fragments which are never used are reported by the UnusedRulesCheck
+                if (parserReferences.contains(ruleName)) {
+                    logIt(line, "Fragment " + ruleName + " is used in a parser rule but fragments are not tokens.");
+                }
+            } else if (isCombinedGrammar && usedByLexerRules.contains(ruleName)
+                    && !parserReferences.contains(ruleName)) {
+                logIt(line, "Rule " + ruleName + " is only used by other lexer rules, declare it as fragment so "
+                        + "that it does not enlarge the prediction of the next token.");
+            }
+        }
+    }
+
+    //CheckStyle made log final and thus cannot be used in verification of tests.
+    public void logIt(int line, String message) {
+        if (!isKnownViolation(line)) {
+            //passed as argument, the key is a MessageFormat pattern and would swallow the quotes around rule names
+            log(line, "{0}", message);
+        }
+    }
+}
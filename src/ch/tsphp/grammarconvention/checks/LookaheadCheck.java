@@ -0,0 +1,110 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.analysis.AnalysisMessage;
+import ch.tsphp.grammarconvention.analysis.DecisionAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Reports decisions whose lookahead DFA (as built by the ANTLR tool) has more states or needs a deeper lookahead than
+ * allowed. Such decisions make the generated parsers bloated and slow.
+ * <p/>
+ * Cyclic DFAs (arbitrary lookahead, LL(*)) exceed every lookahead limit. Decisions whose analysis was aborted
+ * because it took too long are reported as well. Decisions of lexer rules are only checked if checkLexerDecisions
+ * is set.
+ */
+public class LookaheadCheck extends AGrammarConventionCheck implements ICompactTreeCheck
+{
+    private int maxNumberOfStates = 100;
+    private int maxLookahead = 4;
+    private boolean checkLexerDecisions;
+    private boolean reportAllDecisions;
+
+    public LookaheadCheck() {
+        setCost(ANALYSIS_COST);
+    }
+
+    public void setMaxNumberOfStates(int max) {
+        maxNumberOfStates = max;
+    }
+
+    public void setMaxLookahead(int max) {
+        maxLookahead = max;
+    }
+
+    public void setCheckLexerDecisions(boolean check) {
+        checkLexerDecisions = check;
+    }
+
+    /**
+     * Defines whether the number of states and the lookahead depth are reported for every decision and not only for
+     * the ones exceeding a limit (false by default).
+     */
+    public void setReportAllDecisions(boolean report) {
+        reportAllDecisions = report;
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[]{};
+    }
+
+    @Override
+    public void beginTree(GrammarAST rootAst) {
+        if (rootAst == null) {
+            return;
+        }
+        GrammarAnalysis analysis = getGrammarAnalysis();
+        for (DecisionAnalysis decision : analysis.getDecisions()) {
+            if (checkLexerDecisions || !decision.isLexerDecision()) {
+                checkDecision(decision);
+            }
+        }
+        for (AnalysisMessage message : analysis.getMessages(AnalysisMessage.Kind.ANALYSIS_ABORTED)) {
+            if (checkLexerDecisions || !message.isLexerMessage()) {
+                logIt(message.getLine(), "Analysis of decision " + message.getDecisionNumber() + " in rule '"
+                        + message.getRuleName() + "' was aborted since it took too long.");
+            }
+        }
+    }
+
+    private void checkDecision(DecisionAnalysis decision) {
+        boolean exceedsStates = decision.getNumberOfStates() > maxNumberOfStates;
+        boolean exceedsLookahead = decision.getMaxLookahead() > maxLookahead;
+        if (reportAllDecisions || exceedsStates || exceedsLookahead) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Decision ").append(decision.getDecisionNumber())
+                    .append(" in rule '").append(decision.getRuleName()).append("' has a DFA with ")
+                    .append(decision.getNumberOfStates()).append(" states");
+            if (exceedsStates) {
+                builder.append(" (max allowed is ").append(maxNumberOfStates).append(")");
+            }
+            if (decision.isCyclic()) {
+                builder.append(" and needs arbitrary lookahead (cyclic DFA)");
+            } else {
+                builder.append(" and a lookahead of ").append(decision.getMaxLookahead());
+            }
+            if (exceedsLookahead) {
+                builder.append(" (max allowed is ").append(maxLookahead).append(")");
+            }
+            builder.append(".");
+            logIt(decision.getLine(), builder.toString());
+        }
+    }
+
+    //CheckStyle made log final and thus cannot be used in verification of tests.
+    public void logIt(int line, String message) {
+        if (!isKnownViolation(line)) {
+            //passed as argument, the key is a MessageFormat pattern and would swallow the quotes around rule names
+            log(line, "{0}", message);
+        }
+    }
+}
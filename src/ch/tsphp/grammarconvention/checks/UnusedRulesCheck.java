@@ -0,0 +1,657 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.checks;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.ICrossFileCheck;
+import ch.tsphp.grammarconvention.ICrossFileLog;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.GrammarAST;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Reports rules which are never used across all checked grammars:
+ * <ul>
+ * <li>parser and tree rules which are not reachable from the start rules</li>
+ * <li>tokens which are not used by a reachable rule</li>
+ * <li>fragments which are not used by a used token</li>
+ * </ul>
+ * The start rules are given by the property startRules, by default the first rule of each grammar which is not
+ * imported by another grammar. Rule references are resolved as ANTLR does for composite grammars - a grammar sees its
+ * own rules and the rules of the grammars it imports (directly or indirectly), the first definition wins - and token
+ * references which are not defined in that scope are resolved in the grammar given by the option tokenVocab.
+ * <p/>
+ * A token is also used if it consists of a single literal which is used by a reachable rule or if it has an action
+ * (e.g. {$channel=HIDDEN;} or {skip();}). The tokens of a lexer grammar which is neither imported nor used as
+ * tokenVocab by one of the checked grammars are all considered to be used.
+ * <p/>
+ * The check builds a graph of all rules and their references once all files were processed and determines the
+ * reachable rules as well as the strongly connected components of the unused rules in time linear to the number of
+ * rules and references, hence it is suitable for grammars with thousands of rules.
+ */
+public class UnusedRulesCheck extends AGrammarConventionCheck
+        implements ICrossFileCheck<UnusedRulesCheck.Summary>, ICompactTreeCheck
+{
+    private static final String TOKEN_VOCAB = "tokenVocab";
+    private static final int PARSER_RULE = 0;
+    private static final int TOKEN = 1;
+    private static final int FRAGMENT = 2;
+    private static final int TOKEN_WITH_ACTION = 3;
+
+    private String[] startRules = new String[0];
+
+    private int grammarType;
+    private final List<String> ruleNames = new ArrayList<>();
+    private final List<Integer> ruleLines = new ArrayList<>();
+    private final List<Integer> ruleKinds = new ArrayList<>();
+    private final List<String> ruleLiterals = new ArrayList<>();
+    private final List<String[]> ruleReferences = new ArrayList<>();
+
+    /**
+     * Defines the names of the rules from which the other rules need to be reachable, default are the first rules of
+     * the grammars which are not imported.
+     */
+    public void setStartRules(String[] names) {
+        startRules = names;
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[]{ANTLRParser.RULE};
+    }
+
+    @Override
+    public void beginTree(GrammarAST rootAst) {
+        ruleNames.clear();
+        ruleLines.clear();
+        ruleKinds.clear();
+        ruleLiterals.clear();
+        ruleReferences.clear();
+        grammarType = 0;
+        if (rootAst != null) {
+            grammarType = rootAst.getType();
+        }
+    }
+
+    @Override
+    public void visitToken(GrammarAST ast) {
+        final String ruleName = ast.getChild(0).getText();
+        final boolean isLexerRule = Character.isUpperCase(ruleName.charAt(0));
+        if (isArtificialTokensRule(ast)) {
+            return;
+        }
+        final Set<String> references = new LinkedHashSet<>();
+        final boolean[] hasAction = new boolean[1];
+        collectReferences(ast, !isLexerRule, references, hasAction);
+
+        int kind = PARSER_RULE;
+        String literal = null;
+        if (isLexerRule) {
+            if (ast.getFirstChildWithType(ANTLRParser.FRAGMENT) != null) {
+                kind = FRAGMENT;
+            } else if (hasAction[0]) {
+                kind = TOKEN_WITH_ACTION;
+            } else {
+                kind = TOKEN;
+                literal = getLiteral(ast);
+            }
+        }
+        ruleNames.add(ruleName);
+        ruleLines.add(ast.getLine());
+        ruleKinds.add(kind);
+        ruleLiterals.add(literal);
+        ruleReferences.add(references.toArray(new String[references.size()]));
+    }
+
+    /**
+     * Collects the referenced rules and tokens and, if requested, the used literals (including their quotes).
+     */
+    private void collectReferences(Tree ast, boolean collectsLiterals, Set<String> references, boolean[] hasAction) {
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            final Tree child = ast.getChild(i);
+            switch (child.getType()) {
+                case ANTLRParser.RULE_REF:
+                case ANTLRParser.TOKEN_REF:
+                    references.add(child.getText());
+                    break;
+                case ANTLRParser.CHAR_LITERAL:
+                case ANTLRParser.STRING_LITERAL:
+                    if (collectsLiterals) {
+                        references.add(child.getText());
+                    }
+                    break;
+                case ANTLRParser.ACTION:
+                    hasAction[0] = true;
+                    break;
+                default:
+                    break;
+            }
+            collectReferences(child, collectsLiterals, references, hasAction);
+        }
+    }
+
+    /**
+     * Returns the literal if the given lexer rule consists of a single literal, null otherwise.
+     */
+    private String getLiteral(GrammarAST rule) {
+        final GrammarAST block = (GrammarAST) rule.getFirstChildWithType(ANTLRParser.BLOCK);
+        String literal = null;
+        if (block != null && block.getChildCount() == 2) {
+            //(BLOCK (ALT literal EOA) EOB)
+            final Tree alternative = block.getChild(0);
+            if (alternative.getType() == ANTLRParser.ALT && alternative.getChildCount() == 2) {
+                final Tree element = alternative.getChild(0);
+                if (element.getType() == ANTLRParser.CHAR_LITERAL || element.getType() == ANTLRParser.STRING_LITERAL) {
+                    literal = element.getText();
+                }
+            }
+        }
+        return literal;
+    }
+
+    @Override
+    public Summary getSummary(GrammarAST rootAst) {
+        String grammarName = null;
+        String tokenVocab = null;
+        final List<String> imports = new ArrayList<>();
+        if (rootAst != null && rootAst.getChildCount() > 0) {
+            grammarName = rootAst.getChild(0).getText();
+            final int childCount = rootAst.getChildCount();
+            for (int i = 1; i < childCount; ++i) {
+                final Tree child = rootAst.getChild(i);
+                if (child.getType() == ANTLRParser.OPTIONS) {
+                    tokenVocab = getTokenVocab(child, tokenVocab);
+                } else if (child.getType() == ANTLRParser.IMPORT) {
+                    for (int j = 0; j < child.getChildCount(); ++j) {
+                        final Tree delegate = child.getChild(j);
+                        if (delegate.getType() == ANTLRParser.ASSIGN) {
+                            //import label=grammarName
+                            imports.add(delegate.getChild(1).getText());
+                        } else {
+                            imports.add(delegate.getText());
+                        }
+                    }
+                }
+            }
+        }
+        final int numberOfRules = ruleNames.size();
+        final int[] lines = new int[numberOfRules];
+        final int[] kinds = new int[numberOfRules];
+        final int[] referenceStarts = new int[numberOfRules + 1];
+        final List<String> references = new ArrayList<>();
+        for (int i = 0; i < numberOfRules; ++i) {
+            lines[i] = ruleLines.get(i);
+            kinds[i] = ruleKinds.get(i);
+            referenceStarts[i] = references.size();
+            references.addAll(Arrays.asList(ruleReferences.get(i)));
+        }
+        referenceStarts[numberOfRules] = references.size();
+        return new Summary(grammarName, grammarType, tokenVocab, imports.toArray(new String[imports.size()]),
+                ruleNames.toArray(new String[numberOfRules]), lines, kinds,
+                ruleLiterals.toArray(new String[numberOfRules]), referenceStarts,
+                references.toArray(new String[references.size()]));
+    }
+
+    private String getTokenVocab(Tree options, String tokenVocab) {
+        String result = tokenVocab;
+        for (int i = 0; i < options.getChildCount(); ++i) {
+            final Tree option = options.getChild(i);
+            if (option.getType() == ANTLRParser.ASSIGN && option.getChildCount() == 2
+                    && option.getChild(0).getText().equals(TOKEN_VOCAB)) {
+                result = option.getChild(1).getText();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void reduce(SortedMap<String, Summary> summaries, ICrossFileLog log) {
+        new RuleGraph(new ArrayList<>(summaries.keySet()), new ArrayList<>(summaries.values()), startRules)
+                .reportUnusedRules(log);
+    }
+
+    /**
+     * The rules of a grammar file and what they reference, independent of the configuration of the check.
+     */
+    public static final class Summary implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String grammarName;
+        private final int grammarType;
+        private final String tokenVocab;
+        private final String[] imports;
+        private final String[] ruleNames;
+        private final int[] ruleLines;
+        private final int[] ruleKinds;
+        private final String[] ruleLiterals;
+        private final int[] referenceStarts;
+        private final String[] references;
+
+        Summary(String theGrammarName, int theGrammarType, String theTokenVocab, String[] theImports,
+                String[] theRuleNames, int[] theRuleLines, int[] theRuleKinds, String[] theRuleLiterals,
+                int[] theReferenceStarts, String[] theReferences) {
+            grammarName = theGrammarName;
+            grammarType = theGrammarType;
+            tokenVocab = theTokenVocab;
+            imports = theImports;
+            ruleNames = theRuleNames;
+            ruleLines = theRuleLines;
+            ruleKinds = theRuleKinds;
+            ruleLiterals = theRuleLiterals;
+            referenceStarts = theReferenceStarts;
+            references = theReferences;
+        }
+    }
+
+    /**
+     * The rules of all grammars (nodes numbered consecutively per grammar) and the resolved references among them.
+     */
+    private static final class RuleGraph
+    {
+        private final List<String> fileNames;
+        private final List<Summary> grammars;
+        private final String[] startRules;
+        private final int[] firstNodes;
+        private final Map<String, Integer> grammarIndices = new HashMap<>();
+        private final Map<Integer, Map<String, Integer>> scopes = new HashMap<>();
+        private final Set<Integer> consumedLexerGrammars = new HashSet<>();
+        private final int numberOfNodes;
+        private int[] edgeSources = new int[16];
+        private int[] edgeTargets = new int[16];
+        private int numberOfEdges;
+        private int[] successorStarts;
+        private int[] successors;
+
+        private RuleGraph(List<String> theFileNames, List<Summary> theGrammars, String[] theStartRules) {
+            fileNames = theFileNames;
+            grammars = theGrammars;
+            startRules = theStartRules;
+            firstNodes = new int[grammars.size() + 1];
+            for (int i = 0; i < grammars.size(); ++i) {
+                firstNodes[i + 1] = firstNodes[i] + grammars.get(i).ruleNames.length;
+                final String grammarName = grammars.get(i).grammarName;
+                if (grammarName != null && !grammarIndices.containsKey(grammarName)) {
+                    grammarIndices.put(grammarName, i);
+                }
+            }
+            numberOfNodes = firstNodes[grammars.size()];
+        }
+
+        private void reportUnusedRules(ICrossFileLog log) {
+            final Set<Integer> importedGrammars = new HashSet<>();
+            for (Summary grammar : grammars) {
+                for (String importedGrammar : grammar.imports) {
+                    final Integer index = grammarIndices.get(importedGrammar);
+                    if (index != null) {
+                        importedGrammars.add(index);
+                    }
+                }
+            }
+            final List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < grammars.size(); ++i) {
+                if (!importedGrammars.contains(i)) {
+                    roots.add(i);
+                }
+            }
+            for (int root : roots) {
+                addEdges(root);
+            }
+            buildSuccessors();
+
+            final boolean[] isReachable = new boolean[numberOfNodes];
+            final int[] stack = new int[numberOfNodes];
+            int stackSize = 0;
+            for (int node : getStartNodes(roots)) {
+                if (!isReachable[node]) {
+                    isReachable[node] = true;
+                    stack[stackSize++] = node;
+                }
+            }
+            while (stackSize > 0) {
+                final int node = stack[--stackSize];
+                for (int i = successorStarts[node]; i < successorStarts[node + 1]; ++i) {
+                    final int successor = successors[i];
+                    if (!isReachable[successor]) {
+                        isReachable[successor] = true;
+                        stack[stackSize++] = successor;
+                    }
+                }
+            }
+            report(isReachable, log);
+        }
+
+        /**
+         * Adds the references of the rules of the composite grammar with the given root, resolved in its scope.
+         */
+        private void addEdges(int root) {
+            final Map<String, Integer> scope = getScope(root);
+            for (int member : getMembers(root)) {
+                final Summary grammar = grammars.get(member);
+                if (grammar.grammarType == ANTLRParser.COMBINED_GRAMMAR) {
+                    consumedLexerGrammars.addAll(getMembers(root));
+                }
+                final Map<String, Integer> vocabularyScope = getVocabularyScope(member, root);
+                for (int rule = 0; rule < grammar.ruleNames.length; ++rule) {
+                    final int node = firstNodes[member] + rule;
+                    for (int i = grammar.referenceStarts[rule]; i < grammar.referenceStarts[rule + 1]; ++i) {
+                        final String reference = grammar.references[i];
+                        Integer target = scope.get(reference);
+                        if (target == null && vocabularyScope != null) {
+                            target = vocabularyScope.get(reference);
+                        }
+                        if (target != null) {
+                            addEdge(node, target);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the grammar itself followed by the grammars it imports, directly or indirectly, depth-first.
+         */
+        private List<Integer> getMembers(int grammar) {
+            final List<Integer> members = new ArrayList<>();
+            final Set<Integer> visited = new HashSet<>();
+            final List<Integer> stack = new ArrayList<>();
+            stack.add(grammar);
+            while (!stack.isEmpty()) {
+                final int member = stack.remove(stack.size() - 1);
+                if (visited.add(member)) {
+                    members.add(member);
+                    final String[] imports = grammars.get(member).imports;
+                    for (int i = imports.length - 1; i >= 0; --i) {
+                        final Integer index = grammarIndices.get(imports[i]);
+                        if (index != null && !visited.contains(index)) {
+                            stack.add(index);
+                        }
+                    }
+                }
+            }
+            return members;
+        }
+
+        /**
+         * Returns the rules (and literal tokens) visible in the given grammar, the first definition wins.
+         */
+        private Map<String, Integer> getScope(int grammar) {
+            Map<String, Integer> scope = scopes.get(grammar);
+            if (scope == null) {
+                scope = new HashMap<>();
+                for (int member : getMembers(grammar)) {
+                    final Summary summary = grammars.get(member);
+                    for (int rule = 0; rule < summary.ruleNames.length; ++rule) {
+                        final int node = firstNodes[member] + rule;
+                        if (!scope.containsKey(summary.ruleNames[rule])) {
+                            scope.put(summary.ruleNames[rule], node);
+                        }
+                        final String literal = summary.ruleLiterals[rule];
+                        if (literal != null && !scope.containsKey(literal)) {
+                            scope.put(literal, node);
+                        }
+                    }
+                }
+                scopes.put(grammar, scope);
+            }
+            return scope;
+        }
+
+        /**
+         * Returns the scope of the grammar given as tokenVocab of the given member respectively root grammar.
+         */
+        private Map<String, Integer> getVocabularyScope(int member, int root) {
+            String tokenVocab = grammars.get(member).tokenVocab;
+            if (tokenVocab == null) {
+                tokenVocab = grammars.get(root).tokenVocab;
+            }
+            if (tokenVocab == null) {
+                return null;
+            }
+            final Integer vocabulary = grammarIndices.get(tokenVocab);
+            if (vocabulary == null || vocabulary == root) {
+                return null;
+            }
+            consumedLexerGrammars.addAll(getMembers(vocabulary));
+            return getScope(vocabulary);
+        }
+
+        private void addEdge(int source, int target) {
+            if (numberOfEdges == edgeSources.length) {
+                edgeSources = Arrays.copyOf(edgeSources, numberOfEdges * 2);
+                edgeTargets = Arrays.copyOf(edgeTargets, numberOfEdges * 2);
+            }
+            edgeSources[numberOfEdges] = source;
+            edgeTargets[numberOfEdges] = target;
+            ++numberOfEdges;
+        }
+
+        /**
+         * Sorts the edges by source (counting sort) so that the successors of a node are successors[successorStarts[
+         * node]] to successors[successorStarts[node + 1] - 1].
+         */
+        private void buildSuccessors() {
+            successorStarts = new int[numberOfNodes + 1];
+            for (int i = 0; i < numberOfEdges; ++i) {
+                ++successorStarts[edgeSources[i] + 1];
+            }
+            for (int node = 0; node < numberOfNodes; ++node) {
+                successorStarts[node + 1] += successorStarts[node];
+            }
+            successors = new int[numberOfEdges];
+            final int[] positions = Arrays.copyOf(successorStarts, numberOfNodes);
+            for (int i = 0; i < numberOfEdges; ++i) {
+                successors[positions[edgeSources[i]]++] = edgeTargets[i];
+            }
+        }
+
+        private List<Integer> getStartNodes(List<Integer> roots) {
+            final List<Integer> startNodes = new ArrayList<>();
+            for (int root : roots) {
+                final Summary grammar = grammars.get(root);
+                if (grammar.grammarType == ANTLRParser.LEXER_GRAMMAR) {
+                    if (!consumedLexerGrammars.contains(root)) {
+                        addAllTokens(root, startNodes);
+                    }
+                } else if (startRules.length > 0) {
+                    final Map<String, Integer> scope = getScope(root);
+                    for (String startRule : startRules) {
+                        final Integer node = scope.get(startRule.trim());
+                        if (node != null) {
+                            startNodes.add(node);
+                        }
+                    }
+                } else {
+                    addFirstParserRule(root, startNodes);
+                }
+            }
+            for (int i = 0; i < grammars.size(); ++i) {
+                final int[] kinds = grammars.get(i).ruleKinds;
+                for (int rule = 0; rule < kinds.length; ++rule) {
+                    if (kinds[rule] == TOKEN_WITH_ACTION) {
+                        startNodes.add(firstNodes[i] + rule);
+                    }
+                }
+            }
+            return startNodes;
+        }
+
+        private void addAllTokens(int lexerGrammar, List<Integer> startNodes) {
+            for (int member : getMembers(lexerGrammar)) {
+                final int[] kinds = grammars.get(member).ruleKinds;
+                for (int rule = 0; rule < kinds.length; ++rule) {
+                    if (kinds[rule] != FRAGMENT) {
+                        startNodes.add(firstNodes[member] + rule);
+                    }
+                }
+            }
+        }
+
+        private void addFirstParserRule(int grammar, List<Integer> startNodes) {
+            final Summary summary = grammars.get(grammar);
+            int firstRule = -1;
+            for (int rule = 0; rule < summary.ruleNames.length; ++rule) {
+                if (summary.ruleKinds[rule] == PARSER_RULE
+                        && (firstRule == -1 || summary.ruleLines[rule] < summary.ruleLines[firstRule])) {
+                    firstRule = rule;
+                }
+            }
+            if (firstRule != -1) {
+                startNodes.add(firstNodes[grammar] + firstRule);
+            }
+        }
+
+        private void report(boolean[] isReachable, ICrossFileLog log) {
+            final int[] components = getComponentsOfUnreachableNodes(isReachable);
+            final Map<Integer, List<String>> cycles = new HashMap<>();
+            for (int node = 0; node < numberOfNodes; ++node) {
+                if (!isReachable[node]) {
+                    List<String> cycle = cycles.get(components[node]);
+                    if (cycle == null) {
+                        cycle = new ArrayList<>();
+                        cycles.put(components[node], cycle);
+                    }
+                    cycle.add(getRuleName(node));
+                }
+            }
+            for (int grammar = 0; grammar < grammars.size(); ++grammar) {
+                final Summary summary = grammars.get(grammar);
+                for (int rule = 0; rule < summary.ruleNames.length; ++rule) {
+                    final int node = firstNodes[grammar] + rule;
+                    if (!isReachable[node]) {
+                        final StringBuilder message = new StringBuilder();
+                        switch (summary.ruleKinds[rule]) {
+                            case PARSER_RULE:
+                                message.append("Rule ").append(summary.ruleNames[rule])
+                                        .append(" is not reachable from the start rules.");
+                                break;
+                            case FRAGMENT:
+                                message.append("Fragment ").append(summary.ruleNames[rule])
+                                        .append(" is never used.");
+                                break;
+                            default:
+                                message.append("Token ").append(summary.ruleNames[rule]).append(" is never used.");
+                                break;
+                        }
+                        final List<String> cycle = cycles.get(components[node]);
+                        if (cycle.size() > 1) {
+                            Collections.sort(cycle);
+                            message.append(" It is only used by the cycle of unused rules ");
+                            appendNames(message, cycle).append('.');
+                        }
+                        //passed as argument, the key is a MessageFormat pattern
+                        log.log(fileNames.get(grammar), summary.ruleLines[rule], "{0}", message.toString());
+                    }
+                }
+            }
+        }
+
+        private StringBuilder appendNames(StringBuilder builder, List<String> names) {
+            for (int i = 0; i < names.size(); ++i) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(names.get(i));
+            }
+            return builder;
+        }
+
+        private String getRuleName(int node) {
+            int grammar = Arrays.binarySearch(firstNodes, node);
+            if (grammar < 0) {
+                grammar = -grammar - 2;
+            }
+            //grammars without rules share their first node with the next grammar
+            while (firstNodes[grammar + 1] <= node) {
+                ++grammar;
+            }
+            return grammars.get(grammar).ruleNames[node - firstNodes[grammar]];
+        }
+
+        /**
+         * Returns the strongly connected component of each unreachable node (Tarjan's algorithm without recursion,
+         * restricted to the unreachable nodes), reachable nodes get -1.
+         */
+        private int[] getComponentsOfUnreachableNodes(boolean[] isReachable) {
+            final int[] components = new int[numberOfNodes];
+            final int[] indices = new int[numberOfNodes];
+            final int[] lowLinks = new int[numberOfNodes];
+            final boolean[] isOnStack = new boolean[numberOfNodes];
+            final int[] stack = new int[numberOfNodes];
+            final int[] callStack = new int[numberOfNodes];
+            final int[] nextSuccessors = new int[numberOfNodes];
+            Arrays.fill(components, -1);
+            Arrays.fill(indices, -1);
+            int index = 0;
+            int stackSize = 0;
+            int numberOfComponents = 0;
+            for (int start = 0; start < numberOfNodes; ++start) {
+                if (isReachable[start] || indices[start] != -1) {
+                    continue;
+                }
+                int callStackSize = 0;
+                callStack[callStackSize++] = start;
+                indices[start] = index;
+                lowLinks[start] = index;
+                ++index;
+                stack[stackSize++] = start;
+                isOnStack[start] = true;
+                nextSuccessors[start] = successorStarts[start];
+                while (callStackSize > 0) {
+                    final int node = callStack[callStackSize - 1];
+                    if (nextSuccessors[node] < successorStarts[node + 1]) {
+                        final int successor = successors[nextSuccessors[node]++];
+                        if (isReachable[successor]) {
+                            continue;
+                        }
+                        if (indices[successor] == -1) {
+                            indices[successor] = index;
+                            lowLinks[successor] = index;
+                            ++index;
+                            stack[stackSize++] = successor;
+                            isOnStack[successor] = true;
+                            nextSuccessors[successor] = successorStarts[successor];
+                            callStack[callStackSize++] = successor;
+                        } else if (isOnStack[successor]) {
+                            lowLinks[node] = Math.min(lowLinks[node], indices[successor]);
+                        }
+                    } else {
+                        --callStackSize;
+                        if (callStackSize > 0) {
+                            final int caller = callStack[callStackSize - 1];
+                            lowLinks[caller] = Math.min(lowLinks[caller], lowLinks[node]);
+                        }
+                        if (lowLinks[node] == indices[node]) {
+                            int member;
+                            do {
+                                member = stack[--stackSize];
+                                isOnStack[member] = false;
+                                components[member] = numberOfComponents;
+                            } while (member != node);
+                            ++numberOfComponents;
+                        }
+                    }
+                }
+            }
+            return components;
+        }
+    }
+}
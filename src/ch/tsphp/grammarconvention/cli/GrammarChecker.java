@@ -0,0 +1,163 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.cli;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the given grammar files respectively the grammar files in the given directories with the GrammarWalker
+ * module of the given CheckStyle configuration and prints the violations as file:line[:column]: message.
+ * <p/>
+ * It does not need CheckStyle's Checker and creates the walker via {@link GrammarWalkers}.
+ * <p/>
+ * Usage: GrammarChecker [-t] &lt;checkstyle configuration&gt; &lt;file or directory&gt;...
+ * <br/>
+ * -t prints the time needed to set up the walker and to check the files to the error stream.
+ * <p/>
+ * Exit code: 0 if there are no violations, 1 if there are violations, 2 in case of wrong usage.
+ */
+public final class GrammarChecker
+{
+    private static final String USAGE = "Usage: GrammarChecker [-t] <checkstyle configuration> <file or directory>...";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String GRAMMAR_EXTENSION = ".g";
+
+    private GrammarChecker() {
+    }
+
+    public static void main(String[] args) throws CheckstyleException, IOException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Checks the files given by the arguments (see {@link GrammarChecker}) and returns the exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) throws CheckstyleException, IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        final boolean printsTiming = arguments.remove("-t");
+        if (arguments.size() < 2) {
+            err.println(USAGE);
+            return 2;
+        }
+        final long start = System.nanoTime();
+        final GrammarWalker walker = GrammarWalkers.create(arguments.get(0));
+        final ConsoleDispatcher dispatcher = new ConsoleDispatcher(out);
+        walker.setMessageDispatcher(dispatcher);
+        walker.beginProcessing(UTF8.name());
+        final long setUp = System.nanoTime();
+
+        final List<File> files = collectGrammarFiles(arguments.subList(1, arguments.size()));
+        check(walker, dispatcher, files);
+        final long end = System.nanoTime();
+
+        if (printsTiming) {
+            final long checkMillis = TimeUnit.NANOSECONDS.toMillis(end - setUp);
+            err.println("set up: " + TimeUnit.NANOSECONDS.toMillis(setUp - start) + " ms, checked " + files.size()
+                    + " files in " + checkMillis + " ms (" + (checkMillis / Math.max(files.size(), 1)) + " ms/file)");
+        }
+        if (dispatcher.numberOfViolations > 0) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the grammar files given respectively contained in the directories given (recursively, sorted by name).
+     */
+    static List<File> collectGrammarFiles(List<String> paths) {
+        final List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            collectGrammarFiles(new File(path), files);
+        }
+        return files;
+    }
+
+    /**
+     * Checks the given files with the given walker, whose processing already began, and finishes processing, the
+     * violations (also the ones of cross-file checks) are reported to the given dispatcher.
+     */
+    static void check(GrammarWalker walker, MessageDispatcher dispatcher, List<File> files) throws IOException {
+        process(walker, dispatcher, files);
+        walker.finishProcessing();
+        walker.destroy();
+    }
+
+    /**
+     * Checks the given files with the given walker, whose processing already began, without finishing processing.
+     */
+    static void process(GrammarWalker walker, MessageDispatcher dispatcher, List<File> files) throws IOException {
+        for (File file : files) {
+            final String fileName = file.getPath();
+            dispatcher.fireFileStarted(fileName);
+            dispatcher.fireErrors(fileName, walker.process(file, Files.readAllLines(file.toPath(), UTF8)));
+            dispatcher.fireFileFinished(fileName);
+        }
+    }
+
+    private static void collectGrammarFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    collectGrammarFiles(child, files);
+                }
+            }
+        } else if (file.getName().endsWith(GRAMMAR_EXTENSION)) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Prints the violations of the files, also the ones of cross-file checks which are dispatched by the walker once
+     * processing finished.
+     */
+    private static final class ConsoleDispatcher implements MessageDispatcher
+    {
+        private final PrintStream out;
+        private int numberOfViolations;
+
+        private ConsoleDispatcher(PrintStream outputStream) {
+            out = outputStream;
+        }
+
+        @Override
+        public void fireFileStarted(String fileName) {
+        }
+
+        @Override
+        public void fireFileFinished(String fileName) {
+        }
+
+        @Override
+        public void fireErrors(String fileName, SortedSet<LocalizedMessage> errors) {
+            for (LocalizedMessage message : errors) {
+                final StringBuilder builder = new StringBuilder(fileName).append(':').append(message.getLineNo());
+                if (message.getColumnNo() > 0) {
+                    builder.append(':').append(message.getColumnNo());
+                }
+                out.println(builder.append(": ").append(message.getMessage()).toString());
+                ++numberOfViolations;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.cli;
+
+import ch.tsphp.grammarconvention.GrammarImports;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Partitions grammar files into shards by a stable hash, grammars which import each other (directly or transitively)
+ * form an import group and end up in the same shard, hence a grammar is checked by the same process as its imports.
+ * Cross-file checks do not depend on the partition, they are reduced once the summaries of all shards were merged
+ * (see {@link ShardedGrammarChecker}).
+ * <p/>
+ * The hash of a group is the CRC-32 of the smallest path of the group relative to the deepest directory which contains
+ * all given files (with / as separator). The partition thus only depends on the given set of files and their imports
+ * - not on the working directory, on whether the paths are absolute or on where the repository is checked out - and
+ * is the same in every process and on every machine which is given the same files.
+ */
+public final class ShardPartitioner
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ShardPartitioner() {
+    }
+
+    /**
+     * Returns the files per shard, the files of a shard keep the order of the given files.
+     */
+    public static List<List<File>> partition(List<File> files, int numberOfShards) throws IOException {
+        if (numberOfShards < 1) {
+            throw new IllegalArgumentException("The number of shards needs to be at least 1, was " + numberOfShards);
+        }
+        final int numberOfFiles = files.size();
+        final List<Path> paths = new ArrayList<>();
+        final Map<File, Integer> indices = new HashMap<>();
+        for (int i = 0; i < numberOfFiles; ++i) {
+            final File file = files.get(i).getCanonicalFile();
+            paths.add(file.toPath());
+            indices.put(file, i);
+        }
+        final Path commonDirectory = getCommonDirectory(paths);
+        final int[] parents = new int[numberOfFiles];
+        for (int i = 0; i < numberOfFiles; ++i) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < numberOfFiles; ++i) {
+            for (File importedFile : GrammarImports.getImportedFiles(files.get(i))) {
+                final Integer index = indices.get(importedFile.getCanonicalFile());
+                if (index != null) {
+                    parents[find(parents, i)] = find(parents, index);
+                }
+            }
+        }
+
+        final Map<Integer, String> groupKeys = new HashMap<>();
+        for (int i = 0; i < numberOfFiles; ++i) {
+            final int root = find(parents, i);
+            Path relativePath = paths.get(i);
+            if (commonDirectory != null) {
+                relativePath = commonDirectory.relativize(relativePath);
+            }
+            final String path = getPortablePath(relativePath);
+            final String key = groupKeys.get(root);
+            if (key == null || path.compareTo(key) < 0) {
+                groupKeys.put(root, path);
+            }
+        }
+
+        final List<List<File>> shards = new ArrayList<>();
+        for (int i = 0; i < numberOfShards; ++i) {
+            shards.add(new ArrayList<File>());
+        }
+        for (int i = 0; i < numberOfFiles; ++i) {
+            shards.get(getShard(groupKeys.get(find(parents, i)), numberOfShards)).add(files.get(i));
+        }
+        return shards;
+    }
+
+    private static int getShard(String groupKey, int numberOfShards) {
+        final CRC32 crc = new CRC32();
+        crc.update(groupKey.getBytes(UTF8));
+        return (int) (crc.getValue() % numberOfShards);
+    }
+
+    /**
+     * Returns the deepest directory which contains all given paths or null if there is none (e.g. different drives).
+     */
+    private static Path getCommonDirectory(List<Path> paths) {
+        if (paths.isEmpty()) {
+            return null;
+        }
+        Path directory = paths.get(0).getParent();
+        for (Path path : paths) {
+            while (directory != null && !path.startsWith(directory)) {
+                directory = directory.getParent();
+            }
+        }
+        return directory;
+    }
+
+    private static String getPortablePath(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    private static int find(int[] parents, int index) {
+        int root = index;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        int current = index;
+        while (parents[current] != root) {
+            final int next = parents[current];
+            parents[current] = root;
+            current = next;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.cli;
+
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The violations found by one shard respectively the merged violations of several shards.
+ * <p/>
+ * The violations are kept sorted by file name, line, column and message, hence printing a merged result is
+ * deterministic regardless of the order in which the shards finished. The result file is a compact binary format
+ * which ends with a marker, so that results of aborted workers are detected.
+ * <p/>
+ * A result also carries the summaries of the cross-file checks (see
+ * {@link ch.tsphp.grammarconvention.GrammarWalker#takeCrossFileSummaries()}) since their violations can only be
+ * reported once the summaries of all shards were merged. The summaries are stored via Java serialization.
+ */
+public final class ShardResult implements MessageDispatcher
+{
+    private static final int MAGIC = 0x54534743;
+    private static final int VERSION = 2;
+
+    private final int numberOfShards;
+    private final SortedSet<Integer> shards = new TreeSet<>();
+    private final Map<String, SortedSet<Violation>> violations = new TreeMap<>();
+    private final SortedSet<String> startedFiles = new TreeSet<>();
+    private final SortedMap<String, SortedMap<String, Serializable>> crossFileSummaries = new TreeMap<>();
+
+    public ShardResult(int shard, int theNumberOfShards) {
+        numberOfShards = theNumberOfShards;
+        shards.add(shard);
+    }
+
+    private ShardResult(int theNumberOfShards) {
+        numberOfShards = theNumberOfShards;
+    }
+
+    @Override
+    public void fireFileStarted(String fileName) {
+        //the walker dispatches the cross-file violations in one more started/finished pair per file (see GrammarWalker)
+        startedFiles.add(fileName);
+    }
+
+    @Override
+    public void fireFileFinished(String fileName) {
+    }
+
+    @Override
+    public void fireErrors(String fileName, SortedSet<LocalizedMessage> errors) {
+        for (LocalizedMessage message : errors) {
+            add(fileName, new Violation(message.getLineNo(), message.getColumnNo(), message.getMessage()));
+        }
+    }
+
+    public int getNumberOfFiles() {
+        return startedFiles.size();
+    }
+
+    /**
+     * Returns the summaries of the cross-file checks keyed by check and file name.
+     */
+    public SortedMap<String, SortedMap<String, Serializable>> getCrossFileSummaries() {
+        return crossFileSummaries;
+    }
+
+    public void addCrossFileSummaries(Map<String, ? extends SortedMap<String, Serializable>> summaries) {
+        for (Map.Entry<String, ? extends SortedMap<String, Serializable>> entry : summaries.entrySet()) {
+            SortedMap<String, Serializable> checkSummaries = crossFileSummaries.get(entry.getKey());
+            if (checkSummaries == null) {
+                checkSummaries = new TreeMap<>();
+                crossFileSummaries.put(entry.getKey(), checkSummaries);
+            }
+            checkSummaries.putAll(entry.getValue());
+        }
+    }
+
+    public int getNumberOfViolations() {
+        int count = 0;
+        for (SortedSet<Violation> fileViolations : violations.values()) {
+            count += fileViolations.size();
+        }
+        return count;
+    }
+
+    /**
+     * Indicates whether the results of all shards were merged into this result.
+     */
+    public boolean isComplete() {
+        return shards.size() == numberOfShards;
+    }
+
+    /**
+     * Merges the given result of another shard of the same partition into this result.
+     *
+     * @throws IllegalArgumentException in case the number of shards differs or the shard was already merged
+     */
+    public void merge(ShardResult result) {
+        if (result.numberOfShards != numberOfShards) {
+            throw new IllegalArgumentException("Cannot merge a result of " + result.numberOfShards
+                    + " shards into a result of " + numberOfShards + " shards.");
+        }
+        for (Integer shard : result.shards) {
+            if (!shards.add(shard)) {
+                throw new IllegalArgumentException("The result of shard " + shard + " was already merged.");
+            }
+        }
+        startedFiles.addAll(result.startedFiles);
+        addCrossFileSummaries(result.crossFileSummaries);
+        for (Map.Entry<String, SortedSet<Violation>> entry : result.violations.entrySet()) {
+            for (Violation violation : entry.getValue()) {
+                add(entry.getKey(), violation);
+            }
+        }
+    }
+
+    /**
+     * Prints the violations as file:line[:column]: message.
+     */
+    public void print(PrintStream out) {
+        for (Map.Entry<String, SortedSet<Violation>> entry : violations.entrySet()) {
+            for (Violation violation : entry.getValue()) {
+                final StringBuilder builder = new StringBuilder(entry.getKey()).append(':').append(violation.line);
+                if (violation.column > 0) {
+                    builder.append(':').append(violation.column);
+                }
+                out.println(builder.append(": ").append(violation.message).toString());
+            }
+        }
+    }
+
+    public void write(File file) throws IOException {
+        if (shards.size() != 1) {
+            throw new IllegalStateException("Only the result of a single shard can be written.");
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(shards.first());
+            output.writeInt(numberOfShards);
+            output.writeInt(startedFiles.size());
+            for (String fileName : startedFiles) {
+                output.writeUTF(fileName);
+            }
+            output.writeInt(violations.size());
+            for (Map.Entry<String, SortedSet<Violation>> entry : violations.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue().size());
+                for (Violation violation : entry.getValue()) {
+                    output.writeInt(violation.line);
+                    output.writeInt(violation.column);
+                    output.writeUTF(violation.message);
+                }
+            }
+            final byte[] summaries = serialize(crossFileSummaries);
+            output.writeInt(summaries.length);
+            output.write(summaries);
+            output.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * Reads a result file written by {@link #write(File)}.
+     *
+     * @throws IOException in case the file could not be read, is not a result file or is incomplete
+     */
+    public static ShardResult read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a shard result file of version " + VERSION);
+            }
+            final int shard = input.readInt();
+            final ShardResult result = new ShardResult(input.readInt());
+            result.shards.add(shard);
+            final int numberOfFiles = input.readInt();
+            for (int i = 0; i < numberOfFiles; ++i) {
+                result.startedFiles.add(input.readUTF());
+            }
+            final int numberOfFilesWithViolations = input.readInt();
+            for (int i = 0; i < numberOfFilesWithViolations; ++i) {
+                final String fileName = input.readUTF();
+                final int numberOfViolations = input.readInt();
+                for (int j = 0; j < numberOfViolations; ++j) {
+                    result.add(fileName, new Violation(input.readInt(), input.readInt(), input.readUTF()));
+                }
+            }
+            final byte[] summaries = new byte[input.readInt()];
+            input.readFully(summaries);
+            result.addCrossFileSummaries(deserialize(file, summaries));
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is incomplete.");
+            }
+            return result;
+        }
+    }
+
+    private static byte[] serialize(SortedMap<String, SortedMap<String, Serializable>> summaries) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(summaries);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SortedMap<String, SortedMap<String, Serializable>> deserialize(File file, byte[] summaries)
+            throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(summaries))) {
+            return (SortedMap<String, SortedMap<String, Serializable>>) input.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("The cross-file summaries in " + file + " cannot be read.", ex);
+        }
+    }
+
+    private void add(String fileName, Violation violation) {
+        SortedSet<Violation> fileViolations = violations.get(fileName);
+        if (fileViolations == null) {
+            fileViolations = new TreeSet<>();
+            violations.put(fileName, fileViolations);
+        }
+        fileViolations.add(violation);
+    }
+
+    private static final class Violation implements Comparable<Violation>
+    {
+        private final int line;
+        private final int column;
+        private final String message;
+
+        private Violation(int theLine, int theColumn, String theMessage) {
+            line = theLine;
+            column = theColumn;
+            message = theMessage;
+        }
+
+        @Override
+        public int compareTo(Violation other) {
+            if (line != other.line) {
+                return Integer.compare(line, other.line);
+            }
+            if (column != other.column) {
+                return Integer.compare(column, other.column);
+            }
+            return message.compareTo(other.message);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Violation && compareTo((Violation) object) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (line * 31 + column) * 31 + message.hashCode();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.cli;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks grammar files like the {@link GrammarChecker} but splits them into shards (see {@link ShardPartitioner})
+ * which are checked by separate processes, each with its own heap. The results of the shards are merged into one
+ * report which does not depend on the order in which the shards finished.
+ * <p/>
+ * Usage:
+ * <br/>
+ * ShardedGrammarChecker -shards &lt;n&gt; [-J&lt;jvm option&gt;]... &lt;checkstyle configuration&gt; &lt;file or
+ * directory&gt;...
+ * <br/>
+ * starts n worker processes on this machine (with the given options, e.g. -J-Xmx512m), merges and prints the results.
+ * <br/>
+ * ShardedGrammarChecker -shard &lt;i&gt;/&lt;n&gt; -out &lt;result file&gt; &lt;checkstyle configuration&gt; &lt;file
+ * or directory&gt;...
+ * <br/>
+ * checks only the shard i (zero based) of n and writes the result file, e.g. to distribute the shards over machines.
+ * <br/>
+ * ShardedGrammarChecker -merge &lt;checkstyle configuration&gt; &lt;result file&gt;...
+ * <br/>
+ * merges and prints the result files of all shards.
+ * <p/>
+ * The shards do not report the violations of cross-file checks but write their summaries to the result file. They are
+ * merged and reduced once with the checks of the given configuration, hence cross-file checks see all grammars.
+ * <p/>
+ * Exit code: 0 if there are no violations, 1 if there are violations, 2 in case of wrong usage and 3 if a shard
+ * failed or results are missing.
+ */
+public final class ShardedGrammarChecker
+{
+    private static final String USAGE = "Usage: ShardedGrammarChecker -shards <n> [-J<jvm option>]... "
+            + "<checkstyle configuration> <file or directory>...\n"
+            + "       ShardedGrammarChecker -shard <i>/<n> -out <result file> "
+            + "<checkstyle configuration> <file or directory>...\n"
+            + "       ShardedGrammarChecker -merge <checkstyle configuration> <result file>...";
+    private static final int EXIT_VIOLATIONS = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_FAILED = 3;
+
+    private ShardedGrammarChecker() {
+    }
+
+    public static void main(String[] args) throws CheckstyleException, IOException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the mode given by the arguments (see {@link ShardedGrammarChecker}) and returns the exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) throws CheckstyleException, IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (arguments.size() >= 3 && arguments.get(0).equals("-merge")) {
+            return merge(arguments.get(1), arguments.subList(2, arguments.size()), out, err);
+        }
+        if (arguments.size() >= 5 && arguments.get(0).equals("-shard") && arguments.get(2).equals("-out")) {
+            final String[] shardAndCount = arguments.get(1).split("/");
+            if (shardAndCount.length == 2) {
+                final int shard = parseNumber(shardAndCount[0]);
+                final int numberOfShards = parseNumber(shardAndCount[1]);
+                if (shard >= 0 && shard < numberOfShards) {
+                    checkShard(shard, numberOfShards, new File(arguments.get(3)), arguments.subList(4,
+                            arguments.size()));
+                    return 0;
+                }
+            }
+        }
+        if (arguments.size() >= 2 && arguments.get(0).equals("-shards")) {
+            final int numberOfShards = parseNumber(arguments.get(1));
+            final List<String> jvmOptions = new ArrayList<>();
+            int index = 2;
+            while (index < arguments.size() && arguments.get(index).startsWith("-J")) {
+                jvmOptions.add(arguments.get(index).substring(2));
+                ++index;
+            }
+            if (numberOfShards > 0 && arguments.size() - index >= 2) {
+                return checkInProcesses(numberOfShards, jvmOptions, arguments.subList(index, arguments.size()),
+                        out, err);
+            }
+        }
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    /**
+     * Returns the given number or -1 if it is malformed, which is rejected as wrong usage as a negative number is.
+     */
+    private static int parseNumber(String number) {
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static void checkShard(int shard, int numberOfShards, File resultFile, List<String> arguments)
+            throws CheckstyleException, IOException {
+        final List<File> files = ShardPartitioner.partition(
+                GrammarChecker.collectGrammarFiles(arguments.subList(1, arguments.size())), numberOfShards).get(shard);
+        final GrammarWalker walker = GrammarWalkers.create(arguments.get(0));
+        final ShardResult result = new ShardResult(shard, numberOfShards);
+        walker.setMessageDispatcher(result);
+        walker.beginProcessing("UTF-8");
+        GrammarChecker.process(walker, result, files);
+        //reduced in merge together with the summaries of the other shards
+        result.addCrossFileSummaries(walker.takeCrossFileSummaries());
+        walker.finishProcessing();
+        walker.destroy();
+        result.write(resultFile);
+    }
+
+    private static int checkInProcesses(int numberOfShards, List<String> jvmOptions, List<String> arguments,
+            PrintStream out, PrintStream err) throws CheckstyleException, IOException {
+        final File directory = Files.createTempDirectory("grammar-shards").toFile();
+        try {
+            final String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+            final List<Process> processes = new ArrayList<>();
+            final List<String> resultFiles = new ArrayList<>();
+            for (int i = 0; i < numberOfShards; ++i) {
+                final File resultFile = new File(directory, "shard" + i + ".result");
+                resultFiles.add(resultFile.getPath());
+                final List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmOptions);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardedGrammarChecker.class.getName());
+                command.add("-shard");
+                command.add(i + "/" + numberOfShards);
+                command.add("-out");
+                command.add(resultFile.getPath());
+                command.addAll(arguments);
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+            boolean hasFailed = false;
+            for (int i = 0; i < numberOfShards; ++i) {
+                final int exitCode = waitFor(processes.get(i));
+                if (exitCode != 0) {
+                    err.println("shard " + i + "/" + numberOfShards + " failed with exit code " + exitCode);
+                    hasFailed = true;
+                }
+            }
+            if (hasFailed) {
+                return EXIT_FAILED;
+            }
+            return merge(arguments.get(0), resultFiles, out, err);
+        } finally {
+            for (File file : directory.listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory.toPath());
+        }
+    }
+
+    private static int merge(String configurationFile, List<String> resultFiles, PrintStream out, PrintStream err)
+            throws CheckstyleException, IOException {
+        final ShardResult result = ShardResult.read(new File(resultFiles.get(0)));
+        for (String resultFile : resultFiles.subList(1, resultFiles.size())) {
+            result.merge(ShardResult.read(new File(resultFile)));
+        }
+        if (!result.isComplete()) {
+            err.println("The results of some shards are missing.");
+            return EXIT_FAILED;
+        }
+        final GrammarWalker walker = GrammarWalkers.create(configurationFile);
+        walker.setMessageDispatcher(result);
+        walker.beginProcessing("UTF-8");
+        walker.addCrossFileSummaries(result.getCrossFileSummaries());
+        walker.finishProcessing();
+        walker.destroy();
+        result.print(out);
+        err.println("checked " + result.getNumberOfFiles() + " files in " + resultFiles.size() + " shards, found "
+                + result.getNumberOfViolations() + " violations");
+        if (result.getNumberOfViolations() > 0) {
+            return EXIT_VIOLATIONS;
+        }
+        return 0;
+    }
+
+    private static int waitFor(Process process) throws InterruptedIOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException ex) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shard");
+        }
+    }
+}
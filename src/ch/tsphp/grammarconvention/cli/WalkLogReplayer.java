@@ -0,0 +1,109 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.cli;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import ch.tsphp.grammarconvention.compact.WalkLog;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks the checks of the given CheckStyle configuration over the walks recorded in a {@link WalkLog} (see
+ * GrammarWalker's property walkLogFile) without reading, lexing or parsing the grammars, e.g. to measure the cost of
+ * the checks in isolation or to reproduce a slow check with the log attached to a bug report.
+ * <p/>
+ * Usage: WalkLogReplayer [-iterations &lt;n&gt;] &lt;checkstyle configuration&gt; &lt;walk log&gt;
+ * <br/>
+ * The log is read into memory once. Each iteration uses a new walker, so that no results of a previous iteration are
+ * re-used, and only the walks are timed. The violations of the first iteration are printed as
+ * file:line[:column]: message, the timing to the error stream.
+ * <p/>
+ * Exit code: 0 if there are no violations, 1 if there are violations, 2 in case of wrong usage.
+ */
+public final class WalkLogReplayer
+{
+    private static final String USAGE = "Usage: WalkLogReplayer [-iterations <n>] <checkstyle configuration> "
+            + "<walk log>";
+
+    private WalkLogReplayer() {
+    }
+
+    public static void main(String[] args) throws CheckstyleException, IOException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Replays the log given by the arguments (see {@link WalkLogReplayer}) and returns the exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) throws CheckstyleException, IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        int iterations = 1;
+        if (arguments.size() >= 2 && arguments.get(0).equals("-iterations")) {
+            iterations = Integer.parseInt(arguments.get(1));
+            arguments.subList(0, 2).clear();
+        }
+        if (arguments.size() != 2 || iterations < 1) {
+            err.println(USAGE);
+            return 2;
+        }
+        final WalkLog log = WalkLog.read(new File(arguments.get(1)));
+
+        ShardResult result = null;
+        final long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; ++i) {
+            final GrammarWalker walker = GrammarWalkers.create(arguments.get(0));
+            walker.setWalkLogFile(null);
+            final ShardResult iterationResult = new ShardResult(0, 1);
+            walker.setMessageDispatcher(iterationResult);
+            walker.beginProcessing("UTF-8");
+            final long start = System.nanoTime();
+            replay(walker, iterationResult, log);
+            nanos[i] = System.nanoTime() - start;
+            if (result == null) {
+                result = iterationResult;
+            }
+        }
+        Arrays.sort(nanos);
+
+        result.print(out);
+        int numberOfNodes = 0;
+        for (WalkLog.Entry entry : log.getEntries()) {
+            numberOfNodes += entry.getTree().size();
+        }
+        err.println("replayed " + log.getEntries().size() + " files (" + numberOfNodes + " nodes) in "
+                + TimeUnit.NANOSECONDS.toMicros(nanos[iterations / 2]) / 1000.0 + " ms, median of " + iterations
+                + " iterations");
+        if (result.getNumberOfViolations() > 0) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Walks the given walker, whose processing already began, over the walks of the given log and finishes processing,
+     * the violations (also the ones of cross-file checks) are reported to the given dispatcher.
+     */
+    public static void replay(GrammarWalker walker, MessageDispatcher dispatcher, WalkLog log) {
+        for (WalkLog.Entry entry : log.getEntries()) {
+            final String fileName = entry.getFileName();
+            dispatcher.fireFileStarted(fileName);
+            dispatcher.fireErrors(fileName, walker.processTree(new File(fileName), entry.getLines(), entry.getTree()));
+            dispatcher.fireFileFinished(fileName);
+        }
+        walker.finishProcessing();
+        walker.destroy();
+    }
+}
@@ -0,0 +1,11 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+/**
+ * Contains standalone command line checkers which run the GrammarWalker without CheckStyle's Checker, e.g. for
+ * pre-commit hooks.
+ */
+package ch.tsphp.grammarconvention.cli;
@@ -0,0 +1,83 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.compact;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.GrammarAST;
+
+import java.util.List;
+
+/**
+ * GrammarAST view of a node of a {@link CompactGrammarTree} which creates the views of its children on first access.
+ */
+final class CompactGrammarAST extends GrammarAST
+{
+    private final CompactGrammarTree tree;
+    private final int node;
+    private boolean areChildrenCreated;
+
+    CompactGrammarAST(CompactGrammarTree theTree, int theNode) {
+        super(createToken(theTree, theNode));
+        tree = theTree;
+        node = theNode;
+    }
+
+    private static CommonToken createToken(CompactGrammarTree tree, int node) {
+        final CommonToken token = new CommonToken(tree.getType(node), tree.getText(node));
+        token.setLine(tree.getLine(node));
+        token.setCharPositionInLine(tree.getCharPositionInLine(node));
+        return token;
+    }
+
+    private void createChildren() {
+        if (!areChildrenCreated) {
+            areChildrenCreated = true;
+            int child = tree.getFirstChild(node);
+            while (child != CompactGrammarTree.NONE) {
+                super.addChild(new CompactGrammarAST(tree, child));
+                child = tree.getNextSibling(child);
+            }
+        }
+    }
+
+    @Override
+    public Tree getChild(int i) {
+        createChildren();
+        return super.getChild(i);
+    }
+
+    @Override
+    public List<? extends Object> getChildren() {
+        createChildren();
+        return super.getChildren();
+    }
+
+    @Override
+    public int getChildCount() {
+        createChildren();
+        return super.getChildCount();
+    }
+
+    @Override
+    public GrammarAST[] getChildrenAsArray() {
+        createChildren();
+        return super.getChildrenAsArray();
+    }
+
+    @Override
+    public Tree getFirstChildWithType(int type) {
+        createChildren();
+        return super.getFirstChildWithType(type);
+    }
+
+    @Override
+    public String toStringTree() {
+        createChildren();
+        return super.toStringTree();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.compact;
+
+import org.antlr.runtime.Token;
+import org.antlr.tool.GrammarAST;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable grammar tree stored as struct of arrays.
+ * <p/>
+ * Nodes are numbered in pre-order (the root has number 0) and each property is stored in an int array indexed by
+ * the node number: token type, parent, first child, next sibling, line, position in line and an index into a table
+ * of texts which contains each distinct text only once. Compared to a GrammarAST, which carries a token, a child
+ * list and references into ANTLR's Grammar, this needs only a fraction of the heap.
+ * <p/>
+ * Only the token type, text, line and position in line of the nodes are kept. Lines and positions are the ones of
+ * the tokens, hence 0 respectively -1 for imaginary nodes (as GrammarAST, {@link #getRoot()} derives them from the
+ * first child in this case).
+ */
+public final class CompactGrammarTree
+{
+    /**
+     * Node number which indicates that there is no such node (e.g. the parent of the root).
+     */
+    public static final int NONE = -1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int INT_BYTES = 4;
+    private static final int ARRAY_COUNT = 7;
+
+    private final int[] types;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] lines;
+    private final int[] positionsInLine;
+    private final int[] textIndices;
+    private final String[] texts;
+
+    private CompactGrammarTree(int size, int textCount) {
+        types = new int[size];
+        parents = new int[size];
+        firstChildren = new int[size];
+        nextSiblings = new int[size];
+        lines = new int[size];
+        positionsInLine = new int[size];
+        textIndices = new int[size];
+        texts = new String[textCount];
+    }
+
+    /**
+     * Creates the compact representation of the tree with the given root.
+     */
+    public static CompactGrammarTree of(GrammarAST rootAst) {
+        final Map<String, Integer> textTable = new HashMap<>();
+        final int size = count(rootAst, textTable);
+        final CompactGrammarTree tree = new CompactGrammarTree(size, textTable.size());
+        for (Map.Entry<String, Integer> entry : textTable.entrySet()) {
+            tree.texts[entry.getValue()] = entry.getKey();
+        }
+        tree.add(rootAst, NONE, 0, textTable);
+        return tree;
+    }
+
+    private static int count(GrammarAST ast, Map<String, Integer> textTable) {
+        final String text = getTokenText(ast);
+        if (text != null && !textTable.containsKey(text)) {
+            textTable.put(text, textTable.size());
+        }
+        int size = 1;
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            size += count((GrammarAST) ast.getChild(i), textTable);
+        }
+        return size;
+    }
+
+    /**
+     * Adds the given node and its descendants starting with the given node number.
+     *
+     * @return the next free node number
+     */
+    private int add(GrammarAST ast, int parent, int node, Map<String, Integer> textTable) {
+        final Token token = ast.getToken();
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        textIndices[node] = NONE;
+        if (token != null) {
+            types[node] = token.getType();
+            lines[node] = token.getLine();
+            positionsInLine[node] = token.getCharPositionInLine();
+            if (token.getText() != null) {
+                textIndices[node] = textTable.get(token.getText());
+            }
+        } else {
+            types[node] = Token.INVALID_TOKEN_TYPE;
+            positionsInLine[node] = -1;
+        }
+
+        int nextNode = node + 1;
+        int previousChild = NONE;
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            final int child = nextNode;
+            nextNode = add((GrammarAST) ast.getChild(i), node, child, textTable);
+            if (previousChild == NONE) {
+                firstChildren[node] = child;
+            } else {
+                nextSiblings[previousChild] = child;
+            }
+            previousChild = child;
+        }
+        return nextNode;
+    }
+
+    private static String getTokenText(GrammarAST ast) {
+        final Token token = ast.getToken();
+        if (token == null) {
+            return null;
+        }
+        return token.getText();
+    }
+
+    /**
+     * Writes the binary representation of this tree: node count, text count, the texts (byte length followed by the
+     * UTF-8 bytes) and the arrays types, parents, first children, next siblings, lines, positions in line and text
+     * indices.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(types.length);
+        out.writeInt(texts.length);
+        for (String text : texts) {
+            final byte[] bytes = text.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (int[] array : new int[][]{
+            types, parents, firstChildren, nextSiblings, lines, positionsInLine, textIndices
+        }) {
+            for (int value : array) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a tree written by {@link #writeTo(DataOutput)} from the given buffer (e.g. a memory-mapped file).
+     *
+     * @throws IOException in case the buffer does not contain a valid tree
+     */
+    public static CompactGrammarTree readFrom(ByteBuffer buffer) throws IOException {
+        try {
+            final int size = buffer.getInt();
+            final int textCount = buffer.getInt();
+            //each node needs an int per array, each text at least its length
+            final long minimumLength = ((long) size * ARRAY_COUNT + textCount) * INT_BYTES;
+            if (size < 1 || textCount < 0 || textCount > size || minimumLength > buffer.remaining()) {
+                throw new IOException("Invalid tree header, size " + size + " text count " + textCount);
+            }
+            final CompactGrammarTree tree = new CompactGrammarTree(size, textCount);
+            for (int i = 0; i < textCount; ++i) {
+                final int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Invalid text length " + length);
+                }
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                tree.texts[i] = new String(bytes, UTF8);
+            }
+            for (int[] array : new int[][]{
+                tree.types, tree.parents, tree.firstChildren, tree.nextSiblings, tree.lines, tree.positionsInLine,
+                tree.textIndices
+            }) {
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + array.length * INT_BYTES);
+            }
+            tree.verify();
+            return tree;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Tree is truncated", ex);
+        }
+    }
+
+    private void verify() throws IOException {
+        final int size = types.length;
+        if (parents[0] != NONE || nextSiblings[0] != NONE) {
+            throw new IOException("Invalid root");
+        }
+        for (int node = 0; node < size; ++node) {
+            //pre-order numbering: parents precede and children/siblings follow their node
+            if ((node > 0 && (parents[node] < 0 || parents[node] >= node))
+                    || !isFollowingNode(firstChildren[node], node) || !isFollowingNode(nextSiblings[node], node)
+                    || textIndices[node] < NONE || textIndices[node] >= texts.length) {
+                throw new IOException("Invalid node " + node);
+            }
+        }
+    }
+
+    private boolean isFollowingNode(int reference, int node) {
+        return reference == NONE || (reference > node && reference < types.length);
+    }
+
+    /**
+     * Returns a GrammarAST view of the root which can be walked by the checks.
+     * <p/>
+     * The nodes of the view are created lazily when their parent's children are accessed the first time. The view
+     * must not be modified.
+     */
+    public GrammarAST getRoot() {
+        return new CompactGrammarAST(this, 0);
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the number of distinct texts.
+     */
+    public int getTextCount() {
+        return texts.length;
+    }
+
+    public int getType(int node) {
+        return types[node];
+    }
+
+    public String getText(int node) {
+        final int textIndex = textIndices[node];
+        if (textIndex == NONE) {
+            return null;
+        }
+        return texts[textIndex];
+    }
+
+    public int getLine(int node) {
+        return lines[node];
+    }
+
+    public int getCharPositionInLine(int node) {
+        return positionsInLine[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getChildCount(int node) {
+        int count = 0;
+        int child = firstChildren[node];
+        while (child != NONE) {
+            ++count;
+            child = nextSiblings[child];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.compact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The walks recorded by a {@link WalkLogWriter}: per walked file its path, its lines and its tree.
+ * <p/>
+ * The walker dispatches beginTree, visitToken/leaveToken in pre-order and finishTree, hence the compact tree (whose
+ * nodes are stored in pre-order with type, text, line and position in line) determines the whole sequence of events
+ * a check receives. Replaying a log (e.g. via GrammarWalker#processTree) walks the checks without lexing or parsing.
+ */
+public final class WalkLog
+{
+    static final int MAGIC = 0x5453574c;
+    static final int VERSION = 1;
+    static final byte ENTRY = 1;
+    static final byte END = 0;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<Entry> entries;
+
+    private WalkLog(List<Entry> theEntries) {
+        entries = Collections.unmodifiableList(theEntries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads the log written by a {@link WalkLogWriter} into memory.
+     *
+     * @throws IOException in case the file could not be read, is not a walk log or is incomplete
+     */
+    public static WalkLog read(File file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a walk log of version " + VERSION);
+            }
+            final List<Entry> entries = new ArrayList<>();
+            byte marker = buffer.get();
+            while (marker == ENTRY) {
+                final String fileName = readString(buffer);
+                final int numberOfLines = buffer.getInt();
+                if (numberOfLines < 0 || numberOfLines > buffer.remaining()) {
+                    throw new IOException("Invalid number of lines " + numberOfLines);
+                }
+                final String[] lines = new String[numberOfLines];
+                for (int i = 0; i < numberOfLines; ++i) {
+                    lines[i] = readString(buffer);
+                }
+                entries.add(new Entry(fileName, Arrays.asList(lines), CompactGrammarTree.readFrom(buffer)));
+                marker = buffer.get();
+            }
+            if (marker != END) {
+                throw new IOException(file + " contains an invalid marker " + marker);
+            }
+            return new WalkLog(entries);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException(file + " is incomplete.", ex);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid text length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * The walk of one file.
+     */
+    public static final class Entry
+    {
+        private final String fileName;
+        private final List<String> lines;
+        private final CompactGrammarTree tree;
+
+        Entry(String theFileName, List<String> theLines, CompactGrammarTree theTree) {
+            fileName = theFileName;
+            lines = theLines;
+            tree = theTree;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        public CompactGrammarTree getTree() {
+            return tree;
+        }
+    }
+}
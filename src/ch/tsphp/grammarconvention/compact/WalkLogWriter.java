@@ -0,0 +1,59 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.compact;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Appends walks to a {@link WalkLog} file as they happen, the log is only complete (readable) once the writer was
+ * closed.
+ * <p/>
+ * Format: magic, version, per walk an entry marker followed by the path, the number of lines, the lines (each as byte
+ * length and UTF-8 bytes) and the tree as written by {@link CompactGrammarTree#writeTo(java.io.DataOutput)}, and an
+ * end marker.
+ */
+public final class WalkLogWriter implements Closeable
+{
+    private final DataOutputStream output;
+
+    public WalkLogWriter(File file) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        output.writeInt(WalkLog.MAGIC);
+        output.writeInt(WalkLog.VERSION);
+    }
+
+    public synchronized void write(String fileName, List<String> lines, CompactGrammarTree tree) throws IOException {
+        output.writeByte(WalkLog.ENTRY);
+        writeString(fileName);
+        output.writeInt(lines.size());
+        for (String line : lines) {
+            writeString(line);
+        }
+        tree.writeTo(output);
+    }
+
+    private void writeString(String text) throws IOException {
+        final byte[] bytes = text.getBytes(WalkLog.UTF8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            output.writeByte(WalkLog.END);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.incremental;
+
+import ch.tsphp.grammarconvention.GrammarImports;
+import org.antlr.grammar.v3.ANTLRLexer;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.GrammarAST;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Parser which re-parses only the rule affected by an edit instead of the whole grammar.
+ * <p/>
+ * The first call of {@link #update(String)} parses the whole text. Subsequent calls determine the edited range
+ * (common prefix and suffix of the old and the new text) and if it lies within a single rule, only this rule is
+ * re-lexed and re-parsed with ANTLRParser. The new RULE subtree replaces the old one in the previous GrammarAST and
+ * the positions of the following rules are adjusted. Whenever the edit affects more than one rule, anything outside
+ * of the rules (header, options etc.), the re-parsed rule contains syntax errors or the previous text contained
+ * syntax errors (the recovered tree would not be comparable), the whole text is parsed again.
+ * <p/>
+ * The resulting tree is equivalent to the tree of a full parse regarding structure, token types, texts, lines and
+ * positions in line. Only the names ANTLR generates for syntactic predicates (synpredN_name) can differ since the
+ * numbering continues and token indices refer to the token stream of the last re-parse.
+ * <p/>
+ * Be aware that the previous tree is modified in place and that this class is not thread-safe.
+ */
+public class IncrementalGrammarParser
+{
+    private final String fileName;
+    private final File file;
+    private String text = "";
+    private GrammarAST rootAst;
+    private Grammar grammar;
+    private int grammarType;
+    private int[] ruleStarts;
+    private int[] ruleStops;
+    private boolean isLastUpdateIncremental;
+    private boolean hasSyntaxErrors;
+
+    /**
+     * Creates a parser for the grammar with the given file name, its imports are resolved in the working directory.
+     */
+    public IncrementalGrammarParser(String theFileName) {
+        fileName = theFileName;
+        file = new File(theFileName);
+    }
+
+    /**
+     * Creates a parser for the given grammar file, its imports are resolved in the directory of the file.
+     */
+    public IncrementalGrammarParser(File theFile) {
+        fileName = theFile.getName();
+        file = theFile;
+    }
+
+    /**
+     * Returns whether the last call of update re-parsed a single rule (true) or the whole text (false).
+     */
+    public boolean isLastUpdateIncremental() {
+        return isLastUpdateIncremental;
+    }
+
+    /**
+     * Returns the tree of the given text, re-parsing only the edited rule if possible.
+     */
+    public GrammarAST update(String newText) throws RecognitionException {
+        if (rootAst == null) {
+            return parseFull(newText);
+        }
+        final int oldLength = text.length();
+        final int newLength = newText.length();
+        final int maxCommon = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < maxCommon && text.charAt(prefix) == newText.charAt(prefix)) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < maxCommon - prefix
+                && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            ++suffix;
+        }
+        return update(prefix, oldLength - prefix - suffix, newText.substring(prefix, newLength - suffix));
+    }
+
+    /**
+     * Applies the given edit (replacement of the range [offset, offset + removedLength) with the given text) and
+     * returns the tree of the resulting text.
+     */
+    public GrammarAST update(int offset, int removedLength, String insertedText) throws RecognitionException {
+        final String newText = text.substring(0, offset) + insertedText + text.substring(offset + removedLength);
+        if (rootAst == null || hasSyntaxErrors) {
+            return parseFull(newText);
+        }
+        final int ruleIndex = findEnclosingRule(offset, offset + removedLength);
+        if (ruleIndex < 0 || !reparseRule(ruleIndex, offset, removedLength, insertedText, newText)) {
+            return parseFull(newText);
+        }
+        return rootAst;
+    }
+
+    private GrammarAST parseFull(String newText) throws RecognitionException {
+        text = newText;
+        rootAst = null;
+        isLastUpdateIncremental = false;
+        final ANTLRLexer lexer = new CountingLexer(new ANTLRStringStream(newText));
+        lexer.setFileName(fileName);
+        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        final ANTLRParser parser = ANTLRParser.createParser(tokenStream);
+        parser.setFileName(fileName);
+        grammar = new Grammar(GrammarImports.createTool(file));
+        grammar.setFileName(fileName);
+        //ANTLRParser reports syntax errors to the ErrorManager without counting them itself
+        final int numberOfErrors = ErrorManager.getNumErrors();
+        final GrammarAST newRoot = parser.grammar_(grammar).getTree();
+        grammarType = parser.getGrammarType();
+        hasSyntaxErrors = ErrorManager.getNumErrors() > numberOfErrors || lexer.getNumberOfSyntaxErrors() > 0;
+
+        final int childCount = newRoot.getChildCount();
+        ruleStarts = new int[childCount];
+        ruleStops = new int[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            final GrammarAST child = (GrammarAST) newRoot.getChild(i);
+            ruleStarts[i] = -1;
+            ruleStops[i] = -1;
+            if (child.getType() == ANTLRParser.RULE && child.getTokenStartIndex() >= 0
+                    && child.getTokenStopIndex() >= child.getTokenStartIndex()) {
+                ruleStarts[i] = ((CommonToken) tokenStream.get(child.getTokenStartIndex())).getStartIndex();
+                ruleStops[i] = ((CommonToken) tokenStream.get(child.getTokenStopIndex())).getStopIndex();
+            }
+        }
+        rootAst = newRoot;
+        return rootAst;
+    }
+
+    private int findEnclosingRule(int editStart, int editEnd) {
+        for (int i = 0; i < ruleStarts.length; ++i) {
+            if (ruleStarts[i] >= 0 && ruleStarts[i] <= editStart && editEnd <= ruleStops[i] + 1
+                    && editStart <= ruleStops[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean reparseRule(int ruleIndex, int offset, int removedLength, String insertedText, String newText)
+            throws RecognitionException {
+        final int charDelta = insertedText.length() - removedLength;
+        final int start = ruleStarts[ruleIndex];
+        final int newStop = ruleStops[ruleIndex] + charDelta;
+
+        final ANTLRLexer lexer = new CountingLexer(new OffsetStringStream(newText, start, newStop + 1,
+                lineOf(newText, start), start - lineStartOf(newText, start)));
+        lexer.setFileName(fileName);
+        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        final ANTLRParser parser = ANTLRParser.createParser(tokenStream);
+        parser.setFileName(fileName);
+        parser.setGrammar(grammar);
+        parser.setGrammarType(grammarType);
+        final int numberOfErrors = ErrorManager.getNumErrors();
+        final GrammarAST newRule;
+        try {
+            newRule = parser.rule().getTree();
+        } catch (RuntimeException ex) {
+            //ANTLRParser fails on some malformed rules, the full parse has to deal with it
+            return false;
+        }
+        if (tokenStream.LA(1) != Token.EOF || ErrorManager.getNumErrors() > numberOfErrors
+                || lexer.getNumberOfSyntaxErrors() > 0 || newRule == null || newRule.getType() != ANTLRParser.RULE) {
+            return false;
+        }
+
+        final int oldAfter = ruleStops[ruleIndex] + 1;
+        final int oldAfterLine = lineOf(text, oldAfter);
+        final int oldAfterColumn = oldAfter - lineStartOf(text, oldAfter);
+        final int newAfter = oldAfter + charDelta;
+        final int lineDelta = countLines(insertedText, 0, insertedText.length())
+                - countLines(text, offset, offset + removedLength);
+        final int columnDelta = newAfter - lineStartOf(newText, newAfter) - oldAfterColumn;
+
+        rootAst.setChild(ruleIndex, newRule);
+        ruleStops[ruleIndex] = newStop;
+        for (int i = ruleIndex + 1; i < ruleStarts.length; ++i) {
+            if (ruleStarts[i] >= 0) {
+                ruleStarts[i] += charDelta;
+                ruleStops[i] += charDelta;
+            }
+        }
+        shiftFollowingRules(ruleIndex, oldAfterLine, lineDelta, columnDelta);
+        text = newText;
+        isLastUpdateIncremental = true;
+        return true;
+    }
+
+    private void shiftFollowingRules(int ruleIndex, int oldAfterLine, int lineDelta, int columnDelta) {
+        if (lineDelta == 0 && columnDelta == 0) {
+            return;
+        }
+        final Set<Token> shiftedTokens = Collections.newSetFromMap(new IdentityHashMap<Token, Boolean>());
+        final int childCount = rootAst.getChildCount();
+        for (int i = ruleIndex + 1; i < childCount; ++i) {
+            final GrammarAST rule = (GrammarAST) rootAst.getChild(i);
+            if (lineDelta == 0 && rule.getLine() != oldAfterLine) {
+                //nothing else is on the line where the edited rule ends and lines did not change
+                break;
+            }
+            shift(rule, oldAfterLine, lineDelta, columnDelta, shiftedTokens);
+        }
+    }
+
+    private void shift(GrammarAST ast, int oldAfterLine, int lineDelta, int columnDelta, Set<Token> shiftedTokens) {
+        final Token token = ast.getToken();
+        if (token != null && token.getLine() > 0 && shiftedTokens.add(token)) {
+            if (token.getLine() == oldAfterLine) {
+                token.setCharPositionInLine(token.getCharPositionInLine() + columnDelta);
+            }
+            token.setLine(token.getLine() + lineDelta);
+        }
+        final int childCount = ast.getChildCount();
+        for (int i = 0; i < childCount; ++i) {
+            shift((GrammarAST) ast.getChild(i), oldAfterLine, lineDelta, columnDelta, shiftedTokens);
+        }
+    }
+
+    private static int countLines(String string, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; ++i) {
+            if (string.charAt(i) == '\n') {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static int lineOf(String string, int offset) {
+        return countLines(string, 0, offset) + 1;
+    }
+
+    private static int lineStartOf(String string, int offset) {
+        return string.lastIndexOf('\n', offset - 1) + 1;
+    }
+
+    /**
+     * Character stream over a range of a text which reports absolute char indices, lines and positions in line.
+     */
+    private static final class OffsetStringStream extends ANTLRStringStream
+    {
+        private OffsetStringStream(String text, int start, int end, int startLine, int startPositionInLine) {
+            super(text.toCharArray(), end);
+            p = start;
+            line = startLine;
+            charPositionInLine = startPositionInLine;
+        }
+    }
+
+    /**
+     * ANTLRLexer which counts its syntax errors (the Lexer base class only displays them).
+     */
+    private static final class CountingLexer extends ANTLRLexer
+    {
+        private CountingLexer(CharStream input) {
+            super(input);
+        }
+
+        @Override
+        public void reportError(RecognitionException ex) {
+            ++state.syntaxErrors;
+            super.reportError(ex);
+        }
+    }
+}
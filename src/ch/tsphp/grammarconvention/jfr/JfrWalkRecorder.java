@@ -0,0 +1,77 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.jfr;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.IWalkEvent;
+import ch.tsphp.grammarconvention.IWalkRecorder;
+import ch.tsphp.grammarconvention.TokenTypes;
+import jdk.jfr.EventType;
+import org.antlr.tool.GrammarAST;
+
+/**
+ * Emits the events of the walker as JDK Flight Recorder events; is enabled as long as a recording is running which
+ * enabled at least one of the events.
+ */
+public class JfrWalkRecorder implements IWalkRecorder
+{
+    private final EventType parseEventType = EventType.getEventType(ParseEvent.class);
+    private final EventType walkEventType = EventType.getEventType(WalkEvent.class);
+    private final EventType checkPhaseEventType = EventType.getEventType(CheckPhaseEvent.class);
+    private final EventType visitEventType = EventType.getEventType(VisitEvent.class);
+
+    @Override
+    public boolean isEnabled() {
+        return parseEventType.isEnabled() || walkEventType.isEnabled() || checkPhaseEventType.isEnabled()
+                || visitEventType.isEnabled();
+    }
+
+    @Override
+    public boolean isVisitEnabled() {
+        return visitEventType.isEnabled();
+    }
+
+    @Override
+    public IWalkEvent beginParse(String fileName, int numberOfLines) {
+        final ParseEvent event = new ParseEvent();
+        event.fileName = fileName;
+        event.numberOfLines = numberOfLines;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public IWalkEvent beginWalk(String fileName, int numberOfNodes, int numberOfChecks) {
+        final WalkEvent event = new WalkEvent();
+        event.fileName = fileName;
+        event.numberOfNodes = numberOfNodes;
+        event.numberOfChecks = numberOfChecks;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public IWalkEvent beginCheckPhase(String fileName, AGrammarConventionCheck check, String phase) {
+        final CheckPhaseEvent event = new CheckPhaseEvent();
+        event.fileName = fileName;
+        event.checkClass = check.getClass();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public IWalkEvent beginVisit(String fileName, AGrammarConventionCheck check, GrammarAST ast) {
+        final VisitEvent event = new VisitEvent();
+        event.fileName = fileName;
+        event.checkClass = check.getClass();
+        event.tokenType = TokenTypes.getTokenName(ast.getType());
+        event.line = ast.getLine();
+        event.begin();
+        return event;
+    }
+}
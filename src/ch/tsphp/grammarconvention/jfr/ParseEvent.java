@@ -0,0 +1,28 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.jfr;
+
+import ch.tsphp.grammarconvention.IWalkEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ch.tsphp.grammarconvention.Parse")
+@Label("Grammar Parse")
+@Description("Parse of a grammar file (or the load of its cached tree)")
+@Category({"TSPHP", "Grammar Convention"})
+@StackTrace(false)
+class ParseEvent extends jdk.jfr.Event implements IWalkEvent
+{
+    @Label("File")
+    String fileName;
+
+    @Label("Number of Lines")
+    int numberOfLines;
+}
@@ -0,0 +1,39 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.jfr;
+
+import ch.tsphp.grammarconvention.IWalkEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Is only recorded for visits taking longer than the threshold (1 ms by default, can be changed in the JFR settings).
+ */
+@Name("ch.tsphp.grammarconvention.Visit")
+@Label("Slow Check visitToken")
+@Description("Call of visitToken of a check which took longer than the threshold")
+@Category({"TSPHP", "Grammar Convention"})
+@Threshold("1 ms")
+@StackTrace(false)
+class VisitEvent extends jdk.jfr.Event implements IWalkEvent
+{
+    @Label("File")
+    String fileName;
+
+    @Label("Check")
+    Class<?> checkClass;
+
+    @Label("Token Type")
+    String tokenType;
+
+    @Label("Line")
+    int line;
+}
@@ -0,0 +1,31 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.jfr;
+
+import ch.tsphp.grammarconvention.IWalkEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ch.tsphp.grammarconvention.Walk")
+@Label("Grammar Walk")
+@Description("Walk of the tree of a grammar file by all checks including beginTree and finishTree")
+@Category({"TSPHP", "Grammar Convention"})
+@StackTrace(false)
+class WalkEvent extends jdk.jfr.Event implements IWalkEvent
+{
+    @Label("File")
+    String fileName;
+
+    @Label("Number of Nodes")
+    int numberOfNodes;
+
+    @Label("Number of Checks")
+    int numberOfChecks;
+}
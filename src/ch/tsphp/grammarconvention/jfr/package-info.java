@@ -0,0 +1,11 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+/**
+ * Contains the JDK Flight Recorder events of the GrammarWalker; the package is only compiled and loaded if the JDK
+ * provides JFR (see ch.tsphp.grammarconvention.WalkRecorders).
+ */
+package ch.tsphp.grammarconvention.jfr;
@@ -0,0 +1,405 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.lsp;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Language server which checks the grammar files opened in an editor and publishes the violations as diagnostics.
+ * <p/>
+ * Buffers are checked straight from memory (full text synchronisation). Changes are debounced and a check which is
+ * superseded by a newer version of the same document is cancelled if it did not start yet, otherwise its result is
+ * discarded - a running check is not interrupted, the analysis of the ANTLR tool shall not stop halfway.
+ * All checks run on a single worker thread since a GrammarWalker is not thread-safe.
+ * <p/>
+ * The walker processes the opened documents in one session: it begins processing when the server starts (reads e.g.
+ * the baseline) and finishes when the server exits. After each check, the cross-file violations are reduced over
+ * the summaries of the opened documents and the diagnostics of each document whose cross-file violations changed
+ * are published again; the summaries of a document are removed once it is closed.
+ * <p/>
+ * Usage: GrammarLanguageServer &lt;checkstyle configuration&gt; [debounce in milliseconds]
+ */
+public class GrammarLanguageServer
+{
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 30;
+    public static final String SOURCE = "grammar-convention";
+
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int TEXT_DOCUMENT_SYNC_FULL = 1;
+    private static final int SEVERITY_ERROR = 1;
+    private static final int SEVERITY_WARNING = 2;
+    private static final int SEVERITY_INFORMATION = 3;
+    private static final String CHARSET = "UTF-8";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final GrammarWalker walker;
+    private final JsonRpcConnection connection;
+    private final long debounceMillis;
+    private final Map<String, Document> documents = new HashMap<>();
+    private final ScheduledThreadPoolExecutor worker;
+    private boolean isShutdownRequested;
+
+    public GrammarLanguageServer(GrammarWalker theWalker, InputStream in, OutputStream out, long debounce) {
+        walker = theWalker;
+        connection = new JsonRpcConnection(in, out);
+        debounceMillis = debounce;
+        worker = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "grammar-convention-checker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //debounced checks are skipped on exit, the running one completes
+        worker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public static void main(String[] args) throws CheckstyleException, IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GrammarLanguageServer <checkstyle configuration> [debounce in ms]");
+            System.exit(2);
+        }
+        long debounce = DEFAULT_DEBOUNCE_MILLIS;
+        if (args.length > 1) {
+            debounce = Long.parseLong(args[1]);
+        }
+        final GrammarLanguageServer server = new GrammarLanguageServer(
+                GrammarWalkers.create(args[0]), System.in, System.out, debounce);
+        System.exit(server.run());
+    }
+
+    /**
+     * Processes messages until the client sends exit or closes the connection.
+     *
+     * @return the exit code, 0 if the client requested a shutdown before exiting, 1 otherwise
+     */
+    public int run() throws IOException {
+        walker.beginProcessing(CHARSET);
+        try {
+            Map<String, Object> message = connection.read();
+            while (message != null) {
+                final String method = (String) message.get("method");
+                if ("exit".equals(method)) {
+                    break;
+                }
+                if (method != null) {
+                    handle(method, message.get("id"), asMap(message.get("params")));
+                }
+                message = connection.read();
+            }
+        } finally {
+            finishProcessing();
+        }
+        if (isShutdownRequested) {
+            return 0;
+        }
+        return 1;
+    }
+
+    /**
+     * Lets the worker complete the running check and finishes the processing of the walker afterwards.
+     */
+    private void finishProcessing() {
+        worker.shutdown();
+        try {
+            if (worker.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                //the cross-file violations were published as diagnostics already
+                walker.takeCrossFileSummaries();
+                walker.finishProcessing();
+            } else {
+                worker.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            worker.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(String method, Object id, Map<String, Object> params) throws IOException {
+        switch (method) {
+            case "initialize":
+                connection.sendResult(id, createInitializeResult());
+                break;
+            case "shutdown":
+                isShutdownRequested = true;
+                connection.sendResult(id, null);
+                break;
+            case "textDocument/didOpen":
+                final Map<String, Object> openedDocument = asMap(params.get("textDocument"));
+                update(openedDocument, (String) openedDocument.get("text"), 0);
+                break;
+            case "textDocument/didChange":
+                final List<Object> changes = asList(params.get("contentChanges"));
+                if (!changes.isEmpty()) {
+                    final String text = (String) asMap(changes.get(changes.size() - 1)).get("text");
+                    update(asMap(params.get("textDocument")), text, debounceMillis);
+                }
+                break;
+            case "textDocument/didClose":
+                close((String) asMap(params.get("textDocument")).get("uri"));
+                break;
+            default:
+                if (id != null) {
+                    connection.sendError(id, METHOD_NOT_FOUND, "Method not supported: " + method);
+                }
+                //other notifications are ignored
+        }
+    }
+
+    private Map<String, Object> createInitializeResult() {
+        final Map<String, Object> textDocumentSync = new LinkedHashMap<>();
+        textDocumentSync.put("openClose", true);
+        textDocumentSync.put("change", TEXT_DOCUMENT_SYNC_FULL);
+        final Map<String, Object> capabilities = new LinkedHashMap<>();
+        capabilities.put("textDocumentSync", textDocumentSync);
+        final Map<String, Object> serverInfo = new LinkedHashMap<>();
+        serverInfo.put("name", SOURCE);
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("capabilities", capabilities);
+        result.put("serverInfo", serverInfo);
+        return result;
+    }
+
+    private synchronized void update(Map<String, Object> textDocument, final String text, long delay) {
+        final String uri = (String) textDocument.get("uri");
+        Document document = documents.get(uri);
+        if (document == null) {
+            document = new Document(uri);
+            documents.put(uri, document);
+        } else if (document.pendingCheck != null) {
+            document.pendingCheck.cancel(false);
+        }
+        final Object version = textDocument.get("version");
+        if (version instanceof Number) {
+            document.version = ((Number) version).longValue();
+        } else {
+            ++document.version;
+        }
+        final Document checkedDocument = document;
+        final long checkedVersion = document.version;
+        document.pendingCheck = worker.schedule(new Runnable()
+        {
+            @Override
+            public void run() {
+                check(checkedDocument, text, checkedVersion);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void close(String uri) throws IOException {
+        final Document document = documents.remove(uri);
+        if (document != null) {
+            if (document.pendingCheck != null) {
+                document.pendingCheck.cancel(false);
+            }
+            worker.execute(new Runnable()
+            {
+                @Override
+                public void run() {
+                    removeSummaries(document);
+                }
+            });
+        }
+        publishDiagnostics(uri, null, new ArrayList<Object>());
+    }
+
+    private void check(Document document, String text, long version) {
+        walker.resetViolationCount();
+        final SortedSet<LocalizedMessage> messages;
+        try {
+            messages = walker.processBuffer(document.file, text, document.parser);
+        } catch (CancellationException ex) {
+            return;
+        }
+        final SortedMap<String, TreeSet<LocalizedMessage>> crossFileViolations = walker.reduceCrossFileViolations();
+        synchronized (this) {
+            if (documents.get(document.uri) != document || document.version != version) {
+                //superseded in the meantime
+                return;
+            }
+            document.checkedText = text;
+            document.checkedVersion = version;
+            document.messages = messages;
+            publishDiagnostics(document, crossFileViolations);
+        }
+    }
+
+    private void removeSummaries(Document closedDocument) {
+        walker.removeCrossFileSummaries(closedDocument.file.getPath());
+        final SortedMap<String, TreeSet<LocalizedMessage>> crossFileViolations = walker.reduceCrossFileViolations();
+        synchronized (this) {
+            publishDiagnostics(null, crossFileViolations);
+        }
+    }
+
+    /**
+     * Publishes the diagnostics of the given checked document (if not null) and of the other checked documents whose
+     * cross-file violations changed; the caller needs to hold the lock of the server.
+     */
+    private void publishDiagnostics(Document checkedDocument,
+            SortedMap<String, TreeSet<LocalizedMessage>> crossFileViolations) {
+        if (checkedDocument != null) {
+            publishDiagnostics(checkedDocument, getCrossFileMessages(checkedDocument, crossFileViolations));
+        }
+        for (Document document : documents.values()) {
+            if (document != checkedDocument && document.checkedText != null) {
+                final Set<LocalizedMessage> crossFileMessages = getCrossFileMessages(document, crossFileViolations);
+                if (!crossFileMessages.equals(document.crossFileMessages)) {
+                    publishDiagnostics(document, crossFileMessages);
+                }
+            }
+        }
+    }
+
+    private Set<LocalizedMessage> getCrossFileMessages(Document document,
+            SortedMap<String, TreeSet<LocalizedMessage>> crossFileViolations) {
+        final Set<LocalizedMessage> crossFileMessages = crossFileViolations.get(document.file.getPath());
+        if (crossFileMessages == null) {
+            return new TreeSet<>();
+        }
+        return crossFileMessages;
+    }
+
+    private void publishDiagnostics(Document document, Set<LocalizedMessage> crossFileMessages) {
+        document.crossFileMessages = crossFileMessages;
+        final SortedSet<LocalizedMessage> messages = new TreeSet<>(document.messages);
+        messages.addAll(crossFileMessages);
+        try {
+            publishDiagnostics(document.uri, document.checkedVersion,
+                    createDiagnostics(document.checkedText, messages));
+        } catch (IOException ex) {
+            System.err.println("Could not publish the diagnostics of " + document.uri + ": " + ex);
+        }
+    }
+
+    private void publishDiagnostics(String uri, Long version, List<Object> diagnostics) throws IOException {
+        final Map<String, Object> params = new LinkedHashMap<>();
+        params.put("uri", uri);
+        if (version != null) {
+            params.put("version", version);
+        }
+        params.put("diagnostics", diagnostics);
+        connection.sendNotification("textDocument/publishDiagnostics", params);
+    }
+
+    private List<Object> createDiagnostics(String text, SortedSet<LocalizedMessage> messages) {
+        final String[] lines = text.split("\\r?\\n", -1);
+        final List<Object> diagnostics = new ArrayList<>();
+        for (LocalizedMessage message : messages) {
+            final SeverityLevel severity = message.getSeverityLevel();
+            if (severity == SeverityLevel.IGNORE) {
+                continue;
+            }
+            final int line = Math.max(message.getLineNo() - 1, 0);
+            final int character = Math.max(message.getColumnNo() - 1, 0);
+            int endCharacter = character;
+            if (line < lines.length) {
+                endCharacter = Math.max(lines[line].length(), character);
+            }
+            final Map<String, Object> range = new LinkedHashMap<>();
+            range.put("start", createPosition(line, character));
+            range.put("end", createPosition(line, endCharacter));
+            final Map<String, Object> diagnostic = new LinkedHashMap<>();
+            diagnostic.put("range", range);
+            diagnostic.put("severity", toDiagnosticSeverity(severity));
+            diagnostic.put("source", SOURCE);
+            diagnostic.put("message", message.getMessage());
+            diagnostics.add(diagnostic);
+        }
+        return diagnostics;
+    }
+
+    private Map<String, Object> createPosition(int line, int character) {
+        final Map<String, Object> position = new LinkedHashMap<>();
+        position.put("line", line);
+        position.put("character", character);
+        return position;
+    }
+
+    private int toDiagnosticSeverity(SeverityLevel severity) {
+        if (severity == SeverityLevel.ERROR) {
+            return SEVERITY_ERROR;
+        }
+        if (severity == SeverityLevel.WARNING) {
+            return SEVERITY_WARNING;
+        }
+        return SEVERITY_INFORMATION;
+    }
+
+    private static File toFile(String uri) {
+        try {
+            return new File(URI.create(uri));
+        } catch (IllegalArgumentException ex) {
+            return new File(uri);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object object) {
+        if (object instanceof Map) {
+            return (Map<String, Object>) object;
+        }
+        return new HashMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object object) {
+        if (object instanceof List) {
+            return (List<Object>) object;
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * State of an opened document.
+     */
+    private static final class Document
+    {
+        private final String uri;
+        private final File file;
+        private final IncrementalGrammarParser parser;
+        private long version;
+        private Future<?> pendingCheck;
+        private String checkedText;
+        private long checkedVersion;
+        private SortedSet<LocalizedMessage> messages;
+        private Set<LocalizedMessage> crossFileMessages;
+
+        private Document(String documentUri) {
+            uri = documentUri;
+            file = toFile(documentUri);
+            parser = new IncrementalGrammarParser(file);
+        }
+    }
+}
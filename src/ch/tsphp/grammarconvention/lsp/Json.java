@@ -0,0 +1,282 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.lsp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer, sufficient for the messages of the Language Server Protocol.
+ * <p/>
+ * Objects are represented as Map, arrays as List, numbers as Long (integral) or Double, and strings, booleans and
+ * null as the corresponding Java values.
+ */
+public final class Json
+{
+    private final String text;
+    private int pos;
+
+    private Json(String json) {
+        text = json;
+    }
+
+    public static Object parse(String json) {
+        final Json parser = new Json(json);
+        parser.skipWhitespace();
+        final Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos != json.length()) {
+            throw parser.error("unexpected trailing content");
+        }
+        return value;
+    }
+
+    public static String write(Object value) {
+        final StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+
+    private static void write(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof String) {
+            writeString(builder, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Map) {
+            builder.append('{');
+            final Iterator<? extends Map.Entry<?, ?>> iterator = ((Map<?, ?>) value).entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<?, ?> entry = iterator.next();
+                writeString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                write(builder, entry.getValue());
+                if (iterator.hasNext()) {
+                    builder.append(',');
+                }
+            }
+            builder.append('}');
+        } else if (value instanceof List) {
+            builder.append('[');
+            final Iterator<?> iterator = ((List<?>) value).iterator();
+            while (iterator.hasNext()) {
+                write(builder, iterator.next());
+                if (iterator.hasNext()) {
+                    builder.append(',');
+                }
+            }
+            builder.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot convert " + value.getClass().getName() + " to JSON");
+        }
+    }
+
+    private static void writeString(StringBuilder builder, String string) {
+        builder.append('"');
+        for (int i = 0; i < string.length(); ++i) {
+            final char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    private Object readValue() {
+        if (pos >= text.length()) {
+            throw error("unexpected end of input");
+        }
+        final char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        ++pos;
+        skipWhitespace();
+        if (peek() == '}') {
+            ++pos;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            final String key = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            map.put(key, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                ++pos;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        final List<Object> list = new ArrayList<>();
+        ++pos;
+        skipWhitespace();
+        if (peek() == ']') {
+            ++pos;
+            return list;
+        }
+        while (true) {
+            skipWhitespace();
+            list.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                ++pos;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        final StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("unterminated string");
+            }
+            final char c = text.charAt(pos++);
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c == '\\') {
+                builder.append(readEscape());
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private char readEscape() {
+        if (pos >= text.length()) {
+            throw error("unterminated escape sequence");
+        }
+        final char c = text.charAt(pos++);
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > text.length()) {
+                    throw error("invalid unicode escape");
+                }
+                final char unicode = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+                pos += 4;
+                return unicode;
+            default:
+                return c;
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("unexpected character");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private Number readNumber() {
+        final int start = pos;
+        boolean isIntegral = true;
+        while (pos < text.length()) {
+            final char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                isIntegral = false;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            ++pos;
+        }
+        if (start == pos) {
+            throw error("unexpected character");
+        }
+        final String number = text.substring(start, pos);
+        if (isIntegral) {
+            return Long.valueOf(number);
+        }
+        return Double.valueOf(number);
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("unexpected end of input");
+        }
+        return text.charAt(pos);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+        ++pos;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON, " + message + " at position " + pos);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.lsp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes JSON-RPC messages with the base protocol framing of the Language Server Protocol
+ * (Content-Length header followed by the JSON content).
+ */
+public class JsonRpcConnection
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CONTENT_LENGTH = "content-length:";
+
+    private final InputStream in;
+    private final OutputStream out;
+
+    public JsonRpcConnection(InputStream inputStream, OutputStream outputStream) {
+        in = inputStream;
+        out = outputStream;
+    }
+
+    /**
+     * Reads the next message or returns null if the stream was closed.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> read() throws IOException {
+        int contentLength = -1;
+        String header = readHeaderLine();
+        if (header == null) {
+            return null;
+        }
+        while (!header.isEmpty()) {
+            if (header.toLowerCase().startsWith(CONTENT_LENGTH)) {
+                contentLength = Integer.parseInt(header.substring(CONTENT_LENGTH.length()).trim());
+            }
+            header = readHeaderLine();
+            if (header == null) {
+                return null;
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("Message without Content-Length header");
+        }
+        final byte[] content = new byte[contentLength];
+        int offset = 0;
+        while (offset < contentLength) {
+            final int read = in.read(content, offset, contentLength - offset);
+            if (read < 0) {
+                return null;
+            }
+            offset += read;
+        }
+        return (Map<String, Object>) Json.parse(new String(content, UTF8));
+    }
+
+    private String readHeaderLine() throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c = in.read();
+        while (c != '\n') {
+            if (c < 0) {
+                return null;
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+            c = in.read();
+        }
+        return new String(line.toByteArray(), UTF8);
+    }
+
+    public synchronized void write(Map<String, Object> message) throws IOException {
+        final byte[] content = Json.write(message).getBytes(UTF8);
+        out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(UTF8));
+        out.write(content);
+        out.flush();
+    }
+
+    public void sendResult(Object id, Object result) throws IOException {
+        final Map<String, Object> message = createMessage();
+        message.put("id", id);
+        message.put("result", result);
+        write(message);
+    }
+
+    public void sendError(Object id, int code, String errorMessage) throws IOException {
+        final Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", errorMessage);
+        final Map<String, Object> message = createMessage();
+        message.put("id", id);
+        message.put("error", error);
+        write(message);
+    }
+
+    public void sendNotification(String method, Object params) throws IOException {
+        final Map<String, Object> message = createMessage();
+        message.put("method", method);
+        message.put("params", params);
+        write(message);
+    }
+
+    private Map<String, Object> createMessage() {
+        final Map<String, Object> message = new LinkedHashMap<>();
+        message.put("jsonrpc", "2.0");
+        return message;
+    }
+}
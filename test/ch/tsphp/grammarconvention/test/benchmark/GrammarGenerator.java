@@ -0,0 +1,270 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates valid ANTLR v3 grammars for benchmarks - a combined grammar and the parser grammars it imports.
+ * <p/>
+ * The same seed and settings always generate the same grammars. The grammars are LL(1) by construction: each
+ * alternative starts with a token which is unique within its decision and each subrule is closed by a token which
+ * is not one of its start tokens. Hence ANTLR reports no errors, the checks of this project still find violations
+ * (syntactic predicates, common prefixes of alternatives etc.).
+ */
+public class GrammarGenerator
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MIN_NUMBER_OF_TOKENS = 10;
+    private static final int MAX_ELEMENTS_PER_ALTERNATIVE = 4;
+    private static final String[] EBNF_SUFFIXES = new String[]{"", "?", "*", "+"};
+
+    private final long seed;
+    private int numberOfRules = 100;
+    private int maxAlternatives = 3;
+    private int maxNestingDepth = 2;
+    private int actionSize = 2;
+    private double predicateDensity = 0.1;
+    private int numberOfImports = 0;
+    private int rulesPerImport = 10;
+    private List<String> header = new ArrayList<>();
+
+    private Random random;
+    private int numberOfActions;
+
+    public GrammarGenerator(long theSeed) {
+        seed = theSeed;
+    }
+
+    public void setNumberOfRules(int number) {
+        numberOfRules = number;
+    }
+
+    public void setMaxAlternatives(int max) {
+        maxAlternatives = max;
+    }
+
+    public void setMaxNestingDepth(int max) {
+        maxNestingDepth = max;
+    }
+
+    /**
+     * Sets the number of statements per action, 0 means that no actions are generated.
+     */
+    public void setActionSize(int numberOfStatements) {
+        actionSize = numberOfStatements;
+    }
+
+    /**
+     * Sets the probability that an alternative is guarded by a (gated semantic or syntactic) predicate.
+     */
+    public void setPredicateDensity(double density) {
+        predicateDensity = density;
+    }
+
+    /**
+     * Sets the number of parser grammars imported by the combined grammar.
+     */
+    public void setNumberOfImports(int number) {
+        numberOfImports = number;
+    }
+
+    public void setRulesPerImport(int number) {
+        rulesPerImport = number;
+    }
+
+    /**
+     * Sets the lines which are written into the header action of the combined grammar.
+     */
+    public void setHeader(List<String> lines) {
+        header = lines;
+    }
+
+    /**
+     * Generates the combined grammar with the given name and its imported grammars.
+     *
+     * @return the content per file name, the combined grammar first
+     */
+    public Map<String, String> generate(String grammarName) {
+        random = new Random(seed * 31 + grammarName.hashCode());
+        numberOfActions = 0;
+        final List<String> delegateRules = new ArrayList<>();
+        final Map<String, String> delegates = new LinkedHashMap<>();
+        for (int i = 0; i < numberOfImports; ++i) {
+            final String delegateName = grammarName + "D" + i;
+            final List<String> ruleNames = new ArrayList<>();
+            for (int j = 0; j < rulesPerImport; ++j) {
+                ruleNames.add("d" + i + "_" + j);
+            }
+            final StringBuilder builder = new StringBuilder("parser grammar ").append(delegateName).append(";\n\n");
+            appendRules(builder, ruleNames, new ArrayList<String>());
+            delegates.put(delegateName + ".g", builder.toString());
+            delegateRules.addAll(ruleNames);
+        }
+
+        final StringBuilder builder = new StringBuilder("grammar ").append(grammarName).append(";\n\n");
+        if (!delegates.isEmpty()) {
+            builder.append("import ");
+            for (int i = 0; i < numberOfImports; ++i) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(grammarName).append("D").append(i);
+            }
+            builder.append(";\n\n");
+        }
+        if (!header.isEmpty()) {
+            builder.append("@header{\n");
+            for (String line : header) {
+                builder.append(line).append('\n');
+            }
+            builder.append("}\n\n");
+        }
+        final List<String> ruleNames = new ArrayList<>();
+        for (int i = 0; i < numberOfRules; ++i) {
+            ruleNames.add("r" + i);
+        }
+        appendRules(builder, ruleNames, delegateRules);
+        appendTokens(builder);
+
+        final Map<String, String> files = new LinkedHashMap<>();
+        files.put(grammarName + ".g", builder.toString());
+        files.putAll(delegates);
+        return files;
+    }
+
+    /**
+     * Writes the given number of generated grammars (named Gen0, Gen1 etc.) and their imported grammars into the
+     * given directory.
+     *
+     * @return the written files, the combined grammars and the imported grammars
+     */
+    public List<File> writeCorpus(File directory, int numberOfGrammars) throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < numberOfGrammars; ++i) {
+            for (Map.Entry<String, String> entry : generate("Gen" + i).entrySet()) {
+                final File file = new File(directory, entry.getKey());
+                Files.write(file.toPath(), entry.getValue().getBytes(UTF8));
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private int getNumberOfTokens() {
+        return Math.max(MIN_NUMBER_OF_TOKENS, maxAlternatives);
+    }
+
+    private void appendRules(StringBuilder builder, List<String> ruleNames, List<String> importedRules) {
+        final int numberOfRuleNames = ruleNames.size();
+        for (int i = 0; i < numberOfRuleNames; ++i) {
+            builder.append(ruleNames.get(i)).append('\n');
+            final int numberOfAlternatives = 1 + random.nextInt(maxAlternatives);
+            for (int alternative = 0; alternative < numberOfAlternatives; ++alternative) {
+                if (alternative == 0) {
+                    builder.append("    : ");
+                } else {
+                    builder.append("    | ");
+                }
+                final String firstToken = "T" + ((i + alternative) % getNumberOfTokens());
+                appendPredicate(builder, firstToken);
+                builder.append(firstToken);
+                appendElements(builder, ruleNames, importedRules, 0);
+                //the first alternative references the next rule, hence all rules are reachable from the first one
+                if (alternative == 0 && i + 1 < numberOfRuleNames) {
+                    builder.append(' ').append(ruleNames.get(i + 1));
+                }
+                builder.append('\n');
+            }
+            builder.append("    ;\n\n");
+        }
+    }
+
+    private void appendPredicate(StringBuilder builder, String firstToken) {
+        if (random.nextDouble() < predicateDensity) {
+            if (random.nextBoolean()) {
+                builder.append("{true}?=> ");
+            } else {
+                builder.append('(').append(firstToken).append(")=> ");
+            }
+        }
+    }
+
+    private void appendElements(StringBuilder builder, List<String> ruleNames, List<String> importedRules,
+            int depth) {
+        final int numberOfElements = random.nextInt(MAX_ELEMENTS_PER_ALTERNATIVE + 1);
+        for (int i = 0; i < numberOfElements; ++i) {
+            builder.append(' ');
+            final int kind = random.nextInt(8);
+            if (kind < 4) {
+                builder.append('T').append(random.nextInt(getNumberOfTokens()));
+            } else if (kind < 6) {
+                appendRuleReference(builder, ruleNames, importedRules);
+            } else if (kind == 6 && depth < maxNestingDepth) {
+                appendSubrule(builder, ruleNames, importedRules, depth);
+            } else if (actionSize > 0) {
+                appendAction(builder);
+            } else {
+                builder.append('T').append(random.nextInt(getNumberOfTokens()));
+            }
+        }
+    }
+
+    private void appendRuleReference(StringBuilder builder, List<String> ruleNames, List<String> importedRules) {
+        if (!importedRules.isEmpty() && random.nextInt(4) == 0) {
+            builder.append(importedRules.get(random.nextInt(importedRules.size())));
+        } else {
+            builder.append(ruleNames.get(random.nextInt(ruleNames.size())));
+        }
+    }
+
+    private void appendSubrule(StringBuilder builder, List<String> ruleNames, List<String> importedRules,
+            int depth) {
+        builder.append('(');
+        final int numberOfAlternatives = 1 + random.nextInt(maxAlternatives);
+        for (int alternative = 0; alternative < numberOfAlternatives; ++alternative) {
+            if (alternative > 0) {
+                builder.append(" | ");
+            }
+            builder.append('S').append(depth).append('_').append(alternative);
+            appendElements(builder, ruleNames, importedRules, depth + 1);
+        }
+        builder.append(')').append(EBNF_SUFFIXES[random.nextInt(EBNF_SUFFIXES.length)]);
+        builder.append(" E").append(depth);
+    }
+
+    private void appendAction(StringBuilder builder) {
+        final String variable = "v" + numberOfActions++;
+        builder.append("{ int ").append(variable).append(" = 0;");
+        for (int i = 1; i < actionSize; ++i) {
+            builder.append(' ').append(variable).append(" += ").append(i).append(';');
+        }
+        builder.append(" }");
+    }
+
+    private void appendTokens(StringBuilder builder) {
+        for (int i = 0; i < getNumberOfTokens(); ++i) {
+            builder.append("T").append(i).append(" : 't").append(i).append("';\n");
+        }
+        for (int depth = 0; depth < maxNestingDepth; ++depth) {
+            for (int alternative = 0; alternative < maxAlternatives; ++alternative) {
+                builder.append('S').append(depth).append('_').append(alternative)
+                        .append(" : 's").append(depth).append('_').append(alternative).append("';\n");
+            }
+            builder.append('E').append(depth).append(" : 'e").append(depth).append("';\n");
+        }
+        builder.append("WS : (' ' | '\\t' | '\\r' | '\\n')+ {$channel = HIDDEN;};\n");
+    }
+}
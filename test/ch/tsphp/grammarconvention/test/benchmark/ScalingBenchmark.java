@@ -0,0 +1,281 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.benchmark;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.BacktrackingCheck;
+import ch.tsphp.grammarconvention.checks.HeaderCheck;
+import ch.tsphp.grammarconvention.checks.LeftFactoringCheck;
+import ch.tsphp.grammarconvention.checks.LookaheadCheck;
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Macro benchmark which runs CheckStyle's Checker with the GrammarWalker over corpora generated by the
+ * {@link GrammarGenerator} and reports throughput, peak heap and how the time scales with the size of the grammars
+ * and the number of threads (rule parallelism of the GrammarWalker).
+ * <p/>
+ * Only rule-local, thread-safe checks are walked concurrently - of the benchmarked checks this is the
+ * LeftFactoringCheck, the others are walked sequentially for every thread count. The peak heap is the maximum of the
+ * used heap sampled every millisecond during a run; short spikes between two samples are hence not seen.
+ * <p/>
+ * Usage: ScalingBenchmark [-files n] [-sizes rules,...] [-threads n,...] [-iterations n] [-analysis]
+ * <br/>
+ * -files is the number of combined grammars per corpus (each imports two parser grammars), -sizes the number of rules
+ * per combined grammar - one corpus per size, -threads the rule parallelism, -iterations the number of measured runs
+ * per configuration (after one warm-up run, the median is reported) and -analysis adds the LookaheadCheck, which
+ * needs ANTLR's grammar analysis.
+ */
+public final class ScalingBenchmark
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long SEED = 20141019L;
+    private static final int RULES_PER_IMPORT = 20;
+    private static final int NUMBER_OF_IMPORTS = 2;
+    private static final String LICENCE = "/* generated licence */";
+
+    private int numberOfFiles = 10;
+    private int[] sizes = new int[]{50, 500, 2000};
+    private int[] threads = new int[]{1, 4};
+    private int iterations = 3;
+    private boolean withAnalysis;
+
+    private ScalingBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, CheckstyleException {
+        final ScalingBenchmark benchmark = new ScalingBenchmark();
+        for (int i = 0; i < args.length; ++i) {
+            final String argument = args[i];
+            if (argument.equals("-analysis")) {
+                benchmark.withAnalysis = true;
+            } else if (i + 1 < args.length && argument.equals("-files")) {
+                benchmark.numberOfFiles = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && argument.equals("-sizes")) {
+                benchmark.sizes = parseNumbers(args[++i]);
+            } else if (i + 1 < args.length && argument.equals("-threads")) {
+                benchmark.threads = parseNumbers(args[++i]);
+            } else if (i + 1 < args.length && argument.equals("-iterations")) {
+                benchmark.iterations = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: ScalingBenchmark [-files n] [-sizes rules,...] [-threads n,...] "
+                        + "[-iterations n] [-analysis]");
+                System.exit(2);
+            }
+        }
+        benchmark.run(System.out);
+    }
+
+    private void run(PrintStream out) throws IOException, CheckstyleException {
+        final File directory = Files.createTempDirectory("grammar-benchmark").toFile();
+        try {
+            final File headerFile = new File(directory, "header.txt");
+            Files.write(headerFile.toPath(), LICENCE.getBytes(UTF8));
+            out.println("files/corpus: " + numberOfFiles + " combined grammars + " + numberOfFiles * NUMBER_OF_IMPORTS
+                    + " imported grammars, iterations: " + iterations + ", analysis: " + withAnalysis);
+            out.println(String.format("%8s %7s %8s %10s %9s %10s %10s %9s %9s", "rules/g", "threads", "rules",
+                    "median ms", "files/s", "rules/s", "peak MB", "ms/rule", "speedup"));
+
+            for (int size : sizes) {
+                final File corpusDirectory = new File(directory, "size" + size);
+                if (!corpusDirectory.mkdir()) {
+                    throw new IOException("Could not create " + corpusDirectory);
+                }
+                final List<File> files = createGenerator(size).writeCorpus(corpusDirectory, numberOfFiles);
+                final int numberOfRules = numberOfFiles * (size + NUMBER_OF_IMPORTS * RULES_PER_IMPORT);
+                long singleThreadNanos = 0;
+                for (int i = 0; i < threads.length; ++i) {
+                    final Measurement measurement = measure(files, headerFile, threads[i]);
+                    final double millis = measurement.nanos / 1e6;
+                    final double timePerRule = millis / numberOfRules;
+                    if (i == 0) {
+                        singleThreadNanos = measurement.nanos;
+                    }
+                    out.println(String.format("%8d %7d %8d %10.1f %9.1f %10.0f %10.1f %9.4f %9.2f", size, threads[i],
+                            numberOfRules, millis, files.size() / (millis / 1000), numberOfRules / (millis / 1000),
+                            measurement.peakHeapBytes / (1024.0 * 1024.0), timePerRule,
+                            (double) singleThreadNanos / measurement.nanos));
+                }
+            }
+            out.println("ms/rule grows with the size of the grammars if the walk does not scale linearly, speedup is "
+                    + "relative to the first thread count.");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private GrammarGenerator createGenerator(int numberOfRules) {
+        final GrammarGenerator generator = new GrammarGenerator(SEED);
+        generator.setNumberOfRules(numberOfRules);
+        generator.setNumberOfImports(NUMBER_OF_IMPORTS);
+        generator.setRulesPerImport(RULES_PER_IMPORT);
+        generator.setHeader(Arrays.asList(LICENCE));
+        return generator;
+    }
+
+    private Measurement measure(List<File> files, File headerFile, int parallelism) throws CheckstyleException {
+        final long[] times = new long[iterations];
+        long peakHeapBytes = 0;
+        //first run is the warm-up run
+        for (int i = -1; i < iterations; ++i) {
+            System.gc();
+            final Checker checker = createChecker(headerFile, parallelism);
+            final HeapSampler sampler = new HeapSampler();
+            final Thread samplerThread = new Thread(sampler, "heap-sampler");
+            samplerThread.setDaemon(true);
+            samplerThread.start();
+            final long start = System.nanoTime();
+            checker.process(files);
+            final long end = System.nanoTime();
+            final long runPeakHeapBytes = sampler.stop(samplerThread);
+            checker.destroy();
+            if (i >= 0) {
+                times[i] = end - start;
+                peakHeapBytes = Math.max(peakHeapBytes, runPeakHeapBytes);
+            }
+        }
+        Arrays.sort(times);
+        return new Measurement(times[iterations / 2], peakHeapBytes);
+    }
+
+    private Checker createChecker(File headerFile, int parallelism) throws CheckstyleException {
+        final DefaultConfiguration walker = new DefaultConfiguration(GrammarWalker.class.getName());
+        walker.addAttribute("ruleParallelism", String.valueOf(parallelism));
+        final DefaultConfiguration headerCheck = new DefaultConfiguration(HeaderCheck.class.getName());
+        headerCheck.addAttribute("headerFile", headerFile.getPath());
+        walker.addChild(headerCheck);
+        walker.addChild(new DefaultConfiguration(BacktrackingCheck.class.getName()));
+        walker.addChild(new DefaultConfiguration(LeftFactoringCheck.class.getName()));
+        if (withAnalysis) {
+            walker.addChild(new DefaultConfiguration(LookaheadCheck.class.getName()));
+        }
+        final DefaultConfiguration root = new DefaultConfiguration("Checker");
+        root.addAttribute("charset", UTF8.name());
+        root.addChild(walker);
+
+        final Checker checker = new Checker();
+        checker.setModuleClassLoader(ScalingBenchmark.class.getClassLoader());
+        checker.configure(root);
+        checker.addListener(new SilentListener());
+        return checker;
+    }
+
+    private static int[] parseNumbers(String commaSeparated) {
+        final String[] parts = commaSeparated.split(",");
+        final int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static final class Measurement
+    {
+        private final long nanos;
+        private final long peakHeapBytes;
+
+        private Measurement(long theNanos, long thePeakHeapBytes) {
+            nanos = theNanos;
+            peakHeapBytes = thePeakHeapBytes;
+        }
+    }
+
+    /**
+     * Samples the used heap as a whole - the peaks of the single memory pools are reached at different times and their
+     * sum would overstate the peak heap.
+     */
+    private static final class HeapSampler implements Runnable
+    {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile boolean running = true;
+        private volatile long peakHeapBytes;
+
+        @Override
+        public void run() {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void sample() {
+            peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+        }
+
+        long stop(Thread samplerThread) {
+            running = false;
+            try {
+                samplerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            sample();
+            return peakHeapBytes;
+        }
+    }
+
+    /**
+     * The violations are not of interest, they would only distort the measurement.
+     */
+    private static final class SilentListener implements AuditListener
+    {
+        @Override
+        public void auditStarted(AuditEvent event) {
+        }
+
+        @Override
+        public void auditFinished(AuditEvent event) {
+        }
+
+        @Override
+        public void fileStarted(AuditEvent event) {
+        }
+
+        @Override
+        public void fileFinished(AuditEvent event) {
+        }
+
+        @Override
+        public void addError(AuditEvent event) {
+        }
+
+        @Override
+        public void addException(AuditEvent event, Throwable throwable) {
+            throw new IllegalStateException("Exception while checking " + event.getFileName(), throwable);
+        }
+    }
+}
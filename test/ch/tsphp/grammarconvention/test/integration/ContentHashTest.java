@@ -0,0 +1,58 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.ContentHash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ContentHashTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ofFile_NoTrailingNewline_IsHashOfRawBytes() throws IOException {
+        File file = folder.newFile("a.g");
+        byte[] content = "grammar a;\r\nrule: EOF;".getBytes("UTF-8");
+        Files.write(file.toPath(), content);
+
+        String result = ContentHash.ofFile(file, Arrays.asList("grammar a;", "rule: EOF;"));
+
+        assertThat(result, is(ContentHash.ofBytes(content)));
+    }
+
+    @Test
+    public void ofFile_LinesDifferFromFile_IsHashOfLines() throws IOException {
+        File file = folder.newFile("a.g");
+        Files.write(file.toPath(), "grammar a;\nrule: EOF;\n".getBytes("UTF-8"));
+        List<String> lines = Arrays.asList("grammar a;", "rule: 'a';");
+
+        String result = ContentHash.ofFile(file, lines);
+
+        assertThat(result, is(ContentHash.ofLines(lines)));
+    }
+
+    @Test
+    public void ofFile_FileDoesNotExist_IsHashOfLines() {
+        List<String> lines = Arrays.asList("grammar a;", "rule: EOF;");
+
+        String result = ContentHash.ofFile(new File(folder.getRoot(), "missing.g"), lines);
+
+        assertThat(result, is(ContentHash.ofLines(lines)));
+    }
+}
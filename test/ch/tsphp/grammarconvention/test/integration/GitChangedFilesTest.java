@@ -0,0 +1,197 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ContentHash;
+import ch.tsphp.grammarconvention.GitChangedFiles;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GitChangedFilesTest extends AGrammarWalkerTest
+{
+    private static final String[] LEXER = new String[]{"lexer grammar L;", "ID : 'a'..'z'+;"};
+    private static final String[] PARSER = new String[]{"parser grammar P;", "import L;", "p : ID;"};
+    private static final String[] OTHER = new String[]{"parser grammar O;", "o : ID;"};
+
+    private File repository;
+
+    private static class FileNameCheck extends AGrammarConventionCheck
+    {
+        private final List<String> fileNames = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void beginTree(GrammarAST rootAst) {
+            fileNames.add(new File(getFileContents().getFilename()).getName());
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        repository = folder.newFolder("repository");
+        git("init", "-q");
+        write("L.g", LEXER);
+        write("P.g", PARSER);
+        write("O.g", OTHER);
+        git("add", ".");
+        git("commit", "-q", "-m", "initial");
+    }
+
+    @Test
+    public void isAffected_NothingChanged_NoFileIsAffected() throws IOException {
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "HEAD");
+
+        changedFiles.load();
+
+        assertThat(changedFiles.isAffected(new File(repository, "L.g")), is(false));
+        assertThat(changedFiles.isAffected(new File(repository, "P.g")), is(false));
+        assertThat(changedFiles.isAffected(new File(repository, "O.g")), is(false));
+    }
+
+    @Test
+    public void isAffected_ImportedGrammarChangedSinceBaseRef_ChangedAndImportingGrammarsAreAffected()
+            throws IOException, InterruptedException {
+        git("checkout", "-q", "-b", "feature");
+        write("L.g", "lexer grammar L;", "ID : 'a'..'z';");
+        git("commit", "-q", "-a", "-m", "change");
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "master");
+
+        changedFiles.load();
+
+        assertThat(changedFiles.isAffected(new File(repository, "L.g")), is(true));
+        assertThat(changedFiles.isAffected(new File(repository, "P.g")), is(true));
+        assertThat(changedFiles.isAffected(new File(repository, "O.g")), is(false));
+    }
+
+    @Test
+    public void isAffected_UncommittedAndUntrackedGrammars_AreAffected() throws IOException {
+        write("O.g", "parser grammar O;", "o : ID ID;");
+        write("N.g", "parser grammar N;", "n : ID;");
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "HEAD");
+
+        changedFiles.load();
+
+        assertThat(changedFiles.isAffected(new File(repository, "O.g")), is(true));
+        assertThat(changedFiles.isAffected(new File(repository, "N.g")), is(true));
+        assertThat(changedFiles.isAffected(new File(repository, "P.g")), is(false));
+    }
+
+    @Test
+    public void getBlobId_UnchangedFile_IsContentHashOfFile() throws IOException {
+        write("O.g", "parser grammar O;", "o : ID ID;");
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "HEAD");
+
+        changedFiles.load();
+
+        String contentHash = ContentHash.ofLines(Arrays.asList(PARSER));
+        assertThat(changedFiles.getBlobId(new File(repository, "P.g")), is(contentHash));
+        assertThat(changedFiles.getBlobId(new File(repository, "O.g")), is(nullValue()));
+    }
+
+    @Test
+    public void getBlobId_CrLfAndNoTrailingNewline_IsContentHashOfFile() throws IOException, InterruptedException {
+        File file = new File(repository, "Q.g");
+        Files.write(file.toPath(), "parser grammar Q;\r\nq : ID;".getBytes("UTF-8"));
+        git("add", "Q.g");
+        git("commit", "-q", "-m", "no trailing newline");
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "HEAD");
+
+        changedFiles.load();
+
+        String contentHash = ContentHash.ofFile(file, Arrays.asList("parser grammar Q;", "q : ID;"));
+        assertThat(changedFiles.getBlobId(file), is(contentHash));
+    }
+
+    @Test
+    public void getBlobId_StagedChangeRevertedInWorkingTree_IsNull() throws IOException, InterruptedException {
+        write("O.g", "parser grammar O;", "o : ID ID;");
+        git("add", "O.g");
+        write("O.g", OTHER);
+        GitChangedFiles changedFiles = new GitChangedFiles(repository, "HEAD");
+
+        changedFiles.load();
+
+        assertThat(changedFiles.isAffected(new File(repository, "O.g")), is(false));
+        assertThat(changedFiles.getBlobId(new File(repository, "O.g")), is(nullValue()));
+    }
+
+    @Test
+    public void process_ChangedSince_OnlyAffectedFilesAreWalked() throws IOException, CheckstyleException {
+        List<String> changedLexer = Arrays.asList("lexer grammar L;", "ID : 'a'..'z';");
+        write("L.g", changedLexer);
+        FileNameCheck check = new FileNameCheck();
+        GrammarWalker walker = createWalker(check);
+        //in the order in which CheckStyle's DefaultConfiguration happens to set them
+        walker.setChangedSince("HEAD");
+        walker.setRepositoryDirectory(repository.getPath());
+
+        walker.beginProcessing("UTF-8");
+        walker.process(new File(repository, "L.g"), changedLexer);
+        walker.process(new File(repository, "P.g"), Arrays.asList(PARSER));
+        walker.process(new File(repository, "O.g"), Arrays.asList(OTHER));
+
+        assertThat(check.fileNames, containsInAnyOrder("L.g", "P.g"));
+    }
+
+    private GrammarWalker createWalker(FileNameCheck check) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("FileNameCheck"));
+        return walker;
+    }
+
+    private void write(String fileName, String... lines) throws IOException {
+        write(fileName, Arrays.asList(lines));
+    }
+
+    private void write(String fileName, List<String> lines) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        Files.write(new File(repository, fileName).toPath(), builder.toString().getBytes("UTF-8"));
+    }
+
+    private void git(String... arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-c", "user.name=test",
+                "-c", "user.email=test@example.com", "-c", "init.defaultBranch=master"));
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command).directory(repository).redirectErrorStream(true).start();
+        assertThat(command + " failed", process.waitFor(), is(0));
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.IRuleLocalCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerBaselineTest extends AGrammarWalkerTest
+{
+    private static final String GRAMMAR = "grammar a;\nx : A B;\ny : A;\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class TokenRefCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            log(ast.getLine(), "{0} is referenced", ast.getText());
+        }
+    }
+
+    private static class GatedTokenRefCheck extends AGrammarConventionCheck
+    {
+        private final List<Integer> knownLines = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            if (isKnownViolation(ast.getLine())) {
+                knownLines.add(ast.getLine());
+            } else {
+                log(ast.getLine(), "{0} is referenced gated", ast.getText());
+            }
+        }
+    }
+
+    private static class RuleLocalTokenRefCheck extends TokenRefCheck implements IRuleLocalCheck
+    {
+    }
+
+    private static class ReentrantTokenRefCheck extends AReentrantGrammarConventionCheck<CheckContext>
+    {
+        private final List<String> loggedTokens = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public CheckContext beginTree(GrammarAST rootAst, CheckContext context) {
+            return context;
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast, CheckContext context) {
+            loggedTokens.add(ast.getText());
+            context.log(ast.getLine(), "{0} is referenced reentrant", ast.getText());
+        }
+    }
+
+    @Test
+    public void processBuffer_SameContentAsBaseline_ReportsNothing() throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"), GRAMMAR);
+
+        assertThat(messages.size(), is(0));
+    }
+
+    @Test
+    public void processBuffer_LinesInsertedAboveKnownViolations_ReportsNothing() throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\n\n// moved\nx :   A  B;\n\ny : A;\n");
+
+        assertThat(messages.size(), is(0));
+    }
+
+    @Test
+    public void processBuffer_NewViolations_ReportsOnlyNewOnes() throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\nx : A B;\ny : A;\nz : C;\n");
+
+        assertThat(toStrings(messages), contains("4:C is referenced", "4:C is referenced reentrant"));
+    }
+
+    @Test
+    public void processBuffer_KnownViolationCopiedToOtherRule_ReportsCopy() throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\nx : A B;\ny : A;\nz : A;\n");
+
+        assertThat(messages.size(), is(2));
+        assertThat(messages.first().getLineNo(), is(4));
+    }
+
+    @Test
+    public void processBuffer_KnownViolationOfReentrantCheck_MessageIsNotCreated() throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        ReentrantTokenRefCheck check = new ReentrantTokenRefCheck();
+        GrammarWalker walker = createWalker(new TokenRefCheck(), check);
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"), GRAMMAR);
+
+        assertThat(check.loggedTokens, contains("A", "B", "A"));
+        assertThat(messages.size(), is(0));
+    }
+
+    @Test
+    public void processBuffer_KnownViolationOfCheckAskingBaseline_MessageIsNotCreatedButCopyReported()
+            throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR, new GatedTokenRefCheck(), new ReentrantTokenRefCheck());
+        GatedTokenRefCheck check = new GatedTokenRefCheck();
+        GrammarWalker walker = createWalker(check, new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\nx : A B;\ny : A;\nz : A;\n");
+
+        assertThat(check.knownLines, contains(2, 2, 3));
+        assertThat(toStrings(messages), contains("4:A is referenced gated", "4:A is referenced reentrant"));
+    }
+
+    @Test
+    public void processBuffer_KnownViolationsAndMaxViolationsPerFile_KnownViolationsDoNotCount()
+            throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR);
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.setMaxViolationsPerFile(3);
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\nx : A B;\ny : A;\nz : C;\n");
+
+        assertThat(toStrings(messages), contains("4:C is referenced", "4:C is referenced reentrant"));
+        assertThat(walker.isTruncated(), is(false));
+    }
+
+    @Test
+    public void processBuffer_KnownViolationsOfRuleLocalCheckAndMaxViolationsPerFile_KnownViolationsDoNotCount()
+            throws CheckstyleException {
+        File baselineFile = writeBaseline(GRAMMAR, new RuleLocalTokenRefCheck(), new ReentrantTokenRefCheck());
+        ReentrantTokenRefCheck expensiveCheck = new ReentrantTokenRefCheck();
+        expensiveCheck.setCost(AGrammarConventionCheck.ANALYSIS_COST);
+        GrammarWalker walker = createWalker(new RuleLocalTokenRefCheck(), expensiveCheck);
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.setMaxViolationsPerFile(2);
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"),
+                "grammar a;\nx : A B;\ny : A;\nz : C;\nw : D;\n");
+
+        assertThat(toStrings(messages), contains(
+                "0:Stopped after 2 violations in this file (maxViolationsPerFile), further violations are not "
+                        + "reported.",
+                "4:C is referenced",
+                "5:D is referenced"));
+        assertThat(expensiveCheck.loggedTokens.size(), is(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void beginProcessing_BaselineDoesNotExist_ThrowsIllegalStateException() throws CheckstyleException {
+        GrammarWalker walker = createWalker(new TokenRefCheck(), new ReentrantTokenRefCheck());
+        walker.setBaselineFile(new File(folder.getRoot(), "missing.baseline").getPath());
+
+        walker.beginProcessing("UTF-8");
+    }
+
+    private List<String> toStrings(SortedSet<LocalizedMessage> messages) {
+        List<String> strings = new ArrayList<>();
+        for (LocalizedMessage message : messages) {
+            strings.add(message.getLineNo() + ":" + message.getMessage());
+        }
+        return strings;
+    }
+
+    private File writeBaseline(String content) throws CheckstyleException {
+        return writeBaseline(content, new TokenRefCheck(), new ReentrantTokenRefCheck());
+    }
+
+    private File writeBaseline(String content, AGrammarConventionCheck check, AGrammarConventionCheck otherCheck)
+            throws CheckstyleException {
+        File baselineFile = new File(folder.getRoot(), "violations.baseline");
+        GrammarWalker walker = createWalker(check, otherCheck);
+        walker.setBaselineFile(baselineFile.getPath());
+        walker.setWriteBaseline(true);
+        walker.beginProcessing("UTF-8");
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"), content);
+        walker.finishProcessing();
+
+        assertThat(messages.size(), is(6));
+        assertThat(baselineFile.exists(), is(true));
+        return baselineFile;
+    }
+
+    private GrammarWalker createWalker(AGrammarConventionCheck check, AGrammarConventionCheck otherCheck)
+            throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule("Check")).thenReturn(check);
+        when(moduleFactory.createModule("OtherCheck")).thenReturn(otherCheck);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("Check"));
+        walker.setupChild(new DefaultConfiguration("OtherCheck"));
+        return walker;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.ICrossFileCheck;
+import ch.tsphp.grammarconvention.ICrossFileLog;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerCrossFileTest extends AGrammarWalkerTest
+{
+    private class DuplicateRuleCheck extends AGrammarConventionCheck implements ICrossFileCheck<HashSet<String>>
+    {
+        private final String message;
+        private HashSet<String> ruleNames;
+        private SortedMap<String, HashSet<String>> reducedSummaries;
+        private int beginTreeCalls;
+
+        DuplicateRuleCheck() {
+            this("duplicate rule ");
+        }
+
+        DuplicateRuleCheck(String theMessage) {
+            message = theMessage;
+        }
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void beginTree(GrammarAST rootAst) {
+            ruleNames = new HashSet<>();
+            ++beginTreeCalls;
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            ruleNames.add(ast.getChild(0).getText());
+        }
+
+        @Override
+        public HashSet<String> getSummary(GrammarAST rootAst) {
+            return ruleNames;
+        }
+
+        @Override
+        public void reduce(SortedMap<String, HashSet<String>> summaries, ICrossFileLog log) {
+            reducedSummaries = summaries;
+            Map<String, String> definedIn = new HashMap<>();
+            for (Map.Entry<String, HashSet<String>> entry : summaries.entrySet()) {
+                for (String ruleName : entry.getValue()) {
+                    if (definedIn.containsKey(ruleName)) {
+                        log.log(entry.getKey(), 1, message + ruleName);
+                    } else {
+                        definedIn.put(ruleName, entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void finishProcessing_DuplicateRuleInTwoFiles_ReportsViolationInSecondFile()
+            throws CheckstyleException, IOException {
+        DuplicateRuleCheck check = new DuplicateRuleCheck();
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        List<String> lines1 = Arrays.asList("grammar a;", "rule: EOF;");
+        File file1 = createFile("a.g", lines1);
+        List<String> lines2 = Arrays.asList("grammar b;", "other: EOF;", "rule: EOF;");
+        File file2 = createFile("b.g", lines2);
+
+        //act
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(dispatcher);
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("DuplicateRuleCheck"));
+        walker.process(file1, lines1);
+        walker.process(file2, lines2);
+        walker.finishProcessing();
+
+        ArgumentCaptor<SortedSet<LocalizedMessage>> captor = createMessagesCaptor();
+        verify(dispatcher).fireErrors(eq(file2.getPath()), captor.capture());
+        assertThat(captor.getValue().size(), is(1));
+        assertThat(captor.getValue().first().getMessage(), is("duplicate rule rule"));
+        verify(dispatcher, never()).fireErrors(eq(file1.getPath()), Matchers.<SortedSet<LocalizedMessage>>any());
+    }
+
+    @Test
+    public void finishProcessing_TwoCrossFileChecksReportSameFile_StartedErrorsFinishedOnceMoreForThisFileOnly()
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(
+                new DuplicateRuleCheck(), new DuplicateRuleCheck("rule defined twice "));
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        List<String> lines1 = Arrays.asList("grammar a;", "rule: EOF;");
+        File file1 = createFile("a.g", lines1);
+        List<String> lines2 = Arrays.asList("grammar b;", "other: EOF;", "rule: EOF;");
+        File file2 = createFile("b.g", lines2);
+
+        //act
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(dispatcher);
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("DuplicateRuleCheck"));
+        walker.setupChild(new DefaultConfiguration("DuplicateRuleCheck"));
+        walker.process(file1, lines1);
+        walker.process(file2, lines2);
+        walker.finishProcessing();
+
+        ArgumentCaptor<SortedSet<LocalizedMessage>> captor = createMessagesCaptor();
+        InOrder inOrder = inOrder(dispatcher);
+        inOrder.verify(dispatcher).fireFileStarted(file2.getPath());
+        inOrder.verify(dispatcher).fireErrors(eq(file2.getPath()), captor.capture());
+        inOrder.verify(dispatcher).fireFileFinished(file2.getPath());
+        verify(dispatcher, times(1)).fireFileStarted(anyString());
+        verify(dispatcher, times(1)).fireErrors(anyString(), Matchers.<SortedSet<LocalizedMessage>>any());
+        verify(dispatcher, times(1)).fireFileFinished(anyString());
+        assertThat(captor.getValue().size(), is(2));
+    }
+
+    @Test
+    public void process_SummaryCachedForSameContent_CheckNotWalkedButSummaryReduced()
+            throws CheckstyleException, IOException {
+        File cacheDirectory = folder.newFolder("cache");
+        List<String> lines = Arrays.asList("grammar a;", "rule: EOF;");
+        File file = createFile("a.g", lines);
+        DuplicateRuleCheck firstCheck = new DuplicateRuleCheck();
+        GrammarWalker firstWalker = createWalker(firstCheck, cacheDirectory);
+        firstWalker.process(file, lines);
+        firstWalker.finishProcessing();
+        DuplicateRuleCheck secondCheck = new DuplicateRuleCheck();
+
+        //act
+        GrammarWalker secondWalker = createWalker(secondCheck, cacheDirectory);
+        secondWalker.process(file, lines);
+        secondWalker.finishProcessing();
+
+        assertThat(firstCheck.beginTreeCalls, is(1));
+        assertThat(secondCheck.beginTreeCalls, is(0));
+        assertThat(secondCheck.reducedSummaries.get(file.getPath()), contains("rule"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<SortedSet<LocalizedMessage>> createMessagesCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(SortedSet.class);
+    }
+
+    private GrammarWalker createWalker(DuplicateRuleCheck check, File cacheDirectory) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setSummaryCacheDirectory(cacheDirectory.getPath());
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("DuplicateRuleCheck"));
+        return walker;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.UnusedRulesCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerFailFastTest extends AGrammarWalkerTest
+{
+    private static final String GRAMMAR = "grammar a;\nx : A B C;\ny : D E F;\nz : G H I;\n";
+
+    private static class TokenRefCheck extends AGrammarConventionCheck
+    {
+        private int numberOfVisits;
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            ++numberOfVisits;
+            log(ast.getLine(), "{0} is referenced", ast.getText());
+        }
+    }
+
+    private static class RuleXCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            if (ast.getChild(0).getText().equals("x")) {
+                log(ast.getLine(), "rule x");
+            }
+        }
+    }
+
+    @Test
+    public void processBuffer_NoLimit_ReportsAllViolations() throws CheckstyleException {
+        TokenRefCheck check = new TokenRefCheck();
+        GrammarWalker walker = createWalker(check, new TokenRefCheck());
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"), GRAMMAR);
+
+        assertThat(messages.size(), is(9));
+        assertThat(check.numberOfVisits, is(9));
+        assertThat(walker.isTruncated(), is(false));
+    }
+
+    @Test
+    public void processBuffer_MaxViolationsPerFileReached_StopsWalkAndReportsTruncation() throws CheckstyleException {
+        TokenRefCheck check = new TokenRefCheck();
+        GrammarWalker walker = createWalker(check, new TokenRefCheck());
+        walker.setMaxViolationsPerFile(4);
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(new File("a.g"), GRAMMAR);
+
+        assertThat(check.numberOfVisits, is(4));
+        assertThat(messages.size(), is(5));
+        assertThat(messages.first().getMessage(), is("Stopped after 4 violations in this file "
+                + "(maxViolationsPerFile), further violations are not reported."));
+        assertThat(walker.isTruncated(), is(true));
+    }
+
+    @Test
+    public void processBuffer_CheapCheckReachesLimit_ExpensiveCheckIsNotWalked() throws CheckstyleException {
+        TokenRefCheck cheapCheck = new TokenRefCheck();
+        TokenRefCheck expensiveCheck = new TokenRefCheck();
+        expensiveCheck.setCost(AGrammarConventionCheck.ANALYSIS_COST);
+        GrammarWalker walker = createWalker(expensiveCheck, cheapCheck);
+        walker.setMaxViolationsPerFile(9);
+
+        walker.processBuffer(new File("a.g"), GRAMMAR);
+
+        assertThat(cheapCheck.numberOfVisits, is(9));
+        assertThat(expensiveCheck.numberOfVisits, is(0));
+    }
+
+    @Test
+    public void processBuffer_MaxViolationsReached_SkipsRemainingFiles() throws CheckstyleException {
+        TokenRefCheck check = new TokenRefCheck();
+        GrammarWalker walker = createWalker(check, new TokenRefCheck());
+        walker.setMaxViolations(12);
+
+        SortedSet<LocalizedMessage> firstMessages = walker.processBuffer(new File("a.g"), GRAMMAR);
+        SortedSet<LocalizedMessage> secondMessages = walker.processBuffer(new File("b.g"), GRAMMAR);
+        SortedSet<LocalizedMessage> thirdMessages = walker.processBuffer(new File("c.g"), GRAMMAR);
+
+        assertThat(firstMessages.size(), is(9));
+        assertThat(secondMessages.size(), is(4));
+        assertThat(secondMessages.first().getMessage(), is("Stopped after 12 violations in total "
+                + "(maxViolations), the remaining files are not checked."));
+        assertThat(thirdMessages.size(), is(0));
+        assertThat(check.numberOfVisits, is(12));
+    }
+
+    @Test
+    public void finishProcessing_LimitReachedBeforeCrossFileCheckWalkedRules_SummaryCompleteAndCached()
+            throws CheckstyleException, IOException {
+        File cacheDirectory = folder.newFolder("cache");
+        String grammar = "grammar a;\ns : y;\nx : 'x';\ny : x;\n";
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        GrammarWalker walker = createCrossFileWalker(dispatcher, cacheDirectory);
+        walker.setMaxViolationsPerFile(1);
+        MessageDispatcher dispatcherWithoutLimit = mock(MessageDispatcher.class);
+        GrammarWalker walkerWithoutLimit = createCrossFileWalker(dispatcherWithoutLimit, cacheDirectory);
+
+        walker.processBuffer(new File("a.g"), grammar);
+        walker.finishProcessing();
+        walkerWithoutLimit.processBuffer(new File("a.g"), grammar);
+        walkerWithoutLimit.finishProcessing();
+
+        assertThat(walker.isTruncated(), is(true));
+        verify(dispatcher, never()).fireErrors(anyString(), Matchers.<SortedSet<LocalizedMessage>>any());
+        verify(dispatcherWithoutLimit, never()).fireErrors(anyString(), Matchers.<SortedSet<LocalizedMessage>>any());
+    }
+
+    private GrammarWalker createCrossFileWalker(MessageDispatcher dispatcher, File cacheDirectory)
+            throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule("RuleXCheck")).thenReturn(new RuleXCheck());
+        when(moduleFactory.createModule("UnusedRulesCheck")).thenReturn(new UnusedRulesCheck());
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(dispatcher);
+        walker.setSummaryCacheDirectory(cacheDirectory.getPath());
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("RuleXCheck"));
+        walker.setupChild(new DefaultConfiguration("UnusedRulesCheck"));
+        return walker;
+    }
+
+    private GrammarWalker createWalker(TokenRefCheck check, TokenRefCheck otherCheck) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule("Check")).thenReturn(check);
+        when(moduleFactory.createModule("OtherCheck")).thenReturn(otherCheck);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("Check"));
+        walker.setupChild(new DefaultConfiguration("OtherCheck"));
+        return walker;
+    }
+}
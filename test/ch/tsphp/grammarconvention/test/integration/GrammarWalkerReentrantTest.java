@@ -0,0 +1,132 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.IThreadSafeCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerReentrantTest extends AGrammarWalkerTest
+{
+    private static class RuleCount
+    {
+        private final CheckContext context;
+        private int numberOfRules;
+
+        RuleCount(CheckContext theContext) {
+            context = theContext;
+        }
+    }
+
+    private static class RuleCountCheck extends AReentrantGrammarConventionCheck<RuleCount> implements IThreadSafeCheck
+    {
+        private Runnable onFirstVisit;
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public RuleCount beginTree(GrammarAST rootAst, CheckContext context) {
+            return new RuleCount(context);
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast, RuleCount state) {
+            ++state.numberOfRules;
+            if (onFirstVisit != null) {
+                Runnable runnable = onFirstVisit;
+                onFirstVisit = null;
+                runnable.run();
+            }
+        }
+
+        @Override
+        public void finishTree(GrammarAST rootAst, RuleCount state) {
+            state.context.log(1, "{0} has {1} rules", state.context.getFileName(), state.numberOfRules);
+        }
+    }
+
+    private static class NotReentrantCheck extends AGrammarConventionCheck implements IThreadSafeCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+    }
+
+    @Test
+    public void processBuffer_SameCheckWalksOtherFileInBetween_StatesAreSeparated() throws CheckstyleException {
+        final RuleCountCheck check = new RuleCountCheck();
+        GrammarWalker firstWalker = createWalker(check);
+        final GrammarWalker secondWalker = createWalker(check);
+        final SortedSet<LocalizedMessage>[] secondMessages = createArray();
+        check.onFirstVisit = new Runnable()
+        {
+            @Override
+            public void run() {
+                secondMessages[0] = secondWalker.processBuffer(new File("b.g"), "grammar b;\nx : 'x';\n");
+            }
+        };
+
+        SortedSet<LocalizedMessage> firstMessages = firstWalker.processBuffer(
+                new File("a.g"), "grammar a;\nx : 'x';\ny : 'y';\nz : 'z';\n");
+
+        assertThat(firstMessages.size(), is(1));
+        assertThat(firstMessages.first().getMessage(), is("a.g has 3 rules"));
+        assertThat(secondMessages[0].size(), is(1));
+        assertThat(secondMessages[0].first().getMessage(), is("b.g has 1 rules"));
+    }
+
+    @Test(expected = CheckstyleException.class)
+    public void setupChild_ThreadSafeCheckWhichIsNotReentrant_ThrowsCheckstyleException() throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(new NotReentrantCheck());
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+
+        walker.setupChild(new DefaultConfiguration("NotReentrantCheck"));
+
+        //assert in @Test
+    }
+
+    @SuppressWarnings("unchecked")
+    private SortedSet<LocalizedMessage>[] createArray() {
+        return new SortedSet[1];
+    }
+
+    private GrammarWalker createWalker(RuleCountCheck check) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("RuleCountCheck"));
+        return walker;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.IRuleLocalCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerRuleLocalTest extends AGrammarWalkerTest
+{
+    private class BadRuleNameCheck extends AGrammarConventionCheck implements IRuleLocalCheck
+    {
+        private final List<String> visitedRules = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            String name = ast.getChild(0).getText();
+            visitedRules.add(name);
+            if (name.startsWith("bad")) {
+                log(ast.getLine(), "bad rule {0}", name);
+            }
+        }
+    }
+
+    @Test
+    public void processBuffer_OneRuleChanged_WalksOnlyChangedRule() throws CheckstyleException {
+        BadRuleNameCheck check = new BadRuleNameCheck();
+        GrammarWalker walker = createWalker(check);
+        File file = new File("a.g");
+        walker.processBuffer(file, "grammar a;\nbadOne : 'x';\nok : 'y';\n");
+        check.visitedRules.clear();
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(file, "grammar a;\nbadOne : 'x';\nok : 'y' 'z';\n");
+
+        assertThat(check.visitedRules, contains("ok"));
+        assertThat(messages.size(), is(1));
+        assertThat(messages.first().getLineNo(), is(2));
+        assertThat(messages.first().getMessage(), is("bad rule badOne"));
+    }
+
+    @Test
+    public void processBuffer_LinesInsertedAboveRule_ViolationRelocatedWithoutWalk() throws CheckstyleException {
+        BadRuleNameCheck check = new BadRuleNameCheck();
+        GrammarWalker walker = createWalker(check);
+        File file = new File("a.g");
+        walker.processBuffer(file, "grammar a;\nbadOne : 'x';\nok : 'y';\n");
+        check.visitedRules.clear();
+
+        SortedSet<LocalizedMessage> messages = walker.processBuffer(file, "grammar a;\n\n\nbadOne : 'x';\nok : 'y';\n");
+
+        assertThat(check.visitedRules, is(empty()));
+        assertThat(messages.size(), is(1));
+        assertThat(messages.first().getLineNo(), is(4));
+        assertThat(messages.first().getMessage(), is("bad rule badOne"));
+    }
+
+    private GrammarWalker createWalker(BadRuleNameCheck check) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("BadRuleNameCheck"));
+        return walker;
+    }
+}
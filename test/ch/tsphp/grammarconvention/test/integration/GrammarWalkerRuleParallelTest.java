@@ -0,0 +1,315 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.IRuleLocalCheck;
+import ch.tsphp.grammarconvention.IThreadSafeCheck;
+import ch.tsphp.grammarconvention.checks.LeftFactoringCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerRuleParallelTest extends AGrammarWalkerTest
+{
+    /**
+     * Reports the token references of a rule with their index within the rule and records the order in which they
+     * were visited; does not carry state from one rule to the next as required for rule-local checks.
+     */
+    private static class PerRuleReportingCheck extends AReentrantGrammarConventionCheck<PerRuleState>
+            implements IRuleLocalCheck, IThreadSafeCheck
+    {
+        private final Set<String> threadNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Map<String, List<String>> visitsPerRule = new ConcurrentHashMap<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE, ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public PerRuleState beginTree(GrammarAST rootAst, CheckContext context) {
+            return new PerRuleState(context);
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast, PerRuleState state) {
+            if (ast.getType() == ANTLRParser.RULE) {
+                state.numberOfReferences = 0;
+                state.visits = new ArrayList<>();
+                visitsPerRule.put(ast.getChild(0).getText(), state.visits);
+                return;
+            }
+            threadNames.add(Thread.currentThread().getName());
+            state.visits.add(ast.getText() + "@" + ast.getCharPositionInLine());
+            state.context.log(ast.getLine(), "{0} is reference {1}", ast.getText(), state.numberOfReferences);
+            ++state.numberOfReferences;
+        }
+    }
+
+    private static class PerRuleState
+    {
+        private final CheckContext context;
+        private int numberOfReferences;
+        private List<String> visits;
+
+        PerRuleState(CheckContext theContext) {
+            context = theContext;
+        }
+    }
+
+    /**
+     * Reports the token references of a rule only in finishTree, hence the state of each rule needs to be finished.
+     */
+    private static class FinishTreeReportingCheck extends AReentrantGrammarConventionCheck<ReferencesState>
+            implements IRuleLocalCheck, IThreadSafeCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public ReferencesState beginTree(GrammarAST rootAst, CheckContext context) {
+            return new ReferencesState(context);
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast, ReferencesState state) {
+            state.references.add(ast);
+        }
+
+        @Override
+        public void finishTree(GrammarAST rootAst, ReferencesState state) {
+            for (GrammarAST reference : state.references) {
+                state.context.log(reference.getLine(), "{0} is referenced", reference.getText());
+            }
+        }
+    }
+
+    private static class ReferencesState
+    {
+        private final CheckContext context;
+        private final List<GrammarAST> references = new ArrayList<>();
+
+        ReferencesState(CheckContext theContext) {
+            context = theContext;
+        }
+    }
+
+    private static class SequentialRuleCheck extends AGrammarConventionCheck implements IRuleLocalCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.TOKEN_REF};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            log(ast.getLine(), "{0} is referenced", ast.getText());
+        }
+    }
+
+    private static class ThreadRecordingLeftFactoringCheck extends LeftFactoringCheck
+    {
+        private final Set<String> threadNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        @Override
+        public void visitToken(GrammarAST ast, CheckContext context) {
+            threadNames.add(Thread.currentThread().getName());
+            super.visitToken(ast, context);
+        }
+    }
+
+    private static class GrammarLevelCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void finishTree(GrammarAST rootAst) {
+            log(1, "finished");
+        }
+    }
+
+    @Test
+    public void processBuffer_RuleParallelism_SameViolationsAsSequentialWalk()
+            throws CheckstyleException {
+        String grammar = createGrammar(200);
+        List<String> sequential = toStrings(createWalker(new PerRuleReportingCheck(), 1).processBuffer(
+                new File("a.g"), grammar));
+        PerRuleReportingCheck check = new PerRuleReportingCheck();
+        GrammarWalker walker = createWalker(check, 4);
+
+        List<String> parallel = toStrings(walker.processBuffer(new File("a.g"), grammar));
+
+        assertThat(parallel, is(sequential));
+        assertThat(parallel.size(), is(200 * 3 + 1));
+        assertThat(check.threadNames.size(), greaterThan(1));
+    }
+
+    @Test
+    public void processBuffer_RuleParallelism_EachRuleVisitedInDocumentOrderWithOneState()
+            throws CheckstyleException {
+        //the messages end up in a sorted set, hence the order is checked on the visits themselves
+        PerRuleReportingCheck check = new PerRuleReportingCheck();
+        GrammarWalker walker = createWalker(check, 4);
+
+        walker.processBuffer(new File("a.g"), createGrammar(200));
+
+        assertThat(check.visitsPerRule.size(), is(200));
+        for (int i = 0; i < 200; ++i) {
+            String rule = "rule" + i;
+            int offset = rule.length() + 3;
+            assertThat(rule, check.visitsPerRule.get(rule), contains(
+                    "A@" + offset, "B@" + (offset + 2), "C@" + (offset + 6)));
+        }
+        assertThat(check.threadNames.size(), greaterThan(1));
+    }
+
+    @Test
+    public void processBuffer_LeftFactoringCheckWithRuleParallelism_WalkedConcurrentlyWithSameViolations()
+            throws CheckstyleException {
+        StringBuilder builder = new StringBuilder("grammar a;\n");
+        for (int i = 0; i < 200; ++i) {
+            builder.append("rule").append(i).append(" : A B C | A B D | E;\n");
+        }
+        String grammar = builder.toString();
+        List<String> sequential = toStrings(createWalker(new LeftFactoringCheck(), 1).processBuffer(
+                new File("a.g"), grammar));
+        ThreadRecordingLeftFactoringCheck check = new ThreadRecordingLeftFactoringCheck();
+        GrammarWalker walker = createWalker(check, 4);
+
+        List<String> parallel = toStrings(walker.processBuffer(new File("a.g"), grammar));
+
+        assertThat(parallel, is(sequential));
+        assertThat(parallel.size(), is(200 + 1));
+        assertThat(parallel.get(1), is("2:Alternatives [1, 2] of a block in rule 'rule0' start with the same 2 "
+                + "elements (A B), consider left-factoring them."));
+        assertThat(check.threadNames.size(), greaterThan(1));
+    }
+
+    @Test
+    public void processBuffer_LimitReachedBySequentialRuleCheck_CollectedRulesWalkedInParallelAndTruncated()
+            throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule("SequentialRuleCheck")).thenReturn(new SequentialRuleCheck());
+        when(moduleFactory.createModule("ParallelRuleCheck")).thenReturn(new PerRuleReportingCheck());
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setRuleParallelism(4);
+        walker.setMaxViolationsPerFile(3);
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("SequentialRuleCheck"));
+        walker.setupChild(new DefaultConfiguration("ParallelRuleCheck"));
+
+        List<String> messages = toStrings(walker.processBuffer(new File("a.g"), createGrammar(3)));
+
+        assertThat(messages, contains(
+                "0:Stopped after 3 violations in this file (maxViolationsPerFile), further violations are not "
+                        + "reported.",
+                "2:A is reference 0",
+                "2:A is referenced",
+                "2:B is reference 1"));
+        assertThat(walker.isTruncated(), is(true));
+    }
+
+    @Test
+    public void processBuffer_CheckReportingInFinishTreeWithRuleParallelism_SameViolationsAsSequentialWalk()
+            throws CheckstyleException {
+        String grammar = createGrammar(50);
+        List<String> sequential = toStrings(createWalker(new FinishTreeReportingCheck(), 1).processBuffer(
+                new File("a.g"), grammar));
+        GrammarWalker walker = createWalker(new FinishTreeReportingCheck(), 4);
+
+        List<String> parallel = toStrings(walker.processBuffer(new File("a.g"), grammar));
+
+        assertThat(parallel, is(sequential));
+        assertThat(parallel.size(), is(50 * 3 + 1));
+    }
+
+    @Test
+    public void processBuffer_LimitReachedByParallelRuleCheck_RemainingRulesSkippedAndSameViolationsAsSequential()
+            throws CheckstyleException {
+        String grammar = createGrammar(200);
+        GrammarWalker sequentialWalker = createWalker(new PerRuleReportingCheck(), 1);
+        sequentialWalker.setMaxViolationsPerFile(4);
+        List<String> sequential = toStrings(sequentialWalker.processBuffer(new File("a.g"), grammar));
+        PerRuleReportingCheck check = new PerRuleReportingCheck();
+        GrammarWalker walker = createWalker(check, 4);
+        walker.setMaxViolationsPerFile(4);
+
+        List<String> parallel = toStrings(walker.processBuffer(new File("a.g"), grammar));
+
+        assertThat(parallel, is(sequential));
+        assertThat(parallel, contains(
+                "0:Stopped after 4 violations in this file (maxViolationsPerFile), further violations are not "
+                        + "reported.",
+                "2:A is reference 0",
+                "2:B is reference 1",
+                "2:C is reference 2",
+                "3:A is reference 0"));
+        assertThat(check.visitsPerRule.size(), lessThan(50));
+    }
+
+    private String createGrammar(int numberOfRules) {
+        StringBuilder builder = new StringBuilder("grammar a;\n");
+        for (int i = 0; i < numberOfRules; ++i) {
+            builder.append("rule").append(i).append(" : A B | C;\n");
+        }
+        return builder.toString();
+    }
+
+    private List<String> toStrings(SortedSet<LocalizedMessage> messages) {
+        List<String> strings = new ArrayList<>();
+        for (LocalizedMessage message : messages) {
+            strings.add(message.getLineNo() + ":" + message.getMessage());
+        }
+        return strings;
+    }
+
+    private GrammarWalker createWalker(AGrammarConventionCheck check, int parallelism) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule("RuleCheck")).thenReturn(check);
+        when(moduleFactory.createModule("GrammarLevelCheck")).thenReturn(new GrammarLevelCheck());
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setRuleParallelism(parallelism);
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("RuleCheck"));
+        walker.setupChild(new DefaultConfiguration("GrammarLevelCheck"));
+        return walker;
+    }
+}
@@ -9,9 +9,13 @@ package ch.tsphp.grammarconvention.test.integration;
 import ch.tsphp.grammarconvention.AGrammarConventionCheck;
 import ch.tsphp.grammarconvention.GrammarWalker;
 import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
 import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
 import org.antlr.grammar.v3.ANTLRParser;
 import org.antlr.tool.GrammarAST;
 import org.junit.Test;
@@ -21,13 +25,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeSet;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +51,19 @@ public class GrammarWalkerTest extends AGrammarWalkerTest
         }
     }
 
+    private class RuleLoggingCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            log(ast.getLine(), "rule found");
+        }
+    }
+
     @Test
     public void processFiltered_Standard_CallsBeginTreeAndFinishTreeOnCheck() throws CheckstyleException, IOException {
         DummyCheck check = spy(new DummyCheck());
@@ -165,4 +187,41 @@ public class GrammarWalkerTest extends AGrammarWalkerTest
         verifyVisitAndLeaveTokenNotCalled(check);
     }
 
+    @Test
+    public void processFiltered_TwoProfiles_SameTreeAndViolationsRoutedPerProfile()
+            throws CheckstyleException, IOException {
+        RuleLoggingCheck strictCheck = spy(new RuleLoggingCheck());
+        RuleLoggingCheck advisoryCheck = spy(new RuleLoggingCheck());
+        advisoryCheck.setProfile("advisory");
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(strictCheck, advisoryCheck);
+        AuditListener advisoryListener = mock(AuditListener.class);
+        AuditListener strictListener = mock(AuditListener.class);
+
+        List<String> lines = new ArrayList<>();
+        lines.add("grammar test;");
+        lines.add("rule: EOF;");
+        lines.add("rule2: EOF;");
+        File file = createFile(folder, lines);
+
+        //act
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.addProfileListener("advisory", advisoryListener);
+        walker.addProfileListener(AGrammarConventionCheck.DEFAULT_PROFILE, strictListener);
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("RuleLoggingCheck"));
+        walker.setupChild(new DefaultConfiguration("RuleLoggingCheck"));
+        TreeSet<LocalizedMessage> messages = walker.process(file, lines);
+
+        ArgumentCaptor<GrammarAST> strictCaptor = ArgumentCaptor.forClass(GrammarAST.class);
+        verify(strictCheck).beginTree(strictCaptor.capture());
+        ArgumentCaptor<GrammarAST> advisoryCaptor = ArgumentCaptor.forClass(GrammarAST.class);
+        verify(advisoryCheck).beginTree(advisoryCaptor.capture());
+        assertThat(advisoryCaptor.getValue(), sameInstance(strictCaptor.getValue()));
+        assertThat(messages.size(), is(2));
+        verify(advisoryListener).fileStarted(any(AuditEvent.class));
+        verify(advisoryListener, times(2)).addError(any(AuditEvent.class));
+        verify(advisoryListener).fileFinished(any(AuditEvent.class));
+        verify(strictListener, never()).addError(any(AuditEvent.class));
+    }
 }
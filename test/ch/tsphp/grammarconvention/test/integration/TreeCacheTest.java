@@ -0,0 +1,297 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.ContentHash;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import ch.tsphp.grammarconvention.ICompactTreeCheck;
+import ch.tsphp.grammarconvention.TreeCache;
+import ch.tsphp.grammarconvention.compact.CompactGrammarTree;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TreeCacheTest extends AGrammarWalkerTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String GRAMMAR = "grammar a;\nrule : 'x' other;\nother : 'y'*;\n";
+
+    private class RuleNameCheck extends AGrammarConventionCheck implements ICompactTreeCheck
+    {
+        private final List<String> ruleNames = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            ruleNames.add(ast.getChild(0).getText() + "@" + ast.getLine());
+        }
+    }
+
+    private class FullTreeCheck extends AGrammarConventionCheck
+    {
+        private final List<Integer> tokenStartIndices = new ArrayList<>();
+
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            tokenStartIndices.add(ast.getTokenStartIndex());
+        }
+    }
+
+    private static class RecordingDispatcher implements MessageDispatcher
+    {
+        private final List<String> violations = new ArrayList<>();
+
+        @Override
+        public void fireFileStarted(String fileName) {
+        }
+
+        @Override
+        public void fireFileFinished(String fileName) {
+        }
+
+        @Override
+        public void fireErrors(String fileName, SortedSet<LocalizedMessage> errors) {
+            for (LocalizedMessage message : errors) {
+                violations.add(new File(fileName).getName() + ":" + message.getLineNo() + ":" + message.getColumnNo()
+                        + ": " + message.getMessage());
+            }
+        }
+    }
+
+    private class CountingGrammarWalker extends GrammarWalker
+    {
+        private int parses;
+
+        @Override
+        protected GrammarAST getGrammarAST(File file) throws IOException, RecognitionException {
+            ++parses;
+            return super.getGrammarAST(file);
+        }
+    }
+
+    @Test
+    public void get_PutBefore_ReturnsSameTree() throws IOException, RecognitionException {
+        TreeCache cache = new TreeCache(folder.newFolder("cache"));
+        GrammarAST ast = new IncrementalGrammarParser("a.g").update(GRAMMAR);
+        CompactGrammarTree tree = CompactGrammarTree.of(ast);
+        cache.put("hash", tree);
+
+        CompactGrammarTree result = cache.get("hash");
+
+        assertThat(result.getRoot().toStringTree(), is(ast.toStringTree()));
+        assertThat(result.size(), is(tree.size()));
+    }
+
+    @Test
+    public void get_CorruptedEntry_ReturnsNullAndRemovesEntry() throws IOException, RecognitionException {
+        File directory = folder.newFolder("cache");
+        TreeCache cache = new TreeCache(directory);
+        cache.put("hash", CompactGrammarTree.of(new IncrementalGrammarParser("a.g").update(GRAMMAR)));
+        File entry = new File(directory, "hash.ast");
+        try (RandomAccessFile file = new RandomAccessFile(entry, "rw")) {
+            file.seek(file.length() - 5);
+            int value = file.read();
+            file.seek(file.length() - 5);
+            file.write(value ^ 0xFF);
+        }
+
+        CompactGrammarTree result = cache.get("hash");
+
+        assertThat(result, is(nullValue()));
+        assertThat(entry.exists(), is(false));
+    }
+
+    @Test
+    public void get_TruncatedEntry_ReturnsNull() throws IOException, RecognitionException {
+        File directory = folder.newFolder("cache");
+        TreeCache cache = new TreeCache(directory);
+        cache.put("hash", CompactGrammarTree.of(new IncrementalGrammarParser("a.g").update(GRAMMAR)));
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "hash.ast"), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        CompactGrammarTree result = cache.get("hash");
+
+        assertThat(result, is(nullValue()));
+    }
+
+    @Test
+    public void process_SameContentWithOtherConfiguration_NotParsedAgain() throws CheckstyleException, IOException {
+        File cacheDirectory = folder.newFolder("cache");
+        List<String> lines = Arrays.asList(GRAMMAR.split("\n"));
+        File file = createFile("a.g", lines);
+        RuleNameCheck firstCheck = new RuleNameCheck();
+        CountingGrammarWalker firstWalker = createWalker(firstCheck, cacheDirectory, "error");
+        firstWalker.process(file, lines);
+        RuleNameCheck secondCheck = new RuleNameCheck();
+
+        //act
+        CountingGrammarWalker secondWalker = createWalker(secondCheck, cacheDirectory, "warning");
+        secondWalker.process(file, lines);
+
+        assertThat(firstWalker.parses, is(1));
+        assertThat(secondWalker.parses, is(0));
+        assertThat(new TreeCache(cacheDirectory).get(ContentHash.ofLines(lines)), is(notNullValue()));
+        assertThat(secondCheck.ruleNames, contains("rule@2", "other@3"));
+        assertThat(secondCheck.ruleNames, is(firstCheck.ruleNames));
+    }
+
+    @Test
+    public void process_CheckWithoutCompactTreeSupport_ParsedAgainAndFullTreeWalked()
+            throws CheckstyleException, IOException {
+        File cacheDirectory = folder.newFolder("cache");
+        List<String> lines = Arrays.asList(GRAMMAR.split("\n"));
+        File file = createFile("a.g", lines);
+        CountingGrammarWalker firstWalker = createWalker(new RuleNameCheck(), cacheDirectory, "error");
+        firstWalker.process(file, lines);
+        FullTreeCheck check = new FullTreeCheck();
+
+        //act
+        CountingGrammarWalker secondWalker = createWalker(check, cacheDirectory, "error");
+        secondWalker.process(file, lines);
+
+        assertThat(secondWalker.parses, is(1));
+        assertThat(check.tokenStartIndices.size(), is(2));
+        assertThat(check.tokenStartIndices, everyItem(greaterThanOrEqualTo(0)));
+    }
+
+    @Test
+    public void process_EachShippedCheck_SameViolationsWithAndWithoutTreeCache() throws Exception {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/* licence */"});
+        folder.newFolder("grammars");
+        List<File> files = Arrays.asList(
+                createFile("grammars/P.g", new String[]{
+                    "parser grammar P;",
+                    "options {backtrack=true;}",
+                    "import L;",
+                    "@header{/* wrong */}",
+                    "start : a | b;",
+                    "a : ID ID ID | ID ID INT;",
+                    "b : (ID INT)=> ID INT | (ID ID)=> ID ID | ID;",
+                    "unused : ID;"
+                }),
+                createFile("grammars/L.g", new String[]{
+                    "lexer grammar L;",
+                    "@header{/* licence */}",
+                    "ID : ('a'..'z' | 'b'..'y')+;",
+                    "IF : 'if';",
+                    "INT : '0'..'9'+;",
+                    "fragment DIGIT : '0'..'9';",
+                    "Tokens : 'tokens';"
+                }),
+                createFile("grammars/Q.g", new String[]{
+                    "parser grammar Q;",
+                    "tokens{A;B;C;}",
+                    "q : A B | A C;"
+                }));
+        String[] checks = new String[]{
+            "HeaderCheck\"><property name=\"headerFile\" value=\"" + headerFile.getPath() + "\"/></module>",
+            "BacktrackingCheck\"/>",
+            "LeftFactoringCheck\"/>",
+            "LexerRulesCheck\"/>",
+            "LookaheadCheck\"><property name=\"maxLookahead\" value=\"1\"/></module>",
+            "UnusedRulesCheck\"><property name=\"startRules\" value=\"start\"/></module>"
+        };
+
+        for (String check : checks) {
+            File cacheDirectory = folder.newFolder();
+            List<String> withoutCache = checkWithShippedCheck(check, null, files);
+            List<String> coldCache = checkWithShippedCheck(check, cacheDirectory, files);
+            List<String> warmCache = checkWithShippedCheck(check, cacheDirectory, files);
+
+            assertThat(check, withoutCache, is(not(empty())));
+            assertThat(check, cacheDirectory.list().length, is(files.size()));
+            assertThat(check, coldCache, is(withoutCache));
+            assertThat(check, warmCache, is(withoutCache));
+        }
+    }
+
+    private List<String> checkWithShippedCheck(String check, File cacheDirectory, List<File> files)
+            throws CheckstyleException, IOException {
+        String cacheProperty = "";
+        if (cacheDirectory != null) {
+            cacheProperty = "<property name=\"treeCacheDirectory\" value=\"" + cacheDirectory.getPath() + "\"/>";
+        }
+        File config = folder.newFile();
+        Files.write(config.toPath(), Arrays.asList(
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">" + cacheProperty,
+                "    <module name=\"ch.tsphp.grammarconvention.checks." + check,
+                "  </module>",
+                "</module>"), UTF8);
+        GrammarWalker walker = GrammarWalkers.create(config.getPath());
+        RecordingDispatcher dispatcher = new RecordingDispatcher();
+        walker.setMessageDispatcher(dispatcher);
+        walker.beginProcessing(UTF8.name());
+        for (File file : files) {
+            dispatcher.fireErrors(file.getPath(), walker.process(file, Files.readAllLines(file.toPath(), UTF8)));
+        }
+        walker.finishProcessing();
+        walker.destroy();
+        return dispatcher.violations;
+    }
+
+    private CountingGrammarWalker createWalker(AGrammarConventionCheck check, File cacheDirectory, String severity)
+            throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        CountingGrammarWalker walker = new CountingGrammarWalker();
+        walker.setModuleFactory(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setTreeCacheDirectory(cacheDirectory.getPath());
+        walker.finishLocalSetup();
+        DefaultConfiguration configuration = new DefaultConfiguration("RuleNameCheck");
+        configuration.addAttribute("severity", severity);
+        walker.setupChild(configuration);
+        return walker;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.analysis;
+
+import ch.tsphp.grammarconvention.analysis.AnalysisMessage;
+import ch.tsphp.grammarconvention.analysis.DecisionAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisService;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.GrammarAST;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class GrammarAnalysisServiceTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void analyze_LeftRecursion_ReportsCycle() throws IOException, RecognitionException {
+        GrammarAnalysis analysis = analyze(new GrammarAnalysisService(), "a.g",
+                "parser grammar a;\nexpr : expr '+' atom | atom;\natom : 'x';\n");
+
+        List<AnalysisMessage> messages = analysis.getMessages(AnalysisMessage.Kind.LEFT_RECURSION);
+        assertThat(messages, hasSize(1));
+        assertThat(messages.get(0).getArguments(), contains("expr"));
+        assertThat(messages.get(0).getLine(), is(2));
+    }
+
+    @Test
+    public void analyze_NonLLStarDecision_ReportsDecisionInRule() throws IOException, RecognitionException {
+        GrammarAnalysis analysis = analyze(new GrammarAnalysisService(), "a.g",
+                "parser grammar a;\ntokens{A;B;}\nstart : x A | x B;\nx : '(' x ')' | A;\n");
+
+        List<AnalysisMessage> messages = analysis.getMessages(AnalysisMessage.Kind.NON_LL_STAR);
+        assertThat(messages, hasSize(1));
+        assertThat(messages.get(0).getRuleName(), is("start"));
+        assertThat(messages.get(0).getLine(), is(3));
+    }
+
+    @Test
+    public void analyze_CombinedGrammarWithShadowedToken_ReportsUnreachableLexerAlternative()
+            throws IOException, RecognitionException {
+        GrammarAnalysis analysis = analyze(new GrammarAnalysisService(), "a.g",
+                "grammar a;\nstart : ID;\nID : 'a'..'z'+;\nIF : 'if';\n");
+
+        List<AnalysisMessage> messages = analysis.getMessages(AnalysisMessage.Kind.UNREACHABLE_ALTS);
+        assertThat(messages, hasSize(1));
+        assertThat(messages.get(0).isLexerMessage(), is(true));
+        assertThat(messages.get(0).getArguments(), contains("IF"));
+        List<String> lexerRules = new ArrayList<>();
+        for (DecisionAnalysis decision : analysis.getDecisions()) {
+            if (decision.isLexerDecision()) {
+                lexerRules.add(decision.getRuleName());
+            }
+        }
+        assertThat(lexerRules, hasItem("Tokens"));
+    }
+
+    @Test
+    public void analyze_SecondTime_ReturnsMemoizedResult() throws IOException, RecognitionException {
+        GrammarAnalysisService service = new GrammarAnalysisService();
+        String content = "parser grammar a;\nstart : 'a' | 'b';\n";
+
+        GrammarAnalysis first = analyze(service, "a.g", content);
+        GrammarAnalysis second = analyze(service, "a.g", content);
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(service.getNumberOfAnalyses(), is(1));
+    }
+
+    @Test
+    public void analyze_CacheDirectoryAndNewService_ReadsResultFromDisk() throws IOException, RecognitionException {
+        File cacheDirectory = folder.newFolder("cache");
+        String content = "parser grammar a;\nstart : 'a' | 'b';\n";
+        GrammarAnalysisService firstService = new GrammarAnalysisService();
+        firstService.setCacheDirectory(cacheDirectory);
+        GrammarAnalysis first = analyze(firstService, "a.g", content);
+        GrammarAnalysisService secondService = new GrammarAnalysisService();
+        secondService.setCacheDirectory(cacheDirectory);
+
+        GrammarAnalysis second = analyze(secondService, "a.g", content);
+
+        assertThat(secondService.getNumberOfAnalyses(), is(0));
+        assertThat(second.getDecisions(), hasSize(first.getDecisions().size()));
+    }
+
+    @Test
+    public void analyze_ImportedGrammarChanged_AnalysesAgain() throws IOException, RecognitionException {
+        GrammarAnalysisService service = new GrammarAnalysisService();
+        String content = "parser grammar a;\nimport b;\nstart : other;\n";
+        write("b.g", "parser grammar b;\nother : 'x';\n");
+        GrammarAnalysis first = analyze(service, "a.g", content);
+        write("b.g", "parser grammar b;\nother : other 'x';\n");
+
+        GrammarAnalysis second = analyze(service, "a.g", content);
+
+        assertThat(service.getNumberOfAnalyses(), is(2));
+        assertThat(first.getMessages(AnalysisMessage.Kind.LEFT_RECURSION), hasSize(0));
+        assertThat(second.getMessages(AnalysisMessage.Kind.LEFT_RECURSION), not(hasSize(0)));
+    }
+
+    @Test
+    public void analyze_ImportingGrammarAfterLeftRecursiveGrammarOnSameThread_AnalysesImportingGrammar()
+            throws IOException, RecognitionException {
+        GrammarAnalysisService service = new GrammarAnalysisService();
+        write("d.g", "parser grammar d;\nother : 'x';\n");
+        analyze(service, "a.g", "parser grammar a;\nexpr : expr '+' atom | atom;\natom : 'x';\n");
+
+        GrammarAnalysis analysis = analyze(service, "b.g",
+                "parser grammar b;\nimport d;\ntokens{Y;}\nstart : other | Y;\n");
+
+        assertThat(analysis.getMessages(AnalysisMessage.Kind.OTHER), hasSize(0));
+        assertThat(analysis.getMessages(AnalysisMessage.Kind.LEFT_RECURSION), hasSize(0));
+        assertThat(analysis.getDecisions(), not(hasSize(0)));
+    }
+
+    private GrammarAnalysis analyze(GrammarAnalysisService service, String fileName, String content)
+            throws IOException, RecognitionException {
+        File file = write(fileName, content);
+        GrammarAST ast = new IncrementalGrammarParser(file).update(content);
+        return service.analyze(file, content, ast);
+    }
+
+    private File write(String fileName, String content) throws IOException {
+        File file = new File(folder.getRoot(), fileName);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.benchmark;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.AReentrantGrammarConventionCheck;
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.WalkRecorders;
+import ch.tsphp.grammarconvention.checks.HeaderCheck;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import ch.tsphp.grammarconvention.test.benchmark.GrammarGenerator;
+import ch.tsphp.grammarconvention.test.integration.testutils.FileHelper;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.GrammarAST;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the bytes the GrammarWalker and the checks allocate on the walking thread, excluding lexing and parsing
+ * (the walker is given pre-parsed trees), and fails if they exceed the budgets.
+ * <p/>
+ * The budgets can be changed via the system properties allocation.budget.perNode and allocation.budget.perFile (e.g.
+ * ant test -Dallocation.budget.perNode=16).
+ */
+public class AllocationBudgetTest
+{
+    //the steady state allocates nothing per node, an object per node costs at least 16 bytes - 1 byte per node hence
+    //still catches every allocation per node but tolerates a few one-off allocations (e.g. a collection which grows)
+    private static final long BYTES_PER_NODE = Long.getLong("allocation.budget.perNode", 1);
+    //a generated grammar with 100 rules, mostly the copies of its lines (about 150 KB on OpenJDK 17)
+    private static final long BYTES_PER_FILE = Long.getLong("allocation.budget.perFile", 256 * 1024);
+    private static final int WARM_UP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final String LICENCE = "/* licence */";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    private static class PreparsedGrammarWalker extends GrammarWalker
+    {
+        private GrammarAST ast;
+
+        @Override
+        protected GrammarAST getGrammarAST(File file, Reader reader) {
+            return ast;
+        }
+    }
+
+    private static class VisitAllCheck extends AGrammarConventionCheck
+    {
+        private int numberOfVisits;
+
+        @Override
+        public int[] getDefaultTokens() {
+            return getAllTokenTypes();
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            ++numberOfVisits;
+        }
+
+        @Override
+        public void leaveToken(GrammarAST ast) {
+            --numberOfVisits;
+        }
+    }
+
+    private static class ReentrantVisitAllCheck extends AReentrantGrammarConventionCheck<int[]>
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return getAllTokenTypes();
+        }
+
+        @Override
+        public int[] beginTree(GrammarAST rootAst, CheckContext context) {
+            return new int[1];
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast, int[] numberOfVisits) {
+            ++numberOfVisits[0];
+        }
+    }
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void processBuffer_DispatchToPlainAndReentrantChecks_StaysInBudgetPerNode() throws Exception {
+        PreparsedGrammarWalker walker = createWalker(new VisitAllCheck(), new ReentrantVisitAllCheck());
+        GrammarAST smallAst = parse(generate(20));
+        GrammarAST largeAst = parse(generate(400));
+        int nodeDifference = countNodes(largeAst) - countNodes(smallAst);
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+            measure(walker, smallAst, "");
+            measure(walker, largeAst, "");
+        }
+        long bytesPerNode = (measure(walker, largeAst, "") - measure(walker, smallAst, "")) / nodeDifference;
+
+        assertThat("bytes allocated per visited node", bytesPerNode, lessThanOrEqualTo(BYTES_PER_NODE));
+    }
+
+    @Test
+    public void processBuffer_HeaderCheckOnGeneratedGrammar_StaysInBudgetPerFile() throws Exception {
+        File headerFile = FileHelper.createFile(folder, "licenseHeader.txt", new String[]{LICENCE});
+        DefaultConfiguration configuration = new DefaultConfiguration("HeaderCheck");
+        configuration.addAttribute("headerFile", headerFile.getPath());
+        PreparsedGrammarWalker walker = createWalker(new HeaderCheck(), new VisitAllCheck(), configuration);
+        String content = generate(100);
+        GrammarAST ast = parse(content);
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+            measure(walker, ast, content);
+        }
+        long bytesPerFile = measure(walker, ast, content);
+
+        assertThat(walker.processBuffer(new File("Gen.g"), content), is(empty()));
+        assertThat("bytes allocated per file", bytesPerFile, lessThanOrEqualTo(BYTES_PER_FILE));
+    }
+
+    /**
+     * Returns the least number of bytes allocated by the current thread to process the given tree and content.
+     */
+    private long measure(PreparsedGrammarWalker walker, GrammarAST ast, String content) {
+        walker.ast = ast;
+        final File file = new File("Gen.g");
+        final long threadId = Thread.currentThread().getId();
+        long minimum = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            walker.processBuffer(file, content);
+            minimum = Math.min(minimum, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return minimum;
+    }
+
+    private static String generate(int numberOfRules) {
+        GrammarGenerator generator = new GrammarGenerator(numberOfRules);
+        generator.setNumberOfRules(numberOfRules);
+        generator.setHeader(Arrays.asList(LICENCE));
+        return generator.generate("Gen").get("Gen.g");
+    }
+
+    private static GrammarAST parse(String content) throws RecognitionException {
+        return new IncrementalGrammarParser("Gen.g").update(content);
+    }
+
+    private static int countNodes(GrammarAST ast) {
+        int count = 1;
+        for (int i = 0; i < ast.getChildCount(); ++i) {
+            count += countNodes((GrammarAST) ast.getChild(i));
+        }
+        return count;
+    }
+
+    private static int[] getAllTokenTypes() {
+        int[] tokenTypes = new int[ANTLRParser.tokenNames.length];
+        for (int i = 0; i < tokenTypes.length; ++i) {
+            tokenTypes[i] = i;
+        }
+        return tokenTypes;
+    }
+
+    private PreparsedGrammarWalker createWalker(AGrammarConventionCheck check, AGrammarConventionCheck otherCheck)
+            throws CheckstyleException {
+        return createWalker(check, otherCheck, new DefaultConfiguration("Check"));
+    }
+
+    private PreparsedGrammarWalker createWalker(AGrammarConventionCheck check, AGrammarConventionCheck otherCheck,
+            DefaultConfiguration configuration) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(configuration.getName())).thenReturn(check);
+        when(moduleFactory.createModule("OtherCheck")).thenReturn(otherCheck);
+        PreparsedGrammarWalker walker = new PreparsedGrammarWalker();
+        walker.setModuleFactory(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setWalkRecorder(WalkRecorders.disabled());
+        walker.finishLocalSetup();
+        walker.setupChild(configuration);
+        walker.setupChild(new DefaultConfiguration("OtherCheck"));
+        return walker;
+    }
+}
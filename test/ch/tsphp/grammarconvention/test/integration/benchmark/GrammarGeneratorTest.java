@@ -0,0 +1,92 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.benchmark;
+
+import ch.tsphp.grammarconvention.analysis.AnalysisMessage;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysis;
+import ch.tsphp.grammarconvention.analysis.GrammarAnalysisService;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import ch.tsphp.grammarconvention.test.benchmark.GrammarGenerator;
+import org.antlr.runtime.RecognitionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class GrammarGeneratorTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generate_SameSeed_GeneratesSameGrammars() {
+        Map<String, String> first = createGenerator(42).generate("Gen");
+        Map<String, String> second = createGenerator(42).generate("Gen");
+        Map<String, String> other = createGenerator(43).generate("Gen");
+
+        assertThat(first, is(second));
+        assertThat(first, is(not(other)));
+    }
+
+    @Test
+    public void generate_WithImports_ImportsGeneratedParserGrammars() {
+        Map<String, String> files = createGenerator(1).generate("Gen");
+
+        assertThat(new ArrayList<>(files.keySet()), contains("Gen.g", "GenD0.g", "GenD1.g"));
+        assertThat(files.get("Gen.g"), containsString("import GenD0, GenD1;"));
+        assertThat(files.get("Gen.g"), containsString("@header{\n/* licence */\n}"));
+        assertThat(files.get("GenD1.g"), containsString("parser grammar GenD1;"));
+    }
+
+    @Test
+    public void writeCorpus_AnalyzedByAntlr_NoErrors() throws IOException, RecognitionException {
+        GrammarGenerator generator = createGenerator(7);
+
+        List<File> files = generator.writeCorpus(folder.getRoot(), 3);
+
+        GrammarAnalysisService service = new GrammarAnalysisService();
+        List<String> errors = new ArrayList<>();
+        for (File file : files) {
+            String content = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+            GrammarAnalysis analysis = service.analyze(file, content,
+                    new IncrementalGrammarParser(file).update(content));
+            for (AnalysisMessage message : analysis.getMessages()) {
+                if (message.isError()) {
+                    errors.add(file.getName() + ": " + message.getKind() + " " + message.getArguments());
+                }
+            }
+        }
+        assertThat(files.size(), is(9));
+        assertThat(errors, is(empty()));
+    }
+
+    private GrammarGenerator createGenerator(long seed) {
+        GrammarGenerator generator = new GrammarGenerator(seed);
+        generator.setNumberOfRules(50);
+        generator.setMaxAlternatives(4);
+        generator.setMaxNestingDepth(3);
+        generator.setPredicateDensity(0.2);
+        generator.setNumberOfImports(2);
+        generator.setHeader(Arrays.asList("/* licence */"));
+        return generator;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.checks;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.BacktrackingCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BacktrackingCheckTest extends AGrammarWalkerTest
+{
+    @Test
+    public void processFiltered_GrammarLevelBacktrackWithoutMemoize_LogsBothViolations()
+            throws CheckstyleException, IOException {
+        BacktrackingCheck check = spy(new BacktrackingCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "grammar test;",
+                "options{backtrack=true;}",
+                "rule : A | B;"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check, times(2)).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getAllValues(), contains(2, 2));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("without memoize=true"));
+    }
+
+    @Test
+    public void processFiltered_RuleLevelBacktrackWithGrammarLevelMemoize_NoViolation()
+            throws CheckstyleException, IOException {
+        BacktrackingCheck check = spy(new BacktrackingCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "grammar test;",
+                "options{memoize=true;}",
+                "rule",
+                "options{backtrack=true;}",
+                ": A | B;"));
+
+        verify(check, never()).logIt(anyInt(), anyString());
+    }
+
+    @Test
+    public void processFiltered_BlockLevelBacktrackAndRuleBacktrackNotAllowed_LogsBlock()
+            throws CheckstyleException, IOException {
+        BacktrackingCheck check = spy(new BacktrackingCheck());
+
+        process(check, new String[][]{{"allowRuleBacktrack", "false"}, {"requireMemoize", "false"}}, Arrays.asList(
+                "grammar test;",
+                "rule : A (options{backtrack=true;} : B | C);"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), containsString("Block in rule 'rule'"));
+    }
+
+    @Test
+    public void processFiltered_PredicatesOverBudget_LogsRuleAndDecision()
+            throws CheckstyleException, IOException {
+        BacktrackingCheck check = spy(new BacktrackingCheck());
+
+        process(check, new String[][]{{"maxSyntacticPredicatesPerRule", "3"}}, Arrays.asList(
+                "grammar test;",
+                "rule",
+                "    : (A B)=> A B",
+                "    | (A C)=> A C",
+                "    | (A D)=> A D",
+                "    | (B (C)=> C)",
+                "    ;",
+                "other : (A)=> A | B;"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check, times(2)).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getAllValues(), contains(3, 2));
+        assertThat(messageCaptor.getAllValues().get(0), containsString("3 alternatives"));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("4 syntactic predicates"));
+    }
+
+    @Test
+    public void processFiltered_ImplicitPredicatesCounted_LogsDecision()
+            throws CheckstyleException, IOException {
+        BacktrackingCheck check = spy(new BacktrackingCheck());
+
+        process(check, new String[][]{{"countImplicitPredicates", "true"}, {"requireMemoize", "false"}},
+                Arrays.asList(
+                        "grammar test;",
+                        "rule",
+                        "options{backtrack=true;}",
+                        ": A | B | C | D;"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), containsString("3 alternatives"));
+    }
+
+    private void process(BacktrackingCheck check, String[][] attributes, List<String> lines)
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        DefaultConfiguration config = new DefaultConfiguration("BacktrackingCheck");
+        for (String[] attribute : attributes) {
+            config.addAttribute(attribute[0], attribute[1]);
+        }
+        File file = createFile("test.g", lines);
+
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setupChild(config);
+        walker.process(file, lines);
+    }
+}
@@ -6,6 +6,7 @@
 
 package ch.tsphp.grammarconvention.test.integration.checks;
 
+import ch.tsphp.grammarconvention.CheckContext;
 import ch.tsphp.grammarconvention.GrammarWalker;
 import ch.tsphp.grammarconvention.checks.HeaderCheck;
 import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
@@ -19,7 +20,10 @@ import org.mockito.exceptions.base.MockitoAssertionError;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -28,6 +32,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
@@ -297,9 +302,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(2));
     }
 
@@ -325,9 +330,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(2));
     }
 
@@ -353,9 +358,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(2));
     }
 
@@ -384,9 +389,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(4));
     }
 
@@ -415,9 +420,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(4));
     }
 
@@ -446,9 +451,9 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         ArgumentCaptor<Integer> captor = ArgumentCaptor.forClass(Integer.class);
-        verify(check).logIt(captor.capture(), anyString());
+        verify(check).logIt(any(CheckContext.class), captor.capture(), anyString());
         assertThat(captor.getValue(), is(4));
     }
 
@@ -478,7 +483,7 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         verifyLogNotCalled(check);
     }
 
@@ -508,7 +513,7 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         verifyLogNotCalled(check);
     }
 
@@ -538,7 +543,7 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         verifyLogNotCalled(check);
     }
 
@@ -564,7 +569,7 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         verifyLogNotCalled(check);
     }
 
@@ -590,10 +595,146 @@ public class HeaderCheckTest extends AGrammarWalkerTest
         walker.setupChild(config);
         walker.process(file, lines);
 
-        verify(check).visitToken(any(GrammarAST.class));
+        verify(check).visitToken(any(GrammarAST.class), any(CheckContext.class));
         verifyLogNotCalled(check);
     }
 
+    @Test
+    public void processFiltered_HeaderWithNoticeFollowedByFurtherLines_CheckIsPerformedAndNoLogCalled()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/*", " * copyright by Robert Stoll", " */"});
+
+        HeaderCheck check = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{", "/*", " * copyright by Robert Stoll", " */", "package a.b;", "}",
+                "rule: EOF;");
+
+        verifyLogNotCalled(check);
+    }
+
+    @Test
+    public void processFiltered_HeaderNoticeHalfDone_LogContainsExpectedLineOfNotice()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/*", " * copyright by Robert Stoll", " */"});
+
+        HeaderCheck check = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{", "/*", " */", "}", "rule: EOF;");
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(any(CheckContext.class), eq(4), captor.capture());
+        assertThat(captor.getValue(), is("License missing or wrong. Mismatch found!\n"
+                + "excepted:  * copyright by Robert Stoll\n"
+                + "found:  */"));
+    }
+
+    @Test
+    public void processFiltered_HeaderEndsBeforeNotice_CheckIsPerformedAndLogCalled()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"// copyright by Robert Stoll", "// 2014"});
+
+        HeaderCheck check = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{", "// copyright by Robert Stoll", "}", "rule: EOF;");
+
+        verify(check).logIt(any(CheckContext.class), eq(4), anyString());
+    }
+
+    @Test
+    public void processFiltered_SeveralHeaderFilesAndNoticeOfSecond_CheckIsPerformedAndNoLogCalled()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/*", " * copyright by Robert Stoll", " */"});
+        File otherHeaderFile = createFile("otherHeader.txt", new String[]{"/*", " * Apache License 2.0", " */"});
+
+        HeaderCheck check = process(new String[][]{
+                {"headerFiles", headerFile.getPath() + "," + otherHeaderFile.getPath()}},
+                "grammar test;", "@header{", "/*", " * Apache License 2.0", " */", "}", "rule: EOF;");
+
+        verifyLogNotCalled(check);
+    }
+
+    @Test
+    public void processFiltered_SeveralHeaderFilesAndNoNotice_LogContainsLineOfLongestMatchingNotice()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/*", " * copyright by Robert Stoll", " */"});
+        File otherHeaderFile = createFile("otherHeader.txt", new String[]{"/*", " * Apache License 2.0", " */"});
+
+        HeaderCheck check = process(new String[][]{
+                {"headerFile", headerFile.getPath()}, {"headerFiles", otherHeaderFile.getPath()}},
+                "grammar test;", "@header{", "/*", " * Apache License 2.0", " * copyright by Robert Stoll", " */", "}",
+                "rule: EOF;");
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(any(CheckContext.class), eq(5), captor.capture());
+        assertThat(captor.getValue(), is("License missing or wrong. Mismatch found!\n"
+                + "excepted:  */\n"
+                + "found:  * copyright by Robert Stoll"));
+    }
+
+    @Test
+    public void processFiltered_YearPlaceholder_MatchesAnyYear() throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/* copyright ${year} by Robert Stoll */"});
+
+        HeaderCheck check = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{/* copyright 2014 by Robert Stoll */}", "rule: EOF;");
+        HeaderCheck otherCheck = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{/* copyright 14 by Robert Stoll */}", "rule: EOF;");
+
+        verifyLogNotCalled(check);
+        verify(otherCheck).logIt(any(CheckContext.class), eq(2), anyString());
+    }
+
+    @Test
+    public void processFiltered_DefinedPlaceholder_MatchesExpression() throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/* copyright by ${owner} */"});
+
+        HeaderCheck check = process(new String[][]{
+                {"headerFile", headerFile.getPath()}, {"placeholders", "owner=Robert Stoll|TSPHP"}},
+                "grammar test;", "@header{/* copyright by TSPHP */}", "rule: EOF;");
+
+        verifyLogNotCalled(check);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void processFiltered_UnknownPlaceholder_ThrowsIllegalStateException()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/* copyright by ${owner} */"});
+
+        process(getHeaderFileAttribute(headerFile), "grammar test;", "rule: EOF;");
+
+        //assert in @Test
+    }
+
+    @Test
+    public void processFiltered_HeaderFileModified_NewCheckUsesModifiedHeaderFile()
+            throws CheckstyleException, IOException {
+        File headerFile = createFile("licenseHeader.txt", new String[]{"/* copyright by Robert Stoll */"});
+        HeaderCheck check = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{/* copyright by Robert Stoll */}", "rule: EOF;");
+        Files.write(headerFile.toPath(), "/* copyright by TSPHP */\n".getBytes("UTF-8"));
+        assertThat(headerFile.setLastModified(headerFile.lastModified() + 2000), is(true));
+
+        HeaderCheck otherCheck = process(getHeaderFileAttribute(headerFile),
+                "grammar test;", "@header{/* copyright by Robert Stoll */}", "rule: EOF;");
+
+        verifyLogNotCalled(check);
+        verify(otherCheck).logIt(any(CheckContext.class), eq(2), anyString());
+    }
+
+    private HeaderCheck process(String[][] attributes, String... grammarLines)
+            throws CheckstyleException, IOException {
+        HeaderCheck check = spy(createCheck());
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        List<String> lines = Arrays.asList(grammarLines);
+        File file = File.createTempFile("test", ".g", folder.getRoot());
+        Files.write(file.toPath(), lines, Charset.forName("UTF-8"));
+        Configuration config = createChildConfiguration("HeaderCheck", attributes);
+
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+        walker.setupChild(config);
+        walker.process(file, lines);
+        return check;
+    }
+
     protected HeaderCheck createCheck() {
         return new HeaderCheck();
     }
@@ -604,10 +745,27 @@ public class HeaderCheckTest extends AGrammarWalkerTest
 
     private void verifyLogNotCalled(HeaderCheck check) {
         try {
-            verify(check).logIt(anyInt(), anyString());
+            verify(check).logIt(any(CheckContext.class), anyInt(), anyString());
             fail("logIt was called even though it was not expected");
         }catch(MockitoAssertionError e){
             //that's fine, should fail since verify failed
         }
     }
+
+    private void verifyVisitAndLeaveTokenNotCalled(HeaderCheck check) {
+        try {
+            ArgumentCaptor<GrammarAST> captor = ArgumentCaptor.forClass(GrammarAST.class);
+            verify(check).visitToken(captor.capture(), any(CheckContext.class));
+            fail("visitToken was called " + captor.getAllValues().size() + " time(s)");
+        } catch (MockitoAssertionError e) {
+            //should get exception since visitToken should not have been called
+        }
+        try {
+            ArgumentCaptor<GrammarAST> captor = ArgumentCaptor.forClass(GrammarAST.class);
+            verify(check).leaveToken(captor.capture(), any(CheckContext.class));
+            fail("leaveToken was called " + captor.getAllValues().size() + " time(s)");
+        } catch (MockitoAssertionError e) {
+            //should get exception since leaveToken should not have been called
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.checks;
+
+import ch.tsphp.grammarconvention.CheckContext;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.LeftFactoringCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LeftFactoringCheckTest extends AGrammarWalkerTest
+{
+    @Test
+    public void processFiltered_PrefixOfOneElement_NothingLogged() throws CheckstyleException, IOException {
+        LeftFactoringCheck check = spy(new LeftFactoringCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "grammar test;",
+                "rule : A B | A C | b;",
+                "b : B;"));
+
+        verify(check, never()).logIt(any(CheckContext.class), anyInt(), anyString());
+    }
+
+    @Test
+    public void processFiltered_CommonPrefixesIgnoringLabelsAndActions_LogsDeepestPrefixPerGroup()
+            throws CheckstyleException, IOException {
+        LeftFactoringCheck check = spy(new LeftFactoringCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "grammar test;",
+                "rule",
+                "    : A b C D",
+                "    | {action();} x=A b C E",
+                "    | A b^ F",
+                "    | G",
+                "    ;",
+                "b : B;"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check, times(2)).logIt(any(CheckContext.class), lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getAllValues(), contains(3, 3));
+        assertThat(messageCaptor.getAllValues().get(0), containsString("Alternatives [1, 2, 3] of a block in rule "
+                + "'rule' start with the same 2 elements (A b)"));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("[1, 2]"));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("3 elements (A b C)"));
+    }
+
+    @Test
+    public void processFiltered_NestedSubrules_ComparedStructurallyAndCheckedThemselves()
+            throws CheckstyleException, IOException {
+        LeftFactoringCheck check = spy(new LeftFactoringCheck());
+
+        process(check, new String[][]{{"maxCommonPrefixLength", "0"}}, Arrays.asList(
+                "grammar test;",
+                "rule",
+                "    : (A | B)* C",
+                "    | (A | B)* D",
+                "    | E (F G | F H)",
+                "    ;"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check, times(2)).logIt(any(CheckContext.class), anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getAllValues().get(0), containsString("[1, 2]"));
+        assertThat(messageCaptor.getAllValues().get(0), containsString("((...)*)"));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("(F)"));
+    }
+
+    @Test
+    public void processFiltered_HundredsOfAlternativesWithSamePrefix_LogsOneGroup()
+            throws CheckstyleException, IOException {
+        LeftFactoringCheck check = spy(new LeftFactoringCheck());
+        List<String> lines = new ArrayList<>();
+        lines.add("grammar test;");
+        lines.add("rule");
+        lines.add("    : A B C0");
+        for (int i = 1; i < 1000; ++i) {
+            lines.add("    | A B C" + i);
+        }
+        lines.add("    ;");
+
+        process(check, new String[0][], lines);
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(any(CheckContext.class), anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), containsString("998, 999, 1000]"));
+    }
+
+    private void process(LeftFactoringCheck check, String[][] attributes, List<String> lines)
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        DefaultConfiguration config = new DefaultConfiguration("LeftFactoringCheck");
+        for (String[] attribute : attributes) {
+            config.addAttribute(attribute[0], attribute[1]);
+        }
+        File file = createFile("test.g", lines);
+
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setupChild(config);
+        walker.process(file, lines);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.checks;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.LexerRulesCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LexerRulesCheckTest extends AGrammarWalkerTest
+{
+    @Test
+    public void processFiltered_ParserGrammar_NothingLogged() throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "parser grammar test;",
+                "tokens{A;}",
+                "rule : A;"));
+
+        verify(check, never()).logIt(anyInt(), anyString());
+    }
+
+    @Test
+    public void processFiltered_KeywordAfterIdentifier_LogsShadowedKeyword() throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "lexer grammar test;",
+                "ELSE : 'else';",
+                "ID : ('a'..'z')+;",
+                "IF : 'if';"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getValue(), is(4));
+        assertThat(messageCaptor.getValue(), containsString("Token IF can never be matched"));
+    }
+
+    @Test
+    public void processFiltered_OverlappingRanges_LogsOverlaps() throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "lexer grammar test;",
+                "ID : ('a'..'z' | '_' | 'f'..'m' | 'A'..'Z' | 'x')+;"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check, times(2)).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getAllValues(), contains(
+                "Rule 'ID': 'f'..'m' overlaps with 'a'..'z'.",
+                "Rule 'ID': 'x' overlaps with 'a'..'z'."));
+    }
+
+    @Test
+    public void processFiltered_FragmentMisuseInCombinedGrammar_LogsFragmentsAndHelperTokens()
+            throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "grammar test;",
+                "rule : ID DIGIT;",
+                "ID : LETTER (LETTER | DIGIT)*;",
+                "LETTER : 'a'..'z';",
+                "fragment DIGIT : '0'..'9';",
+                "fragment UNUSED : '_';"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        //the unused fragment is reported by the UnusedRulesCheck
+        verify(check, times(3)).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getAllValues(), contains(4, 5, 4));
+        assertThat(messageCaptor.getAllValues().get(0), containsString("declare it as fragment"));
+        assertThat(messageCaptor.getAllValues().get(1), containsString("used in a parser rule"));
+        //ID matches everything LETTER does
+        assertThat(messageCaptor.getAllValues().get(2), containsString("Token LETTER can never be matched"));
+    }
+
+    @Test
+    public void processFiltered_RuleNamedTokensInFirstLine_RuleChecked() throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "lexer grammar test; Tokens : ('a'..'z' | 'f'..'m')+;"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), is("Rule 'Tokens': 'f'..'m' overlaps with 'a'..'z'."));
+    }
+
+    @Test
+    public void processFiltered_TokenPredictionOverLimit_LogsNumberOfStates() throws CheckstyleException, IOException {
+        LexerRulesCheck check = spy(new LexerRulesCheck());
+
+        process(check, new String[][]{{"maxTokensDecisionStates", "3"}}, Arrays.asList(
+                "lexer grammar test;",
+                "IF : 'if';",
+                "IN : 'in';",
+                "ID : ('a'..'z')+;"));
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getValue(), is(1));
+        assertThat(messageCaptor.getValue(), containsString("(max allowed is 3)"));
+    }
+
+    private void process(LexerRulesCheck check, String[][] attributes, List<String> lines)
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        DefaultConfiguration config = new DefaultConfiguration("LexerRulesCheck");
+        for (String[] attribute : attributes) {
+            config.addAttribute(attribute[0], attribute[1]);
+        }
+        File file = createFile("test.g", lines);
+
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setupChild(config);
+        walker.process(file, lines);
+    }
+}
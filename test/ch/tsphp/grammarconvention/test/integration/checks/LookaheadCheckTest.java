@@ -0,0 +1,107 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.checks;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.LookaheadCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LookaheadCheckTest extends AGrammarWalkerTest
+{
+    private static final List<String> LL2_GRAMMAR = Arrays.asList(
+            "parser grammar test;",
+            "tokens{A;B;C;}",
+            "rule : A B | A C;");
+
+    @Test
+    public void processFiltered_WithinLimits_NothingLogged() throws CheckstyleException, IOException {
+        LookaheadCheck check = spy(new LookaheadCheck());
+
+        process(check, new String[0][], LL2_GRAMMAR);
+
+        verify(check, never()).logIt(anyInt(), anyString());
+    }
+
+    @Test
+    public void processFiltered_LookaheadOverLimit_LogsDecisionWithRuleAndLine()
+            throws CheckstyleException, IOException {
+        LookaheadCheck check = spy(new LookaheadCheck());
+
+        process(check, new String[][]{{"maxLookahead", "1"}}, LL2_GRAMMAR);
+
+        ArgumentCaptor<Integer> lineCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(lineCaptor.capture(), messageCaptor.capture());
+        assertThat(lineCaptor.getValue(), is(3));
+        assertThat(messageCaptor.getValue(), containsString("rule 'rule'"));
+        assertThat(messageCaptor.getValue(), containsString("a lookahead of 2 (max allowed is 1)"));
+    }
+
+    @Test
+    public void processFiltered_NumberOfStatesOverLimit_LogsDecision() throws CheckstyleException, IOException {
+        LookaheadCheck check = spy(new LookaheadCheck());
+
+        process(check, new String[][]{{"maxNumberOfStates", "2"}}, LL2_GRAMMAR);
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), containsString("4 states (max allowed is 2)"));
+    }
+
+    @Test
+    public void processFiltered_CyclicDecision_LogsArbitraryLookahead() throws CheckstyleException, IOException {
+        LookaheadCheck check = spy(new LookaheadCheck());
+
+        process(check, new String[0][], Arrays.asList(
+                "parser grammar test;",
+                "tokens{A;B;C;}",
+                "rule : C* A | C* B;"));
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(check).logIt(anyInt(), messageCaptor.capture());
+        assertThat(messageCaptor.getValue(), containsString("arbitrary lookahead"));
+    }
+
+    private void process(LookaheadCheck check, String[][] attributes, List<String> lines)
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        DefaultConfiguration config = new DefaultConfiguration("LookaheadCheck");
+        for (String[] attribute : attributes) {
+            config.addAttribute(attribute[0], attribute[1]);
+        }
+        File file = createFile("test.g", lines);
+
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.finishLocalSetup();
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.setupChild(config);
+        walker.process(file, lines);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.checks;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.checks.UnusedRulesCheck;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UnusedRulesCheckTest extends AGrammarWalkerTest
+{
+    @Test
+    public void finishProcessing_AllRulesUsed_NothingLogged() throws CheckstyleException, IOException {
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{{"a.g",
+                "grammar a;",
+                "start : expr EOF;",
+                "expr : ID ('+' ID)* | '(' expr ')';",
+                "ID : LETTER+;",
+                "PLUS : '+';",
+                "fragment LETTER : 'a'..'z';",
+                "WS : ' ' {$channel=HIDDEN;};"}});
+
+        assertThat(violations, is(empty()));
+    }
+
+    @Test
+    public void finishProcessing_UnusedRuleTokenAndFragment_LogsEach() throws CheckstyleException, IOException {
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{{"a.g",
+                "grammar a;",
+                "start : ID EOF;",
+                "dead : INT;",
+                "ID : 'a'..'z';",
+                "INT : DIGIT+;",
+                "UNUSED : 'x';",
+                "fragment DIGIT : '0'..'9';",
+                "fragment HEX : 'a'..'f';"}});
+
+        assertThat(violations, contains(
+                "a.g:3: Rule dead is not reachable from the start rules.",
+                "a.g:5: Token INT is never used.",
+                "a.g:6: Token UNUSED is never used.",
+                "a.g:7: Fragment DIGIT is never used.",
+                "a.g:8: Fragment HEX is never used."));
+    }
+
+    @Test
+    public void finishProcessing_UnusedCycle_LogsCycle() throws CheckstyleException, IOException {
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{{"a.g",
+                "grammar a;",
+                "start : ID;",
+                "b : c ID;",
+                "c : b | ID;",
+                "ID : 'a'..'z';"}});
+
+        assertThat(violations, contains(
+                "a.g:3: Rule b is not reachable from the start rules. It is only used by the cycle of unused rules "
+                        + "b, c.",
+                "a.g:4: Rule c is not reachable from the start rules. It is only used by the cycle of unused rules "
+                        + "b, c."));
+    }
+
+    @Test
+    public void finishProcessing_RulesOfImportedGrammarAndTokenVocab_ResolvedAcrossFiles()
+            throws CheckstyleException, IOException {
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{
+                {"a.g",
+                        "parser grammar a;",
+                        "options{tokenVocab=l;}",
+                        "import b;",
+                        "start : shared ID;"},
+                {"b.g",
+                        "parser grammar b;",
+                        "shared : 'if' INT;",
+                        "unused : ID;"},
+                {"l.g",
+                        "lexer grammar l;",
+                        "IF : 'if';",
+                        "INT : '0'..'9';",
+                        "ID : 'a'..'z';",
+                        "ELSE : 'else';"}});
+
+        assertThat(violations, contains(
+                "b.g:3: Rule unused is not reachable from the start rules.",
+                "l.g:5: Token ELSE is never used."));
+    }
+
+    @Test
+    public void finishProcessing_LexerGrammarNotUsedAsTokenVocab_AllTokensUsed()
+            throws CheckstyleException, IOException {
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{{"l.g",
+                "lexer grammar l;",
+                "IF : 'if';",
+                "ID : LETTER+;",
+                "fragment LETTER : 'a'..'z';",
+                "fragment DIGIT : '0'..'9';"}});
+
+        assertThat(violations, contains("l.g:5: Fragment DIGIT is never used."));
+    }
+
+    @Test
+    public void finishProcessing_StartRulesDefined_OtherRulesUnreachable() throws CheckstyleException, IOException {
+        UnusedRulesCheck check = new UnusedRulesCheck();
+        check.setStartRules(new String[]{"expr", " statement"});
+
+        List<String> violations = process(check, new String[][]{{"a.g",
+                "parser grammar a;",
+                "tokens{ID;}",
+                "unit : statement;",
+                "statement : expr;",
+                "expr : ID;",
+                "other : ID;"}});
+
+        assertThat(violations, contains(
+                "a.g:3: Rule unit is not reachable from the start rules.",
+                "a.g:6: Rule other is not reachable from the start rules."));
+    }
+
+    @Test
+    public void finishProcessing_ThousandsOfRules_LogsUnusedChainEnd() throws CheckstyleException, IOException {
+        final int numberOfRules = 5000;
+        List<String> lines = new ArrayList<>();
+        lines.add("grammar a;");
+        for (int i = 0; i < numberOfRules; ++i) {
+            lines.add("r" + i + " : r" + (i + 1) + " ID | r" + (i / 2) + ";");
+        }
+        lines.add("r" + numberOfRules + " : ID;");
+        lines.add("dead : r0;");
+        lines.add("ID : 'a'..'z';");
+
+        List<String> violations = process(new UnusedRulesCheck(), new String[][]{
+                lines.toArray(new String[lines.size()])}, "a.g");
+
+        assertThat(violations, contains("a.g:" + (numberOfRules + 3)
+                + ": Rule dead is not reachable from the start rules."));
+    }
+
+    private List<String> process(UnusedRulesCheck check, String[][] files) throws CheckstyleException, IOException {
+        String[][] contents = new String[files.length][];
+        String[] fileNames = new String[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            fileNames[i] = files[i][0];
+            contents[i] = Arrays.copyOfRange(files[i], 1, files[i].length);
+        }
+        return process(check, contents, fileNames);
+    }
+
+    private List<String> process(UnusedRulesCheck check, String[][] contents, String... fileNames)
+            throws CheckstyleException, IOException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(dispatcher);
+        walker.finishLocalSetup();
+        walker.setupChild(createChildConfiguration("UnusedRulesCheck", new String[0][]));
+
+        //create all files first, the ANTLR tool resolves the imported grammars from the disk
+        File[] files = new File[fileNames.length];
+        for (int i = 0; i < fileNames.length; ++i) {
+            files[i] = createFile(fileNames[i], Arrays.asList(contents[i]));
+        }
+        for (int i = 0; i < fileNames.length; ++i) {
+            walker.process(files[i], Arrays.asList(contents[i]));
+        }
+        walker.finishProcessing();
+
+        List<String> violations = new ArrayList<>();
+        ArgumentCaptor<String> fileCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SortedSet<LocalizedMessage>> messagesCaptor = createMessagesCaptor();
+        verify(dispatcher, atLeast(0)).fireErrors(fileCaptor.capture(), messagesCaptor.capture());
+        for (int i = 0; i < fileCaptor.getAllValues().size(); ++i) {
+            String fileName = new File(fileCaptor.getAllValues().get(i)).getName();
+            for (LocalizedMessage message : messagesCaptor.getAllValues().get(i)) {
+                violations.add(fileName + ":" + message.getLineNo() + ": " + message.getMessage());
+            }
+        }
+        return violations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<SortedSet<LocalizedMessage>> createMessagesCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(SortedSet.class);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.cli;
+
+import ch.tsphp.grammarconvention.cli.GrammarChecker;
+import ch.tsphp.grammarconvention.test.integration.testutils.FileHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class GrammarCheckerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File config;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        File headerFile = FileHelper.createFile(folder, "licenseHeader.txt", new String[]{"/* licence */"});
+        config = FileHelper.createFile(folder, "config.xml", new String[]{
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.HeaderCheck\">",
+                "      <property name=\"headerFile\" value=\"" + headerFile.getPath() + "\"/>",
+                "    </module>",
+                "  </module>",
+                "</module>"
+        });
+    }
+
+    @Test
+    public void run_DirectoryWithWrongHeader_PrintsViolationAndReturns1() throws Exception {
+        folder.newFolder("grammars");
+        FileHelper.createFile(folder, "grammars/a.g", new String[]{"grammar a;", "@header{/* licence */}", "a : A;"});
+        File wrongFile = FileHelper.createFile(folder, "grammars/b.g",
+                new String[]{"grammar b;", "@header{/* wrong */}", "b : B;"});
+
+        int exitCode = run("-t", config.getPath(), wrongFile.getParent());
+
+        assertThat(exitCode, is(1));
+        assertThat(out.toString("UTF-8"), startsWith(wrongFile.getPath() + ":2: "));
+        assertThat(err.toString("UTF-8"), startsWith("set up: "));
+    }
+
+    @Test
+    public void run_NoFiles_PrintsUsageAndReturns2() throws Exception {
+        int exitCode = run(config.getPath());
+
+        assertThat(exitCode, is(2));
+        assertThat(err.toString("UTF-8"), startsWith("Usage: "));
+    }
+
+    private int run(String... args) throws Exception {
+        return GrammarChecker.run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.cli;
+
+import ch.tsphp.grammarconvention.cli.GrammarChecker;
+import ch.tsphp.grammarconvention.cli.ShardPartitioner;
+import ch.tsphp.grammarconvention.cli.ShardedGrammarChecker;
+import ch.tsphp.grammarconvention.test.integration.testutils.FileHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ShardedGrammarCheckerTest
+{
+    private static final int NUMBER_OF_GRAMMARS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File config;
+    private File grammars;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        File headerFile = FileHelper.createFile(folder, "licenseHeader.txt", new String[]{"/* licence */"});
+        config = FileHelper.createFile(folder, "config.xml", new String[]{
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.HeaderCheck\">",
+                "      <property name=\"headerFile\" value=\"" + headerFile.getPath() + "\"/>",
+                "    </module>",
+                "  </module>",
+                "</module>"
+        });
+        grammars = folder.newFolder("grammars");
+        FileHelper.createFile(folder, "grammars/L.g", new String[]{"lexer grammar L;", "ID : 'a'..'z'+;"});
+        FileHelper.createFile(folder, "grammars/P.g", new String[]{"parser grammar P;", "import L;", "p : ID;"});
+        for (int i = 0; i < NUMBER_OF_GRAMMARS; ++i) {
+            FileHelper.createFile(folder, "grammars/g" + i + ".g",
+                    new String[]{"grammar g" + i + ";", "@header{/* wrong " + i + " */}", "a : A;"});
+        }
+    }
+
+    @Test
+    public void partition_GrammarImportsOtherGrammar_BothAreInSameShard() throws Exception {
+        List<File> files = Arrays.asList(grammars.listFiles());
+
+        for (int numberOfShards = 1; numberOfShards <= 4; ++numberOfShards) {
+            List<List<File>> shards = ShardPartitioner.partition(files, numberOfShards);
+
+            List<File> allFiles = new ArrayList<>();
+            for (List<File> shard : shards) {
+                allFiles.addAll(shard);
+                assertThat(shard.contains(new File(grammars, "P.g")), is(shard.contains(new File(grammars, "L.g"))));
+            }
+            assertThat(allFiles, containsInAnyOrder(files.toArray()));
+            assertThat(ShardPartitioner.partition(files, numberOfShards), is(shards));
+        }
+    }
+
+    @Test
+    public void partition_SameGrammarsInOtherDirectory_SameShards() throws Exception {
+        File otherGrammars = folder.newFolder("checkout", "other", "grammars");
+        List<File> files = Arrays.asList(grammars.listFiles());
+        List<File> otherFiles = new ArrayList<>();
+        for (File file : files) {
+            File otherFile = new File(otherGrammars, file.getName());
+            Files.copy(file.toPath(), otherFile.toPath());
+            otherFiles.add(otherFile);
+        }
+
+        for (int numberOfShards = 2; numberOfShards <= 4; ++numberOfShards) {
+            List<List<File>> shards = ShardPartitioner.partition(files, numberOfShards);
+            List<List<File>> otherShards = ShardPartitioner.partition(otherFiles, numberOfShards);
+
+            assertThat(toNames(otherShards), is(toNames(shards)));
+        }
+    }
+
+    @Test
+    public void run_MalformedNumberOfShards_PrintsUsageAndReturns2() throws Exception {
+        File result = new File(folder.getRoot(), "shard.result");
+
+        int shardExitCode = run("-shard", "x/2", "-out", result.getPath(), config.getPath(), grammars.getPath());
+        int countExitCode = run("-shard", "0/two", "-out", result.getPath(), config.getPath(), grammars.getPath());
+        int shardsExitCode = run("-shards", "three", config.getPath(), grammars.getPath());
+
+        assertThat(shardExitCode, is(2));
+        assertThat(countExitCode, is(2));
+        assertThat(shardsExitCode, is(2));
+        assertThat(err.toString("UTF-8"), startsWith("Usage: "));
+        assertThat(result.exists(), is(false));
+    }
+
+    @Test
+    public void run_ThreeShardsInProcesses_PrintsSameReportAsGrammarChecker() throws Exception {
+        GrammarChecker.run(new String[]{config.getPath(), grammars.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        String expected = out.toString("UTF-8");
+        out.reset();
+
+        int exitCode = run("-shards", "3", "-J-Xmx128m", config.getPath(), grammars.getPath());
+
+        assertThat(exitCode, is(1));
+        assertThat(out.toString("UTF-8"), is(expected));
+        assertThat(err.toString("UTF-8"), startsWith("checked " + (NUMBER_OF_GRAMMARS + 2) + " files in 3 shards, "
+                + "found " + NUMBER_OF_GRAMMARS + " violations"));
+    }
+
+    @Test
+    public void run_ShardsCheckedSeparatelyAndMerged_PrintsSameReportAsInProcesses() throws Exception {
+        run("-shards", "2", config.getPath(), grammars.getPath());
+        String expected = out.toString("UTF-8");
+        out.reset();
+        File firstResult = new File(folder.getRoot(), "first.result");
+        File secondResult = new File(folder.getRoot(), "second.result");
+
+        int firstExitCode = run("-shard", "1/2", "-out", firstResult.getPath(), config.getPath(), grammars.getPath());
+        int secondExitCode = run("-shard", "0/2", "-out", secondResult.getPath(), config.getPath(),
+                grammars.getPath());
+        int exitCode = run("-merge", config.getPath(), firstResult.getPath(), secondResult.getPath());
+
+        assertThat(firstExitCode, is(0));
+        assertThat(secondExitCode, is(0));
+        assertThat(exitCode, is(1));
+        assertThat(out.toString("UTF-8"), is(expected));
+        assertThat(expected, is(not("")));
+    }
+
+    @Test
+    public void run_MergeWithMissingShard_Returns3() throws Exception {
+        File result = new File(folder.getRoot(), "shard.result");
+        run("-shard", "0/2", "-out", result.getPath(), config.getPath(), grammars.getPath());
+
+        int exitCode = run("-merge", config.getPath(), result.getPath());
+
+        assertThat(exitCode, is(3));
+        assertThat(out.toString("UTF-8"), is(""));
+    }
+
+    @Test
+    public void run_CrossFileCheckWithTokenVocabAcrossShards_ReducedOnceWithSummariesOfAllShards() throws Exception {
+        File crossFileConfig = FileHelper.createFile(folder, "crossFileConfig.xml", new String[]{
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.UnusedRulesCheck\"/>",
+                "  </module>",
+                "</module>"
+        });
+        File vocabularies = folder.newFolder("vocabularies");
+        FileHelper.createFile(folder, "vocabularies/Lex.g", new String[]{
+                "lexer grammar Lex;", "A : 'a';", "B : 'b';", "UNUSED : 'u';"});
+        for (int i = 0; i < NUMBER_OF_GRAMMARS; ++i) {
+            String token = "A";
+            if (i % 2 == 1) {
+                token = "B";
+            }
+            FileHelper.createFile(folder, "vocabularies/P" + i + ".g", new String[]{
+                    "parser grammar P" + i + ";", "options{tokenVocab=Lex;}", "p" + i + " : " + token + ";"});
+        }
+        GrammarChecker.run(new String[]{crossFileConfig.getPath(), vocabularies.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        String expected = out.toString("UTF-8");
+
+        for (int numberOfShards = 2; numberOfShards <= 4; ++numberOfShards) {
+            out.reset();
+            List<String> arguments = new ArrayList<>(Arrays.asList("-merge", crossFileConfig.getPath()));
+            for (int shard = 0; shard < numberOfShards; ++shard) {
+                File result = new File(folder.getRoot(), "shard" + shard + "of" + numberOfShards + ".result");
+                run("-shard", shard + "/" + numberOfShards, "-out", result.getPath(), crossFileConfig.getPath(),
+                        vocabularies.getPath());
+                arguments.add(result.getPath());
+            }
+
+            int exitCode = run(arguments.toArray(new String[arguments.size()]));
+
+            assertThat(exitCode, is(1));
+            assertThat(out.toString("UTF-8"), is(expected));
+        }
+        assertThat(expected.split("\n").length, is(1));
+        assertThat(expected, containsString("UNUSED"));
+    }
+
+    private List<List<String>> toNames(List<List<File>> shards) {
+        List<List<String>> names = new ArrayList<>();
+        for (List<File> shard : shards) {
+            List<String> shardNames = new ArrayList<>();
+            for (File file : shard) {
+                shardNames.add(file.getName());
+            }
+            names.add(shardNames);
+        }
+        return names;
+    }
+
+    private int run(String... args) throws Exception {
+        return ShardedGrammarChecker.run(args, new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8"));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.cli;
+
+import ch.tsphp.grammarconvention.cli.GrammarChecker;
+import ch.tsphp.grammarconvention.cli.WalkLogReplayer;
+import ch.tsphp.grammarconvention.compact.WalkLog;
+import ch.tsphp.grammarconvention.test.integration.testutils.FileHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+public class WalkLogReplayerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File config;
+    private File grammars;
+    private File walkLog;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        File headerFile = FileHelper.createFile(folder, "licenseHeader.txt", new String[]{"/* licence */"});
+        walkLog = new File(folder.getRoot(), "walk.log");
+        config = FileHelper.createFile(folder, "config.xml", new String[]{
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">",
+                "    <property name=\"walkLogFile\" value=\"" + walkLog.getPath() + "\"/>",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.HeaderCheck\">",
+                "      <property name=\"headerFile\" value=\"" + headerFile.getPath() + "\"/>",
+                "    </module>",
+                "  </module>",
+                "</module>"
+        });
+        grammars = folder.newFolder("grammars");
+        FileHelper.createFile(folder, "grammars/a.g", new String[]{"grammar a;", "@header{/* licence */}", "a : A;"});
+        FileHelper.createFile(folder, "grammars/b.g", new String[]{"grammar b;", "@header{/* wrong */}", "b : B c;",
+                "c : 'c';"});
+        FileHelper.createFile(folder, "grammars/c.g", new String[]{"grammar c;", "c : C;"});
+    }
+
+    @Test
+    public void read_LogOfGrammarChecker_ContainsWalkedFiles() throws Exception {
+        GrammarChecker.run(new String[]{config.getPath(), grammars.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+
+        WalkLog log = WalkLog.read(walkLog);
+
+        assertThat(log.getEntries().size(), is(3));
+        WalkLog.Entry entry = log.getEntries().get(1);
+        assertThat(entry.getFileName(), is(new File(grammars, "b.g").getPath()));
+        assertThat(entry.getLines(), is(Arrays.asList("grammar b;", "@header{/* wrong */}", "b : B c;", "c : 'c';")));
+        assertThat(entry.getTree().getChildCount(0), is(not(0)));
+    }
+
+    @Test
+    public void run_GrammarsDeletedAfterLogging_PrintsSameReportAsGrammarChecker() throws Exception {
+        int expectedExitCode = GrammarChecker.run(new String[]{config.getPath(), grammars.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        String expected = out.toString("UTF-8");
+        out.reset();
+        err.reset();
+        for (File file : grammars.listFiles()) {
+            Files.delete(file.toPath());
+        }
+
+        int exitCode = WalkLogReplayer.run(new String[]{"-iterations", "3", config.getPath(), walkLog.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+
+        assertThat(exitCode, is(expectedExitCode));
+        assertThat(out.toString("UTF-8"), is(expected));
+        assertThat(expected, is(not("")));
+        assertThat(err.toString("UTF-8"), startsWith("replayed 3 files ("));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_TruncatedLog_ThrowsIOException() throws Exception {
+        GrammarChecker.run(new String[]{config.getPath(), grammars.getPath()},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        byte[] bytes = Files.readAllBytes(walkLog.toPath());
+        Files.write(walkLog.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+
+        WalkLog.read(walkLog);
+    }
+}
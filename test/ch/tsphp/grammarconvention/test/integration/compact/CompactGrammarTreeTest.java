@@ -0,0 +1,113 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.compact;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.compact.CompactGrammarTree;
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.SortedSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompactGrammarTreeTest extends AGrammarWalkerTest
+{
+    private static final String GRAMMAR = "grammar Test;\n"
+            + "options { backtrack=true; }\n"
+            + "@header{/* header */}\n"
+            + "a : (b c)=> b c | {p}? b | b+ ;\n"
+            + "b : 'x' | B;\n"
+            + "c returns [int v] : e=b {$v = 1;} | 'x' c? ;\n"
+            + "B : 'a'..'z' ('0'..'9')+ ;\n";
+
+    private class RuleNameCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            log(ast.getLine(), ast.getCharPositionInLine(), "rule {0}", ast.getChild(0).getText());
+        }
+    }
+
+    @Test
+    public void getRoot_ParsedGrammar_SameTreeAsGrammarAST() throws RecognitionException {
+        GrammarAST ast = new IncrementalGrammarParser("Test.g").update(GRAMMAR);
+
+        CompactGrammarTree tree = CompactGrammarTree.of(ast);
+
+        assertThat(dump(tree.getRoot()), is(dump(ast)));
+    }
+
+    @Test
+    public void of_ParsedGrammar_TextsStoredOnce() throws RecognitionException {
+        GrammarAST ast = new IncrementalGrammarParser("Test.g").update(GRAMMAR);
+
+        CompactGrammarTree tree = CompactGrammarTree.of(ast);
+
+        assertThat(tree.getTextCount(), lessThan(tree.size()));
+        assertThat(tree.getParent(0), is(CompactGrammarTree.NONE));
+        assertThat(tree.getChildCount(0), is(ast.getChildCount()));
+    }
+
+    @Test
+    public void processTree_CompactTree_SameViolationsAsProcessBuffer()
+            throws RecognitionException, CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(new RuleNameCheck());
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("RuleNameCheck"));
+        File file = new File("Test.g");
+        SortedSet<LocalizedMessage> expected = walker.processBuffer(file, GRAMMAR);
+        CompactGrammarTree tree = CompactGrammarTree.of(new IncrementalGrammarParser("Test.g").update(GRAMMAR));
+
+        SortedSet<LocalizedMessage> result = walker.processTree(file, Arrays.asList(GRAMMAR.split("\n")), tree);
+
+        assertThat(result.size(), is(4));
+        assertThat(result, is(expected));
+    }
+
+    private String dump(GrammarAST ast) {
+        StringBuilder stringBuilder = new StringBuilder();
+        dump(ast, stringBuilder);
+        return stringBuilder.toString();
+    }
+
+    private void dump(GrammarAST ast, StringBuilder stringBuilder) {
+        stringBuilder.append('(').append(ast.getType()).append(' ').append(ast.getText()).append(' ')
+                .append(ast.getLine()).append(':').append(ast.getCharPositionInLine()).append(' ')
+                .append(ast.getParent() == null).append(' ').append(ast.getChildIndex());
+        for (int i = 0; i < ast.getChildCount(); ++i) {
+            stringBuilder.append(' ');
+            dump((GrammarAST) ast.getChild(i), stringBuilder);
+        }
+        stringBuilder.append(')');
+    }
+}
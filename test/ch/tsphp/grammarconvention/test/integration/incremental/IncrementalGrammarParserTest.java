@@ -0,0 +1,148 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.incremental;
+
+import ch.tsphp.grammarconvention.incremental.IncrementalGrammarParser;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class IncrementalGrammarParserTest
+{
+    private static final String GRAMMAR = "grammar Test;\n"
+            + "options { backtrack=true; memoize=true; }\n"
+            + "tokens { FOO; BAR='bar'; }\n"
+            + "@header{/* header */}\n"
+            + "/** doc comment */\n"
+            + "a options{backtrack=false;} : (b c)=> b c | {p}? b | b+ ;\n"
+            + "b : 'x' | B; c : ('y' | 'z')* ;\n"
+            + "d returns [int v]\n"
+            + "    :   e=b {$v = 1;}\n"
+            + "    |   'w' d?\n"
+            + "    ;\n"
+            + "B : 'a'..'z' ('0'..'9')+ ;\n"
+            + "fragment F : '0' ;\n"
+            + "WS : (' ' | '\\t')+ {$channel = HIDDEN;} ;\n";
+
+    private static final String[] INSERTIONS = new String[]{
+        " ", "\n", "\n\n  ", "\t", "x", "B", " | 'k'", " c", "/* c */", "// c\n", "(", ")", ";", "'", "{a}", "?", "*"
+    };
+
+    @Test
+    public void update_EditWithinRule_ReparsesOnlyRule() throws RecognitionException {
+        IncrementalGrammarParser parser = new IncrementalGrammarParser("Test.g");
+        parser.update(GRAMMAR);
+
+        String newText = GRAMMAR.replace("b : 'x' | B;", "b : 'x'\n  | 'y'\n  | B;");
+        GrammarAST result = parser.update(newText);
+
+        assertThat(parser.isLastUpdateIncremental(), is(true));
+        assertThat(dump(result), is(dump(fullParse(newText))));
+    }
+
+    @Test
+    public void update_EditInHeader_ParsesAll() throws RecognitionException {
+        IncrementalGrammarParser parser = new IncrementalGrammarParser("Test.g");
+        parser.update(GRAMMAR);
+
+        String newText = GRAMMAR.replace("FOO;", "FOO; BAZ;");
+        GrammarAST result = parser.update(newText);
+
+        assertThat(parser.isLastUpdateIncremental(), is(false));
+        assertThat(dump(result), is(dump(fullParse(newText))));
+    }
+
+    @Test
+    public void update_EditBreaksRule_ParsesAll() throws RecognitionException {
+        IncrementalGrammarParser parser = new IncrementalGrammarParser("Test.g");
+        parser.update(GRAMMAR);
+
+        String newText = GRAMMAR.replace("b : 'x' | B;", "b : 'x' ; | B;");
+        GrammarAST result = parser.update(newText);
+
+        assertThat(parser.isLastUpdateIncremental(), is(false));
+        assertThat(dump(result), is(dump(fullParse(newText))));
+    }
+
+    @Test
+    public void update_RandomEdits_SameTreeAsFullParse() throws RecognitionException {
+        int incrementalUpdates = 0;
+        for (long seed = 0; seed < 5; ++seed) {
+            Random random = new Random(seed);
+            IncrementalGrammarParser parser = new IncrementalGrammarParser("Test.g");
+            String text = GRAMMAR;
+            parser.update(text);
+            for (int i = 0; i < 60; ++i) {
+                int offset = random.nextInt(text.length() + 1);
+                int removedLength = Math.min(random.nextInt(3), text.length() - offset);
+                String inserted = INSERTIONS[random.nextInt(INSERTIONS.length)];
+                if (random.nextInt(4) == 0) {
+                    inserted = "";
+                }
+                String removed = text.substring(offset, offset + removedLength);
+                text = applyAndCompare(parser, text, offset, removedLength, inserted);
+                //keep only edits which were applied incrementally (hence without syntax errors) and undo the rest
+                //in order that the grammar does not end up broken for good
+                if (parser.isLastUpdateIncremental()) {
+                    ++incrementalUpdates;
+                } else {
+                    text = applyAndCompare(parser, text, offset, inserted.length(), removed);
+                }
+            }
+        }
+        assertThat(incrementalUpdates, greaterThan(0));
+    }
+
+    private String applyAndCompare(IncrementalGrammarParser parser, String text, int offset, int removedLength,
+            String inserted) throws RecognitionException {
+        String newText = text.substring(0, offset) + inserted + text.substring(offset + removedLength);
+
+        String result = dumpOrNull(parser, offset, removedLength, inserted);
+
+        assertThat(newText, result, is(dumpOrNull(new IncrementalGrammarParser("Test.g"), 0, 0, newText)));
+        return newText;
+    }
+
+    private GrammarAST fullParse(String text) throws RecognitionException {
+        return new IncrementalGrammarParser("Test.g").update(text);
+    }
+
+    /**
+     * ANTLRParser throws for some malformed grammars, in which case both parses need to fail.
+     */
+    private String dumpOrNull(IncrementalGrammarParser parser, int offset, int removedLength, String inserted)
+            throws RecognitionException {
+        try {
+            return dump(parser.update(offset, removedLength, inserted));
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private String dump(GrammarAST ast) {
+        StringBuilder stringBuilder = new StringBuilder();
+        dump(ast, stringBuilder);
+        return stringBuilder.toString();
+    }
+
+    private void dump(GrammarAST ast, StringBuilder stringBuilder) {
+        stringBuilder.append('(').append(ast.getType()).append(' ')
+                .append(ast.getText().replaceAll("synpred\\d+_", "synpred_"))
+                .append(' ').append(ast.getLine()).append(':').append(ast.getCharPositionInLine());
+        for (int i = 0; i < ast.getChildCount(); ++i) {
+            stringBuilder.append(' ');
+            dump((GrammarAST) ast.getChild(i), stringBuilder);
+        }
+        stringBuilder.append(')');
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.jfr;
+
+import ch.tsphp.grammarconvention.AGrammarConventionCheck;
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.test.integration.testutils.AGrammarWalkerTest;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.tool.GrammarAST;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrammarWalkerJfrTest extends AGrammarWalkerTest
+{
+    private static final String EVENT_PREFIX = "ch.tsphp.grammarconvention.";
+
+    private static class SlowCheck extends AGrammarConventionCheck
+    {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[]{ANTLRParser.RULE};
+        }
+
+        @Override
+        public void visitToken(GrammarAST ast) {
+            if (ast.getLine() == 3) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void processBuffer_Recording_EmitsParseWalkCheckPhaseAndSlowVisitEvents()
+            throws CheckstyleException, IOException {
+        GrammarWalker walker = createWalker(new SlowCheck());
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT_PREFIX + "Parse");
+            recording.enable(EVENT_PREFIX + "Walk");
+            recording.enable(EVENT_PREFIX + "CheckPhase");
+            recording.enable(EVENT_PREFIX + "Visit").withThreshold(Duration.ofMillis(10));
+            recording.start();
+
+            walker.processBuffer(new File("a.g"), "grammar a;\nx : 'x';\ny : 'y';\nz : 'z';\n");
+
+            recording.stop();
+            File dump = folder.newFile("walk.jfr");
+            recording.dump(dump.toPath());
+            events = readEvents(dump);
+        }
+
+        RecordedEvent walkEvent = getSingleEvent(events, "Walk");
+        assertThat(walkEvent.getString("fileName"), is("a.g"));
+        assertThat(walkEvent.getInt("numberOfChecks"), is(1));
+        assertThat(getSingleEvent(events, "Parse").getString("fileName"), is("a.g"));
+        assertThat(getEvents(events, "CheckPhase").size(), is(2));
+        RecordedEvent visitEvent = getSingleEvent(events, "Visit");
+        assertThat(visitEvent.getInt("line"), is(3));
+        assertThat(visitEvent.getString("tokenType"), is("RULE"));
+        assertThat(visitEvent.getClass("checkClass").getName(), is(SlowCheck.class.getName()));
+    }
+
+    private List<RecordedEvent> readEvents(File dump) throws IOException {
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            if (event.getEventType().getName().startsWith(EVENT_PREFIX)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private RecordedEvent getSingleEvent(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> namedEvents = getEvents(events, name);
+        assertThat(name + " events", namedEvents.size(), is(1));
+        return namedEvents.get(0);
+    }
+
+    private List<RecordedEvent> getEvents(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> namedEvents = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(EVENT_PREFIX + name)) {
+                namedEvents.add(event);
+            }
+        }
+        return namedEvents;
+    }
+
+    private GrammarWalker createWalker(AGrammarConventionCheck check) throws CheckstyleException {
+        ModuleFactory moduleFactory = mock(ModuleFactory.class);
+        when(moduleFactory.createModule(anyString())).thenReturn(check);
+        GrammarWalker walker = createGrammarWalker(moduleFactory);
+        walker.setMessageDispatcher(mock(MessageDispatcher.class));
+        walker.finishLocalSetup();
+        walker.setupChild(new DefaultConfiguration("SlowCheck"));
+        return walker;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.lsp;
+
+import ch.tsphp.grammarconvention.GrammarWalker;
+import ch.tsphp.grammarconvention.GrammarWalkers;
+import ch.tsphp.grammarconvention.lsp.GrammarLanguageServer;
+import ch.tsphp.grammarconvention.test.integration.testutils.FileHelper;
+import ch.tsphp.grammarconvention.test.integration.testutils.ScriptedLspClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static ch.tsphp.grammarconvention.test.integration.testutils.ScriptedLspClient.map;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class GrammarLanguageServerTest
+{
+    private static final long TIMEOUT = 5000;
+    private static final String URI = "file:///tmp/unsaved/test.g";
+    private static final String WRONG_HEADER = "grammar test;\n@header{/* wrong */}\nrule: EOF;\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScriptedLspClient client;
+    private ExecutorService executor;
+    private Future<Integer> exitCode;
+
+    @Before
+    public void setUp() throws Exception {
+        File headerFile = FileHelper.createFile(folder, "licenseHeader.txt", new String[]{"/* licence */"});
+        File baselineFile = new File(folder.getRoot(), "baseline.bin");
+        //the wrong header of known.g is a known violation
+        GrammarWalker baselineWalker = GrammarWalkers.create(
+                createConfig("baselineConfig.xml", headerFile, baselineFile, true).getPath());
+        baselineWalker.beginProcessing("UTF-8");
+        baselineWalker.processBuffer(new File(folder.getRoot(), "known.g"), WRONG_HEADER);
+        baselineWalker.takeCrossFileSummaries();
+        baselineWalker.finishProcessing();
+
+        File config = createConfig("config.xml", headerFile, baselineFile, false);
+        client = new ScriptedLspClient();
+        final GrammarLanguageServer server = new GrammarLanguageServer(
+                GrammarWalkers.create(config.getPath()),
+                client.getServerInput(), client.getServerOutput(), 20);
+        executor = Executors.newSingleThreadExecutor();
+        exitCode = executor.submit(new Callable<Integer>()
+        {
+            @Override
+            public Integer call() throws Exception {
+                return server.run();
+            }
+        });
+        int id = client.request("initialize", map("processId", null, "rootUri", null, "capabilities", map()));
+        Map<String, Object> response = client.await(id, TIMEOUT);
+        assertThat(response, notNullValue());
+        client.notify("initialized", map());
+    }
+
+    private File createConfig(String fileName, File headerFile, File baselineFile, boolean writesBaseline)
+            throws IOException {
+        return FileHelper.createFile(folder, fileName, new String[]{
+                "<?xml version=\"1.0\"?>",
+                "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\"",
+                "    \"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">",
+                "<module name=\"Checker\">",
+                "  <module name=\"ch.tsphp.grammarconvention.GrammarWalker\">",
+                "    <property name=\"baselineFile\" value=\"" + baselineFile.getPath() + "\"/>",
+                "    <property name=\"writeBaseline\" value=\"" + writesBaseline + "\"/>",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.HeaderCheck\">",
+                "      <property name=\"headerFile\" value=\"" + headerFile.getPath() + "\"/>",
+                "    </module>",
+                "    <module name=\"ch.tsphp.grammarconvention.checks.UnusedRulesCheck\"/>",
+                "  </module>",
+                "</module>"
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void didOpen_BufferWithWrongHeader_PublishesDiagnosticWithoutFileOnDisk() throws Exception {
+        client.notify("textDocument/didOpen", map("textDocument", map(
+                "uri", URI, "languageId", "antlr", "version", 1,
+                "text", WRONG_HEADER)));
+
+        List<?> diagnostics = awaitDiagnostics(1);
+        assertThat(diagnostics.size(), is(1));
+        Map<?, ?> range = (Map<?, ?>) ((Map<?, ?>) diagnostics.get(0)).get("range");
+        assertThat(((Number) ((Map<?, ?>) range.get("start")).get("line")).intValue(), is(1));
+        assertThat(new File(URI.substring("file://".length())).exists(), is(false));
+    }
+
+    @Test
+    public void didChange_RapidChanges_DebouncedAndLatestVersionPublished() throws Exception {
+        client.notify("textDocument/didOpen", map("textDocument", map(
+                "uri", URI, "languageId", "antlr", "version", 1,
+                "text", WRONG_HEADER)));
+        awaitDiagnostics(1);
+
+        for (int version = 2; version < 10; ++version) {
+            client.notify("textDocument/didChange", map(
+                    "textDocument", map("uri", URI, "version", version),
+                    "contentChanges", Arrays.asList(map("text", "grammar test;\n@header{/* wrong " + version + " */}\n"
+                            + "rule: EOF;\n"))));
+        }
+        client.notify("textDocument/didChange", map(
+                "textDocument", map("uri", URI, "version", 10),
+                "contentChanges", Arrays.asList(map("text", "grammar test;\n@header{/* licence */}\nrule: EOF;\n"))));
+
+        int numberOfPublications = 0;
+        Map<?, ?> params;
+        do {
+            Map<String, Object> notification = client.await("textDocument/publishDiagnostics", TIMEOUT);
+            assertThat(notification, notNullValue());
+            params = (Map<?, ?>) notification.get("params");
+            ++numberOfPublications;
+        } while (((Number) params.get("version")).intValue() != 10);
+        assertThat(((List<?>) params.get("diagnostics")).size(), is(0));
+        assertThat(numberOfPublications < 9, is(true));
+    }
+
+    @Test
+    public void didOpen_KnownViolation_FilteredByBaseline() throws Exception {
+        String uri = new File(folder.getRoot(), "known.g").toURI().toString();
+        client.notify("textDocument/didOpen", map("textDocument", map(
+                "uri", uri, "languageId", "antlr", "version", 1, "text", WRONG_HEADER)));
+
+        assertThat(awaitDiagnostics(1).size(), is(0));
+    }
+
+    @Test
+    public void didOpenAndDidClose_ImportingDocument_CrossFileDiagnosticsOfImportedDocumentUpdated()
+            throws Exception {
+        //the ANTLR tool reads the imported grammar from the disk
+        String[] importedLines = {"parser grammar b;", "tokens{ID;}", "shared : ID;", "other : ID;"};
+        String importedUri = FileHelper.createFile(folder, "b.g", importedLines).toURI().toString();
+        String importingUri = new File(folder.getRoot(), "a.g").toURI().toString();
+        //b.g on its own starts with the rule shared
+        client.notify("textDocument/didOpen", map("textDocument", map(
+                "uri", importedUri, "languageId", "antlr", "version", 1,
+                "text", join(importedLines))));
+        assertThat(getMessages(awaitDiagnostics(importedUri, 1)), contains(
+                "Rule other is not reachable from the start rules."));
+
+        client.notify("textDocument/didOpen", map("textDocument", map(
+                "uri", importingUri, "languageId", "antlr", "version", 1,
+                "text", "parser grammar a;\nimport b;\nstart : shared other;\n")));
+        assertThat(awaitDiagnostics(importingUri, 1).size(), is(0));
+        assertThat(awaitDiagnostics(importedUri, 1).size(), is(0));
+
+        client.notify("textDocument/didClose", map("textDocument", map("uri", importingUri)));
+        Map<?, ?> closed = (Map<?, ?>) client.await("textDocument/publishDiagnostics", TIMEOUT).get("params");
+        assertThat((String) closed.get("uri"), is(importingUri));
+        assertThat(getMessages(awaitDiagnostics(importedUri, 1)), contains(
+                "Rule other is not reachable from the start rules."));
+    }
+
+    @Test
+    public void shutdownAndExit_Standard_ServerTerminatesWithZero() throws Exception {
+        int id = client.request("shutdown", null);
+        assertThat(client.await(id, TIMEOUT), notNullValue());
+        client.notify("exit", null);
+
+        assertThat(exitCode.get(TIMEOUT, TimeUnit.MILLISECONDS), is(0));
+    }
+
+    @Test
+    public void request_UnknownMethod_RespondsWithError() throws Exception {
+        int id = client.request("textDocument/hover", map());
+
+        Map<String, Object> response = client.await(id, TIMEOUT);
+        assertThat(response.get("error"), notNullValue());
+        assertThat(response.get("result"), nullValue());
+    }
+
+    private List<?> awaitDiagnostics(String uri, int version) throws InterruptedException {
+        Map<String, Object> notification = client.await("textDocument/publishDiagnostics", TIMEOUT);
+        assertThat(notification, notNullValue());
+        Map<?, ?> params = (Map<?, ?>) notification.get("params");
+        assertThat((String) params.get("uri"), is(uri));
+        assertThat(((Number) params.get("version")).intValue(), is(version));
+        return (List<?>) params.get("diagnostics");
+    }
+
+    private String join(String[] lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private List<String> getMessages(List<?> diagnostics) {
+        List<String> messages = new ArrayList<>();
+        for (Object diagnostic : diagnostics) {
+            messages.add((String) ((Map<?, ?>) diagnostic).get("message"));
+        }
+        return messages;
+    }
+
+    private List<?> awaitDiagnostics(int version) throws InterruptedException {
+        Map<String, Object> notification = client.await("textDocument/publishDiagnostics", TIMEOUT);
+        assertThat(notification, notNullValue());
+        Map<?, ?> params = (Map<?, ?>) notification.get("params");
+        assertThat(((Number) params.get("version")).intValue(), is(version));
+        return (List<?>) params.get("diagnostics");
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.integration.testutils;
+
+import ch.tsphp.grammarconvention.lsp.JsonRpcConnection;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Language server client for tests which talks to a server via in-memory pipes.
+ */
+public class ScriptedLspClient
+{
+    private static final int PIPE_SIZE = 1 << 16;
+
+    private final PipedInputStream serverIn = new PipedInputStream(PIPE_SIZE);
+    private final PipedOutputStream serverOut = new PipedOutputStream();
+    private final JsonRpcConnection connection;
+    private final BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+    private int nextId = 1;
+
+    public ScriptedLspClient() throws IOException {
+        final PipedOutputStream clientOut = new PipedOutputStream(serverIn);
+        final PipedInputStream clientIn = new PipedInputStream(serverOut, PIPE_SIZE);
+        connection = new JsonRpcConnection(clientIn, clientOut);
+        final Thread reader = new Thread(new Runnable()
+        {
+            @Override
+            public void run() {
+                try {
+                    Map<String, Object> message = connection.read();
+                    while (message != null) {
+                        received.add(message);
+                        message = connection.read();
+                    }
+                } catch (IOException ex) {
+                    //server closed the connection
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public PipedInputStream getServerInput() {
+        return serverIn;
+    }
+
+    public PipedOutputStream getServerOutput() {
+        return serverOut;
+    }
+
+    public int request(String method, Map<String, Object> params) throws IOException {
+        final int id = nextId++;
+        final Map<String, Object> message = new LinkedHashMap<>();
+        message.put("jsonrpc", "2.0");
+        message.put("id", id);
+        message.put("method", method);
+        message.put("params", params);
+        connection.write(message);
+        return id;
+    }
+
+    public void notify(String method, Map<String, Object> params) throws IOException {
+        connection.sendNotification(method, params);
+    }
+
+    /**
+     * Returns the next received message or null if none arrived within the given time.
+     */
+    public Map<String, Object> receive(long timeoutMillis) throws InterruptedException {
+        return received.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the next message with the given method respectively the response with the given id.
+     */
+    public Map<String, Object> await(Object methodOrId, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (remaining > 0) {
+            final Map<String, Object> message = receive(remaining);
+            if (message == null) {
+                break;
+            }
+            if (methodOrId.equals(message.get("method"))
+                    || (message.get("id") instanceof Number && methodOrId instanceof Number
+                    && ((Number) message.get("id")).longValue() == ((Number) methodOrId).longValue())) {
+                return message;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return null;
+    }
+
+    public static Map<String, Object> map(Object... keyValues) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
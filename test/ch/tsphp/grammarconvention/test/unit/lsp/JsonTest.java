@@ -0,0 +1,51 @@
+/*
+ * This file is part of the TSPHP project published under the Apache License 2.0
+ * For the full copyright and license information, please have a look at LICENSE in the
+ * root folder or visit the project's website http://tsphp.ch/wiki/display/TSPHP/License
+ */
+
+package ch.tsphp.grammarconvention.test.unit.lsp;
+
+import ch.tsphp.grammarconvention.lsp.Json;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class JsonTest
+{
+    @Test
+    public void parse_NestedObject_ReturnsMapsListsAndValues() {
+        Map<?, ?> result = (Map<?, ?>) Json.parse(
+                "{\"id\": 1, \"params\": {\"text\": \"a\\n\\\"b\\\"\\u0041\", \"list\": [true, null, 1.5]}}");
+
+        assertThat((Long) result.get("id"), is(1L));
+        Map<?, ?> params = (Map<?, ?>) result.get("params");
+        assertThat((String) params.get("text"), is("a\n\"b\"A"));
+        List<?> list = (List<?>) params.get("list");
+        assertThat((Boolean) list.get(0), is(true));
+        assertThat(list.get(1), nullValue());
+        assertThat((Double) list.get(2), is(1.5));
+    }
+
+    @Test
+    public void write_ValueWithSpecialCharacters_CanBeParsedAgain() {
+        List<Object> value = Arrays.<Object>asList("tab\tquote\"backslash\\", 42, false, null);
+
+        String json = Json.write(value);
+
+        assertThat(json, is("[\"tab\\tquote\\\"backslash\\\\\",42,false,null]"));
+        Object parsed = Json.parse(json);
+        assertThat(parsed, is((Object) Arrays.<Object>asList("tab\tquote\"backslash\\", 42L, false, null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_TrailingContent_ThrowsIllegalArgumentException() {
+        Json.parse("{} x");
+    }
+}